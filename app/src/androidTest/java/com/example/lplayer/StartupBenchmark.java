@@ -0,0 +1,88 @@
+package com.example.lplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.lplayer.metadata.VideoInfo;
+import com.example.lplayer.scan.ScanManifest;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 冷启动基准：从媒体库快照恢复时第一行视频出现的时间
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+    private static final String TAG = "StartupBenchmark";
+    private static final int VIDEO_COUNT = 2000;
+    private static final long TIMEOUT_MS = 10000;
+
+    private LibrarySnapshotStore store;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = new LibrarySnapshotStore(context);
+        List<VideoAdapter.VideoItem> videos = new ArrayList<>(VIDEO_COUNT);
+        for (int i = 0; i < VIDEO_COUNT; i++) {
+            videos.add(new VideoAdapter.VideoItem(
+                    Uri.parse("content://com.example.lplayer.benchmark/document/" + i),
+                    String.format("video_%05d.mp4", i),
+                    new VideoInfo(60000L + i, 1920, 1080, "avc1", 30f)));
+        }
+        // 没有扫描根目录的快照只显示，不会触发重新扫描，启动后的列表完全来自快照
+        store.write(new LibrarySnapshotStore.Contents(
+                new LibrarySnapshotStore.Channel<>(Collections.<Uri>emptyList(), videos,
+                        Collections.<Uri, ScanManifest>emptyMap()),
+                LibrarySnapshotStore.Channel.<MusicAdapter.MusicItem>empty()));
+    }
+
+    @After
+    public void tearDown() {
+        store.delete();
+    }
+
+    @Test
+    public void snapshot_roundTrip() {
+        long start = SystemClock.elapsedRealtimeNanos();
+        LibrarySnapshotStore.Contents contents = store.read();
+        long readMs = (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000;
+        Log.i(TAG, "读取 " + VIDEO_COUNT + " 个视频的快照耗时 " + readMs + "ms");
+
+        assertNotNull(contents);
+        assertEquals(VIDEO_COUNT, contents.videos.items.size());
+        assertEquals("video_00000.mp4", contents.videos.items.get(0).getDisplayName());
+        assertEquals(1920, contents.videos.items.get(0).getInfo().getWidth());
+        assertTrue(contents.music.items.isEmpty());
+    }
+
+    @Test
+    public void coldStart_showsSnapshotRows() throws Exception {
+        StartupTrace.reset();
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            long firstRow = StartupTrace.await(StartupTrace.FIRST_VIDEO_ROW, TIMEOUT_MS);
+            long restored = StartupTrace.get(StartupTrace.SNAPSHOT_RESTORED);
+            Log.i(TAG, "仓库创建 " + StartupTrace.get(StartupTrace.REPOSITORY_CREATED) + "ms, 快照恢复 "
+                    + restored + "ms, 第一行视频 " + firstRow + "ms");
+
+            assertTrue("第一行视频没有出现", firstRow >= 0);
+            assertTrue(restored >= 0);
+            assertTrue(restored <= firstRow);
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.lplayer.metadata;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 元数据读取基准：纯 Java 的 TagReader 与 MediaMetadataRetriever 的对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class MusicMetadataExtractorBenchmark {
+    private static final String TAG = "MetadataBenchmark";
+    private static final int ITERATIONS = 50;
+    private static final int FRAME_COUNT = 20000;
+
+    private Context context;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        file = new File(context.getCacheDir(), "benchmark.mp3");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(buildMp3());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void tagReader_matchesRetrieverAndIsFaster() throws Exception {
+        Uri uri = Uri.fromFile(file);
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        TagReader.Tags tags = null;
+        for (int i = 0; i < ITERATIONS; i++) {
+            try (ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(
+                    ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY))) {
+                tags = TagReader.read(in.getChannel());
+            }
+        }
+        long tagReaderNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        long durationMs = 0;
+        start = SystemClock.elapsedRealtimeNanos();
+        try {
+            for (int i = 0; i < ITERATIONS; i++) {
+                retriever.setDataSource(context, uri);
+                retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+                durationMs = Long.parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+            }
+        } finally {
+            retriever.release();
+        }
+        long retrieverNanos = SystemClock.elapsedRealtimeNanos() - start;
+
+        Log.i(TAG, String.format("TagReader %.2fms/文件, MediaMetadataRetriever %.2fms/文件",
+                tagReaderNanos / 1e6 / ITERATIONS, retrieverNanos / 1e6 / ITERATIONS));
+        assertNotNull(tags);
+        assertEquals("周杰伦", tags.artist);
+        // 两者对编码延迟的处理可能差几十毫秒
+        assertEquals(durationMs, tags.durationMs, 100);
+        assertTrue(tagReaderNanos < retrieverNanos);
+    }
+
+    /**
+     * GBK 编码的 ID3v2.3 标签 + Xing 帧 + 静音 CBR 帧（MPEG-1 Layer III 128kbps 44.1kHz）
+     */
+    private static byte[] buildMp3() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] artist = "周杰伦".getBytes(Charset.forName("GBK"));
+        out.write("ID3".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(new byte[]{3, 0, 0, 0, 0, 0, (byte) (10 + 1 + artist.length)});
+        out.write("TPE1".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(ByteBuffer.allocate(4).putInt(artist.length + 1).array());
+        out.write(new byte[]{0, 0, 0});
+        out.write(artist);
+
+        byte[] header = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+        byte[] xingFrame = new byte[417];
+        System.arraycopy(header, 0, xingFrame, 0, 4);
+        System.arraycopy("Xing".getBytes(StandardCharsets.ISO_8859_1), 0, xingFrame, 36, 4);
+        ByteBuffer.wrap(xingFrame, 40, 8).putInt(0x01).putInt(FRAME_COUNT);
+        out.write(xingFrame);
+
+        byte[] frame = new byte[417];
+        System.arraycopy(header, 0, frame, 0, 4);
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+}
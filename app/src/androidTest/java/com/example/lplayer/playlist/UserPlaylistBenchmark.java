@@ -0,0 +1,89 @@
+package com.example.lplayer.playlist;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.lplayer.MusicAdapter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 命名播放列表基准：保存、打开、成员判断和移动的耗时
+ */
+@RunWith(AndroidJUnit4.class)
+public class UserPlaylistBenchmark {
+    private static final String TAG = "UserPlaylistBenchmark";
+    private static final int ITEM_COUNT = 10000;
+    private static final int MOVE_COUNT = 500;
+
+    private UserPlaylistStore store;
+    private long playlistId;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        store = UserPlaylistStore.getInstance(context);
+        playlistId = store.create("benchmark_" + SystemClock.elapsedRealtimeNanos(), PlaylistDatabase.KIND_MUSIC);
+        assertTrue(playlistId >= 0);
+    }
+
+    @After
+    public void tearDown() {
+        store.delete(playlistId);
+    }
+
+    @Test
+    public void addOpenMove() {
+        List<MusicAdapter.MusicItem> music = new ArrayList<>(ITEM_COUNT);
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            music.add(new MusicAdapter.MusicItem(
+                    Uri.parse("content://com.example.lplayer.benchmark/document/" + i),
+                    String.format("track_%05d", i), "artist", "album", "03:00"));
+        }
+        UserPlaylist<MusicAdapter.MusicItem> playlist = store.openMusic(playlistId);
+        long start = SystemClock.elapsedRealtime();
+        assertEquals(ITEM_COUNT, playlist.addAll(music));
+        long addMs = SystemClock.elapsedRealtime() - start;
+        // 再次追加同样的项全部跳过
+        assertEquals(0, playlist.addAll(music.subList(0, 100)));
+        assertTrue(playlist.contains(music.get(ITEM_COUNT - 1).getUri()));
+        assertFalse(playlist.contains(Uri.parse("content://com.example.lplayer.benchmark/document/missing")));
+
+        start = SystemClock.elapsedRealtime();
+        for (int i = 0; i < MOVE_COUNT; i++) {
+            playlist.move(ITEM_COUNT - 1, i * 7 % ITEM_COUNT);
+        }
+        long moveMs = SystemClock.elapsedRealtime() - start;
+        List<MusicAdapter.MusicItem> expected = playlist.getItems();
+
+        start = SystemClock.elapsedRealtime();
+        List<PlaylistDatabase.UserPlaylistInfo> playlists = store.getPlaylists(PlaylistDatabase.KIND_MUSIC);
+        long listMs = SystemClock.elapsedRealtime() - start;
+        // 绕过进程内缓存直接读数据库，顺序应与内存中的列表一致
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        List<MusicAdapter.MusicItem> reloaded = new ArrayList<>();
+        start = SystemClock.elapsedRealtime();
+        PlaylistDatabase.getInstance(context).loadUserMusic(playlistId, (sortKey, mediaId, item) -> reloaded.add(item));
+        long openMs = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "追加 " + ITEM_COUNT + " 项 " + addMs + "ms, 移动 " + MOVE_COUNT + " 次 " + moveMs
+                + "ms, 列出 " + playlists.size() + " 个列表 " + listMs + "ms, 读取内容 " + openMs + "ms");
+
+        assertEquals(expected.size(), reloaded.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getUri(), reloaded.get(i).getUri());
+        }
+    }
+}
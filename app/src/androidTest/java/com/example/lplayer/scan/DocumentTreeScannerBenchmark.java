@@ -0,0 +1,107 @@
+package com.example.lplayer.scan;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.documentfile.provider.DocumentFile;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 文件夹扫描吞吐量基准：游标扫描与逐文件 DocumentFile 查询的对比
+ */
+@RunWith(AndroidJUnit4.class)
+public class DocumentTreeScannerBenchmark {
+    private static final String TAG = "ScannerBenchmark";
+    private static final int FILE_COUNT = 3000;
+    private static final int ITERATIONS = 5;
+
+    private ContentResolver contentResolver;
+    private Uri providerUri;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        contentResolver = context.getContentResolver();
+        providerUri = Uri.parse("content://" + FakeDocumentsProvider.AUTHORITY);
+    }
+
+    @Test
+    public void cursorScan_issuesSingleQueryPerFolder() throws Exception {
+        DocumentTreeScanner scanner = new DocumentTreeScanner(contentResolver);
+        resetQueryCount();
+
+        List<ScannedDocument> documents = scanner.listChildren(FakeDocumentsProvider.buildTreeUri(FILE_COUNT));
+
+        assertEquals(FILE_COUNT, documents.size());
+        assertEquals(1, queryCount());
+    }
+
+    @Test
+    public void cursorScan_filesPerSecond() throws Exception {
+        DocumentTreeScanner scanner = new DocumentTreeScanner(contentResolver);
+        Uri treeUri = FakeDocumentsProvider.buildTreeUri(FILE_COUNT);
+        scanner.listChildren(treeUri); // 预热
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int videos = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            for (ScannedDocument document : scanner.listChildren(treeUri)) {
+                if (document.isVideo()) {
+                    videos++;
+                }
+            }
+        }
+        double seconds = (SystemClock.elapsedRealtimeNanos() - start) / 1e9;
+        double filesPerSecond = FILE_COUNT * ITERATIONS / seconds;
+        Log.i(TAG, String.format("游标扫描: %.0f 文件/秒", filesPerSecond));
+
+        assertTrue(videos > 0);
+    }
+
+    @Test
+    public void documentFileScan_baseline() {
+        // 旧实现的扫描方式，仅用于对比，文件数较少以控制测试时长
+        int fileCount = FILE_COUNT / 10;
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        DocumentFile folder = DocumentFile.fromTreeUri(context, FakeDocumentsProvider.buildTreeUri(fileCount));
+        assertNotNull(folder);
+        resetQueryCount();
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        int videos = 0;
+        for (DocumentFile file : folder.listFiles()) {
+            if (file.isFile() && file.getType() != null && file.getType().startsWith("video/")
+                    && file.getName() != null) {
+                videos++;
+            }
+        }
+        double seconds = (SystemClock.elapsedRealtimeNanos() - start) / 1e9;
+        Log.i(TAG, String.format("DocumentFile 扫描: %.0f 文件/秒, %d 次查询",
+                fileCount / seconds, queryCount()));
+
+        assertTrue(videos > 0);
+        assertTrue(queryCount() > fileCount);
+    }
+
+    private void resetQueryCount() {
+        contentResolver.call(providerUri, FakeDocumentsProvider.METHOD_RESET, null, null);
+    }
+
+    private int queryCount() {
+        Bundle result = contentResolver.call(providerUri, FakeDocumentsProvider.METHOD_QUERY_COUNT, null, null);
+        return result != null ? result.getInt(FakeDocumentsProvider.EXTRA_COUNT) : -1;
+    }
+}
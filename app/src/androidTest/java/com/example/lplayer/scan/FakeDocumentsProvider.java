@@ -0,0 +1,162 @@
+package com.example.lplayer.scan;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.provider.DocumentsContract;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基准测试用的伪文档提供者
+ *
+ * 根文档 ID 形如 "bench:3000"，表示该目录下有 3000 个子文档。
+ * 每次 query 都会计数，测试通过 call() 读取计数以核对 IPC 次数。
+ */
+public class FakeDocumentsProvider extends ContentProvider {
+    public static final String AUTHORITY = "com.example.lplayer.test.documents";
+    public static final String METHOD_QUERY_COUNT = "query_count";
+    public static final String METHOD_RESET = "reset";
+    public static final String EXTRA_COUNT = "count";
+
+    // 提供者可能运行在测试包自己的进程中，不引用应用内的类
+    private static final String[] DEFAULT_PROJECTION = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    private final AtomicInteger queryCount = new AtomicInteger();
+
+    public static Uri buildTreeUri(int childCount) {
+        return DocumentsContract.buildTreeDocumentUri(AUTHORITY, "bench:" + childCount);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        queryCount.incrementAndGet();
+        String[] columns = projection != null ? projection : DEFAULT_PROJECTION;
+        MatrixCursor cursor = new MatrixCursor(columns);
+
+        // 路径形如 tree/{treeId}/document/{docId}[/children]
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() < 4) {
+            return cursor;
+        }
+        String documentId = segments.get(3);
+        boolean children = segments.size() > 4 && "children".equals(segments.get(4));
+
+        if (children) {
+            int count = parseChildCount(documentId);
+            for (int i = 0; i < count; i++) {
+                cursor.addRow(buildRow(columns, documentId + "/" + i, i));
+            }
+        } else {
+            int slash = documentId.lastIndexOf('/');
+            int index = slash > 0 ? Integer.parseInt(documentId.substring(slash + 1)) : -1;
+            cursor.addRow(buildRow(columns, documentId, index));
+        }
+        return cursor;
+    }
+
+    private static int parseChildCount(String documentId) {
+        int colon = documentId.indexOf(':');
+        if (colon < 0 || documentId.indexOf('/') >= 0) {
+            return 0;
+        }
+        return Integer.parseInt(documentId.substring(colon + 1));
+    }
+
+    private static Object[] buildRow(String[] columns, String documentId, int index) {
+        String mimeType;
+        String name;
+        if (index < 0 || index % 10 == 9) {
+            mimeType = DocumentsContract.Document.MIME_TYPE_DIR;
+            name = "folder_" + index;
+        } else if (index % 2 == 0) {
+            mimeType = "video/mp4";
+            name = "video_" + index + ".mp4";
+        } else {
+            mimeType = "audio/mpeg";
+            name = "track_" + index + ".mp3";
+        }
+
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            switch (columns[i]) {
+                case DocumentsContract.Document.COLUMN_DOCUMENT_ID:
+                    row[i] = documentId;
+                    break;
+                case DocumentsContract.Document.COLUMN_DISPLAY_NAME:
+                    row[i] = name;
+                    break;
+                case DocumentsContract.Document.COLUMN_MIME_TYPE:
+                    row[i] = mimeType;
+                    break;
+                case DocumentsContract.Document.COLUMN_SIZE:
+                    row[i] = 1024L * (index + 1);
+                    break;
+                case DocumentsContract.Document.COLUMN_LAST_MODIFIED:
+                    row[i] = 1_600_000_000_000L + index;
+                    break;
+                case DocumentsContract.Document.COLUMN_FLAGS:
+                    row[i] = 0;
+                    break;
+                default:
+                    row[i] = null;
+                    break;
+            }
+        }
+        return row;
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        Bundle result = new Bundle();
+        if (METHOD_RESET.equals(method)) {
+            queryCount.set(0);
+        }
+        result.putInt(EXTRA_COUNT, queryCount.get());
+        return result;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return null;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        return null;
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        return 0;
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        return 0;
+    }
+}
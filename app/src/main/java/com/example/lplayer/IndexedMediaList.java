@@ -0,0 +1,181 @@
+package com.example.lplayer;
+
+import android.net.Uri;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 带 URI 索引的媒体列表，按 URI 查位置是常数时间
+ *
+ * 末尾追加时同步更新索引；中间插入、删除、排序等会移动位置的操作只把索引标记为失效，
+ * 下次查找时整体重建一次，连续的批量修改不会反复重建。同一 URI 出现多次时返回第一次出现的位置，
+ * 与 indexOf 一致。非线程安全，与 ArrayList 的使用方式相同。
+ */
+public class IndexedMediaList<T> extends AbstractList<T> implements RandomAccess {
+    private final ArrayList<T> items;
+    private final Function<T, Uri> uriOf;
+    private final Map<Uri, Integer> index = new HashMap<>();
+    private boolean indexValid = false;
+
+    public IndexedMediaList(Function<T, Uri> uriOf) {
+        this.items = new ArrayList<>();
+        this.uriOf = uriOf;
+    }
+
+    public IndexedMediaList(Collection<? extends T> items, Function<T, Uri> uriOf) {
+        this.items = new ArrayList<>(items);
+        this.uriOf = uriOf;
+    }
+
+    /**
+     * URI 对应的位置，不存在时返回 -1
+     */
+    public int indexOfUri(Uri uri) {
+        if (uri == null) {
+            return -1;
+        }
+        ensureIndex();
+        Integer position = index.get(uri);
+        return position != null ? position : -1;
+    }
+
+    public boolean containsUri(Uri uri) {
+        return indexOfUri(uri) >= 0;
+    }
+
+    /**
+     * 列表中与 item 的 URI 相同的项的位置
+     */
+    public int indexOfItem(T item) {
+        return item != null ? indexOfUri(uriOf.apply(item)) : -1;
+    }
+
+    @Override
+    public T get(int position) {
+        return items.get(position);
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public T set(int position, T item) {
+        T previous = items.set(position, item);
+        if (indexValid) {
+            Uri oldUri = uriOf(previous);
+            Uri newUri = uriOf(item);
+            if (oldUri == null ? newUri != null : !oldUri.equals(newUri)) {
+                indexValid = false;
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public boolean add(T item) {
+        items.add(item);
+        modCount++;
+        if (indexValid) {
+            Uri uri = uriOf(item);
+            if (uri != null) {
+                index.putIfAbsent(uri, items.size() - 1);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void add(int position, T item) {
+        if (position == items.size()) {
+            add(item);
+            return;
+        }
+        items.add(position, item);
+        modCount++;
+        indexValid = false;
+    }
+
+    @Override
+    public T remove(int position) {
+        T removed = items.remove(position);
+        modCount++;
+        indexValid = false;
+        return removed;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends T> collection) {
+        int start = items.size();
+        boolean changed = items.addAll(collection);
+        modCount++;
+        if (changed && indexValid) {
+            for (int i = start; i < items.size(); i++) {
+                Uri uri = uriOf(items.get(i));
+                if (uri != null) {
+                    index.putIfAbsent(uri, i);
+                }
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super T> filter) {
+        boolean changed = items.removeIf(filter);
+        if (changed) {
+            modCount++;
+            indexValid = false;
+        }
+        return changed;
+    }
+
+    @Override
+    public void sort(Comparator<? super T> comparator) {
+        items.sort(comparator);
+        modCount++;
+        indexValid = false;
+    }
+
+    @Override
+    public void clear() {
+        items.clear();
+        index.clear();
+        modCount++;
+        indexValid = true;
+    }
+
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        items.subList(fromIndex, toIndex).clear();
+        modCount++;
+        indexValid = false;
+    }
+
+    private void ensureIndex() {
+        if (indexValid) {
+            return;
+        }
+        index.clear();
+        for (int i = items.size() - 1; i >= 0; i--) {
+            Uri uri = uriOf(items.get(i));
+            if (uri != null) {
+                index.put(uri, i);
+            }
+        }
+        indexValid = true;
+    }
+
+    private Uri uriOf(T item) {
+        return item != null ? uriOf.apply(item) : null;
+    }
+}
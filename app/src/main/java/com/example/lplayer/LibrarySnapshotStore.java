@@ -0,0 +1,200 @@
+package com.example.lplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Trace;
+import android.util.Log;
+
+import com.example.lplayer.scan.ScanManifest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * 上一次完整媒体库的二进制快照
+ *
+ * 每个频道保存扫描根目录、列表和与列表对应的扫描清单。启动时先显示快照中的列表，
+ * 再以快照里的清单为基线增量扫描，未变化的目录不需要重新列出。
+ * 文件末尾带 CRC32 校验，读到损坏或旧版本的文件时当作没有快照。读写都应在后台线程进行。
+ */
+public class LibrarySnapshotStore {
+    private static final String TAG = "LibrarySnapshotStore";
+    private static final String FILE_NAME = "library_snapshot.bin";
+    private static final int MAGIC = 0x4C4C4253; // "LLBS"
+    private static final int VERSION = 1;
+
+    private final File file;
+
+    /**
+     * 单个频道已提交的状态：列表与清单来自同一次扫描或同一次整体替换
+     */
+    public static final class Channel<T> {
+        public static final Channel<?> EMPTY = new Channel<>(
+                Collections.emptyList(), Collections.emptyList(), Collections.emptyMap());
+
+        public final List<Uri> roots;
+        public final List<T> items;
+        public final Map<Uri, ScanManifest> manifests;
+
+        public Channel(List<Uri> roots, List<T> items, Map<Uri, ScanManifest> manifests) {
+            this.roots = roots;
+            this.items = items;
+            this.manifests = manifests;
+        }
+
+        @SuppressWarnings("unchecked")
+        public static <T> Channel<T> empty() {
+            return (Channel<T>) EMPTY;
+        }
+
+        public boolean isEmpty() {
+            return items.isEmpty() && roots.isEmpty();
+        }
+    }
+
+    /**
+     * 快照内容，创建后不再修改
+     */
+    public static final class Contents {
+        public final Channel<VideoAdapter.VideoItem> videos;
+        public final Channel<MusicAdapter.MusicItem> music;
+
+        public Contents(Channel<VideoAdapter.VideoItem> videos, Channel<MusicAdapter.MusicItem> music) {
+            this.videos = videos;
+            this.music = music;
+        }
+    }
+
+    public LibrarySnapshotStore(Context context) {
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+
+    /**
+     * 读取快照，不存在或无法解析时返回 null
+     */
+    public Contents read() {
+        if (!file.exists()) {
+            return null;
+        }
+        Trace.beginSection("LibrarySnapshotStore.read");
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            DataInputStream body = new DataInputStream(new CheckedInputStream(in, crc));
+            if (body.readInt() != MAGIC || body.readInt() != VERSION) {
+                Log.w(TAG, "媒体库快照格式不匹配，忽略旧快照");
+                return null;
+            }
+            Channel<VideoAdapter.VideoItem> videos = readChannel(body, MediaItemCodec::readVideo);
+            Channel<MusicAdapter.MusicItem> music = readChannel(body, MediaItemCodec::readMusic);
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                Log.w(TAG, "媒体库快照校验失败，忽略");
+                return null;
+            }
+            Log.d(TAG, "已读取媒体库快照: " + videos.items.size() + " 个视频, " + music.items.size() + " 首音乐");
+            return new Contents(videos, music);
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "读取媒体库快照失败", e);
+            return null;
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 写入快照，先写临时文件并同步到磁盘再替换，避免中途崩溃或断电留下半个文件
+     */
+    public void write(Contents contents) {
+        Trace.beginSection("LibrarySnapshotStore.write");
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            CRC32 crc = new CRC32();
+            try (FileOutputStream stream = new FileOutputStream(tmp);
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+                DataOutputStream body = new DataOutputStream(new CheckedOutputStream(out, crc));
+                body.writeInt(MAGIC);
+                body.writeInt(VERSION);
+                writeChannel(body, contents.videos, MediaItemCodec::writeVideo);
+                writeChannel(body, contents.music, MediaItemCodec::writeMusic);
+                body.flush();
+                out.writeLong(crc.getValue());
+                out.flush();
+                // 改名之前数据必须已落盘，否则断电后可能留下已改名但内容为空的文件
+                stream.getFD().sync();
+            } catch (IOException e) {
+                Log.e(TAG, "保存媒体库快照失败", e);
+                tmp.delete();
+                return;
+            }
+            if (!tmp.renameTo(file)) {
+                Log.e(TAG, "替换媒体库快照文件失败");
+                return;
+            }
+            Log.d(TAG, "媒体库快照已保存: " + contents.videos.items.size() + " 个视频, "
+                    + contents.music.items.size() + " 首音乐");
+        } finally {
+            Trace.endSection();
+        }
+    }
+
+    public void delete() {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "删除媒体库快照失败");
+        }
+    }
+
+    private static <T> void writeChannel(DataOutputStream out, Channel<T> channel, MediaItemCodec.Writer<T> writer)
+            throws IOException {
+        out.writeInt(channel.roots.size());
+        for (Uri root : channel.roots) {
+            out.writeUTF(root.toString());
+        }
+        out.writeInt(channel.items.size());
+        for (T item : channel.items) {
+            writer.write(out, item);
+        }
+        out.writeInt(channel.manifests.size());
+        for (ScanManifest manifest : channel.manifests.values()) {
+            manifest.writeTo(out);
+        }
+    }
+
+    /**
+     * 数量在 CRC 校验之前读出，可能来自损坏的数据，所以不按数量预分配容量；
+     * 损坏的数量会在读到文件末尾时以 EOFException 结束，而不是一次申请巨大的数组
+     */
+    private static <T> Channel<T> readChannel(DataInputStream in, MediaItemCodec.Reader<T> reader) throws IOException {
+        int rootCount = in.readInt();
+        List<Uri> roots = new ArrayList<>();
+        for (int i = 0; i < rootCount; i++) {
+            roots.add(Uri.parse(in.readUTF()));
+        }
+        int itemCount = in.readInt();
+        List<T> items = new ArrayList<>();
+        for (int i = 0; i < itemCount; i++) {
+            items.add(reader.read(in));
+        }
+        int manifestCount = in.readInt();
+        Map<Uri, ScanManifest> manifests = new LinkedHashMap<>();
+        for (int i = 0; i < manifestCount; i++) {
+            ScanManifest manifest = ScanManifest.readFrom(in);
+            manifests.put(manifest.getTreeUri(), manifest);
+        }
+        return new Channel<>(Collections.unmodifiableList(roots), Collections.unmodifiableList(items),
+                Collections.unmodifiableMap(manifests));
+    }
+}
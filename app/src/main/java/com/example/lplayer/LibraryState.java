@@ -0,0 +1,132 @@
+package com.example.lplayer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/**
+ * 媒体库与播放状态的写时复制容器
+ *
+ * 每次修改都生成一个新的不可变快照，通过 AtomicReference 的比较并交换发布，
+ * 读取方在任何线程拿到的都是某一版本的完整状态，不需要加锁，也不需要再做防御性复制。
+ * 界面通过 MediaRepository 的 LiveData 收到新快照。
+ */
+public class LibraryState {
+
+    /**
+     * 某一版本的媒体库状态，发布后不再修改
+     */
+    public static final class Snapshot {
+        public static final Snapshot EMPTY = new Snapshot(0,
+                Collections.emptyList(), -1, Collections.emptyList());
+
+        private final long version;
+        private final List<VideoAdapter.VideoItem> videos;
+        private final int videoPlayingPosition;
+        private final List<MusicAdapter.MusicItem> music;
+
+        private Snapshot(long version, List<VideoAdapter.VideoItem> videos, int videoPlayingPosition,
+                         List<MusicAdapter.MusicItem> music) {
+            this.version = version;
+            this.videos = videos;
+            this.videoPlayingPosition = videoPlayingPosition;
+            this.music = music;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * 只读列表
+         */
+        public List<VideoAdapter.VideoItem> getVideos() {
+            return videos;
+        }
+
+        public int getVideoPlayingPosition() {
+            return videoPlayingPosition;
+        }
+
+        /**
+         * 只读列表
+         */
+        public List<MusicAdapter.MusicItem> getMusic() {
+            return music;
+        }
+
+        public Snapshot withVideos(List<VideoAdapter.VideoItem> newVideos, int playingPosition) {
+            return replaceVideos(freeze(newVideos), playingPosition);
+        }
+
+        public Snapshot withVideoPlayingPosition(int playingPosition) {
+            if (playingPosition == videoPlayingPosition) {
+                return this;
+            }
+            return new Snapshot(version + 1, videos, playingPosition, music);
+        }
+
+        public Snapshot withMusic(List<MusicAdapter.MusicItem> newMusic) {
+            return replaceMusic(freeze(newMusic));
+        }
+
+        private Snapshot replaceVideos(List<VideoAdapter.VideoItem> frozenVideos, int playingPosition) {
+            return new Snapshot(version + 1, frozenVideos, playingPosition, music);
+        }
+
+        private Snapshot replaceMusic(List<MusicAdapter.MusicItem> frozenMusic) {
+            return new Snapshot(version + 1, videos, videoPlayingPosition, frozenMusic);
+        }
+
+        private static <T> List<T> freeze(List<T> items) {
+            if (items == null || items.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Collections.unmodifiableList(new ArrayList<>(items));
+        }
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+    /**
+     * 当前快照，可在任意线程调用
+     */
+    public Snapshot get() {
+        return current.get();
+    }
+
+    /**
+     * 基于当前快照计算新快照并发布，期间有其他修改时用最新的快照重新计算
+     *
+     * change 可能被调用多次，不应有副作用；返回原快照表示没有变化。
+     */
+    public Snapshot update(UnaryOperator<Snapshot> change) {
+        while (true) {
+            Snapshot previous = current.get();
+            Snapshot next = change.apply(previous);
+            if (next == previous) {
+                return previous;
+            }
+            if (current.compareAndSet(previous, next)) {
+                return next;
+            }
+        }
+    }
+
+    public Snapshot setVideos(List<VideoAdapter.VideoItem> videos, int playingPosition) {
+        // 在循环外复制一次，比较并交换失败重试时不必再复制调用方的列表
+        List<VideoAdapter.VideoItem> frozen = Snapshot.freeze(videos);
+        return update(snapshot -> snapshot.replaceVideos(frozen, playingPosition));
+    }
+
+    public Snapshot setMusic(List<MusicAdapter.MusicItem> music) {
+        List<MusicAdapter.MusicItem> frozen = Snapshot.freeze(music);
+        return update(snapshot -> snapshot.replaceMusic(frozen));
+    }
+
+    public Snapshot setVideoPlayingPosition(int playingPosition) {
+        return update(snapshot -> snapshot.withVideoPlayingPosition(playingPosition));
+    }
+}
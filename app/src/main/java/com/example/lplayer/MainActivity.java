@@ -14,6 +14,7 @@ import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.FrameLayout;
 
 import androidx.activity.result.ActivityResultLauncher;
@@ -24,31 +25,32 @@ import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
-import androidx.documentfile.provider.DocumentFile;
 import androidx.fragment.app.Fragment;
 import androidx.fragment.app.FragmentManager;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.viewpager2.widget.ViewPager2;
 
 import com.example.lplayer.fragments.MusicFragment;
 import com.example.lplayer.fragments.PlaylistFragment;
 import com.example.lplayer.fragments.SettingsFragment;
 import com.example.lplayer.fragments.VideoFragment;
+import com.example.lplayer.playlist.PlaylistDatabase;
+import com.example.lplayer.scan.LibraryRoots;
+import com.example.lplayer.thumbnail.AlbumArtLoader;
+import com.example.lplayer.thumbnail.ThumbnailLoader;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
 import android.widget.Toast;
 
+import java.io.FileNotFoundException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import androidx.preference.PreferenceManager;
 
-import java.util.Locale;
-import java.util.concurrent.TimeUnit;
-
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
-import android.media.MediaMetadataRetriever;
-
 public class MainActivity extends AppCompatActivity 
         implements VideoFragment.VideoFragmentListener, 
                    PlaylistFragment.PlaylistFragmentListener,
@@ -69,14 +71,12 @@ public class MainActivity extends AppCompatActivity
     private FrameLayout settingsContainer;
     private boolean isSettingsVisible = false;
     
-    private List<VideoAdapter.VideoItem> videoList = new ArrayList<>();
-    private int currentPlayingPosition = -1;
+    // 媒体库、扫描状态和最后选择的文件夹都在仓库中，界面重建后保留
+    private MediaRepository repository;
     
     private SwipeRefreshLayout swipeRefreshLayout;
     private boolean isRefreshing = false;
-    
-    // 保存最后选择的文件夹URI
-    private Uri lastSelectedFolderUri = null;
+
 
     // 视频选择器
     private final ActivityResultLauncher<Intent> videoPickerLauncher = registerForActivityResult(
@@ -86,13 +86,10 @@ public class MainActivity extends AppCompatActivity
                     Uri selectedVideoUri = result.getData().getData();
                     if (selectedVideoUri != null) {
                         try {
-                            // 清空当前视频列表
-                            videoList.clear();
-                            // 只添加当前选择的视频
+                            // 视频列表只保留当前选择的视频
                             String name = getFileNameFromUri(selectedVideoUri);
                             VideoAdapter.VideoItem videoItem = new VideoAdapter.VideoItem(selectedVideoUri, name);
-                            videoList.add(videoItem);
-                            updateVideoLists();
+                            repository.setVideos(Collections.singletonList(videoItem));
                             playVideo(videoItem);
                         } catch (Exception e) {
                             Log.e(TAG, "播放视频失败", e);
@@ -113,7 +110,7 @@ public class MainActivity extends AppCompatActivity
                             int takeFlags = Intent.FLAG_GRANT_READ_URI_PERMISSION;
                             getContentResolver().takePersistableUriPermission(folderUri, takeFlags);
                             // 保存最后选择的文件夹
-                            lastSelectedFolderUri = folderUri;
+                            repository.setLastVideoFolderUri(folderUri);
                             // 检查是否启用了保存视频播放列表功能
                             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
                             boolean saveVideoPlaylist = prefs.getBoolean("save_video_playlist", false);
@@ -142,21 +139,21 @@ public class MainActivity extends AppCompatActivity
                     // 1. 同步播放状态和播放列表
                     if (data.hasExtra("current_position")) {
                         int pos = data.getIntExtra("current_position", -1);
-                        if (pos >= 0 && pos < videoList.size()) {
-                            currentPlayingPosition = pos;
+                        if (pos >= 0 && pos < repository.getVideos().size()) {
+                            repository.setVideoPlayingPosition(pos);
                         }
                     }
                     if (data.hasExtra("playlist") && data.hasExtra("playlist_titles")) {
                         ArrayList<String> uriStrings = data.getStringArrayListExtra("playlist");
                         ArrayList<String> titles = data.getStringArrayListExtra("playlist_titles");
                         if (uriStrings != null && titles != null && uriStrings.size() == titles.size()) {
-                            videoList.clear();
+                            List<VideoAdapter.VideoItem> videos = new ArrayList<>(uriStrings.size());
                             for (int i = 0; i < uriStrings.size(); i++) {
-                                videoList.add(new VideoAdapter.VideoItem(Uri.parse(uriStrings.get(i)), titles.get(i)));
+                                videos.add(new VideoAdapter.VideoItem(Uri.parse(uriStrings.get(i)), titles.get(i)));
                             }
+                            repository.setVideos(videos);
                         }
                     }
-                    updateVideoLists();
                     String action = data.getStringExtra("action");
                     if (data.getAction() != null && data.getAction().equals("com.example.lplayer.REQUEST_VIDEO_LIST")) {
                         // ... existing code ...
@@ -201,10 +198,38 @@ public class MainActivity extends AppCompatActivity
                 }
             });
 
+    // 播放列表文件导入，作用于当前页面对应的列表
+    private final ActivityResultLauncher<Intent> playlistImportLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            result -> {
+                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                    Uri playlistUri = result.getData().getData();
+                    if (playlistUri != null) {
+                        String channel = getCurrentChannel();
+                        repository.importPlaylist(playlistUri, channel, getConfiguredRoots(channel));
+                    }
+                }
+            });
+
+    // 播放列表文件导出
+    private final ActivityResultLauncher<Intent> playlistExportLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            result -> {
+                if (result.getResultCode() == RESULT_OK && result.getData() != null) {
+                    Uri playlistUri = result.getData().getData();
+                    if (playlistUri != null) {
+                        repository.exportPlaylist(playlistUri, getCurrentChannel());
+                    }
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        repository = new ViewModelProvider(this).get(MediaRepository.class);
+        repository.getScanEvents().observe(this, this::onScanFinished);
+        repository.getTransferEvents().observe(this, this::onTransferFinished);
 
         try {
             // 初始化视图
@@ -226,9 +251,10 @@ public class MainActivity extends AppCompatActivity
             // 设置下拉刷新
             setupSwipeRefresh();
 
-            // 首次启动时加载默认文件夹内容
-            if (savedInstanceState == null) {
-                loadDefaultFolders();
+            // 仓库创建后只加载一次默认文件夹，旋转屏幕等重建不会重新扫描；
+            // 先显示上次保存的媒体库快照，再在后台增量核对
+            if (repository.claimInitialLoad()) {
+                repository.restoreThen(this::loadDefaultFolders);
             }
 
             // 根据设置更新底部导航栏
@@ -271,6 +297,29 @@ public class MainActivity extends AppCompatActivity
         } else if (id == R.id.menu_settings) {
             toggleSettings();
             return true;
+        } else if (id == R.id.menu_open_user_playlist) {
+            showUserPlaylists(getCurrentChannel());
+            return true;
+        } else if (id == R.id.menu_save_user_playlist) {
+            showSaveUserPlaylistDialog(getCurrentChannel());
+            return true;
+        } else if (id == R.id.menu_import_playlist) {
+            Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("*/*");
+            intent.putExtra(Intent.EXTRA_MIME_TYPES, new String[]{
+                    "audio/x-mpegurl", "audio/mpegurl", "application/vnd.apple.mpegurl",
+                    "application/x-mpegurl", "audio/x-scpls", "text/plain", "application/octet-stream"});
+            playlistImportLauncher.launch(intent);
+            return true;
+        } else if (id == R.id.menu_export_playlist) {
+            Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+            intent.addCategory(Intent.CATEGORY_OPENABLE);
+            intent.setType("audio/x-mpegurl");
+            intent.putExtra(Intent.EXTRA_TITLE, MediaRepository.CHANNEL_MUSIC.equals(getCurrentChannel())
+                    ? "music.m3u8" : "videos.m3u8");
+            playlistExportLauncher.launch(intent);
+            return true;
         }
         
         return super.onOptionsItemSelected(item);
@@ -290,8 +339,9 @@ public class MainActivity extends AppCompatActivity
                 super.onPageSelected(position);
                 bottomNavigationView.setSelectedItemId(getMenuItemIdForPosition(position));
                 
-                // 当切换到音乐界面时
-                if (viewPagerAdapter.getEnabledTabs()[position] == ViewPagerAdapter.TAB_MUSIC) {
+                // 第一次切换到音乐界面且尚未加载过音乐时；之后切换页面只重新观察仓库，不再扫描
+                if (viewPagerAdapter.getEnabledTabs()[position] == ViewPagerAdapter.TAB_MUSIC
+                        && !repository.isMusicRequested()) {
                     String defaultMusicFolderUri = PreferenceManager.getDefaultSharedPreferences(MainActivity.this)
                             .getString("default_music_folder_uri", null);
                     if (defaultMusicFolderUri != null) {
@@ -409,25 +459,12 @@ public class MainActivity extends AppCompatActivity
                 intent.putExtra("music_title", musicItem.getDisplayName());
                 intent.putExtra("music_artist", musicItem.getArtist());
                 
-                // 获取当前的MusicFragment
-                Fragment musicFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-                if (musicFragment instanceof MusicFragment) {
-                    // 构建播放列表数据
-                    List<MusicAdapter.MusicItem> musicList = ((MusicFragment) musicFragment).getMusicList();
-                    if (musicList != null && !musicList.isEmpty()) {
-                        // 查找当前音乐在列表中的位置
-                        int position = -1;
-                        for (int i = 0; i < musicList.size(); i++) {
-                            if (musicList.get(i).getUri().equals(musicItem.getUri())) {
-                                position = i;
-                                break;
-                            }
-                        }
-                        
-                        if (position != -1) {
-                            intent.putExtra("current_position", position);
-                        }
-                    }
+                // 查找当前音乐在音乐库中的位置
+                int position = repository.indexOfMusic(musicItem.getUri());
+                if (position != -1) {
+                    long queueId = PlaybackManager.getInstance().publishMusicQueue(repository.getMusic());
+                    intent.putExtra(PlaybackManager.EXTRA_QUEUE_ID, queueId);
+                    intent.putExtra(PlaybackManager.EXTRA_QUEUE_INDEX, position);
                 }
                 
                 startActivity(intent);
@@ -534,11 +571,8 @@ public class MainActivity extends AppCompatActivity
                 // 如果有默认文件夹，直接打开该文件夹
                 Uri folderUri = Uri.parse(defaultFolderUri);
                 // 保存最后选择的文件夹
-                lastSelectedFolderUri = folderUri;
-                // 清空当前视频列表
-                videoList.clear();
-                updateVideoLists();
-                // 加载新文件夹内容
+                repository.setLastVideoFolderUri(folderUri);
+                // 加载新文件夹内容，扫描完成后原地更新列表
                 loadVideosFromFolder(folderUri);
             } else {
                 // 否则打开系统文件选择器
@@ -594,20 +628,20 @@ public class MainActivity extends AppCompatActivity
             switch (currentPosition) {
                 case ViewPagerAdapter.TAB_VIDEO:
                     // 优先使用最后选择的文件夹
+                    Uri lastSelectedFolderUri = repository.getLastVideoFolderUri();
                     if (lastSelectedFolderUri != null) {
-                        loadVideosFromFolder(lastSelectedFolderUri);
+                        loadVideosFromFolder(lastSelectedFolderUri, true);
                     } else {
                         // 如果没有最后选择的文件夹，则使用默认文件夹
                         String defaultVideoFolderUri = PreferenceManager.getDefaultSharedPreferences(this)
                                 .getString("default_video_folder_uri", null);
                         if (defaultVideoFolderUri != null) {
                             Uri videoFolderUri = Uri.parse(defaultVideoFolderUri);
-                            lastSelectedFolderUri = videoFolderUri; // 更新最后选择的文件夹
-                            loadVideosFromFolder(videoFolderUri);
+                            repository.setLastVideoFolderUri(videoFolderUri); // 更新最后选择的文件夹
+                            loadVideosFromFolder(videoFolderUri, true);
                         } else {
                             // 如果没有默认文件夹，清空列表
-                            videoList.clear();
-                            updateVideoLists();
+                            repository.setVideos(Collections.emptyList());
                             Toast.makeText(this, "请先选择视频文件夹", Toast.LENGTH_SHORT).show();
                         }
                     }
@@ -619,21 +653,16 @@ public class MainActivity extends AppCompatActivity
                             .getString("default_music_folder_uri", null);
                     if (defaultMusicFolderUri != null) {
                         Uri musicFolderUri = Uri.parse(defaultMusicFolderUri);
-                        loadMusicFromFolder(musicFolderUri);
+                        loadMusicFromFolder(musicFolderUri, true);
                     } else {
                         // 如果没有默认文件夹，清空列表
-                        Fragment musicFragment = getSupportFragmentManager()
-                                .findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-                        if (musicFragment instanceof MusicFragment) {
-                            ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-                            Toast.makeText(this, "请先设置默认音乐文件夹", Toast.LENGTH_SHORT).show();
-                        }
+                        repository.setMusic(Collections.emptyList());
+                        Toast.makeText(this, "请先设置默认音乐文件夹", Toast.LENGTH_SHORT).show();
                     }
                     break;
 
                 case ViewPagerAdapter.TAB_PLAYLIST:
-                    // 播放列表会自动更新，因为它使用的是视频列表的数据
-                    updateVideoLists();
+                    // 播放列表页面观察仓库中的视频列表，无需刷新
                     break;
             }
         } catch (Exception e) {
@@ -649,155 +678,207 @@ public class MainActivity extends AppCompatActivity
     }
     
     private void loadVideosFromFolder(Uri folderUri) {
+        loadVideosFromFolder(folderUri, false);
+    }
+
+    /**
+     * 扫描视频文件夹并原地更新视频列表，同一文件夹的重复请求会合并为一次扫描
+     *
+     * @param force 为 true 时忽略上次的清单，完整核对一遍文件夹（下拉刷新使用）
+     */
+    private void loadVideosFromFolder(Uri folderUri, boolean force) {
         try {
-            Log.d(TAG, "开始扫描文件夹: " + folderUri);
-            
-            // 创建独立线程处理文件扫描，避免阻塞UI线程
-            new Thread(() -> {
-                List<VideoAdapter.VideoItem> newVideos = new ArrayList<>();
-                String folderName = null;
-                
-                try {
-                    DocumentFile folder = DocumentFile.fromTreeUri(this, folderUri);
-                    
-                    if (folder != null && folder.exists()) {
-                        folderName = folder.getName();
-                        Log.d(TAG, "文件夹存在: " + folderName);
-                        DocumentFile[] files = folder.listFiles();
-                        Log.d(TAG, "找到文件数量: " + files.length);
-                        
-                        // 遍历查找视频文件
-                        for (DocumentFile file : files) {
-                            try {
-                                if (file != null && file.isFile() && file.getType() != null && file.getType().startsWith("video/")) {
-                                    String name = file.getName();
-                                    Uri uri = file.getUri();
-                                    if (name != null && uri != null) {
-                                        Log.d(TAG, "找到视频: " + name + ", URI: " + uri);
-                                        newVideos.add(new VideoAdapter.VideoItem(uri, name));
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "处理单个文件时出错", e);
-                            }
-                        }
-                    } else {
-                        Log.e(TAG, "文件夹不存在或无法访问");
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "扫描文件夹失败", e);
-                }
-                
-                // 对视频列表进行排序（按名称字母顺序）
-                sortVideoList(newVideos);
-                
-                Log.d(TAG, "找到视频文件数量: " + newVideos.size());
-                
-                // 在UI线程更新界面
-                final String finalFolderName = folderName;
-                runOnUiThread(() -> {
-                    try {
-                        // 清空当前视频列表
-                        videoList.clear();
-                        
-                        if (newVideos.isEmpty()) {
-                            Toast.makeText(MainActivity.this, R.string.no_videos_found, Toast.LENGTH_SHORT).show();
-                        } else {
-                            // 直接替换视频列表
-                            videoList.addAll(newVideos);
-                            Toast.makeText(MainActivity.this, 
-                                    String.format("已加载 %d 个视频", newVideos.size()), 
-                                    Toast.LENGTH_SHORT).show();
-                        }
-                        
-                        // 更新UI，但不切换导航
-                        updateVideoLists();
-                        
-                        // 确保标题栏显示应用名称，并禁用返回箭头
-                        if (getSupportActionBar() != null && !isSettingsVisible) {
-                            getSupportActionBar().setDisplayHomeAsUpEnabled(false);
-                            getSupportActionBar().setTitle(R.string.app_name);
-                        }
-                        
-                    } catch (Exception e) {
-                        Log.e(TAG, "更新UI失败", e);
-                        Toast.makeText(MainActivity.this, "加载视频列表失败", Toast.LENGTH_SHORT).show();
-                    } finally {
-                        // 确保刷新动画被关闭
-                        if (swipeRefreshLayout.isRefreshing()) {
-                            swipeRefreshLayout.setRefreshing(false);
-                            isRefreshing = false;
-                        }
-                    }
-                });
-            }).start();
-            
+            List<Uri> roots = LibraryRoots.withExtras(folderUri,
+                    LibraryRoots.getExtraRoots(this, LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS));
+            repository.scanVideos(roots, force);
         } catch (Exception e) {
             Log.e(TAG, "加载文件夹中的视频失败", e);
             Toast.makeText(this, "无法加载文件夹中的视频", Toast.LENGTH_SHORT).show();
-            // 确保刷新动画被关闭
-            if (swipeRefreshLayout.isRefreshing()) {
-                swipeRefreshLayout.setRefreshing(false);
-                isRefreshing = false;
-            }
+            stopRefreshing();
         }
     }
-    
+
     /**
-     * 对视频列表按名称进行排序
+     * 确保标题栏显示应用名称，并禁用返回箭头
      */
-    private void sortVideoList(List<VideoAdapter.VideoItem> videos) {
-        if (videos != null && !videos.isEmpty()) {
-            videos.sort((v1, v2) -> {
-                if (v1 == null || v1.getDisplayName() == null) return 1;
-                if (v2 == null || v2.getDisplayName() == null) return -1;
-                return v1.getDisplayName().toLowerCase().compareTo(v2.getDisplayName().toLowerCase());
-            });
+    private void resetTitle() {
+        if (getSupportActionBar() != null && !isSettingsVisible) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(false);
+            getSupportActionBar().setTitle(R.string.app_name);
         }
     }
-    
-    private void updateVideoLists() {
+
+    /**
+     * 确保刷新动画被关闭
+     */
+    private void stopRefreshing() {
+        if (swipeRefreshLayout.isRefreshing()) {
+            swipeRefreshLayout.setRefreshing(false);
+            isRefreshing = false;
+        }
+    }
+
+    /**
+     * 扫描结束后的提示；列表本身由各页面观察仓库更新
+     */
+    private void onScanFinished(MediaRepository.ScanEvent event) {
+        if (event == null || !event.consume()) {
+            return;
+        }
         try {
-            // 更新视频页面
-            Fragment videoFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_VIDEO);
-            if (videoFragment instanceof VideoFragment) {
-                ((VideoFragment) videoFragment).setVideos(videoList);
-                ((VideoFragment) videoFragment).setCurrentPlayingPosition(currentPlayingPosition);
+            if (MediaRepository.CHANNEL_VIDEO.equals(event.channel)) {
+                if (event.error != null || event.itemCount == 0) {
+                    Toast.makeText(this, R.string.no_videos_found, Toast.LENGTH_SHORT).show();
+                } else if (event.changed) {
+                    Toast.makeText(this,
+                            String.format("已加载 %d 个视频", event.itemCount),
+                            Toast.LENGTH_SHORT).show();
+                }
+            } else if (event.error != null) {
+                if (event.error instanceof FileNotFoundException || event.error instanceof SecurityException) {
+                    Toast.makeText(this, "无法访问音乐文件夹", Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(this, "扫描音乐文件夹失败", Toast.LENGTH_SHORT).show();
+                }
+            } else if (event.itemCount == 0) {
+                Toast.makeText(this, R.string.no_music_found, Toast.LENGTH_SHORT).show();
+            } else if (event.changed) {
+                Toast.makeText(this,
+                        String.format("已加载 %d 个音乐文件", event.itemCount),
+                        Toast.LENGTH_SHORT).show();
             }
-            
-            // 更新播放列表页面
-            Fragment playlistFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_PLAYLIST);
-            if (playlistFragment instanceof PlaylistFragment) {
-                ((PlaylistFragment) playlistFragment).setVideos(videoList);
-                ((PlaylistFragment) playlistFragment).setCurrentPlayingPosition(currentPlayingPosition);
+            if (event.error == null) {
+                resetTitle();
             }
-        } catch (Exception e) {
-            Log.e(TAG, "更新视频列表失败", e);
+        } finally {
+            stopRefreshing();
         }
     }
     
+    private void onTransferFinished(MediaRepository.TransferEvent event) {
+        if (event == null || !event.consume()) {
+            return;
+        }
+        if (event.error != null) {
+            Toast.makeText(this, event.export ? "导出播放列表失败" : "导入播放列表失败", Toast.LENGTH_SHORT).show();
+        } else if (event.export) {
+            Toast.makeText(this, String.format("已导出 %d 项", event.itemCount), Toast.LENGTH_SHORT).show();
+        } else if (event.itemCount == 0) {
+            Toast.makeText(this, "播放列表中没有可以找到的文件", Toast.LENGTH_SHORT).show();
+        } else if (event.skipped > 0) {
+            Toast.makeText(this, String.format("已导入 %d 项，%d 项未找到", event.itemCount, event.skipped),
+                    Toast.LENGTH_SHORT).show();
+        } else {
+            Toast.makeText(this, String.format("已导入 %d 项", event.itemCount), Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    /**
+     * 列出频道的命名播放列表，点击打开，长按删除
+     */
+    private void showUserPlaylists(String channel) {
+        repository.loadUserPlaylists(channel, playlists -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (playlists.isEmpty()) {
+                Toast.makeText(this, "还没有保存的播放列表", Toast.LENGTH_SHORT).show();
+                return;
+            }
+            String[] names = new String[playlists.size()];
+            for (int i = 0; i < names.length; i++) {
+                names[i] = playlists.get(i).name + "（" + playlists.get(i).itemCount + " 项）";
+            }
+            AlertDialog dialog = new AlertDialog.Builder(this)
+                    .setTitle(R.string.open_user_playlist)
+                    .setItems(names, (d, which) -> repository.openUserPlaylist(playlists.get(which).id, channel,
+                            count -> Toast.makeText(this, count >= 0
+                                    ? String.format("已打开播放列表，共 %d 项", count)
+                                    : "无法打开播放列表", Toast.LENGTH_SHORT).show()))
+                    .setNegativeButton("取消", null)
+                    .create();
+            dialog.getListView().setOnItemLongClickListener((parent, view, position, rowId) -> {
+                PlaylistDatabase.UserPlaylistInfo playlist = playlists.get(position);
+                new AlertDialog.Builder(this)
+                        .setMessage("删除播放列表“" + playlist.name + "”？")
+                        .setPositiveButton("删除", (d, which) -> {
+                            repository.deleteUserPlaylist(playlist.id);
+                            dialog.dismiss();
+                        })
+                        .setNegativeButton("取消", null)
+                        .show();
+                return true;
+            });
+            dialog.show();
+        });
+    }
+
+    private void showSaveUserPlaylistDialog(String channel) {
+        EditText input = new EditText(this);
+        input.setSingleLine(true);
+        input.setHint("播放列表名称");
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.save_user_playlist)
+                .setView(input)
+                .setPositiveButton("保存", (dialog, which) -> {
+                    String name = input.getText().toString().trim();
+                    if (name.isEmpty()) {
+                        Toast.makeText(this, "名称不能为空", Toast.LENGTH_SHORT).show();
+                        return;
+                    }
+                    repository.saveUserPlaylist(name, channel, count -> Toast.makeText(this, count >= 0
+                            ? String.format("已保存 %d 项到“%s”", count, name)
+                            : "保存失败，名称可能已存在", Toast.LENGTH_SHORT).show());
+                })
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    /**
+     * 当前页面对应的频道，播放列表页面按视频处理
+     */
+    private String getCurrentChannel() {
+        int currentPosition = viewPager.getCurrentItem();
+        int[] enabledTabs = viewPagerAdapter.getEnabledTabs();
+        if (currentPosition >= 0 && currentPosition < enabledTabs.length
+                && enabledTabs[currentPosition] == ViewPagerAdapter.TAB_MUSIC) {
+            return MediaRepository.CHANNEL_MUSIC;
+        }
+        return MediaRepository.CHANNEL_VIDEO;
+    }
+
+    /**
+     * 频道当前配置的文件夹：选择或默认的文件夹加上额外文件夹
+     */
+    private List<Uri> getConfiguredRoots(String channel) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
+        if (MediaRepository.CHANNEL_MUSIC.equals(channel)) {
+            String defaultMusicFolderUri = prefs.getString("default_music_folder_uri", null);
+            return LibraryRoots.withExtras(defaultMusicFolderUri != null ? Uri.parse(defaultMusicFolderUri) : null,
+                    LibraryRoots.getExtraRoots(this, LibraryRoots.KEY_EXTRA_MUSIC_FOLDERS));
+        }
+        Uri folderUri = repository.getLastVideoFolderUri();
+        if (folderUri == null) {
+            String defaultVideoFolderUri = prefs.getString("default_video_folder_uri", null);
+            folderUri = defaultVideoFolderUri != null ? Uri.parse(defaultVideoFolderUri) : null;
+        }
+        return LibraryRoots.withExtras(folderUri, LibraryRoots.getExtraRoots(this, LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS));
+    }
+
     private void playVideo(VideoAdapter.VideoItem videoItem) {
         try {
             if (videoItem != null && videoItem.getUri() != null) {
-                for (int i = 0; i < videoList.size(); i++) {
-                    if (videoList.get(i).getUri().equals(videoItem.getUri())) {
-                        currentPlayingPosition = i;
-                        break;
-                    }
+                int position = repository.indexOfVideo(videoItem.getUri());
+                if (position != -1) {
+                    repository.setVideoPlayingPosition(position);
                 }
-                updateVideoLists();
                 Intent intent = new Intent(this, PlayerActivity.class);
                 intent.putExtra("video_uri", videoItem.getUri().toString());
                 intent.putExtra("video_title", videoItem.getDisplayName());
-                ArrayList<String> uriStrings = new ArrayList<>();
-                ArrayList<String> titles = new ArrayList<>();
-                for (VideoAdapter.VideoItem item : videoList) {
-                    uriStrings.add(item.getUri().toString());
-                    titles.add(item.getDisplayName());
-                }
-                intent.putStringArrayListExtra("playlist", uriStrings);
-                intent.putStringArrayListExtra("playlist_titles", titles);
-                intent.putExtra("current_position", currentPlayingPosition);
+                // 播放列表通过 PlaybackManager 共享，Intent 中只带队列 ID 和位置
+                long queueId = PlaybackManager.getInstance().publishVideoQueue(repository.getVideos());
+                intent.putExtra(PlaybackManager.EXTRA_QUEUE_ID, queueId);
+                intent.putExtra(PlaybackManager.EXTRA_QUEUE_INDEX, repository.getVideoPlayingPosition());
                 playerLauncher.launch(intent);
             }
         } catch (Exception e) {
@@ -808,15 +889,15 @@ public class MainActivity extends AppCompatActivity
     
     private void playPreviousVideo() {
         try {
-            if (videoList.isEmpty()) {
+            List<VideoAdapter.VideoItem> videos = repository.getVideos();
+            if (videos.isEmpty()) {
                 return;
             }
-            int newPosition = currentPlayingPosition - 1;
+            int newPosition = repository.getVideoPlayingPosition() - 1;
             if (newPosition < 0) {
-                newPosition = videoList.size() - 1;
+                newPosition = videos.size() - 1;
             }
-            currentPlayingPosition = newPosition;
-            playVideo(videoList.get(newPosition));
+            playVideo(videos.get(newPosition));
         } catch (Exception e) {
             Log.e(TAG, "播放上一个视频失败", e);
             Toast.makeText(this, "无法播放上一个视频", Toast.LENGTH_SHORT).show();
@@ -825,15 +906,15 @@ public class MainActivity extends AppCompatActivity
     
     private void playNextVideo() {
         try {
-            if (videoList.isEmpty()) {
+            List<VideoAdapter.VideoItem> videos = repository.getVideos();
+            if (videos.isEmpty()) {
                 return;
             }
-            int newPosition = currentPlayingPosition + 1;
-            if (newPosition >= videoList.size()) {
+            int newPosition = repository.getVideoPlayingPosition() + 1;
+            if (newPosition >= videos.size()) {
                 newPosition = 0;
             }
-            currentPlayingPosition = newPosition;
-            playVideo(videoList.get(newPosition));
+            playVideo(videos.get(newPosition));
         } catch (Exception e) {
             Log.e(TAG, "播放下一个视频失败", e);
             Toast.makeText(this, "无法播放下一个视频", Toast.LENGTH_SHORT).show();
@@ -898,13 +979,6 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
-    @Override
-    protected void onResume() {
-        super.onResume();
-        // 只更新视频列表，不重新加载文件夹
-        updateVideoLists();
-    }
-
     private void toggleSettings() {
         if (!isSettingsVisible) {
             showSettings();
@@ -979,14 +1053,10 @@ public class MainActivity extends AppCompatActivity
         
         try {
             // 保存视频播放列表
-            PlaylistManager.saveVideoPlaylist(this, videoList);
+            PlaylistManager.saveVideoPlaylist(this, repository.getVideos(), repository.getVideoPlayingPosition());
             
             // 保存音乐播放列表
-            Fragment musicFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-            if (musicFragment instanceof MusicFragment) {
-                List<MusicAdapter.MusicItem> musicList = ((MusicFragment) musicFragment).getMusicList();
-                PlaylistManager.saveMusicPlaylist(this, musicList);
-            }
+            PlaylistManager.saveMusicPlaylist(this, repository.getMusic());
             
             Log.d(TAG, "播放列表已保存");
         } catch (Exception e) {
@@ -994,7 +1064,23 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ThumbnailLoader.getInstance(this).trimMemory(level);
+        AlbumArtLoader.getInstance(this).trimMemory(level);
+    }
+
     private void loadDefaultFolders() {
+        // 保存的播放列表（包括旧数据迁移和日志重放）在后台读取，读完回到主线程继续
+        PlaylistManager.loadSavedPlaylists(this, saved -> {
+            if (!isFinishing() && !isDestroyed()) {
+                applyDefaultFolders(saved);
+            }
+        });
+    }
+
+    private void applyDefaultFolders(PlaylistManager.SavedPlaylists saved) {
         try {
             // 检查是否启用了保存播放列表功能
             SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
@@ -1002,14 +1088,13 @@ public class MainActivity extends AppCompatActivity
             boolean saveMusicPlaylist = prefs.getBoolean("save_music_playlist", false);
             
             if (saveVideoPlaylist) {
-                // 如果启用了视频播放列表保存功能，尝试加载保存的播放列表
-                List<VideoAdapter.VideoItem> savedVideoList = PlaylistManager.loadVideoPlaylist(this);
+                // 如果启用了视频播放列表保存功能，使用保存的播放列表
+                List<VideoAdapter.VideoItem> savedVideoList = saved.videos;
                 if (!savedVideoList.isEmpty()) {
                     // 如果有保存的播放列表，直接使用它
-                    videoList.clear();
-                    videoList.addAll(savedVideoList);
-                    updateVideoLists();
-                    Log.d(TAG, "已加载保存的视频播放列表，共 " + videoList.size() + " 项");
+                    repository.setVideos(savedVideoList);
+                    repository.setVideoPlayingPosition(saved.videoPlayingPosition);
+                    Log.d(TAG, "已加载保存的视频播放列表，共 " + savedVideoList.size() + " 项");
                     return;
                 }
             }
@@ -1020,7 +1105,7 @@ public class MainActivity extends AppCompatActivity
             if (defaultVideoFolderUri != null) {
                 Uri videoFolderUri = Uri.parse(defaultVideoFolderUri);
                 // 保存最后选择的文件夹
-                lastSelectedFolderUri = videoFolderUri;
+                repository.setLastVideoFolderUri(videoFolderUri);
                 // 确保有权限访问该文件夹
                 int takeFlags = Intent.FLAG_GRANT_READ_URI_PERMISSION;
                 try {
@@ -1033,28 +1118,22 @@ public class MainActivity extends AppCompatActivity
                             .edit()
                             .remove("default_video_folder_uri")
                             .apply();
-                    lastSelectedFolderUri = null; // 清除最后选择的文件夹
+                    repository.setLastVideoFolderUri(null); // 清除最后选择的文件夹
                     // 清空视频列表
-                    videoList.clear();
-                    updateVideoLists();
+                    repository.setVideos(Collections.emptyList());
                 }
-            } else {
-                // 如果没有默认文件夹，清空视频列表
-                videoList.clear();
-                updateVideoLists();
+            } else if (!repository.revalidateVideos()) {
+                // 没有默认文件夹也没有快照时清空视频列表；有快照时沿用快照并核对其中的文件夹
+                repository.setVideos(Collections.emptyList());
             }
 
             // 处理音乐播放列表
             if (saveMusicPlaylist) {
-                // 如果启用了音乐播放列表保存功能，尝试加载保存的播放列表
-                List<MusicAdapter.MusicItem> savedMusicList = PlaylistManager.loadMusicPlaylist(this);
+                // 如果启用了音乐播放列表保存功能，使用保存的播放列表
+                List<MusicAdapter.MusicItem> savedMusicList = saved.music;
                 if (!savedMusicList.isEmpty()) {
-                    // 如果有保存的播放列表，更新音乐Fragment
-                    Fragment musicFragment = getSupportFragmentManager()
-                            .findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-                    if (musicFragment instanceof MusicFragment) {
-                        ((MusicFragment) musicFragment).updateMusicList(savedMusicList);
-                    }
+                    // 如果有保存的播放列表，直接使用它
+                    repository.setMusic(savedMusicList);
                     Log.d(TAG, "已加载保存的音乐播放列表，共 " + savedMusicList.size() + " 项");
                     return;
                 }
@@ -1078,246 +1157,42 @@ public class MainActivity extends AppCompatActivity
                             .remove("default_music_folder_uri")
                             .apply();
                     // 清空音乐列表
-                    Fragment musicFragment = getSupportFragmentManager()
-                            .findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-                    if (musicFragment instanceof MusicFragment) {
-                        ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-                    }
-                }
-            } else {
-                // 如果没有默认文件夹，清空音乐列表
-                Fragment musicFragment = getSupportFragmentManager()
-                        .findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-                if (musicFragment instanceof MusicFragment) {
-                    ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
+                    repository.setMusic(Collections.emptyList());
                 }
+            } else if (!repository.revalidateMusic()) {
+                // 没有默认文件夹也没有快照时清空音乐列表；有快照时沿用快照并核对其中的文件夹
+                repository.setMusic(Collections.emptyList());
             }
         } catch (Exception e) {
             Log.e(TAG, "加载默认文件夹失败", e);
             // 发生异常时清空所有列表
-            videoList.clear();
-            updateVideoLists();
-            Fragment musicFragment = getSupportFragmentManager()
-                    .findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-            if (musicFragment instanceof MusicFragment) {
-                ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-            }
+            repository.setVideos(Collections.emptyList());
+            repository.setMusic(Collections.emptyList());
         }
     }
 
     public void loadMusicFromFolder(Uri folderUri) {
+        loadMusicFromFolder(folderUri, false);
+    }
+
+    /**
+     * 扫描音乐文件夹并原地更新音乐列表，只为新增或修改过的文件提取元数据
+     *
+     * 页面切换、onResume、设置变化等同时触发时，同一文件夹只会有一次扫描在进行。
+     *
+     * @param force 为 true 时忽略上次的清单，完整核对一遍文件夹（下拉刷新使用）
+     */
+    public void loadMusicFromFolder(Uri folderUri, boolean force) {
         try {
-            Log.d(TAG, "开始扫描音乐文件夹: " + folderUri);
-            
-            // 先清空当前音乐列表
-            Fragment musicFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-            if (musicFragment instanceof MusicFragment) {
-                ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-            }
-            
-            // 创建独立线程处理文件扫描，避免阻塞UI线程
-            new Thread(() -> {
-                List<MusicAdapter.MusicItem> newMusic = new ArrayList<>();
-                
-                try {
-                    DocumentFile folder = DocumentFile.fromTreeUri(this, folderUri);
-                    
-                    if (folder != null && folder.exists()) {
-                        Log.d(TAG, "文件夹存在: " + folder.getName());
-                        DocumentFile[] files = folder.listFiles();
-                        Log.d(TAG, "找到文件数量: " + files.length);
-                        
-                        // 遍历查找音乐文件
-                        for (DocumentFile file : files) {
-                            try {
-                                if (file != null && file.isFile() && file.getType() != null && file.getType().startsWith("audio/")) {
-                                    String name = file.getName();
-                                    Uri uri = file.getUri();
-                                    if (name != null && uri != null) {
-                                        Log.d(TAG, "找到音乐: " + name + ", URI: " + uri);
-                                        // 获取音乐文件的元数据
-                                        MusicMetadata metadata = getMusicMetadata(uri);
-                                        newMusic.add(new MusicAdapter.MusicItem(
-                                            uri,
-                                            metadata.displayName,
-                                            metadata.artist,
-                                            metadata.album,
-                                            metadata.duration
-                                        ));
-                                    }
-                                }
-                            } catch (Exception e) {
-                                Log.e(TAG, "处理单个文件时出错", e);
-                            }
-                        }
-                    } else {
-                        Log.e(TAG, "文件夹不存在或无法访问");
-                        runOnUiThread(() -> {
-                            Toast.makeText(MainActivity.this, "无法访问音乐文件夹", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "扫描文件夹失败", e);
-                    runOnUiThread(() -> {
-                        Toast.makeText(MainActivity.this, "扫描音乐文件夹失败", Toast.LENGTH_SHORT).show();
-                    });
-                    return;
-                }
-                
-                // 对音乐列表进行排序（按名称字母顺序）
-                sortMusicList(newMusic);
-                
-                Log.d(TAG, "找到音乐文件数量: " + newMusic.size());
-                
-                // 在UI线程更新界面
-                runOnUiThread(() -> {
-                    try {
-                        if (musicFragment instanceof MusicFragment) {
-                            if (newMusic.isEmpty()) {
-                                ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-                                Toast.makeText(MainActivity.this, R.string.no_music_found, Toast.LENGTH_SHORT).show();
-                            } else {
-                                ((MusicFragment) musicFragment).updateMusicList(newMusic);
-                                Toast.makeText(MainActivity.this, 
-                                        String.format("已加载 %d 个音乐文件", newMusic.size()), 
-                                        Toast.LENGTH_SHORT).show();
-                            }
-                        }
-                        
-                        // 确保标题栏显示应用名称，并禁用返回箭头
-                        if (getSupportActionBar() != null && !isSettingsVisible) {
-                            getSupportActionBar().setDisplayHomeAsUpEnabled(false);
-                            getSupportActionBar().setTitle(R.string.app_name);
-                        }
-                    } catch (Exception e) {
-                        Log.e(TAG, "更新UI失败", e);
-                        Toast.makeText(MainActivity.this, "加载音乐列表失败", Toast.LENGTH_SHORT).show();
-                    } finally {
-                        // 确保刷新动画被关闭
-                        if (swipeRefreshLayout.isRefreshing()) {
-                            swipeRefreshLayout.setRefreshing(false);
-                            isRefreshing = false;
-                        }
-                    }
-                });
-            }).start();
-            
+            List<Uri> roots = LibraryRoots.withExtras(folderUri,
+                    LibraryRoots.getExtraRoots(this, LibraryRoots.KEY_EXTRA_MUSIC_FOLDERS));
+            repository.scanMusic(roots, force);
         } catch (Exception e) {
             Log.e(TAG, "加载文件夹中的音乐失败", e);
             Toast.makeText(this, "无法加载文件夹中的音乐", Toast.LENGTH_SHORT).show();
-            // 确保刷新动画被关闭
-            if (swipeRefreshLayout.isRefreshing()) {
-                swipeRefreshLayout.setRefreshing(false);
-                isRefreshing = false;
-            }
+            stopRefreshing();
             // 清空音乐列表
-            Fragment musicFragment = getSupportFragmentManager().findFragmentByTag("f" + ViewPagerAdapter.TAB_MUSIC);
-            if (musicFragment instanceof MusicFragment) {
-                ((MusicFragment) musicFragment).updateMusicList(new ArrayList<>());
-            }
-        }
-    }
-
-    private static class MusicMetadata {
-        String displayName;
-        String artist;
-        String album;
-        String duration;
-
-        MusicMetadata(String displayName, String artist, String album, String duration) {
-            this.displayName = displayName;
-            this.artist = artist;
-            this.album = album;
-            this.duration = duration;
-        }
-    }
-
-    private MusicMetadata getMusicMetadata(Uri uri) {
-        String displayName = "未知音乐";
-        String artist = "未知艺术家";
-        String album = "未知专辑";
-        String duration = "00:00";
-
-        try {
-            // 首先尝试从DocumentFile获取文件名
-            DocumentFile file = DocumentFile.fromSingleUri(this, uri);
-            if (file != null && file.getName() != null) {
-                displayName = file.getName();
-                // 去除文件扩展名
-                int lastDot = displayName.lastIndexOf(".");
-                if (lastDot > 0) {
-                    displayName = displayName.substring(0, lastDot);
-                }
-            }
-            
-            // 使用MediaMetadataRetriever获取音频元数据
-            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-            retriever.setDataSource(this, uri);
-            
-            // 获取艺术家信息
-            String retrievedArtist = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
-            if (retrievedArtist != null && !retrievedArtist.isEmpty()) {
-                artist = retrievedArtist;
-            }
-            
-            // 获取专辑信息
-            String retrievedAlbum = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
-            if (retrievedAlbum != null && !retrievedAlbum.isEmpty()) {
-                album = retrievedAlbum;
-            }
-            
-            // 获取持续时间
-            String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-            if (durationStr != null) {
-                long durationMs = Long.parseLong(durationStr);
-                duration = formatDuration(durationMs);
-            }
-            
-            // 释放资源
-            retriever.release();
-            
-            // 如果MediaMetadataRetriever无法获取到时长，尝试使用MediaStore
-            if (duration.equals("00:00")) {
-                try (Cursor cursor = getContentResolver().query(
-                        uri,
-                        new String[]{MediaStore.Audio.Media.DURATION},
-                        null,
-                        null,
-                        null)) {
-                    if (cursor != null && cursor.moveToFirst()) {
-                        int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION);
-                        long durationMs = cursor.getLong(durationColumn);
-                        duration = formatDuration(durationMs);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "通过MediaStore获取音乐时长失败", e);
-                }
-            }
-            
-            Log.d(TAG, "获取到音乐元数据: 名称=" + displayName + ", 艺术家=" + artist + ", 专辑=" + album + ", 时长=" + duration);
-            
-        } catch (Exception e) {
-            Log.e(TAG, "获取音乐元数据失败", e);
-        }
-
-        return new MusicMetadata(displayName, artist, album, duration);
-    }
-
-    private String formatDuration(long durationMs) {
-        return String.format(Locale.getDefault(), "%02d:%02d",
-                TimeUnit.MILLISECONDS.toMinutes(durationMs),
-                TimeUnit.MILLISECONDS.toSeconds(durationMs) -
-                        TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(durationMs)));
-    }
-
-    private void sortMusicList(List<MusicAdapter.MusicItem> music) {
-        if (music != null && !music.isEmpty()) {
-            music.sort((m1, m2) -> {
-                if (m1 == null || m1.getDisplayName() == null) return 1;
-                if (m2 == null || m2.getDisplayName() == null) return -1;
-                return m1.getDisplayName().toLowerCase().compareTo(m2.getDisplayName().toLowerCase());
-            });
+            repository.setMusic(Collections.emptyList());
         }
     }
 
@@ -1367,6 +1242,9 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    /**
+     * 音乐文件夹设置变化后重新加载，旧文件夹进行中的扫描会被扫描协调器取消并作废
+     */
     public void reloadMusicList() {
         try {
             String defaultMusicFolderUri = PreferenceManager.getDefaultSharedPreferences(this)
@@ -1409,6 +1287,27 @@ public class MainActivity extends AppCompatActivity
         }
     }
 
+    /**
+     * 额外文件夹或扫描设置变化后重新扫描视频，沿用当前选择的文件夹
+     */
+    public void reloadVideoList() {
+        try {
+            Uri folderUri = repository.getLastVideoFolderUri();
+            if (folderUri == null) {
+                String defaultVideoFolderUri = PreferenceManager.getDefaultSharedPreferences(this)
+                        .getString("default_video_folder_uri", null);
+                folderUri = defaultVideoFolderUri != null ? Uri.parse(defaultVideoFolderUri) : null;
+            }
+            if (folderUri != null
+                    || !LibraryRoots.getExtraRoots(this, LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS).isEmpty()) {
+                loadVideosFromFolder(folderUri);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "重新加载视频列表失败", e);
+            Toast.makeText(this, "重新加载视频列表失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
+    }
+
     @Override
     public void onBackPressed() {
         if (isSettingsVisible) {
@@ -0,0 +1,72 @@
+package com.example.lplayer;
+
+import android.net.Uri;
+
+import com.example.lplayer.metadata.VideoInfo;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * 视频项和音乐项的紧凑二进制编码，媒体库快照和播放列表日志共用
+ */
+public final class MediaItemCodec {
+    public interface Writer<T> {
+        void write(DataOutput out, T item) throws IOException;
+    }
+
+    public interface Reader<T> {
+        T read(DataInput in) throws IOException;
+    }
+
+    private MediaItemCodec() {}
+
+    public static void writeVideo(DataOutput out, VideoAdapter.VideoItem video) throws IOException {
+        out.writeUTF(video.getUri().toString());
+        writeString(out, video.getDisplayName());
+        VideoInfo info = video.getInfo();
+        out.writeBoolean(info != null);
+        if (info != null) {
+            out.writeLong(info.getDurationMs());
+            out.writeInt(info.getWidth());
+            out.writeInt(info.getHeight());
+            writeString(out, info.getCodec());
+            out.writeFloat(info.getFrameRate());
+        }
+    }
+
+    public static VideoAdapter.VideoItem readVideo(DataInput in) throws IOException {
+        Uri uri = Uri.parse(in.readUTF());
+        String displayName = readString(in);
+        VideoInfo info = null;
+        if (in.readBoolean()) {
+            info = new VideoInfo(in.readLong(), in.readInt(), in.readInt(), readString(in), in.readFloat());
+        }
+        return new VideoAdapter.VideoItem(uri, displayName, info);
+    }
+
+    public static void writeMusic(DataOutput out, MusicAdapter.MusicItem music) throws IOException {
+        out.writeUTF(music.getUri().toString());
+        writeString(out, music.getDisplayName());
+        writeString(out, music.getArtist());
+        writeString(out, music.getAlbum());
+        writeString(out, music.getDuration());
+    }
+
+    public static MusicAdapter.MusicItem readMusic(DataInput in) throws IOException {
+        return new MusicAdapter.MusicItem(Uri.parse(in.readUTF()), readString(in), readString(in),
+                readString(in), readString(in));
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
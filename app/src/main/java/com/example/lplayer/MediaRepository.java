@@ -0,0 +1,909 @@
+package com.example.lplayer;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleOwner;
+import androidx.lifecycle.LifecycleRegistry;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.preference.PreferenceManager;
+
+import com.example.lplayer.metadata.MediaStoreResolver;
+import com.example.lplayer.metadata.MetadataCache;
+import com.example.lplayer.metadata.MetadataExtractorPool;
+import com.example.lplayer.metadata.MusicMetadata;
+import com.example.lplayer.metadata.VideoInfo;
+import com.example.lplayer.metadata.VideoProbe;
+import com.example.lplayer.playlist.PathResolver;
+import com.example.lplayer.playlist.PlaylistDatabase;
+import com.example.lplayer.playlist.PlaylistFile;
+import com.example.lplayer.playlist.PlaylistTransfer;
+import com.example.lplayer.playlist.UserPlaylist;
+import com.example.lplayer.playlist.UserPlaylistStore;
+import com.example.lplayer.scan.DocumentTreeScanner;
+import com.example.lplayer.scan.IncrementalScanner;
+import com.example.lplayer.scan.LibraryScanner;
+import com.example.lplayer.scan.ListPatcher;
+import com.example.lplayer.scan.MediaTypeClassifier;
+import com.example.lplayer.scan.ScanCoordinator;
+import com.example.lplayer.scan.ScanDelta;
+import com.example.lplayer.scan.ScanManifest;
+import com.example.lplayer.scan.ScanOptions;
+import com.example.lplayer.scan.ScannedDocument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * 视频库、音乐库以及扫描状态的持有者，作用域与 ViewModel 相同
+ *
+ * 旋转屏幕、切换页面、从播放器返回时界面会重建，但仓库和其中的列表、扫描清单、进行中的扫描都保留，
+ * 页面只需重新观察即可，不会重新扫描。列表每次变化都发布到 PlaybackManager 的 LibraryState，
+ * 页面通过 getLibrary() 收到新的不可变快照，按列表引用是否变化决定是否需要重新绑定。
+ * 每次扫描完成或列表整体替换后，把列表和对应的清单写入 LibrarySnapshotStore；
+ * 下次冷启动时先显示快照，再以快照中的清单为基线增量核对。
+ * 除扫描任务本身外，所有方法都只能在主线程调用。
+ */
+public class MediaRepository extends AndroidViewModel implements LifecycleOwner {
+    private static final String TAG = "MediaRepository";
+    public static final String CHANNEL_VIDEO = "video";
+    public static final String CHANNEL_MUSIC = "music";
+
+    // 列表按名称排序，增量插入时使用同一比较器做二分查找
+    private static final Comparator<VideoAdapter.VideoItem> VIDEO_NAME_ORDER = (v1, v2) -> {
+        if (v1 == null || v1.getDisplayName() == null) return 1;
+        if (v2 == null || v2.getDisplayName() == null) return -1;
+        return v1.getDisplayName().toLowerCase().compareTo(v2.getDisplayName().toLowerCase());
+    };
+    private static final Comparator<MusicAdapter.MusicItem> MUSIC_NAME_ORDER = (m1, m2) -> {
+        if (m1 == null || m1.getDisplayName() == null) return 1;
+        if (m2 == null || m2.getDisplayName() == null) return -1;
+        return m1.getDisplayName().toLowerCase().compareTo(m2.getDisplayName().toLowerCase());
+    };
+
+    /**
+     * 扫描进度，total 为 0 表示没有扫描在进行
+     */
+    public static final class Progress {
+        public static final Progress IDLE = new Progress(0, 0);
+
+        public final int done;
+        public final int total;
+
+        Progress(int done, int total) {
+            this.done = done;
+            this.total = total;
+        }
+    }
+
+    /**
+     * 一次扫描的结束通知，只应被处理一次（屏幕旋转后重新观察时不会再次提示）
+     */
+    public static final class ScanEvent {
+        public final String channel;
+        public final int itemCount;
+        public final boolean changed;
+        public final Exception error;
+        private boolean handled = false;
+
+        ScanEvent(String channel, int itemCount, boolean changed, Exception error) {
+            this.channel = channel;
+            this.itemCount = itemCount;
+            this.changed = changed;
+            this.error = error;
+        }
+
+        /**
+         * 第一次调用返回 true，之后返回 false
+         */
+        public boolean consume() {
+            if (handled) {
+                return false;
+            }
+            handled = true;
+            return true;
+        }
+    }
+
+    /**
+     * 播放列表文件导入或导出的结束通知，只应被处理一次
+     */
+    public static final class TransferEvent {
+        public final String channel;
+        public final boolean export;
+        public final int itemCount;
+        // 导入时无法解析的项数
+        public final int skipped;
+        public final Exception error;
+        private boolean handled = false;
+
+        TransferEvent(String channel, boolean export, int itemCount, int skipped, Exception error) {
+            this.channel = channel;
+            this.export = export;
+            this.itemCount = itemCount;
+            this.skipped = skipped;
+            this.error = error;
+        }
+
+        /**
+         * 第一次调用返回 true，之后返回 false
+         */
+        public boolean consume() {
+            if (handled) {
+                return false;
+            }
+            handled = true;
+            return true;
+        }
+    }
+
+    private final LifecycleRegistry lifecycle = new LifecycleRegistry(this);
+    private final LibraryState libraryState = PlaybackManager.getInstance().getLibrary();
+
+    private final IndexedMediaList<VideoAdapter.VideoItem> videoList =
+            new IndexedMediaList<>(VideoAdapter.VideoItem::getUri);
+    private final IndexedMediaList<MusicAdapter.MusicItem> musicList =
+            new IndexedMediaList<>(MusicAdapter.MusicItem::getUri);
+    private int videoPlayingPosition;
+
+    private final MutableLiveData<LibraryState.Snapshot> library;
+    private final MutableLiveData<Progress> videoScanProgress = new MutableLiveData<>(Progress.IDLE);
+    private final MutableLiveData<Progress> musicScanProgress = new MutableLiveData<>(Progress.IDLE);
+    private final MutableLiveData<ScanEvent> scanEvents = new MutableLiveData<>();
+    private final MutableLiveData<TransferEvent> transferEvents = new MutableLiveData<>();
+
+    private final LibraryScanner libraryScanner;
+    private final MediaStoreResolver mediaStoreResolver;
+    private final VideoProbe videoProbe;
+    private final ScanCoordinator scanCoordinator = new ScanCoordinator();
+    private MetadataExtractorPool metadataExtractorPool;
+
+    private final LibrarySnapshotStore snapshotStore;
+    // 快照的读写都在这个线程上排队，保证写入顺序
+    private final ExecutorService snapshotExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "library-snapshot"));
+    // 尚未写入的最新快照，连续多次提交只写最后一次
+    private final AtomicReference<LibrarySnapshotStore.Contents> pendingSnapshot = new AtomicReference<>();
+    // 播放列表文件的导入导出和命名播放列表的读写，一次只进行一个
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "playlist-transfer"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 上一次扫描时各根目录的清单，用于增量扫描；只在UI线程更新
+    private volatile Map<Uri, ScanManifest> videoScanManifests = Collections.emptyMap();
+    private volatile Map<Uri, ScanManifest> musicScanManifests = Collections.emptyMap();
+
+    // 已提交的列表、清单和扫描根目录，扫描进行中逐步插入的列表不会写入快照
+    private LibrarySnapshotStore.Channel<VideoAdapter.VideoItem> committedVideos = LibrarySnapshotStore.Channel.empty();
+    private LibrarySnapshotStore.Channel<MusicAdapter.MusicItem> committedMusic = LibrarySnapshotStore.Channel.empty();
+    private List<Uri> requestedVideoRoots = Collections.emptyList();
+    private List<Uri> requestedMusicRoots = Collections.emptyList();
+    // 仓库创建后是否已经扫描或替换过，之后读到的快照不能再覆盖
+    private boolean videosTouched = false;
+    private boolean musicTouched = false;
+    private boolean videosRestored = false;
+    private boolean musicRestored = false;
+
+    private Uri lastVideoFolderUri = null;
+    private boolean initialLoadClaimed = false;
+    private boolean musicRequested = false;
+
+    public MediaRepository(@NonNull Application application) {
+        super(application);
+        DocumentTreeScanner documentTreeScanner = new DocumentTreeScanner(application.getContentResolver());
+        IncrementalScanner incrementalScanner = new IncrementalScanner(documentTreeScanner,
+                new MediaTypeClassifier(application.getContentResolver()));
+        libraryScanner = new LibraryScanner(incrementalScanner);
+        mediaStoreResolver = new MediaStoreResolver(application.getContentResolver());
+        snapshotStore = new LibrarySnapshotStore(application);
+        videoProbe = new VideoProbe(application.getContentResolver());
+
+        // 同一进程内重新打开界面时沿用已发布的媒体库，扫描清单丢失后第一次扫描会完整核对
+        LibraryState.Snapshot snapshot = libraryState.get();
+        videoList.addAll(snapshot.getVideos());
+        musicList.addAll(snapshot.getMusic());
+        videoPlayingPosition = snapshot.getVideoPlayingPosition();
+        library = new MutableLiveData<>(snapshot);
+
+        lifecycle.setCurrentState(Lifecycle.State.RESUMED);
+        StartupTrace.mark(StartupTrace.REPOSITORY_CREATED);
+    }
+
+    @NonNull
+    @Override
+    public Lifecycle getLifecycle() {
+        return lifecycle;
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        lifecycle.setCurrentState(Lifecycle.State.DESTROYED);
+        scanCoordinator.shutdown();
+        libraryScanner.shutdown();
+        // 已排队的快照写入仍会完成
+        snapshotExecutor.shutdown();
+        transferExecutor.shutdownNow();
+        synchronized (this) {
+            if (metadataExtractorPool != null) {
+                metadataExtractorPool.shutdown();
+                metadataExtractorPool = null;
+            }
+        }
+    }
+
+    /**
+     * 当前媒体库快照，列表没有变化时快照中的列表引用保持不变
+     */
+    public LiveData<LibraryState.Snapshot> getLibrary() {
+        return library;
+    }
+
+    public LiveData<Progress> getVideoScanProgress() {
+        return videoScanProgress;
+    }
+
+    public LiveData<Progress> getMusicScanProgress() {
+        return musicScanProgress;
+    }
+
+    public LiveData<ScanEvent> getScanEvents() {
+        return scanEvents;
+    }
+
+    public LiveData<TransferEvent> getTransferEvents() {
+        return transferEvents;
+    }
+
+    /**
+     * 仓库创建后只返回一次 true，用于首次加载默认文件夹；界面重建后不再重复加载
+     */
+    public boolean claimInitialLoad() {
+        if (initialLoadClaimed) {
+            return false;
+        }
+        initialLoadClaimed = true;
+        return true;
+    }
+
+    /**
+     * 在后台读取上次保存的媒体库快照，回到主线程后先显示快照，再执行 next（重新核对媒体库）
+     *
+     * 读取期间已经扫描或替换过的频道保留当前列表，不会被快照覆盖。
+     */
+    public void restoreThen(Runnable next) {
+        snapshotExecutor.execute(() -> {
+            LibrarySnapshotStore.Contents contents = snapshotStore.read();
+            mainHandler.post(() -> {
+                if (lifecycle.getCurrentState() == Lifecycle.State.DESTROYED) {
+                    return;
+                }
+                if (contents != null) {
+                    applySnapshot(contents);
+                }
+                StartupTrace.mark(StartupTrace.SNAPSHOT_RESTORED);
+                next.run();
+            });
+        });
+    }
+
+    private void applySnapshot(LibrarySnapshotStore.Contents contents) {
+        if (!videosTouched && videoList.isEmpty() && !contents.videos.isEmpty()) {
+            committedVideos = contents.videos;
+            videoScanManifests = contents.videos.manifests;
+            videoList.addAll(contents.videos.items);
+            videosRestored = true;
+            publishVideos();
+        }
+        if (!musicTouched && musicList.isEmpty() && !contents.music.isEmpty()) {
+            committedMusic = contents.music;
+            musicScanManifests = contents.music.manifests;
+            musicList.addAll(contents.music.items);
+            musicRestored = true;
+            publishMusic();
+        }
+        Log.d(TAG, "已显示媒体库快照: " + videoList.size() + " 个视频, " + musicList.size() + " 首音乐");
+    }
+
+    /**
+     * 视频列表来自快照时，增量扫描快照记录的文件夹；没有从快照恢复时返回 false
+     */
+    public boolean revalidateVideos() {
+        if (!videosRestored) {
+            return false;
+        }
+        if (!committedVideos.roots.isEmpty()) {
+            scanVideos(committedVideos.roots, false);
+        }
+        return true;
+    }
+
+    /**
+     * 音乐列表来自快照时，增量扫描快照记录的文件夹；没有从快照恢复时返回 false
+     */
+    public boolean revalidateMusic() {
+        if (!musicRestored) {
+            return false;
+        }
+        if (!committedMusic.roots.isEmpty()) {
+            scanMusic(committedMusic.roots, false);
+        }
+        return true;
+    }
+
+    /**
+     * 是否已经加载过音乐（扫描过或设置过列表）
+     */
+    public boolean isMusicRequested() {
+        return musicRequested;
+    }
+
+    public Uri getLastVideoFolderUri() {
+        return lastVideoFolderUri;
+    }
+
+    public void setLastVideoFolderUri(Uri folderUri) {
+        lastVideoFolderUri = folderUri;
+    }
+
+    public List<VideoAdapter.VideoItem> getVideos() {
+        return library.getValue().getVideos();
+    }
+
+    public List<MusicAdapter.MusicItem> getMusic() {
+        return library.getValue().getMusic();
+    }
+
+    public int indexOfVideo(Uri uri) {
+        return videoList.indexOfUri(uri);
+    }
+
+    public int indexOfMusic(Uri uri) {
+        return musicList.indexOfUri(uri);
+    }
+
+    public int getVideoPlayingPosition() {
+        return videoPlayingPosition;
+    }
+
+    public void setVideoPlayingPosition(int position) {
+        videoPlayingPosition = position;
+        library.setValue(libraryState.setVideoPlayingPosition(position));
+    }
+
+    /**
+     * 整体替换视频列表；旧的扫描清单与新列表不再对应，下次扫描完整核对
+     */
+    public void setVideos(List<VideoAdapter.VideoItem> videos) {
+        scanCoordinator.cancel(CHANNEL_VIDEO);
+        videosTouched = true;
+        videoScanManifests = Collections.emptyMap();
+        videoList.clear();
+        videoList.addAll(videos);
+        publishVideos();
+        commitVideos(Collections.emptyList());
+        videoScanProgress.setValue(Progress.IDLE);
+    }
+
+    /**
+     * 整体替换音乐列表；旧的扫描清单与新列表不再对应，下次扫描完整核对
+     */
+    public void setMusic(List<MusicAdapter.MusicItem> music) {
+        scanCoordinator.cancel(CHANNEL_MUSIC);
+        musicRequested = true;
+        musicTouched = true;
+        musicScanManifests = Collections.emptyMap();
+        musicList.clear();
+        musicList.addAll(music);
+        publishMusic();
+        commitMusic(Collections.emptyList());
+        musicScanProgress.setValue(Progress.IDLE);
+    }
+
+    /**
+     * 扫描视频文件夹并原地更新视频列表，同一组文件夹的重复请求会合并为一次扫描
+     *
+     * @param force 为 true 时忽略上次的清单，完整核对一遍文件夹（下拉刷新使用）
+     */
+    public void scanVideos(List<Uri> roots, boolean force) {
+        Log.d(TAG, "请求扫描视频文件夹: " + roots);
+        videosTouched = true;
+        requestedVideoRoots = roots;
+        scanCoordinator.request(this, CHANNEL_VIDEO, roots, force, videoScanJob, videoScanObserver);
+    }
+
+    /**
+     * 扫描音乐文件夹并原地更新音乐列表，只为新增或修改过的文件提取元数据
+     */
+    public void scanMusic(List<Uri> roots, boolean force) {
+        Log.d(TAG, "请求扫描音乐文件夹: " + roots);
+        musicRequested = true;
+        musicTouched = true;
+        requestedMusicRoots = roots;
+        scanCoordinator.request(this, CHANNEL_MUSIC, roots, force, musicScanJob, musicScanObserver);
+    }
+
+    /**
+     * 在后台导入 M3U、M3U8 或 PLS 播放列表，替换指定频道的列表
+     *
+     * 相对路径按 roots（当前配置的文件夹）和两个频道的扫描清单解析，
+     * 已在媒体库中的文件沿用现有的列表项，其余的只用文件中的标题和时长。
+     */
+    public void importPlaylist(Uri source, String channel, List<Uri> roots) {
+        PathResolver paths = new PathResolver(getApplication().getContentResolver(), currentManifests(), roots);
+        if (CHANNEL_VIDEO.equals(channel)) {
+            runImport(source, channel, paths, getVideos(), VideoAdapter.VideoItem::getUri, (uri, entry) ->
+                    new VideoAdapter.VideoItem(uri, titleOf(entry), entry.durationSeconds > 0
+                            ? new VideoInfo(TimeUnit.SECONDS.toMillis(entry.durationSeconds), 0, 0, null, 0) : null),
+                    this::setVideos);
+        } else {
+            runImport(source, channel, paths, getMusic(), MusicAdapter.MusicItem::getUri, (uri, entry) -> {
+                // 扩展 M3U 的标题通常是“艺术家 - 标题”
+                String title = titleOf(entry);
+                String artist = MusicMetadata.UNKNOWN_ARTIST;
+                int separator = entry.title != null ? title.indexOf(" - ") : -1;
+                if (separator > 0) {
+                    artist = title.substring(0, separator);
+                    title = title.substring(separator + 3);
+                }
+                return new MusicAdapter.MusicItem(uri, title, artist, MusicMetadata.UNKNOWN_ALBUM,
+                        MusicMetadata.formatDuration(TimeUnit.SECONDS.toMillis(Math.max(entry.durationSeconds, 0))));
+            }, this::setMusic);
+        }
+    }
+
+    /**
+     * 在后台把指定频道的当前列表导出为播放列表文件，格式由文件扩展名决定
+     */
+    public void exportPlaylist(Uri target, String channel) {
+        PathResolver paths = new PathResolver(getApplication().getContentResolver(), currentManifests(),
+                Collections.emptyList());
+        if (CHANNEL_VIDEO.equals(channel)) {
+            runExport(target, channel, paths, getVideos(), VideoAdapter.VideoItem::getUri, (item, location) -> {
+                VideoInfo info = item.getInfo();
+                long seconds = info != null && info.getDurationMs() > 0
+                        ? TimeUnit.MILLISECONDS.toSeconds(info.getDurationMs()) : -1;
+                return new PlaylistFile.Entry(location, item.getDisplayName(), seconds);
+            });
+        } else {
+            runExport(target, channel, paths, getMusic(), MusicAdapter.MusicItem::getUri, (item, location) -> {
+                long durationMs = MusicMetadata.parseDuration(item.getDuration());
+                String title = item.getArtist() != null && !MusicMetadata.UNKNOWN_ARTIST.equals(item.getArtist())
+                        ? item.getArtist() + " - " + item.getDisplayName() : item.getDisplayName();
+                return new PlaylistFile.Entry(location, title,
+                        durationMs > 0 ? TimeUnit.MILLISECONDS.toSeconds(durationMs) : -1);
+            });
+        }
+    }
+
+    /**
+     * 在后台读取指定频道的命名播放列表概要（不含内容），在主线程交给 callback
+     */
+    public void loadUserPlaylists(String channel, Consumer<List<PlaylistDatabase.UserPlaylistInfo>> callback) {
+        UserPlaylistStore store = UserPlaylistStore.getInstance(getApplication());
+        transferExecutor.execute(() -> {
+            List<PlaylistDatabase.UserPlaylistInfo> playlists;
+            try {
+                playlists = store.getPlaylists(kindOf(channel));
+            } catch (Exception e) {
+                Log.e(TAG, "读取播放列表失败", e);
+                playlists = Collections.emptyList();
+            }
+            List<PlaylistDatabase.UserPlaylistInfo> result = playlists;
+            postToMain(() -> callback.accept(result));
+        });
+    }
+
+    /**
+     * 把频道的当前列表保存为新的命名播放列表，callback 收到保存的项数，名称已存在或失败时为 -1
+     */
+    public void saveUserPlaylist(String name, String channel, IntConsumer callback) {
+        UserPlaylistStore store = UserPlaylistStore.getInstance(getApplication());
+        List<VideoAdapter.VideoItem> videos = getVideos();
+        List<MusicAdapter.MusicItem> music = getMusic();
+        transferExecutor.execute(() -> {
+            int count = -1;
+            try {
+                long playlistId = store.create(name, kindOf(channel));
+                if (playlistId >= 0) {
+                    count = CHANNEL_VIDEO.equals(channel)
+                            ? store.openVideos(playlistId).addAll(videos)
+                            : store.openMusic(playlistId).addAll(music);
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "保存播放列表失败: " + name, e);
+            }
+            int saved = count;
+            postToMain(() -> callback.accept(saved));
+        });
+    }
+
+    /**
+     * 打开命名播放列表替换频道的当前列表，callback 收到列表的项数，失败时为 -1
+     */
+    public void openUserPlaylist(long playlistId, String channel, IntConsumer callback) {
+        UserPlaylistStore store = UserPlaylistStore.getInstance(getApplication());
+        transferExecutor.execute(() -> {
+            List<VideoAdapter.VideoItem> videos = null;
+            List<MusicAdapter.MusicItem> music = null;
+            try {
+                if (CHANNEL_VIDEO.equals(channel)) {
+                    UserPlaylist<VideoAdapter.VideoItem> playlist = store.openVideos(playlistId);
+                    videos = playlist != null ? playlist.getItems() : null;
+                } else {
+                    UserPlaylist<MusicAdapter.MusicItem> playlist = store.openMusic(playlistId);
+                    music = playlist != null ? playlist.getItems() : null;
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "打开播放列表失败: " + playlistId, e);
+            }
+            List<VideoAdapter.VideoItem> openedVideos = videos;
+            List<MusicAdapter.MusicItem> openedMusic = music;
+            postToMain(() -> {
+                if (openedVideos != null) {
+                    setVideos(openedVideos);
+                    callback.accept(openedVideos.size());
+                } else if (openedMusic != null) {
+                    setMusic(openedMusic);
+                    callback.accept(openedMusic.size());
+                } else {
+                    callback.accept(-1);
+                }
+            });
+        });
+    }
+
+    /**
+     * 删除命名播放列表，不影响当前列表
+     */
+    public void deleteUserPlaylist(long playlistId) {
+        UserPlaylistStore store = UserPlaylistStore.getInstance(getApplication());
+        transferExecutor.execute(() -> {
+            try {
+                store.delete(playlistId);
+            } catch (Exception e) {
+                Log.e(TAG, "删除播放列表失败: " + playlistId, e);
+            }
+        });
+    }
+
+    private static String kindOf(String channel) {
+        return CHANNEL_VIDEO.equals(channel) ? PlaylistDatabase.KIND_VIDEO : PlaylistDatabase.KIND_MUSIC;
+    }
+
+    // 仓库已销毁时丢弃
+    private void postToMain(Runnable action) {
+        mainHandler.post(() -> {
+            if (lifecycle.getCurrentState() != Lifecycle.State.DESTROYED) {
+                action.run();
+            }
+        });
+    }
+
+    private <T> void runImport(Uri source, String channel, PathResolver paths, List<T> library,
+                               Function<T, Uri> uriOf, PlaylistTransfer.ItemFactory<T> factory,
+                               Consumer<List<T>> apply) {
+        ContentResolver resolver = getApplication().getContentResolver();
+        transferExecutor.execute(() -> {
+            TransferEvent event;
+            List<T> imported = null;
+            try {
+                // library 是发布出去的不可变快照，可以在后台读取
+                Map<Uri, T> known = new HashMap<>(library.size() * 2);
+                for (T item : library) {
+                    known.put(uriOf.apply(item), item);
+                }
+                PlaylistTransfer.ImportResult<T> result = PlaylistTransfer.importFrom(resolver, source, paths,
+                        (uri, entry) -> {
+                            T item = known.get(uri);
+                            return item != null ? item : factory.create(uri, entry);
+                        });
+                imported = result.items;
+                event = new TransferEvent(channel, false, result.items.size(), result.skipped, null);
+            } catch (Exception e) {
+                Log.e(TAG, "导入播放列表失败: " + source, e);
+                event = new TransferEvent(channel, false, 0, 0, e);
+            }
+            List<T> items = imported;
+            TransferEvent finished = event;
+            postToMain(() -> {
+                // 全部无法解析时保留原来的列表
+                if (items != null && !items.isEmpty()) {
+                    apply.accept(items);
+                }
+                transferEvents.setValue(finished);
+            });
+        });
+    }
+
+    private <T> void runExport(Uri target, String channel, PathResolver paths, List<T> items,
+                               Function<T, Uri> uriOf, PlaylistTransfer.EntryFactory<T> factory) {
+        ContentResolver resolver = getApplication().getContentResolver();
+        transferExecutor.execute(() -> {
+            TransferEvent event;
+            try {
+                int count = PlaylistTransfer.exportTo(resolver, target, items, paths, uriOf, factory);
+                event = new TransferEvent(channel, true, count, 0, null);
+            } catch (Exception e) {
+                Log.e(TAG, "导出播放列表失败: " + target, e);
+                event = new TransferEvent(channel, true, 0, 0, e);
+            }
+            transferEvents.postValue(event);
+        });
+    }
+
+    private List<ScanManifest> currentManifests() {
+        List<ScanManifest> manifests = new ArrayList<>(videoScanManifests.values());
+        manifests.addAll(musicScanManifests.values());
+        return manifests;
+    }
+
+    // 文件中没有标题时用去掉目录和扩展名的文件名
+    private static String titleOf(PlaylistFile.Entry entry) {
+        if (entry.title != null) {
+            return entry.title;
+        }
+        String name = entry.location.replace('\\', '/');
+        name = name.substring(name.lastIndexOf('/') + 1);
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    private void publishVideos() {
+        library.setValue(libraryState.setVideos(videoList, videoPlayingPosition));
+    }
+
+    private void publishMusic() {
+        library.setValue(libraryState.setMusic(musicList));
+    }
+
+    /**
+     * 当前列表与清单一致时调用，记录为已提交状态并安排写入快照
+     */
+    private void commitVideos(List<Uri> roots) {
+        committedVideos = new LibrarySnapshotStore.Channel<>(roots, getVideos(), videoScanManifests);
+        saveSnapshot();
+    }
+
+    private void commitMusic(List<Uri> roots) {
+        committedMusic = new LibrarySnapshotStore.Channel<>(roots, getMusic(), musicScanManifests);
+        saveSnapshot();
+    }
+
+    private void saveSnapshot() {
+        if (pendingSnapshot.getAndSet(new LibrarySnapshotStore.Contents(committedVideos, committedMusic)) != null) {
+            // 上一次提交还没写入，排队中的任务会写入这次的内容
+            return;
+        }
+        snapshotExecutor.execute(() -> {
+            LibrarySnapshotStore.Contents contents = pendingSnapshot.getAndSet(null);
+            if (contents != null) {
+                snapshotStore.write(contents);
+            }
+        });
+    }
+
+    // 在扫描线程执行：递归遍历所有根目录，未变化的目录只查询自身一行
+    private final ScanCoordinator.ScanJob<FolderScanResult<VideoAdapter.VideoItem>, VideoAdapter.VideoItem> videoScanJob =
+            (roots, force, progress) -> {
+        LibraryScanner.Result result = libraryScanner.scan(roots, videoScanManifests, force,
+                ScanOptions.forVideo(getApplication()));
+        List<ScannedDocument> videoDocuments = new ArrayList<>();
+        for (ScannedDocument document : result.delta.getChanged()) {
+            if (document.isVideo()) {
+                videoDocuments.add(document);
+            }
+        }
+        progress.setTotal(videoDocuments.size());
+        // 只为新增或修改过的视频读取容器头部，每个文件只有几次小范围读取
+        List<VideoAdapter.VideoItem> changedVideos = new ArrayList<>(videoDocuments.size());
+        for (ScannedDocument document : videoDocuments) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException("视频扫描已取消");
+            }
+            VideoAdapter.VideoItem video = new VideoAdapter.VideoItem(document.getUri(), document.getDisplayName(),
+                    videoProbe.probe(document.getUri()));
+            changedVideos.add(video);
+            progress.publish(video);
+        }
+        return new FolderScanResult<>(result, changedVideos);
+    };
+
+    private final ScanCoordinator.ScanObserver<FolderScanResult<VideoAdapter.VideoItem>, VideoAdapter.VideoItem> videoScanObserver =
+            new ScanCoordinator.ScanObserver<FolderScanResult<VideoAdapter.VideoItem>, VideoAdapter.VideoItem>() {
+        @Override
+        public void onScanProgress(List<VideoAdapter.VideoItem> batch, int done, int total) {
+            // 扫描过程中先把已就绪的视频插入排序位置，最终结果在 onScanComplete 中校正
+            ListPatcher.insertSorted(videoList, batch, VideoAdapter.VideoItem::getUri, VIDEO_NAME_ORDER);
+            publishVideos();
+            videoScanProgress.setValue(new Progress(done, total));
+        }
+
+        @Override
+        public void onScanComplete(FolderScanResult<VideoAdapter.VideoItem> result) {
+            ScanDelta delta = result.scan.delta;
+            videoScanManifests = result.scan.manifests;
+            boolean changed = ListPatcher.apply(videoList, delta, result.changedItems,
+                    VideoAdapter.VideoItem::getUri, VIDEO_NAME_ORDER);
+            Log.d(TAG, "视频列表增量: " + delta + "，当前视频数量: " + videoList.size());
+
+            publishVideos();
+            commitVideos(requestedVideoRoots);
+            StartupTrace.mark(StartupTrace.VIDEO_REVALIDATED);
+            videoScanProgress.setValue(Progress.IDLE);
+            scanEvents.setValue(new ScanEvent(CHANNEL_VIDEO, videoList.size(), changed || delta.isFull(), null));
+        }
+
+        @Override
+        public void onScanFailed(Exception e) {
+            Log.e(TAG, "扫描文件夹失败", e);
+            // 扫描失败时清空列表并丢弃清单，下次重新完整扫描
+            videoScanManifests = Collections.emptyMap();
+            videoList.clear();
+            publishVideos();
+            commitVideos(Collections.emptyList());
+            videoScanProgress.setValue(Progress.IDLE);
+            scanEvents.setValue(new ScanEvent(CHANNEL_VIDEO, 0, true, e));
+        }
+    };
+
+    // 在扫描线程执行，被取消时元数据线程池会收到中断并放弃剩余文件
+    private final ScanCoordinator.ScanJob<FolderScanResult<MusicAdapter.MusicItem>, MusicAdapter.MusicItem> musicScanJob =
+            (roots, force, progress) -> {
+        LibraryScanner.Result result = libraryScanner.scan(roots, musicScanManifests, force,
+                ScanOptions.forMusic(getApplication()));
+
+        // 已删除文件的元数据不再需要
+        MetadataCache metadataCache = MetadataCache.getInstance(getApplication());
+        for (ScannedDocument document : result.delta.getRemoved()) {
+            metadataCache.remove(document.getDocumentId());
+        }
+
+        // 只处理新增和修改过的音乐文件
+        List<ScannedDocument> audioDocuments = new ArrayList<>();
+        for (ScannedDocument document : result.delta.getChanged()) {
+            if (document.isAudio()) {
+                audioDocuments.add(document);
+            }
+        }
+
+        progress.setTotal(audioDocuments.size());
+        MusicAdapter.MusicItem[] changedMusic = new MusicAdapter.MusicItem[audioDocuments.size()];
+
+        // 快速路径：外部存储上的文件直接取 MediaStore 索引中的元数据，每个根目录只查询一次
+        Map<String, MediaStoreResolver.Entry> indexed = new HashMap<>();
+        if (!audioDocuments.isEmpty()) {
+            for (Uri root : roots) {
+                indexed.putAll(mediaStoreResolver.queryTree(root));
+            }
+        }
+        List<ScannedDocument> unindexed = new ArrayList<>();
+        List<Integer> unindexedPositions = new ArrayList<>();
+        for (int i = 0; i < audioDocuments.size(); i++) {
+            ScannedDocument document = audioDocuments.get(i);
+            MediaStoreResolver.Entry entry = MediaStoreResolver.lookup(indexed, document);
+            if (entry != null && entry.isAudio()) {
+                changedMusic[i] = toMusicItem(document, entry.toMusicMetadata(document.getBaseName()));
+                progress.publish(changedMusic[i]);
+            } else {
+                unindexed.add(document);
+                unindexedPositions.add(i);
+            }
+        }
+        Log.d(TAG, "MediaStore 命中 " + (audioDocuments.size() - unindexed.size()) + " 个，需解析 " + unindexed.size() + " 个");
+
+        // 慢速路径：并行提取 MediaStore 不认识的文件；每个文件就绪后立即发布，界面按帧分批显示
+        getMetadataExtractorPool().extractAll(unindexed, (index, metadata) -> {
+            int position = unindexedPositions.get(index);
+            changedMusic[position] = toMusicItem(audioDocuments.get(position), metadata);
+            progress.publish(changedMusic[position]);
+        });
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("音乐扫描已取消");
+        }
+        return new FolderScanResult<>(result, Arrays.asList(changedMusic));
+    };
+
+    private static MusicAdapter.MusicItem toMusicItem(ScannedDocument document, MusicMetadata metadata) {
+        return new MusicAdapter.MusicItem(
+            document.getUri(),
+            metadata.getDisplayName(),
+            metadata.getArtist(),
+            metadata.getAlbum(),
+            metadata.getDuration()
+        );
+    }
+
+    private final ScanCoordinator.ScanObserver<FolderScanResult<MusicAdapter.MusicItem>, MusicAdapter.MusicItem> musicScanObserver =
+            new ScanCoordinator.ScanObserver<FolderScanResult<MusicAdapter.MusicItem>, MusicAdapter.MusicItem>() {
+        @Override
+        public void onScanProgress(List<MusicAdapter.MusicItem> batch, int done, int total) {
+            // 扫描过程中先把已就绪的音乐插入排序位置，最终结果在 onScanComplete 中校正
+            ListPatcher.insertSorted(musicList, batch, MusicAdapter.MusicItem::getUri, MUSIC_NAME_ORDER);
+            publishMusic();
+            musicScanProgress.setValue(new Progress(done, total));
+        }
+
+        @Override
+        public void onScanComplete(FolderScanResult<MusicAdapter.MusicItem> result) {
+            ScanDelta delta = result.scan.delta;
+            musicScanManifests = result.scan.manifests;
+            boolean changed = ListPatcher.apply(musicList, delta, result.changedItems,
+                    MusicAdapter.MusicItem::getUri, MUSIC_NAME_ORDER);
+            Log.d(TAG, "音乐列表增量: " + delta + "，当前音乐数量: " + musicList.size());
+
+            publishMusic();
+            commitMusic(requestedMusicRoots);
+            StartupTrace.mark(StartupTrace.MUSIC_REVALIDATED);
+            musicScanProgress.setValue(Progress.IDLE);
+            scanEvents.setValue(new ScanEvent(CHANNEL_MUSIC, musicList.size(), changed || delta.isFull(), null));
+        }
+
+        @Override
+        public void onScanFailed(Exception e) {
+            Log.e(TAG, "扫描音乐文件夹失败", e);
+            musicScanManifests = Collections.emptyMap();
+            musicScanProgress.setValue(Progress.IDLE);
+            scanEvents.setValue(new ScanEvent(CHANNEL_MUSIC, musicList.size(), false, e));
+        }
+    };
+
+    /**
+     * 获取元数据线程池，线程数设置变化后重建
+     */
+    private synchronized MetadataExtractorPool getMetadataExtractorPool() {
+        int workerCount = MetadataExtractorPool.defaultWorkerCount();
+        String configured = PreferenceManager.getDefaultSharedPreferences(getApplication())
+                .getString("metadata_worker_count", "0");
+        try {
+            int value = Integer.parseInt(configured);
+            if (value > 0) {
+                workerCount = value;
+            }
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "无效的元数据线程数设置: " + configured);
+        }
+
+        if (metadataExtractorPool == null || metadataExtractorPool.getWorkerCount() != workerCount) {
+            if (metadataExtractorPool != null) {
+                metadataExtractorPool.shutdown();
+            }
+            metadataExtractorPool = new MetadataExtractorPool(getApplication(), MetadataCache.getInstance(getApplication()),
+                    workerCount, MetadataExtractorPool.DEFAULT_TIMEOUT_MS);
+        }
+        return metadataExtractorPool;
+    }
+
+    /**
+     * 后台扫描的结果：扫描增量以及新增或修改过的列表项
+     */
+    private static class FolderScanResult<T> {
+        final LibraryScanner.Result scan;
+        final List<T> changedItems;
+
+        FolderScanResult(LibraryScanner.Result scan, List<T> changedItems) {
+            this.scan = scan;
+            this.changedItems = changedItems;
+        }
+    }
+}
@@ -6,19 +6,46 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.thumbnail.AlbumArtLoader;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHolder> {
     
     private static final String TAG = "MusicAdapter";
-    private List<MusicItem> musicList = new ArrayList<>();
+    // 只刷新播放高亮的局部更新，不重新绑定文字和封面
+    private static final Object PAYLOAD_PLAYING_STATE = new Object();
+    
+    private static final DiffUtil.ItemCallback<MusicItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<MusicItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull MusicItem oldItem, @NonNull MusicItem newItem) {
+            return Objects.equals(oldItem.getUri(), newItem.getUri());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull MusicItem oldItem, @NonNull MusicItem newItem) {
+            return Objects.equals(oldItem.getDisplayName(), newItem.getDisplayName())
+                    && Objects.equals(oldItem.getArtist(), newItem.getArtist())
+                    && Objects.equals(oldItem.getAlbum(), newItem.getAlbum())
+                    && Objects.equals(oldItem.getDuration(), newItem.getDuration());
+        }
+    };
+    
+    // 差异在后台线程计算，只把增删改移动分发给 RecyclerView
+    private final AsyncListDiffer<MusicItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // 与 differ 当前列表相同的内容，附带 URI 索引
+    private IndexedMediaList<MusicItem> indexedList = new IndexedMediaList<>(MusicItem::getUri);
     private OnMusicClickListener listener;
     private int currentPlayingPosition = -1;
     
@@ -26,37 +53,43 @@ public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHol
         void onMusicClick(MusicItem musicItem);
     }
     
+    public MusicAdapter() {
+        setHasStableIds(true);
+    }
+    
     public void setMusicList(List<MusicItem> musicList) {
-        if (musicList == null) {
-            this.musicList = new ArrayList<>();
-        } else {
-            this.musicList = new ArrayList<>(musicList); // 创建副本以避免外部修改
-        }
-        // 不重置当前播放位置，避免UI跳跃
-        // currentPlayingPosition = -1; // 重置当前播放位置
-        notifyDataSetChanged();
-        Log.d(TAG, "设置了" + this.musicList.size() + "首音乐到适配器");
+        // 创建副本以避免外部修改；不重置当前播放位置，避免UI跳跃
+        IndexedMediaList<MusicItem> newList = new IndexedMediaList<>(
+                musicList == null ? new ArrayList<MusicItem>() : musicList, MusicItem::getUri);
+        // 空列表提交为 null：AsyncListDiffer 从 null 切换到非空列表时同步插入，不必等后台比较，
+        // 冷启动时快照中的列表在同一帧就能显示
+        differ.submitList(newList.isEmpty() ? null : newList, () -> {
+            indexedList = newList;
+            Log.d(TAG, "设置了" + newList.size() + "首音乐到适配器");
+        });
     }
     
     public List<MusicItem> getMusicList() {
-        return new ArrayList<>(musicList); // 返回副本以避免外部修改
+        return new ArrayList<>(differ.getCurrentList()); // 返回副本以避免外部修改
     }
     
+    /**
+     * 只刷新旧位置和新位置两行；位置可以先于列表设置，列表到达后按位置高亮
+     */
     public void setCurrentPlayingPosition(int position) {
-        if (position >= -1 && position < musicList.size()) {
-            int oldPosition = currentPlayingPosition;
-            currentPlayingPosition = position;
-            
-            // 刷新旧位置和新位置的项
-            if (oldPosition != -1) {
-                notifyItemChanged(oldPosition);
-            }
-            if (currentPlayingPosition != -1) {
-                notifyItemChanged(currentPlayingPosition);
-            }
-            
-            Log.d(TAG, "设置当前播放位置: " + position);
+        if (position < -1 || position == currentPlayingPosition) {
+            return;
+        }
+        int oldPosition = currentPlayingPosition;
+        currentPlayingPosition = position;
+        int size = getItemCount();
+        if (oldPosition != -1 && oldPosition < size) {
+            notifyItemChanged(oldPosition, PAYLOAD_PLAYING_STATE);
+        }
+        if (position != -1 && position < size) {
+            notifyItemChanged(position, PAYLOAD_PLAYING_STATE);
         }
+        Log.d(TAG, "设置当前播放位置: " + position);
     }
     
     public int getCurrentPlayingPosition() {
@@ -64,16 +97,7 @@ public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHol
     }
     
     public int getPositionForItem(MusicItem item) {
-        if (item != null) {
-            for (int i = 0; i < musicList.size(); i++) {
-                MusicItem current = musicList.get(i);
-                if (current != null && current.getUri() != null && 
-                    current.getUri().equals(item.getUri())) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return indexedList.indexOfItem(item);
     }
     
     public void setOnMusicClickListener(OnMusicClickListener listener) {
@@ -88,10 +112,20 @@ public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHol
         return new MusicViewHolder(view);
     }
     
+    @Override
+    public void onBindViewHolder(@NonNull MusicViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_PLAYING_STATE)) {
+            bindPlayingState(holder, position);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+    
     @Override
     public void onBindViewHolder(@NonNull MusicViewHolder holder, int position) {
+        StartupTrace.mark(StartupTrace.FIRST_MUSIC_ROW);
         try {
-            MusicItem musicItem = musicList.get(position);
+            MusicItem musicItem = differ.getCurrentList().get(position);
             if (musicItem != null) {
                 String displayName = musicItem.getDisplayName();
                 String artist = musicItem.getArtist();
@@ -101,18 +135,9 @@ public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHol
                 holder.musicArtist.setText(artist != null ? artist : "未知艺术家");
                 holder.musicDuration.setText(duration != null ? duration : "");
                 
-                // 设置当前播放项的高亮效果
-                if (position == currentPlayingPosition) {
-                    holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.playing_item_background));
-                    holder.musicTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
-                    holder.musicArtist.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
-                    holder.musicDuration.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
-                } else {
-                    holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.music_item_background));
-                    holder.musicTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
-                    holder.musicArtist.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextSecondary));
-                    holder.musicDuration.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextSecondary));
-                }
+                bindAlbumArt(holder, musicItem);
+                
+                bindPlayingState(holder, position);
                 
                 holder.itemView.setOnClickListener(v -> {
                     try {
@@ -129,22 +154,87 @@ public class MusicAdapter extends RecyclerView.Adapter<MusicAdapter.MusicViewHol
         }
     }
     
+    @Override
+    public void onViewRecycled(@NonNull MusicViewHolder holder) {
+        super.onViewRecycled(holder);
+        holder.clearAlbumArt();
+    }
+    
     @Override
     public int getItemCount() {
-        return musicList.size();
+        return differ.getCurrentList().size();
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        MusicItem item = differ.getCurrentList().get(position);
+        return item != null ? StableIds.forUri(item.getUri()) : RecyclerView.NO_ID;
+    }
+    
+    /**
+     * 设置当前播放项的高亮效果
+     */
+    private void bindPlayingState(MusicViewHolder holder, int position) {
+        if (position == currentPlayingPosition) {
+            holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.playing_item_background));
+            holder.musicTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
+            holder.musicArtist.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
+            holder.musicDuration.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
+        } else {
+            holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.music_item_background));
+            holder.musicTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
+            holder.musicArtist.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextSecondary));
+            holder.musicDuration.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextSecondary));
+        }
+    }
+    
+    /**
+     * 异步加载封面，没有封面时保留默认的音乐图标
+     */
+    private void bindAlbumArt(MusicViewHolder holder, MusicItem musicItem) {
+        Uri uri = musicItem.getUri();
+        // 同一曲目重新绑定（例如切换高亮）时保留已显示或仍在加载的封面
+        if (uri != null && uri.equals(holder.albumArtUri)
+                && (holder.musicArt.getVisibility() == View.VISIBLE
+                || (holder.albumArtRequest != null && !holder.albumArtRequest.isCancelled()))) {
+            return;
+        }
+        holder.clearAlbumArt();
+        holder.albumArtUri = uri;
+        
+        ImageView art = holder.musicArt;
+        holder.albumArtRequest = AlbumArtLoader.getInstance(holder.itemView.getContext())
+                .load(uri, musicItem.getAlbum(), musicItem.getArtist(), AlbumArtLoader.Size.ROW, albumArt -> {
+                    art.setImageBitmap(albumArt.bitmap);
+                    art.setVisibility(View.VISIBLE);
+                });
     }
     
     static class MusicViewHolder extends RecyclerView.ViewHolder {
+        ImageView musicArt;
         TextView musicTitle;
         TextView musicArtist;
         TextView musicDuration;
+        Uri albumArtUri;
+        AlbumArtLoader.Request albumArtRequest;
         
         public MusicViewHolder(@NonNull View itemView) {
             super(itemView);
+            musicArt = itemView.findViewById(R.id.music_art);
             musicTitle = itemView.findViewById(R.id.music_title);
             musicArtist = itemView.findViewById(R.id.music_artist);
             musicDuration = itemView.findViewById(R.id.music_duration);
         }
+        
+        void clearAlbumArt() {
+            if (albumArtRequest != null) {
+                albumArtRequest.cancel();
+                albumArtRequest = null;
+            }
+            albumArtUri = null;
+            musicArt.setImageBitmap(null);
+            musicArt.setVisibility(View.INVISIBLE);
+        }
     }
     
     public static class MusicItem {
@@ -1,6 +1,7 @@
 package com.example.lplayer;
 
 import android.content.Intent;
+import android.graphics.drawable.GradientDrawable;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
@@ -8,6 +9,7 @@ import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.ImageButton;
+import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -15,13 +17,17 @@ import android.widget.Toast;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.constraintlayout.widget.ConstraintLayout;
+import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.thumbnail.AlbumArtLoader;
+import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ExoPlayer;
 import com.google.android.exoplayer2.MediaItem;
 import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.PlaybackException;
+import com.google.android.exoplayer2.Timeline;
 
 import java.util.ArrayList;
 import java.util.Formatter;
@@ -38,6 +44,9 @@ public class MusicPlayerActivity extends AppCompatActivity {
     private ExoPlayer player;
     private TextView titleTextView;
     private TextView artistTextView;
+    private ImageView albumCoverView;
+    private View rootView;
+    private AlbumArtLoader.Request albumArtRequest;
     private TextView currentTimeTextView;
     private TextView durationTextView;
     private SeekBar seekBar;
@@ -64,9 +73,12 @@ public class MusicPlayerActivity extends AppCompatActivity {
     private boolean isShuffleMode = false;
     private boolean playlistVisible = false;
     
-    private List<MusicAdapter.MusicItem> playlistItems = new ArrayList<>();
+    private final IndexedMediaList<MusicAdapter.MusicItem> playlistItems =
+            new IndexedMediaList<>(MusicAdapter.MusicItem::getUri);
     private MusicAdapter playlistAdapter;
     private int currentPlayingPosition = -1;
+    // 连续播放失败的曲目数，整个队列都失败时停止跳转
+    private int consecutiveErrors = 0;
     
     private final Handler handler = new Handler(Looper.getMainLooper());
     private final Runnable updateProgressRunnable = new Runnable() {
@@ -80,10 +92,6 @@ public class MusicPlayerActivity extends AppCompatActivity {
     private StringBuilder formatBuilder;
     private Formatter formatter;
     
-    // 标志位用于区分用户操作和自动播放结束
-    private boolean isUserNext = false;
-    private boolean isUserPrevious = false;
-    private boolean isUserSelect = false;
     private boolean autoPlayNext = true; // 添加自动播放设置变量
 
     @Override
@@ -113,28 +121,15 @@ public class MusicPlayerActivity extends AppCompatActivity {
                 }
                 
                 // 获取播放列表数据（如果有）
-                if (getIntent().hasExtra("playlist")) {
-                    ArrayList<String> uriStrings = getIntent().getStringArrayListExtra("playlist");
-                    ArrayList<String> titles = getIntent().getStringArrayListExtra("playlist_titles");
-                    ArrayList<String> artists = getIntent().getStringArrayListExtra("playlist_artists");
-                    ArrayList<String> albums = getIntent().getStringArrayListExtra("playlist_albums");
-                    ArrayList<String> durations = getIntent().getStringArrayListExtra("playlist_durations");
-                    currentPlayingPosition = getIntent().getIntExtra("current_position", 0);
-                    
-                    if (uriStrings != null && titles != null && artists != null && 
-                            uriStrings.size() == titles.size() && titles.size() == artists.size()) {
-                        for (int i = 0; i < uriStrings.size(); i++) {
-                            Uri uri = Uri.parse(uriStrings.get(i));
-                            String title = titles.get(i);
-                            String artist = artists.get(i);
-                            String album = albums != null && i < albums.size() ? albums.get(i) : "";
-                            String duration = durations != null && i < durations.size() ? durations.get(i) : "";
-                            playlistItems.add(new MusicAdapter.MusicItem(uri, title, artist, album, duration));
-                        }
-                        Log.d(TAG, "播放列表加载成功，共" + playlistItems.size() + "首音乐");
-                    }
+                long queueId = getIntent().getLongExtra(PlaybackManager.EXTRA_QUEUE_ID, PlaybackManager.NO_QUEUE);
+                PlaybackManager.Queue<MusicAdapter.MusicItem> queue = PlaybackManager.getInstance().getMusicQueue(queueId);
+                int queueIndex = getIntent().getIntExtra(PlaybackManager.EXTRA_QUEUE_INDEX, 0);
+                if (queue != null && queueIndex >= 0 && queueIndex < queue.size()) {
+                    playlistItems.addAll(queue.getItems());
+                    currentPlayingPosition = queueIndex;
+                    Log.d(TAG, "播放列表加载成功，共" + playlistItems.size() + "首音乐");
                 } else {
-                    // 如果没有传入播放列表，则创建只包含当前音乐的播放列表
+                    // 没有可用的播放队列（进程重建后队列已丢失），创建只包含当前音乐的播放列表
                     if (musicUri != null && musicTitle != null) {
                         playlistItems.add(new MusicAdapter.MusicItem(musicUri, musicTitle, musicArtist, "", ""));
                         currentPlayingPosition = 0;
@@ -154,15 +149,15 @@ public class MusicPlayerActivity extends AppCompatActivity {
             // 初始化视图
             initializeViews();
             
+            // 初始化播放列表，播放器的第一次曲目切换回调需要用到适配器
+            setupPlaylist();
+            
             // 初始化播放器
             initializePlayer();
             
             // 设置监听器
             setupListeners();
             
-            // 初始化播放列表
-            setupPlaylist();
-            
         } catch (Exception e) {
             Log.e(TAG, "初始化播放器失败: " + e.getMessage(), e);
             Toast.makeText(this, "播放器初始化失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
@@ -173,6 +168,8 @@ public class MusicPlayerActivity extends AppCompatActivity {
     private void initializeViews() {
         titleTextView = findViewById(R.id.music_title);
         artistTextView = findViewById(R.id.music_artist);
+        albumCoverView = findViewById(R.id.album_cover);
+        rootView = findViewById(R.id.music_player_root);
         currentTimeTextView = findViewById(R.id.current_time);
         durationTextView = findViewById(R.id.duration);
         seekBar = findViewById(R.id.seek_bar);
@@ -195,6 +192,12 @@ public class MusicPlayerActivity extends AppCompatActivity {
         titleTextView.setText(actualFileName != null ? actualFileName : musicTitle);
         artistTextView.setText(musicArtist != null ? musicArtist : "未知艺术家");
         
+        if (currentPlayingPosition >= 0 && currentPlayingPosition < playlistItems.size()) {
+            showAlbumArt(playlistItems.get(currentPlayingPosition));
+        } else {
+            showAlbumArt(new MusicAdapter.MusicItem(musicUri, musicTitle, musicArtist, "", ""));
+        }
+        
         // 初始时间显示
         currentTimeTextView.setText(stringForTime(0));
         durationTextView.setText(stringForTime(0));
@@ -203,6 +206,27 @@ public class MusicPlayerActivity extends AppCompatActivity {
         seekBar.setMax(1000);
     }
     
+    /**
+     * 加载当前曲目的封面，并用封面中提取的颜色替换默认的渐变背景
+     */
+    private void showAlbumArt(MusicAdapter.MusicItem item) {
+        if (albumArtRequest != null) {
+            albumArtRequest.cancel();
+            albumArtRequest = null;
+        }
+        albumCoverView.setImageResource(R.drawable.ic_tab_music);
+        rootView.setBackgroundResource(R.drawable.gradient_background);
+        
+        albumArtRequest = AlbumArtLoader.getInstance(this).load(item.getUri(), item.getAlbum(), item.getArtist(),
+                AlbumArtLoader.Size.HEADER, art -> {
+                    albumCoverView.setImageBitmap(art.bitmap);
+                    if (art.backgroundColor != 0) {
+                        rootView.setBackground(new GradientDrawable(GradientDrawable.Orientation.TL_BR,
+                                new int[]{art.backgroundColor, ContextCompat.getColor(this, R.color.colorBackground)}));
+                    }
+                });
+    }
+    
     // 从URI获取实际文件名
     private String getFileNameFromUri(Uri uri) {
         String result = null;
@@ -252,19 +276,15 @@ public class MusicPlayerActivity extends AppCompatActivity {
                 @Override
                 public void onPlaybackStateChanged(int state) {
                     if (state == Player.STATE_READY) {
+                        consecutiveErrors = 0;
                         // 音乐准备好了，更新UI
                         durationTextView.setText(stringForTime(player.getDuration()));
                         updateProgress();
                         handler.post(updateProgressRunnable);
                         Log.d(TAG, "播放器准备就绪");
                     } else if (state == Player.STATE_ENDED) {
-                        // 根据设置决定是否自动播放下一首
-                        if (autoPlayNext && !isUserNext && !isUserPrevious && !isUserSelect) {
-                            playNextMusic();
-                        }
-                        isUserNext = false;
-                        isUserPrevious = false;
-                        isUserSelect = false;
+                        // 自动切换由播放器的重复模式完成，到这里说明整个队列已播放完毕
+                        Log.d(TAG, "播放队列已结束");
                     } else if (state == Player.STATE_BUFFERING) {
                         Log.d(TAG, "音乐缓冲中...");
                     } else if (state == Player.STATE_IDLE) {
@@ -272,6 +292,14 @@ public class MusicPlayerActivity extends AppCompatActivity {
                     }
                 }
                 
+                @Override
+                public void onMediaItemTransition(MediaItem mediaItem, int reason) {
+                    // 自动切换、跳转和重复都会回调，统一在这里更新当前曲目
+                    if (reason != Player.MEDIA_ITEM_TRANSITION_REASON_REPEAT) {
+                        onCurrentMusicChanged(player.getCurrentMediaItemIndex());
+                    }
+                }
+                
                 @Override
                 public void onIsPlayingChanged(boolean isPlaying) {
                     // 播放状态改变
@@ -299,15 +327,20 @@ public class MusicPlayerActivity extends AppCompatActivity {
                         Toast.makeText(MusicPlayerActivity.this, "网络连接失败，请检查网络设置", Toast.LENGTH_SHORT).show();
                     } else if (errorCode.contains("IO_FILE_NOT_FOUND")) {
                         Toast.makeText(MusicPlayerActivity.this, "找不到音乐文件", Toast.LENGTH_SHORT).show();
-                    } else {
+                    } else if (++consecutiveErrors < playlistItems.size()) {
                         // 尝试播放下一首音乐
                         playNextMusic();
+                    } else {
+                        // 整个队列都试过一遍（如文件夹权限被撤销、编码都不支持），不再循环
+                        Log.e(TAG, "播放列表中的 " + consecutiveErrors + " 首音乐均无法播放，停止播放");
+                        Toast.makeText(MusicPlayerActivity.this, "播放列表中的音乐均无法播放", Toast.LENGTH_SHORT).show();
+                        consecutiveErrors = 0;
                     }
                 }
             });
             
-            // 播放当前选中的音乐
-            playSelectedMusic();
+            // 把整个播放列表交给播放器，从当前选中的音乐开始
+            preparePlaylist();
             
         } catch (Exception e) {
             Log.e(TAG, "初始化播放器时发生错误: " + e.getMessage(), e);
@@ -341,6 +374,7 @@ public class MusicPlayerActivity extends AppCompatActivity {
         repeatButton.setOnClickListener(v -> {
             isRepeatMode = !isRepeatMode;
             updateRepeatButton();
+            applyRepeatMode();
             Toast.makeText(this, isRepeatMode ? "单曲循环已开启" : "单曲循环已关闭", Toast.LENGTH_SHORT).show();
         });
         
@@ -348,6 +382,9 @@ public class MusicPlayerActivity extends AppCompatActivity {
         shuffleButton.setOnClickListener(v -> {
             isShuffleMode = !isShuffleMode;
             updateShuffleButton();
+            if (player != null) {
+                player.setShuffleModeEnabled(isShuffleMode);
+            }
             Toast.makeText(this, isShuffleMode ? "随机播放已开启" : "随机播放已关闭", Toast.LENGTH_SHORT).show();
         });
         
@@ -392,17 +429,9 @@ public class MusicPlayerActivity extends AppCompatActivity {
         
         // 设置播放列表点击监听
         playlistAdapter.setOnMusicClickListener(musicItem -> {
-            int position = -1;
-            for (int i = 0; i < playlistItems.size(); i++) {
-                if (playlistItems.get(i).getUri().equals(musicItem.getUri())) {
-                    position = i;
-                    break;
-                }
-            }
+            int position = playlistItems.indexOfUri(musicItem.getUri());
             if (position != -1 && position != currentPlayingPosition) {
-                isUserSelect = true;
-                currentPlayingPosition = position;
-                playSelectedMusic();
+                seekToMusic(position);
                 togglePlaylistPanel();
             }
         });
@@ -445,77 +474,122 @@ public class MusicPlayerActivity extends AppCompatActivity {
         updateNavigationButtonsVisibility();
     }
     
-    private void playSelectedMusic() {
+    /**
+     * 把整个播放列表一次性交给播放器
+     *
+     * 播放器会提前缓冲下一首，切歌时不再重建解码管线；MP3 的 LAME/Xing 头和 MP4 的 iTunSMPB、
+     * 编辑列表中记录的编码延迟和填充会在拼接时裁掉，相邻曲目之间没有空隙。
+     */
+    private void preparePlaylist() {
         try {
-            if (currentPlayingPosition >= 0 && currentPlayingPosition < playlistItems.size()) {
-                MusicAdapter.MusicItem item = playlistItems.get(currentPlayingPosition);
-                musicUri = item.getUri();
-                musicTitle = item.getDisplayName();
-                musicArtist = item.getArtist();
-                
-                // 检查URI是否有效
-                if (musicUri == null) {
-                    Log.e(TAG, "音乐URI为空");
-                    Toast.makeText(this, "无效的音乐路径", Toast.LENGTH_SHORT).show();
-                    return;
-                }
-                
-                Log.d(TAG, "准备播放音乐: " + musicTitle + ", URI: " + musicUri);
-                
-                // 更新标题和艺术家
-                titleTextView.setText(musicTitle);
-                artistTextView.setText(musicArtist != null ? musicArtist : "未知艺术家");
-                
-                // 准备媒体项
-                MediaItem mediaItem = MediaItem.fromUri(musicUri);
-                
-                // 重置播放器
-                player.clearMediaItems();
-                player.setMediaItem(mediaItem);
-                
-                // 准备播放
-                player.prepare();
-                player.play();
-                isPlaying = true;
-                
-                try {
-                    // 更新播放列表UI
-                    updatePlaylist();
-                } catch (NullPointerException e) {
-                    Log.e(TAG, "更新播放列表失败: " + e.getMessage(), e);
-                }
-                
-                // 更新导航按钮状态
-                updateNavigationButtonsVisibility();
-                
-                Log.d(TAG, "音乐加载成功，开始播放");
-            } else {
+            if (currentPlayingPosition < 0 || currentPlayingPosition >= playlistItems.size()) {
                 Log.e(TAG, "无效的播放位置: " + currentPlayingPosition);
                 Toast.makeText(this, "无法播放选定的音乐", Toast.LENGTH_SHORT).show();
+                return;
             }
+            List<MediaItem> mediaItems = new ArrayList<>(playlistItems.size());
+            for (int i = 0; i < playlistItems.size(); i++) {
+                Uri uri = playlistItems.get(i).getUri();
+                mediaItems.add(new MediaItem.Builder()
+                        .setUri(uri)
+                        .setMediaId(uri.toString())
+                        .build());
+            }
+            
+            player.setMediaItems(mediaItems, currentPlayingPosition, 0);
+            player.setShuffleModeEnabled(isShuffleMode);
+            applyRepeatMode();
+            player.prepare();
+            player.play();
+            isPlaying = true;
+            // 标题、封面和高亮在 onMediaItemTransition（PLAYLIST_CHANGED）中更新
+            Log.d(TAG, "播放列表已加载，共" + mediaItems.size() + "首，从第" + (currentPlayingPosition + 1) + "首开始播放");
         } catch (Exception e) {
             Log.e(TAG, "播放音乐时发生错误: " + e.getMessage(), e);
             Toast.makeText(this, "播放失败: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
     
+    /**
+     * 当前曲目变化后更新标题、封面和播放列表中的高亮，不重新提交列表
+     */
+    private void onCurrentMusicChanged(int position) {
+        if (position < 0 || position >= playlistItems.size()) {
+            return;
+        }
+        currentPlayingPosition = position;
+        MusicAdapter.MusicItem item = playlistItems.get(position);
+        // 启动时 initializeViews 已经加载过这首的封面
+        boolean sameMusic = item.getUri().equals(musicUri);
+        musicUri = item.getUri();
+        musicTitle = item.getDisplayName();
+        musicArtist = item.getArtist();
+        Log.d(TAG, "当前音乐: " + musicTitle + ", URI: " + musicUri);
+        
+        titleTextView.setText(musicTitle);
+        artistTextView.setText(musicArtist != null ? musicArtist : "未知艺术家");
+        if (!sameMusic) {
+            showAlbumArt(item);
+        }
+        // 无缝切换时不会再次进入 STATE_READY，时长在这里刷新
+        updateProgress();
+        
+        // 只通知新旧两行刷新播放状态，列表本身在 setupPlaylist 中提交一次
+        playlistAdapter.setCurrentPlayingPosition(position);
+    }
+    
+    /**
+     * 单曲循环对应 REPEAT_MODE_ONE；开启自动播放时整个列表循环，否则每首结束后暂停
+     */
+    private void applyRepeatMode() {
+        if (player == null) {
+            return;
+        }
+        if (isRepeatMode) {
+            player.setRepeatMode(Player.REPEAT_MODE_ONE);
+        } else if (autoPlayNext && playlistItems.size() > 1) {
+            player.setRepeatMode(Player.REPEAT_MODE_ALL);
+        } else {
+            player.setRepeatMode(Player.REPEAT_MODE_OFF);
+        }
+        player.setPauseAtEndOfMediaItems(!isRepeatMode && !autoPlayNext);
+    }
+    
+    /**
+     * 跳到队列中的指定位置，不重新准备播放器
+     */
+    private void seekToMusic(int position) {
+        if (player == null || position < 0 || position >= player.getMediaItemCount()) {
+            return;
+        }
+        player.seekTo(position, 0);
+        // 播放出错后播放器处于空闲状态，需要重新准备
+        if (player.getPlaybackState() == Player.STATE_IDLE) {
+            player.prepare();
+        }
+        player.play();
+    }
+    
     private void playNextMusic() {
-        isUserNext = true;
-        if (playlistItems.size() > 1) {
-            int nextPosition = (currentPlayingPosition + 1) % playlistItems.size();
-            currentPlayingPosition = nextPosition;
-            playSelectedMusic();
-            updateNavigationButtonsVisibility();
+        if (player != null && playlistItems.size() > 1) {
+            // 手动切歌总是循环，随机播放时按播放器的随机顺序
+            Timeline timeline = player.getCurrentTimeline();
+            int next = timeline.getNextWindowIndex(player.getCurrentMediaItemIndex(),
+                    Player.REPEAT_MODE_ALL, player.getShuffleModeEnabled());
+            if (next != C.INDEX_UNSET) {
+                seekToMusic(next);
+            }
         }
     }
     
     private void playPreviousMusic() {
-        isUserPrevious = true;
-        if (playlistItems.size() > 1) {
-            int prevPosition = (currentPlayingPosition - 1 + playlistItems.size()) % playlistItems.size();
-            currentPlayingPosition = prevPosition;
-            playSelectedMusic();
-            updateNavigationButtonsVisibility();
+        if (player != null && playlistItems.size() > 1) {
+            Timeline timeline = player.getCurrentTimeline();
+            int previous = timeline.getPreviousWindowIndex(player.getCurrentMediaItemIndex(),
+                    Player.REPEAT_MODE_ALL, player.getShuffleModeEnabled());
+            if (previous != C.INDEX_UNSET) {
+                seekToMusic(previous);
+            }
         }
     }
     
@@ -592,6 +666,10 @@ public class MusicPlayerActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        if (albumArtRequest != null) {
+            albumArtRequest.cancel();
+            albumArtRequest = null;
+        }
         if (player != null) {
             player.release();
             player = null;
@@ -1,13 +1,60 @@
 package com.example.lplayer;
 
-import android.net.Uri;
-import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * 进程内的播放队列存储
+ *
+ * 启动播放器时先把列表发布为不可变快照，Intent 里只传队列 ID 和起始位置，
+ * 不再把整个媒体库拆成多个字符串列表放进 Extras，既避免每次点击都序列化整个列表，
+ * 也避免列表过大时触发 TransactionTooLargeException。
+ * 快照发布后不再修改，可以在任意线程读取；存储本身的读写由同一把锁保护。
+ */
 public class PlaybackManager {
+    public static final String EXTRA_QUEUE_ID = "queue_id";
+    public static final String EXTRA_QUEUE_INDEX = "current_position";
+    public static final long NO_QUEUE = -1;
+
+    // 每种队列只保留最近的几个，进程被回收后队列丢失，播放器退回到只播放 Intent 中的单个文件
+    private static final int MAX_QUEUES = 4;
+
     private static PlaybackManager instance;
-    private List<VideoAdapter.VideoItem> videoList = new ArrayList<>();
-    private int currentPlayingPosition = -1;
+
+    private final LibraryState library = new LibraryState();
+    private final Map<Long, Queue<VideoAdapter.VideoItem>> videoQueues = new BoundedQueueMap<>();
+    private final Map<Long, Queue<MusicAdapter.MusicItem>> musicQueues = new BoundedQueueMap<>();
+    private long nextQueueId = 1;
+
+    /**
+     * 不可变的播放队列快照
+     */
+    public static final class Queue<T> {
+        private final long id;
+        private final List<T> items;
+
+        Queue(long id, List<T> items) {
+            this.id = id;
+            this.items = items;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * 只读列表
+         */
+        public List<T> getItems() {
+            return items;
+        }
+
+        public int size() {
+            return items.size();
+        }
+    }
 
     private PlaybackManager() {}
 
@@ -18,29 +65,58 @@ public class PlaybackManager {
         return instance;
     }
 
-    public List<VideoAdapter.VideoItem> getVideoList() {
-        return videoList;
+    /**
+     * 当前媒体库和播放位置，由 MainActivity 在列表变化时发布
+     */
+    public LibraryState getLibrary() {
+        return library;
     }
 
-    public void setVideoList(List<VideoAdapter.VideoItem> list) {
-        videoList.clear();
-        if (list != null) {
-            videoList.addAll(list);
-        }
+    /**
+     * 发布视频队列并返回队列 ID；与最近发布的是同一个列表时直接返回原 ID
+     *
+     * items 必须是发布后不再修改的列表，例如 LibraryState 快照中的列表，这里按引用保存，不再复制。
+     */
+    public synchronized long publishVideoQueue(List<VideoAdapter.VideoItem> items) {
+        return publish(videoQueues, items);
+    }
+
+    /**
+     * 找不到（已被淘汰或进程重建过）时返回 null
+     */
+    public synchronized Queue<VideoAdapter.VideoItem> getVideoQueue(long queueId) {
+        return videoQueues.get(queueId);
     }
 
-    public int getCurrentPlayingPosition() {
-        return currentPlayingPosition;
+    public synchronized long publishMusicQueue(List<MusicAdapter.MusicItem> items) {
+        return publish(musicQueues, items);
     }
 
-    public void setCurrentPlayingPosition(int pos) {
-        this.currentPlayingPosition = pos;
+    public synchronized Queue<MusicAdapter.MusicItem> getMusicQueue(long queueId) {
+        return musicQueues.get(queueId);
+    }
+
+    private <T> long publish(Map<Long, Queue<T>> queues, List<T> items) {
+        if (items == null) {
+            items = Collections.emptyList();
+        }
+        Queue<T> latest = null;
+        for (Queue<T> queue : queues.values()) {
+            latest = queue;
+        }
+        // 快照列表不可变，引用相同即内容相同，每次点击都不必逐项比较或复制
+        if (latest != null && latest.items == items) {
+            return latest.id;
+        }
+        long id = nextQueueId++;
+        queues.put(id, new Queue<>(id, items));
+        return id;
     }
 
-    public VideoAdapter.VideoItem getCurrentVideoItem() {
-        if (currentPlayingPosition >= 0 && currentPlayingPosition < videoList.size()) {
-            return videoList.get(currentPlayingPosition);
+    private static final class BoundedQueueMap<T> extends LinkedHashMap<Long, Queue<T>> {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Queue<T>> eldest) {
+            return size() > MAX_QUEUES;
         }
-        return null;
     }
-}
\ No newline at end of file
+}
@@ -29,9 +29,7 @@ import com.google.android.exoplayer2.Player;
 import com.google.android.exoplayer2.PlaybackException;
 import com.google.android.exoplayer2.ui.PlayerView;
 
-import java.util.ArrayList;
 import java.util.Formatter;
-import java.util.List;
 import java.util.Locale;
 
 import android.database.Cursor;
@@ -99,7 +97,8 @@ public class PlayerActivity extends AppCompatActivity {
     private Formatter formatter;
 
     // 恢复本地播放列表和播放位置
-    private List<VideoAdapter.VideoItem> playlistItems = new ArrayList<>();
+    private final IndexedMediaList<VideoAdapter.VideoItem> playlistItems =
+            new IndexedMediaList<>(VideoAdapter.VideoItem::getUri);
     private int currentPlayingPosition = -1;
 
     // 标志位用于区分用户操作和自动播放结束
@@ -150,20 +149,15 @@ public class PlayerActivity extends AppCompatActivity {
                     Log.e(TAG, "未提供视频URI");
                 }
                 // 获取播放列表数据（如果有）
-                if (getIntent().hasExtra("playlist")) {
-                    ArrayList<String> uriStrings = getIntent().getStringArrayListExtra("playlist");
-                    ArrayList<String> titles = getIntent().getStringArrayListExtra("playlist_titles");
-                    currentPlayingPosition = getIntent().getIntExtra("current_position", 0);
-                    if (uriStrings != null && titles != null && uriStrings.size() == titles.size()) {
-                        for (int i = 0; i < uriStrings.size(); i++) {
-                            Uri uri = Uri.parse(uriStrings.get(i));
-                            String title = titles.get(i);
-                            playlistItems.add(new VideoAdapter.VideoItem(uri, title));
-                        }
-                        Log.d(TAG, "播放列表加载成功，共" + playlistItems.size() + "个视频");
-                    }
+                long queueId = getIntent().getLongExtra(PlaybackManager.EXTRA_QUEUE_ID, PlaybackManager.NO_QUEUE);
+                PlaybackManager.Queue<VideoAdapter.VideoItem> queue = PlaybackManager.getInstance().getVideoQueue(queueId);
+                int queueIndex = getIntent().getIntExtra(PlaybackManager.EXTRA_QUEUE_INDEX, 0);
+                if (queue != null && queueIndex >= 0 && queueIndex < queue.size()) {
+                    playlistItems.addAll(queue.getItems());
+                    currentPlayingPosition = queueIndex;
+                    Log.d(TAG, "播放列表加载成功，共" + playlistItems.size() + "个视频");
                 } else {
-                    // 如果没有传入播放列表，则创建只包含当前视频的播放列表
+                    // 没有可用的播放队列（进程重建后队列已丢失），创建只包含当前视频的播放列表
                     if (videoUri != null && videoTitle != null) {
                         playlistItems.add(new VideoAdapter.VideoItem(videoUri, videoTitle));
                         currentPlayingPosition = 0;
@@ -279,13 +273,7 @@ public class PlayerActivity extends AppCompatActivity {
         
         // 设置播放列表点击监听
         playlistAdapter.setOnVideoClickListener(videoItem -> {
-            int position = -1;
-            for (int i = 0; i < playlistItems.size(); i++) {
-                if (playlistItems.get(i).getUri().equals(videoItem.getUri())) {
-                    position = i;
-                    break;
-                }
-            }
+            int position = playlistItems.indexOfUri(videoItem.getUri());
             if (position != -1 && position != currentPlayingPosition) {
                 isUserSelect = true;
                 currentPlayingPosition = position;
@@ -2,66 +2,136 @@ package com.example.lplayer;
 
 import android.content.Context;
 import android.content.SharedPreferences;
-import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.preference.PreferenceManager;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.example.lplayer.playlist.JournaledPlaylist;
+import com.example.lplayer.playlist.PlaylistCodec;
+import com.example.lplayer.playlist.PlaylistDatabase;
 
-import java.lang.reflect.Type;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * 播放列表管理器，用于处理播放列表的持久化存储和加载
+ *
+ * 播放列表保存在独立的 SQLite 数据库中（PlaylistDatabase），不再以 JSON 字符串放进默认 SharedPreferences，
+ * 读取设置时不必连同整个播放列表一起载入内存。保存时只把与上次相比的修改追加到日志（JournaledPlaylist），
+ * 日志过大时在写入线程上合并回数据库；列表和播放位置都没有变化时不安排任何写入。
+ * 旧版本保存在 SharedPreferences 中的 JSON 第一次访问时由 PlaylistCodec 流式解码迁移到数据库并删除。
  */
 public class PlaylistManager {
     private static final String TAG = "PlaylistManager";
     
-    // SharedPreferences 键名
+    // 旧版本的 SharedPreferences 键名，只用于迁移
     private static final String KEY_VIDEO_PLAYLIST = "saved_video_playlist";
     private static final String KEY_MUSIC_PLAYLIST = "saved_music_playlist";
+    // 无法解码的旧列表改存到 原键名 + 此后缀 下，不会被删除
+    private static final String KEY_UNREADABLE_SUFFIX = "_unreadable";
     
-    // 保存视频播放列表
-    public static void saveVideoPlaylist(Context context, List<VideoAdapter.VideoItem> videoList) {
+    // 已清空的标记，与任何列表都不是同一个对象
+    private static final List<Object> CLEARED = new ArrayList<>();
+    
+    private static final ExecutorService writer = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "playlist-writer"));
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    // 最近一次写入的列表；传入的是媒体库快照中的不可变列表，引用相同说明内容没有变化
+    private static volatile List<?> lastSavedVideos = null;
+    private static volatile int lastSavedVideoPosition = -1;
+    private static volatile List<?> lastSavedMusic = null;
+    private static boolean migrated = false;
+    private static JournaledPlaylist<VideoAdapter.VideoItem> videoPlaylist;
+    private static JournaledPlaylist<MusicAdapter.MusicItem> musicPlaylist;
+    
+    private static synchronized JournaledPlaylist<VideoAdapter.VideoItem> getVideoPlaylist(Context context) {
+        migrateLegacy(context.getApplicationContext());
+        if (videoPlaylist == null) {
+            videoPlaylist = JournaledPlaylist.forVideos(context, PlaylistDatabase.PLAYLIST_VIDEO);
+        }
+        return videoPlaylist;
+    }
+    
+    private static synchronized JournaledPlaylist<MusicAdapter.MusicItem> getMusicPlaylist(Context context) {
+        migrateLegacy(context.getApplicationContext());
+        if (musicPlaylist == null) {
+            musicPlaylist = JournaledPlaylist.forMusic(context, PlaylistDatabase.PLAYLIST_MUSIC);
+        }
+        return musicPlaylist;
+    }
+    
+    // 保存视频播放列表和播放位置，列表应为不再修改的快照
+    public static void saveVideoPlaylist(Context context, List<VideoAdapter.VideoItem> videoList, int playingPosition) {
         if (context == null || videoList == null) return;
         
-        try {
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-            
-            // 检查是否启用了保存播放列表功能
-            boolean saveEnabled = prefs.getBoolean("save_video_playlist", false);
-            if (!saveEnabled) {
-                // 如果未启用，则清除之前保存的播放列表
-                prefs.edit().remove(KEY_VIDEO_PLAYLIST).apply();
-                return;
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        // 检查是否启用了保存播放列表功能
+        boolean saveEnabled = prefs.getBoolean("save_video_playlist", false);
+        if (!saveEnabled) {
+            // 如果未启用，则清除之前保存的播放列表
+            if (lastSavedVideos != CLEARED) {
+                lastSavedVideos = CLEARED;
+                writer.execute(() -> getVideoPlaylist(appContext).clear());
             }
-            
-            // 将视频列表转换为可序列化的简单对象
-            List<SerializableVideoItem> serializableList = new ArrayList<>();
-            for (VideoAdapter.VideoItem item : videoList) {
-                serializableList.add(new SerializableVideoItem(
-                    item.getUri().toString(),
-                    item.getDisplayName()
-                ));
+            return;
+        }
+        if (videoList == lastSavedVideos && playingPosition == lastSavedVideoPosition) {
+            return;
+        }
+        lastSavedVideos = videoList;
+        lastSavedVideoPosition = playingPosition;
+        writer.execute(() -> {
+            try {
+                getVideoPlaylist(appContext).save(videoList, playingPosition);
+            } catch (Exception e) {
+                Log.e(TAG, "保存视频播放列表失败: " + e.getMessage(), e);
+                lastSavedVideos = null;
             }
-            
-            // 使用Gson将列表转换为JSON字符串
-            Gson gson = new Gson();
-            String json = gson.toJson(serializableList);
-            
-            // 保存到SharedPreferences
-            prefs.edit().putString(KEY_VIDEO_PLAYLIST, json).apply();
-            
-            Log.d(TAG, "视频播放列表已保存，共 " + videoList.size() + " 项");
-        } catch (Exception e) {
-            Log.e(TAG, "保存视频播放列表失败: " + e.getMessage(), e);
+        });
+    }
+    
+    /**
+     * 启动时读取的已保存播放列表，未启用保存或没有保存时为空列表
+     */
+    public static final class SavedPlaylists {
+        public final List<VideoAdapter.VideoItem> videos;
+        public final int videoPlayingPosition;
+        public final List<MusicAdapter.MusicItem> music;
+        
+        SavedPlaylists(List<VideoAdapter.VideoItem> videos, int videoPlayingPosition,
+                       List<MusicAdapter.MusicItem> music) {
+            this.videos = videos;
+            this.videoPlayingPosition = videoPlayingPosition;
+            this.music = music;
         }
     }
     
-    // 加载视频播放列表
+    /**
+     * 在写入线程上打开数据库、迁移旧数据并读取两个列表，完成后在主线程回调
+     *
+     * 迁移旧的 JSON 和重放日志都可能耗时较长，不能放在主线程；放在写入线程上也保证读到的是
+     * 之前排队的保存都已完成后的内容。
+     */
+    public static void loadSavedPlaylists(Context context, Consumer<SavedPlaylists> callback) {
+        Context appContext = context.getApplicationContext();
+        writer.execute(() -> {
+            List<VideoAdapter.VideoItem> videos = loadVideoPlaylist(appContext);
+            int videoPosition = videos.isEmpty() ? -1 : getSavedVideoPlayingPosition(appContext);
+            List<MusicAdapter.MusicItem> music = loadMusicPlaylist(appContext);
+            SavedPlaylists saved = new SavedPlaylists(videos, videoPosition, music);
+            mainHandler.post(() -> callback.accept(saved));
+        });
+    }
+    
+    // 加载视频播放列表，会访问数据库，应在后台线程调用
     public static List<VideoAdapter.VideoItem> loadVideoPlaylist(Context context) {
         if (context == null) return new ArrayList<>();
         
@@ -74,32 +144,10 @@ public class PlaylistManager {
                 return new ArrayList<>();
             }
             
-            // 从SharedPreferences获取JSON字符串
-            String json = prefs.getString(KEY_VIDEO_PLAYLIST, null);
-            if (json == null) {
-                return new ArrayList<>();
-            }
-            
-            // 使用Gson将JSON字符串转换回对象列表
-            Gson gson = new Gson();
-            Type type = new TypeToken<List<SerializableVideoItem>>(){}.getType();
-            List<SerializableVideoItem> serializableList = gson.fromJson(json, type);
-            
-            // 将可序列化对象转换回VideoItem
-            List<VideoAdapter.VideoItem> videoList = new ArrayList<>();
-            for (SerializableVideoItem item : serializableList) {
-                try {
-                    Uri uri = Uri.parse(item.uri);
-                    videoList.add(new VideoAdapter.VideoItem(
-                        uri,
-                        item.displayName
-                    ));
-                } catch (Exception e) {
-                    Log.e(TAG, "转换视频项失败: " + e.getMessage());
-                    // 继续处理下一项
-                }
-            }
-            
+            JournaledPlaylist<VideoAdapter.VideoItem> playlist = getVideoPlaylist(context);
+            List<VideoAdapter.VideoItem> videoList = playlist.load();
+            // 加载时发现日志过大，在写入线程上合并
+            writer.execute(playlist::compactIfNeeded);
             Log.d(TAG, "视频播放列表已加载，共 " + videoList.size() + " 项");
             return videoList;
         } catch (Exception e) {
@@ -108,47 +156,49 @@ public class PlaylistManager {
         }
     }
     
-    // 保存音乐播放列表
+    // 保存的视频播放位置，没有时返回 -1
+    public static int getSavedVideoPlayingPosition(Context context) {
+        if (context == null) return -1;
+        
+        try {
+            return getVideoPlaylist(context).getPlayingPosition();
+        } catch (Exception e) {
+            Log.e(TAG, "读取视频播放位置失败: " + e.getMessage(), e);
+            return -1;
+        }
+    }
+    
+    // 保存音乐播放列表，列表应为不再修改的快照
     public static void saveMusicPlaylist(Context context, List<MusicAdapter.MusicItem> musicList) {
         if (context == null || musicList == null) return;
         
-        try {
-            SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-            
-            // 检查是否启用了保存播放列表功能
-            boolean saveEnabled = prefs.getBoolean("save_music_playlist", false);
-            if (!saveEnabled) {
-                // 如果未启用，则清除之前保存的播放列表
-                prefs.edit().remove(KEY_MUSIC_PLAYLIST).apply();
-                return;
-            }
-            
-            // 将音乐列表转换为可序列化的简单对象
-            List<SerializableMusicItem> serializableList = new ArrayList<>();
-            for (MusicAdapter.MusicItem item : musicList) {
-                serializableList.add(new SerializableMusicItem(
-                    item.getUri().toString(),
-                    item.getDisplayName(),
-                    item.getArtist(),
-                    item.getAlbum(),
-                    item.getDuration()
-                ));
+        Context appContext = context.getApplicationContext();
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        // 检查是否启用了保存播放列表功能
+        boolean saveEnabled = prefs.getBoolean("save_music_playlist", false);
+        if (!saveEnabled) {
+            // 如果未启用，则清除之前保存的播放列表
+            if (lastSavedMusic != CLEARED) {
+                lastSavedMusic = CLEARED;
+                writer.execute(() -> getMusicPlaylist(appContext).clear());
             }
-            
-            // 使用Gson将列表转换为JSON字符串
-            Gson gson = new Gson();
-            String json = gson.toJson(serializableList);
-            
-            // 保存到SharedPreferences
-            prefs.edit().putString(KEY_MUSIC_PLAYLIST, json).apply();
-            
-            Log.d(TAG, "音乐播放列表已保存，共 " + musicList.size() + " 项");
-        } catch (Exception e) {
-            Log.e(TAG, "保存音乐播放列表失败: " + e.getMessage(), e);
+            return;
+        }
+        if (musicList == lastSavedMusic) {
+            return;
         }
+        lastSavedMusic = musicList;
+        writer.execute(() -> {
+            try {
+                getMusicPlaylist(appContext).save(musicList, -1);
+            } catch (Exception e) {
+                Log.e(TAG, "保存音乐播放列表失败: " + e.getMessage(), e);
+                lastSavedMusic = null;
+            }
+        });
     }
     
-    // 加载音乐播放列表
+    // 加载音乐播放列表，会访问数据库，应在后台线程调用
     public static List<MusicAdapter.MusicItem> loadMusicPlaylist(Context context) {
         if (context == null) return new ArrayList<>();
         
@@ -161,35 +211,9 @@ public class PlaylistManager {
                 return new ArrayList<>();
             }
             
-            // 从SharedPreferences获取JSON字符串
-            String json = prefs.getString(KEY_MUSIC_PLAYLIST, null);
-            if (json == null) {
-                return new ArrayList<>();
-            }
-            
-            // 使用Gson将JSON字符串转换回对象列表
-            Gson gson = new Gson();
-            Type type = new TypeToken<List<SerializableMusicItem>>(){}.getType();
-            List<SerializableMusicItem> serializableList = gson.fromJson(json, type);
-            
-            // 将可序列化对象转换回MusicItem
-            List<MusicAdapter.MusicItem> musicList = new ArrayList<>();
-            for (SerializableMusicItem item : serializableList) {
-                try {
-                    Uri uri = Uri.parse(item.uri);
-                    musicList.add(new MusicAdapter.MusicItem(
-                        uri,
-                        item.displayName,
-                        item.artist,
-                        item.album,
-                        item.duration
-                    ));
-                } catch (Exception e) {
-                    Log.e(TAG, "转换音乐项失败: " + e.getMessage());
-                    // 继续处理下一项
-                }
-            }
-            
+            JournaledPlaylist<MusicAdapter.MusicItem> playlist = getMusicPlaylist(context);
+            List<MusicAdapter.MusicItem> musicList = playlist.load();
+            writer.execute(playlist::compactIfNeeded);
             Log.d(TAG, "音乐播放列表已加载，共 " + musicList.size() + " 项");
             return musicList;
         } catch (Exception e) {
@@ -198,31 +222,59 @@ public class PlaylistManager {
         }
     }
     
-    // 可序列化的视频项
-    private static class SerializableVideoItem {
-        String uri;
-        String displayName;
-        
-        SerializableVideoItem(String uri, String displayName) {
-            this.uri = uri;
-            this.displayName = displayName;
+    /**
+     * 把旧版本保存在 SharedPreferences 中的 JSON 播放列表导入数据库
+     *
+     * 每个键只在对应的列表写入数据库之后才删除；写入失败时保留，下次启动重试。
+     * 同一进程内不重试，否则会绕过已经打开的 JournaledPlaylist 直接改写数据库。
+     * JSON 本身无法解码时重试也没有用，原样移到“原键名_unreadable”下保留，不再每次读取。
+     */
+    private static synchronized void migrateLegacy(Context context) {
+        if (migrated) {
+            return;
         }
+        migrated = true;
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        PlaylistDatabase database = PlaylistDatabase.getInstance(context);
+        // 逐项解码直接写入数据库，不建立中间列表
+        migrateKey(prefs, KEY_VIDEO_PLAYLIST,
+                json -> PlaylistCodec.readVideos(new StringReader(json), item -> { }),
+                json -> database.writeVideos(PlaylistDatabase.PLAYLIST_VIDEO, PlaylistDatabase.Checkpoint.EMPTY,
+                        sink -> PlaylistCodec.readVideos(new StringReader(json), sink)));
+        migrateKey(prefs, KEY_MUSIC_PLAYLIST,
+                json -> PlaylistCodec.readMusic(new StringReader(json), item -> { }),
+                json -> database.writeMusic(PlaylistDatabase.PLAYLIST_MUSIC, PlaylistDatabase.Checkpoint.EMPTY,
+                        sink -> PlaylistCodec.readMusic(new StringReader(json), sink)));
     }
     
-    // 可序列化的音乐项
-    private static class SerializableMusicItem {
-        String uri;
-        String displayName;
-        String artist;
-        String album;
-        String duration;
-        
-        SerializableMusicItem(String uri, String displayName, String artist, String album, String duration) {
-            this.uri = uri;
-            this.displayName = displayName;
-            this.artist = artist;
-            this.album = album;
-            this.duration = duration;
+    private interface LegacyStep {
+        void run(String json) throws Exception;
+    }
+    
+    /**
+     * 迁移一个键，数据库写入失败时保留该键
+     */
+    private static void migrateKey(SharedPreferences prefs, String key, LegacyStep decode, LegacyStep write) {
+        String json = prefs.getString(key, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            // 先完整解码一遍，区分数据损坏和数据库错误
+            decode.run(json);
+        } catch (Exception e) {
+            Log.e(TAG, "旧的播放列表无法解码，已另存为 " + key + KEY_UNREADABLE_SUFFIX + ": " + e.getMessage(), e);
+            prefs.edit().putString(key + KEY_UNREADABLE_SUFFIX, json).remove(key).commit();
+            return;
+        }
+        try {
+            write.run(json);
+        } catch (Exception e) {
+            Log.e(TAG, "迁移旧的播放列表失败，下次启动重试: " + e.getMessage(), e);
+            return;
         }
+        // 数据库事务已提交，再删除旧的键
+        prefs.edit().remove(key).apply();
+        Log.d(TAG, "已将旧的播放列表 " + key + " 迁移到数据库");
     }
 } 
\ No newline at end of file
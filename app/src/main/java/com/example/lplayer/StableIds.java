@@ -0,0 +1,30 @@
+package com.example.lplayer;
+
+import android.net.Uri;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * 由媒体 URI 得到的稳定 ID，列表更新后 RecyclerView 依此识别同一行
+ */
+final class StableIds {
+    private StableIds() {
+    }
+
+    /**
+     * URI 字符串的 64 位 FNV-1a 哈希，URI 为空时返回 NO_ID
+     */
+    static long forUri(Uri uri) {
+        if (uri == null) {
+            return RecyclerView.NO_ID;
+        }
+        String value = uri.toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        // NO_ID 是 -1，避免与之冲突
+        return hash == RecyclerView.NO_ID ? 0 : hash;
+    }
+}
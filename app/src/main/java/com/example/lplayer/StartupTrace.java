@@ -0,0 +1,84 @@
+package com.example.lplayer;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 冷启动各阶段的时间点，相对进程启动时间记录，每个阶段只记录第一次
+ *
+ * 同时写入 Logcat 和系统 Trace 计数器，可以在 Perfetto 中与主线程的帧对齐查看；
+ * 测试中用 await 等待某个阶段完成并取得耗时。
+ */
+public final class StartupTrace {
+    private static final String TAG = "StartupTrace";
+
+    public static final String REPOSITORY_CREATED = "repository_created";
+    public static final String SNAPSHOT_RESTORED = "snapshot_restored";
+    public static final String FIRST_VIDEO_ROW = "first_video_row";
+    public static final String FIRST_MUSIC_ROW = "first_music_row";
+    public static final String VIDEO_REVALIDATED = "video_revalidated";
+    public static final String MUSIC_REVALIDATED = "music_revalidated";
+
+    private static final Map<String, Long> marks = new ConcurrentHashMap<>();
+    private static volatile long originMs = Process.getStartUptimeMillis();
+
+    private StartupTrace() {}
+
+    /**
+     * 记录阶段完成的时间，已记录过的阶段直接返回，可以在列表绑定等热路径上调用
+     */
+    public static void mark(String milestone) {
+        if (marks.containsKey(milestone)) {
+            return;
+        }
+        long elapsed = SystemClock.uptimeMillis() - originMs;
+        if (marks.putIfAbsent(milestone, elapsed) != null) {
+            return;
+        }
+        Trace.setCounter("startup." + milestone, elapsed);
+        Log.i(TAG, milestone + ": " + elapsed + "ms");
+        synchronized (marks) {
+            marks.notifyAll();
+        }
+    }
+
+    /**
+     * 阶段相对起点的耗时，尚未记录时返回 -1
+     */
+    public static long get(String milestone) {
+        Long elapsed = marks.get(milestone);
+        return elapsed != null ? elapsed : -1;
+    }
+
+    /**
+     * 等待阶段完成，超时返回 -1；不能在主线程调用
+     */
+    public static long await(String milestone, long timeoutMs) throws InterruptedException {
+        long deadline = SystemClock.uptimeMillis() + timeoutMs;
+        synchronized (marks) {
+            while (!marks.containsKey(milestone)) {
+                long remaining = deadline - SystemClock.uptimeMillis();
+                if (remaining <= 0) {
+                    return -1;
+                }
+                marks.wait(remaining);
+            }
+        }
+        return get(milestone);
+    }
+
+    /**
+     * 清空记录并以当前时间为起点，测试在同一进程内重复启动界面时使用
+     */
+    public static void reset() {
+        synchronized (marks) {
+            marks.clear();
+            originMs = SystemClock.uptimeMillis();
+        }
+    }
+}
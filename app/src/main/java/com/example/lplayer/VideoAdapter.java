@@ -6,19 +6,45 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.metadata.VideoInfo;
+import com.example.lplayer.thumbnail.ThumbnailLoader;
+
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHolder> {
     
     private static final String TAG = "VideoAdapter";
-    private List<VideoItem> videoList = new ArrayList<>();
+    // 只刷新播放高亮的局部更新，不重新绑定标题和缩略图
+    private static final Object PAYLOAD_PLAYING_STATE = new Object();
+    
+    private static final DiffUtil.ItemCallback<VideoItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<VideoItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull VideoItem oldItem, @NonNull VideoItem newItem) {
+            return Objects.equals(oldItem.getUri(), newItem.getUri());
+        }
+        
+        @Override
+        public boolean areContentsTheSame(@NonNull VideoItem oldItem, @NonNull VideoItem newItem) {
+            return Objects.equals(oldItem.getDisplayName(), newItem.getDisplayName())
+                    && Objects.equals(oldItem.getInfo(), newItem.getInfo());
+        }
+    };
+    
+    // 差异在后台线程计算，只把增删改移动分发给 RecyclerView
+    private final AsyncListDiffer<VideoItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    // 与 differ 当前列表相同的内容，附带 URI 索引
+    private IndexedMediaList<VideoItem> indexedList = new IndexedMediaList<>(VideoItem::getUri);
     private OnVideoClickListener listener;
     private int currentPlayingPosition = -1;
     
@@ -26,37 +52,43 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
         void onVideoClick(VideoItem videoItem);
     }
     
+    public VideoAdapter() {
+        setHasStableIds(true);
+    }
+    
     public void setVideoList(List<VideoItem> videoList) {
-        if (videoList == null) {
-            this.videoList = new ArrayList<>();
-        } else {
-            this.videoList = new ArrayList<>(videoList); // 创建副本以避免外部修改
-        }
-        // 不重置当前播放位置，避免UI跳跃
-        // currentPlayingPosition = -1; // 重置当前播放位置
-        notifyDataSetChanged();
-        Log.d(TAG, "设置了" + this.videoList.size() + "个视频到适配器");
+        // 创建副本以避免外部修改；不重置当前播放位置，避免UI跳跃
+        IndexedMediaList<VideoItem> newList = new IndexedMediaList<>(
+                videoList == null ? new ArrayList<VideoItem>() : videoList, VideoItem::getUri);
+        // 空列表提交为 null：AsyncListDiffer 从 null 切换到非空列表时同步插入，不必等后台比较，
+        // 冷启动时快照中的列表在同一帧就能显示
+        differ.submitList(newList.isEmpty() ? null : newList, () -> {
+            indexedList = newList;
+            Log.d(TAG, "设置了" + newList.size() + "个视频到适配器");
+        });
     }
     
     public List<VideoItem> getVideoList() {
-        return new ArrayList<>(videoList); // 返回副本以避免外部修改
+        return new ArrayList<>(differ.getCurrentList()); // 返回副本以避免外部修改
     }
     
+    /**
+     * 只刷新旧位置和新位置两行；位置可以先于列表设置，列表到达后按位置高亮
+     */
     public void setCurrentPlayingPosition(int position) {
-        if (position >= -1 && position < videoList.size()) {
-            int oldPosition = currentPlayingPosition;
-            currentPlayingPosition = position;
-            
-            // 刷新旧位置和新位置的项
-            if (oldPosition != -1) {
-                notifyItemChanged(oldPosition);
-            }
-            if (currentPlayingPosition != -1) {
-                notifyItemChanged(currentPlayingPosition);
-            }
-            
-            Log.d(TAG, "设置当前播放位置: " + position);
+        if (position < -1 || position == currentPlayingPosition) {
+            return;
+        }
+        int oldPosition = currentPlayingPosition;
+        currentPlayingPosition = position;
+        int size = getItemCount();
+        if (oldPosition != -1 && oldPosition < size) {
+            notifyItemChanged(oldPosition, PAYLOAD_PLAYING_STATE);
         }
+        if (position != -1 && position < size) {
+            notifyItemChanged(position, PAYLOAD_PLAYING_STATE);
+        }
+        Log.d(TAG, "设置当前播放位置: " + position);
     }
     
     public int getCurrentPlayingPosition() {
@@ -64,16 +96,7 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
     }
     
     public int getPositionForItem(VideoItem item) {
-        if (item != null) {
-            for (int i = 0; i < videoList.size(); i++) {
-                VideoItem current = videoList.get(i);
-                if (current != null && current.getUri() != null && 
-                    current.getUri().equals(item.getUri())) {
-                    return i;
-                }
-            }
-        }
-        return -1;
+        return indexedList.indexOfItem(item);
     }
     
     public void setOnVideoClickListener(OnVideoClickListener listener) {
@@ -88,22 +111,33 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
         return new VideoViewHolder(view);
     }
     
+    @Override
+    public void onBindViewHolder(@NonNull VideoViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (!payloads.isEmpty() && payloads.stream().allMatch(payload -> payload == PAYLOAD_PLAYING_STATE)) {
+            bindPlayingState(holder, position);
+            return;
+        }
+        onBindViewHolder(holder, position);
+    }
+    
     @Override
     public void onBindViewHolder(@NonNull VideoViewHolder holder, int position) {
+        StartupTrace.mark(StartupTrace.FIRST_VIDEO_ROW);
         try {
-            VideoItem videoItem = videoList.get(position);
+            VideoItem videoItem = differ.getCurrentList().get(position);
             if (videoItem != null) {
                 String displayName = videoItem.getDisplayName();
                 holder.videoTitle.setText(displayName != null ? displayName : "未知视频");
                 
-                // 设置当前播放项的高亮效果
-                if (position == currentPlayingPosition) {
-                    holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.playing_item_background));
-                    holder.videoTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
-                } else {
-                    holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.music_item_background));
-                    holder.videoTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
-                }
+                // 时长、分辨率等信息来自扫描时的容器探测，探测不到时隐藏
+                VideoInfo info = videoItem.getInfo();
+                String summary = info != null ? info.getSummary() : "";
+                holder.videoInfo.setText(summary);
+                holder.videoInfo.setVisibility(summary.isEmpty() ? View.GONE : View.VISIBLE);
+                
+                bindThumbnail(holder, videoItem);
+                
+                bindPlayingState(holder, position);
                 
                 holder.itemView.setOnClickListener(v -> {
                     try {
@@ -120,27 +154,102 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
         }
     }
     
+    @Override
+    public void onViewRecycled(@NonNull VideoViewHolder holder) {
+        super.onViewRecycled(holder);
+        // 行被回收时取消还在排队的解码，避免滚过的行占用解码线程
+        holder.clearThumbnail();
+    }
+    
     @Override
     public int getItemCount() {
-        return videoList.size();
+        return differ.getCurrentList().size();
+    }
+    
+    @Override
+    public long getItemId(int position) {
+        VideoItem item = differ.getCurrentList().get(position);
+        return item != null ? StableIds.forUri(item.getUri()) : RecyclerView.NO_ID;
+    }
+    
+    /**
+     * 设置当前播放项的高亮效果
+     */
+    private void bindPlayingState(VideoViewHolder holder, int position) {
+        if (position == currentPlayingPosition) {
+            holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.playing_item_background));
+            holder.videoTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorAccent));
+        } else {
+            holder.itemView.setBackground(ContextCompat.getDrawable(holder.itemView.getContext(), R.drawable.music_item_background));
+            holder.videoTitle.setTextColor(ContextCompat.getColor(holder.itemView.getContext(), R.color.colorTextPrimary));
+        }
+    }
+    
+    /**
+     * 异步加载缩略图，加载完成前显示默认的视频图标
+     */
+    private void bindThumbnail(VideoViewHolder holder, VideoItem videoItem) {
+        Uri uri = videoItem.getUri();
+        // 同一视频重新绑定（例如切换高亮）时保留已显示或仍在加载的缩略图
+        if (uri != null && uri.equals(holder.thumbnailUri)
+                && (holder.videoThumbnail.getVisibility() == View.VISIBLE
+                || (holder.thumbnailRequest != null && !holder.thumbnailRequest.isCancelled()))) {
+            return;
+        }
+        holder.clearThumbnail();
+        holder.thumbnailUri = uri;
+        
+        VideoInfo info = videoItem.getInfo();
+        long durationMs = info != null ? info.getDurationMs() : 0;
+        ImageView thumbnail = holder.videoThumbnail;
+        ViewGroup.LayoutParams params = holder.videoIcon.getLayoutParams();
+        holder.thumbnailRequest = ThumbnailLoader.getInstance(holder.itemView.getContext())
+                .load(uri, durationMs, params.width, params.height, bitmap -> {
+                    thumbnail.setImageBitmap(bitmap);
+                    thumbnail.setVisibility(View.VISIBLE);
+                });
     }
     
     static class VideoViewHolder extends RecyclerView.ViewHolder {
+        ImageView videoIcon;
+        ImageView videoThumbnail;
         TextView videoTitle;
+        TextView videoInfo;
+        Uri thumbnailUri;
+        ThumbnailLoader.Request thumbnailRequest;
         
         public VideoViewHolder(@NonNull View itemView) {
             super(itemView);
+            videoIcon = itemView.findViewById(R.id.video_icon);
+            videoThumbnail = itemView.findViewById(R.id.video_thumbnail);
             videoTitle = itemView.findViewById(R.id.video_title);
+            videoInfo = itemView.findViewById(R.id.video_info);
+        }
+        
+        void clearThumbnail() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+                thumbnailRequest = null;
+            }
+            thumbnailUri = null;
+            videoThumbnail.setImageBitmap(null);
+            videoThumbnail.setVisibility(View.INVISIBLE);
         }
     }
     
     public static class VideoItem {
         private final Uri uri;
         private final String displayName;
+        private final VideoInfo info;
         
         public VideoItem(Uri uri, String displayName) {
+            this(uri, displayName, null);
+        }
+        
+        public VideoItem(Uri uri, String displayName, VideoInfo info) {
             this.uri = uri;
             this.displayName = displayName;
+            this.info = info;
         }
         
         public Uri getUri() {
@@ -151,6 +260,13 @@ public class VideoAdapter extends RecyclerView.Adapter<VideoAdapter.VideoViewHol
             return displayName;
         }
         
+        /**
+         * 容器探测得到的视频信息，没有时为 null
+         */
+        public VideoInfo getInfo() {
+            return info;
+        }
+        
         @Override
         public boolean equals(Object obj) {
             if (this == obj) return true;
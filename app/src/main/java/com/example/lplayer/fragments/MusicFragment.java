@@ -5,7 +5,6 @@ import android.content.ContentUris;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.database.Cursor;
-import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.provider.MediaStore;
@@ -21,16 +20,18 @@ import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.preference.PreferenceManager;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.IndexedMediaList;
+import com.example.lplayer.MediaRepository;
 import com.example.lplayer.MusicAdapter;
 import com.example.lplayer.MusicPlayerActivity;
+import com.example.lplayer.PlaybackManager;
 import com.example.lplayer.R;
-import com.example.lplayer.MainActivity;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
@@ -41,8 +42,12 @@ public class MusicFragment extends Fragment {
     
     private RecyclerView recyclerView;
     private TextView emptyView;
+    private TextView scanProgressView;
     public MusicAdapter musicAdapter;
-    private List<MusicAdapter.MusicItem> musicList = new ArrayList<>();
+    private final IndexedMediaList<MusicAdapter.MusicItem> musicList =
+            new IndexedMediaList<>(MusicAdapter.MusicItem::getUri);
+    // 最近一次提交给适配器的音乐库列表，快照中的列表引用不变时不需要重新提交
+    private List<MusicAdapter.MusicItem> shownMusic;
     private MusicFragmentListener listener;
     
     public interface MusicFragmentListener {
@@ -75,6 +80,7 @@ public class MusicFragment extends Fragment {
         // 初始化视图
         recyclerView = view.findViewById(R.id.music_recycler_view);
         emptyView = view.findViewById(R.id.empty_view);
+        scanProgressView = view.findViewById(R.id.scan_progress_view);
         
         // 设置RecyclerView
         recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
@@ -91,31 +97,22 @@ public class MusicFragment extends Fragment {
             }
         });
         
-        // 检查并加载音乐
-        checkAndLoadMusic();
+        // 观察仓库中的音乐库，页面重建后直接显示已有列表，不重新扫描
+        observeRepository();
     }
     
-    private void checkAndLoadMusic() {
-        try {
-            // 检查是否有默认文件夹设置
-            String defaultMusicFolderUri = PreferenceManager.getDefaultSharedPreferences(requireContext())
-                    .getString("default_music_folder_uri", null);
-            
-            if (defaultMusicFolderUri != null) {
-                // 如果有默认文件夹，通知 MainActivity 加载
-                Log.d(TAG, "检测到默认音乐文件夹设置，通知 MainActivity 加载");
-                showEmptyView("正在加载音乐文件夹...");
-                if (getActivity() instanceof MainActivity) {
-                    ((MainActivity) getActivity()).loadMusicFromFolder(Uri.parse(defaultMusicFolderUri));
-                }
-            } else {
-                // 如果没有默认文件夹，显示提示信息
-                showEmptyView("请在设置中选择音乐文件夹");
+    private void observeRepository() {
+        MediaRepository repository = new ViewModelProvider(requireActivity()).get(MediaRepository.class);
+        shownMusic = null;
+        repository.getLibrary().observe(getViewLifecycleOwner(), snapshot -> {
+            // 只有音乐列表本身变化时才提交给适配器
+            if (snapshot.getMusic() != shownMusic) {
+                shownMusic = snapshot.getMusic();
+                updateMusicList(shownMusic);
             }
-        } catch (Exception e) {
-            Log.e(TAG, "检查音乐文件夹时出错: " + e.getMessage(), e);
-            Toast.makeText(getContext(), "无法访问音乐文件夹", Toast.LENGTH_SHORT).show();
-        }
+        });
+        repository.getMusicScanProgress().observe(getViewLifecycleOwner(),
+                progress -> setScanProgress(progress.done, progress.total));
     }
     
     private String formatDuration(long durationMs) {
@@ -131,7 +128,13 @@ public class MusicFragment extends Fragment {
         if (musicList.isEmpty()) {
             recyclerView.setVisibility(View.GONE);
             emptyView.setVisibility(View.VISIBLE);
-            emptyView.setText(R.string.no_music_found);
+            String defaultMusicFolderUri = PreferenceManager.getDefaultSharedPreferences(requireContext())
+                    .getString("default_music_folder_uri", null);
+            if (defaultMusicFolderUri != null) {
+                emptyView.setText(R.string.no_music_found);
+            } else {
+                emptyView.setText("请在设置中选择音乐文件夹");
+            }
         } else {
             recyclerView.setVisibility(View.VISIBLE);
             emptyView.setVisibility(View.GONE);
@@ -139,7 +142,7 @@ public class MusicFragment extends Fragment {
         }
     }
     
-    public List<MusicAdapter.MusicItem> getMusicList() {
+    public IndexedMediaList<MusicAdapter.MusicItem> getMusicList() {
         return musicList;
     }
     
@@ -150,30 +153,12 @@ public class MusicFragment extends Fragment {
             intent.putExtra("music_title", musicItem.getDisplayName());
             intent.putExtra("music_artist", musicItem.getArtist());
             
-            // 构建播放列表数据
-            ArrayList<String> uriStrings = new ArrayList<>();
-            ArrayList<String> titles = new ArrayList<>();
-            ArrayList<String> artists = new ArrayList<>();
-            ArrayList<String> albums = new ArrayList<>();
-            ArrayList<String> durations = new ArrayList<>();
-            
-            for (MusicAdapter.MusicItem item : musicList) {
-                uriStrings.add(item.getUri().toString());
-                titles.add(item.getDisplayName());
-                artists.add(item.getArtist());
-                albums.add(item.getAlbum());
-                durations.add(item.getDuration());
-            }
-            
-            intent.putStringArrayListExtra("playlist", uriStrings);
-            intent.putStringArrayListExtra("playlist_titles", titles);
-            intent.putStringArrayListExtra("playlist_artists", artists);
-            intent.putStringArrayListExtra("playlist_albums", albums);
-            intent.putStringArrayListExtra("playlist_durations", durations);
-            
-            // 设置当前播放位置
-            int currentPosition = musicAdapter.getPositionForItem(musicItem);
-            intent.putExtra("current_position", currentPosition);
+            // 播放列表通过 PlaybackManager 共享，Intent 中只带队列 ID 和当前播放位置
+            // 发布仓库快照中的不可变列表，而不是会被原地修改的 musicList
+            long queueId = PlaybackManager.getInstance().publishMusicQueue(shownMusic);
+            intent.putExtra(PlaybackManager.EXTRA_QUEUE_ID, queueId);
+            int currentPosition = musicList.indexOfUri(musicItem.getUri());
+            intent.putExtra(PlaybackManager.EXTRA_QUEUE_INDEX, currentPosition);
             
             startActivity(intent);
         } catch (Exception e) {
@@ -182,24 +167,6 @@ public class MusicFragment extends Fragment {
         }
     }
     
-    @Override
-    public void onResume() {
-        super.onResume();
-        // 检查是否有默认文件夹设置
-        String defaultMusicFolderUri = PreferenceManager.getDefaultSharedPreferences(requireContext())
-                .getString("default_music_folder_uri", null);
-        
-        if (defaultMusicFolderUri != null) {
-            // 如果有默认文件夹，重新加载
-            if (getActivity() instanceof MainActivity) {
-                ((MainActivity) getActivity()).loadMusicFromFolder(Uri.parse(defaultMusicFolderUri));
-            }
-        } else {
-            // 如果没有默认文件夹，显示提示信息
-            showEmptyView("请在设置中选择音乐文件夹");
-        }
-    }
-
     public void updateMusicList(List<MusicAdapter.MusicItem> newMusicList) {
         if (getContext() == null) return;
         
@@ -210,6 +177,20 @@ public class MusicFragment extends Fragment {
         updateUI();
     }
 
+    /**
+     * 显示扫描进度，total 为 0 或已全部完成时隐藏
+     */
+    public void setScanProgress(int done, int total) {
+        if (getContext() == null || scanProgressView == null) return;
+        
+        if (total <= 0 || done >= total) {
+            scanProgressView.setVisibility(View.GONE);
+        } else {
+            scanProgressView.setVisibility(View.VISIBLE);
+            scanProgressView.setText(getString(R.string.scan_progress, done, total));
+        }
+    }
+
     public void showEmptyView(String message) {
         if (getContext() == null) return;
         
@@ -9,9 +9,11 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.MediaRepository;
 import com.example.lplayer.R;
 import com.example.lplayer.VideoAdapter;
 
@@ -23,6 +25,9 @@ public class PlaylistFragment extends Fragment {
     private RecyclerView recyclerView;
     private VideoAdapter videoAdapter;
     private TextView emptyView;
+    private TextView scanProgressView;
+    // 最近一次提交给适配器的视频库列表，快照中的列表引用不变时不需要重新提交
+    private List<VideoAdapter.VideoItem> shownVideos;
 
     public PlaylistFragment() {
         // Required empty public constructor
@@ -46,9 +51,28 @@ public class PlaylistFragment extends Fragment {
         // 初始化视图
         recyclerView = view.findViewById(R.id.playlist_recycler_view);
         emptyView = view.findViewById(R.id.empty_view);
+        scanProgressView = view.findViewById(R.id.scan_progress_view);
 
         // 设置适配器
         setupRecyclerView();
+
+        // 观察仓库中的视频库，页面重建后直接显示已有列表，不重新扫描
+        observeRepository();
+    }
+
+    private void observeRepository() {
+        MediaRepository repository = new ViewModelProvider(requireActivity()).get(MediaRepository.class);
+        shownVideos = null;
+        repository.getLibrary().observe(getViewLifecycleOwner(), snapshot -> {
+            // 只有视频列表本身变化时才提交给适配器，音乐库或播放位置变化不触发列表比较
+            if (snapshot.getVideos() != shownVideos) {
+                shownVideos = snapshot.getVideos();
+                setVideos(shownVideos);
+            }
+            setCurrentPlayingPosition(snapshot.getVideoPlayingPosition());
+        });
+        repository.getVideoScanProgress().observe(getViewLifecycleOwner(),
+                progress -> setScanProgress(progress.done, progress.total));
     }
 
     private void setupRecyclerView() {
@@ -78,6 +102,20 @@ public class PlaylistFragment extends Fragment {
         }
     }
 
+    /**
+     * 显示扫描进度，total 为 0 或已全部完成时隐藏
+     */
+    public void setScanProgress(int done, int total) {
+        if (scanProgressView == null) return;
+        
+        if (total <= 0 || done >= total) {
+            scanProgressView.setVisibility(View.GONE);
+        } else {
+            scanProgressView.setVisibility(View.VISIBLE);
+            scanProgressView.setText(getString(R.string.scan_progress, done, total));
+        }
+    }
+
     public void setCurrentPlayingPosition(int position) {
         if (videoAdapter != null) {
             videoAdapter.setCurrentPlayingPosition(position);
@@ -13,6 +13,7 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.widget.Toolbar;
 import androidx.preference.ListPreference;
 import androidx.preference.Preference;
@@ -21,6 +22,8 @@ import androidx.preference.PreferenceManager;
 
 import com.example.lplayer.MainActivity;
 import com.example.lplayer.R;
+import com.example.lplayer.scan.LibraryRoots;
+import com.example.lplayer.scan.ScanOptions;
 
 import java.util.List;
 
@@ -31,6 +34,9 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
     private Toolbar toolbar;
     private ActivityResultLauncher<Intent> videoFolderPickerLauncher;
     private ActivityResultLauncher<Intent> musicFolderPickerLauncher;
+    private ActivityResultLauncher<Intent> extraFolderPickerLauncher;
+    // 正在添加额外文件夹的设置键，视频或音乐
+    private String pendingExtraFolderKey;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -129,6 +135,29 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
                     }
                 }
             });
+
+        extraFolderPickerLauncher = registerForActivityResult(
+            new ActivityResultContracts.StartActivityForResult(),
+            result -> {
+                String key = pendingExtraFolderKey;
+                pendingExtraFolderKey = null;
+                if (key == null || result.getResultCode() != MainActivity.RESULT_OK || result.getData() == null) {
+                    return;
+                }
+                Uri folderUri = result.getData().getData();
+                if (folderUri != null) {
+                    try {
+                        int takeFlags = Intent.FLAG_GRANT_READ_URI_PERMISSION;
+                        requireContext().getContentResolver().takePersistableUriPermission(folderUri, takeFlags);
+                        // 保存后由 onSharedPreferenceChanged 触发重新扫描
+                        LibraryRoots.addExtraRoot(requireContext(), key, folderUri);
+                        updateExtraFoldersSummary(key);
+                    } catch (SecurityException e) {
+                        Log.e(TAG, "获取文件夹权限失败", e);
+                        Toast.makeText(requireContext(), "无法获取文件夹访问权限: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+                    }
+                }
+            });
     }
 
     @Override
@@ -176,6 +205,10 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
             });
         }
 
+        // 额外的视频和音乐文件夹，与默认文件夹一起递归扫描
+        setupExtraFoldersPreference("extra_video_folders", LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS);
+        setupExtraFoldersPreference("extra_music_folders", LibraryRoots.KEY_EXTRA_MUSIC_FOLDERS);
+
         // 设置关于应用点击事件
         Preference aboutApp = findPreference("about_app");
         if (aboutApp != null) {
@@ -263,6 +296,24 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
                     ((MainActivity) getActivity()).reloadMusicList();
                 }
                 break;
+            case LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS:
+                if (getActivity() instanceof MainActivity) {
+                    ((MainActivity) getActivity()).reloadVideoList();
+                }
+                break;
+            case LibraryRoots.KEY_EXTRA_MUSIC_FOLDERS:
+                if (getActivity() instanceof MainActivity) {
+                    ((MainActivity) getActivity()).reloadMusicList();
+                }
+                break;
+            case ScanOptions.KEY_MAX_DEPTH:
+            case ScanOptions.KEY_EXCLUDE_PATTERNS:
+                // 扫描范围变化后重新扫描，多出或少掉的文件会作为增量更新到列表
+                if (getActivity() instanceof MainActivity) {
+                    ((MainActivity) getActivity()).reloadVideoList();
+                    ((MainActivity) getActivity()).reloadMusicList();
+                }
+                break;
             case "save_video_playlist":
             case "save_music_playlist":
                 // 如果禁用了保存播放列表功能，清除已保存的播放列表数据
@@ -324,6 +375,54 @@ public class SettingsFragment extends PreferenceFragmentCompat implements Shared
         // ... existing code ...
     }
 
+    private void setupExtraFoldersPreference(String preferenceKey, String storageKey) {
+        Preference extraFoldersPref = findPreference(preferenceKey);
+        if (extraFoldersPref == null) {
+            return;
+        }
+        updateExtraFoldersSummary(storageKey);
+        extraFoldersPref.setOnPreferenceClickListener(preference -> {
+            showExtraFoldersDialog(preference.getTitle(), storageKey);
+            return true;
+        });
+    }
+
+    private void showExtraFoldersDialog(CharSequence title, String storageKey) {
+        List<Uri> roots = LibraryRoots.getExtraRoots(requireContext(), storageKey);
+        String[] names = new String[roots.size()];
+        for (int i = 0; i < roots.size(); i++) {
+            names[i] = getFolderNameFromUri(roots.get(i));
+        }
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext())
+                .setTitle(title)
+                .setPositiveButton("添加", (dialog, which) -> {
+                    pendingExtraFolderKey = storageKey;
+                    extraFolderPickerLauncher.launch(new Intent(Intent.ACTION_OPEN_DOCUMENT_TREE));
+                })
+                .setNegativeButton("取消", null);
+        if (roots.isEmpty()) {
+            builder.setMessage("尚未添加额外文件夹");
+        } else {
+            builder.setItems(names, null)
+                    .setNeutralButton("清除", (dialog, which) -> {
+                        LibraryRoots.clearExtraRoots(requireContext(), storageKey);
+                        updateExtraFoldersSummary(storageKey);
+                    });
+        }
+        builder.show();
+    }
+
+    private void updateExtraFoldersSummary(String storageKey) {
+        String preferenceKey = LibraryRoots.KEY_EXTRA_VIDEO_FOLDERS.equals(storageKey)
+                ? "extra_video_folders" : "extra_music_folders";
+        Preference extraFoldersPref = findPreference(preferenceKey);
+        if (extraFoldersPref == null) {
+            return;
+        }
+        int count = LibraryRoots.getExtraRoots(requireContext(), storageKey).size();
+        extraFoldersPref.setSummary(count > 0 ? "已添加 " + count + " 个文件夹" : "与默认文件夹一起扫描的其他文件夹");
+    }
+
     private String getFolderNameFromUri(Uri uri) {
         try {
             String lastPath = uri.getLastPathSegment();
@@ -9,17 +9,24 @@ import android.widget.TextView;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.lplayer.MediaRepository;
 import com.example.lplayer.R;
 import com.example.lplayer.VideoAdapter;
 
+import java.util.List;
+
 public class VideoFragment extends Fragment {
 
     private RecyclerView recyclerView;
     private VideoAdapter videoAdapter;
     private TextView emptyView;
+    private TextView scanProgressView;
+    // 最近一次提交给适配器的视频库列表，快照中的列表引用不变时不需要重新提交
+    private List<VideoAdapter.VideoItem> shownVideos;
 
     public VideoFragment() {
         // Required empty public constructor
@@ -43,9 +50,28 @@ public class VideoFragment extends Fragment {
         // 初始化视图
         recyclerView = view.findViewById(R.id.video_recycler_view);
         emptyView = view.findViewById(R.id.empty_view);
+        scanProgressView = view.findViewById(R.id.scan_progress_view);
 
         // 设置适配器
         setupRecyclerView();
+
+        // 观察仓库中的视频库，页面重建后直接显示已有列表，不重新扫描
+        observeRepository();
+    }
+
+    private void observeRepository() {
+        MediaRepository repository = new ViewModelProvider(requireActivity()).get(MediaRepository.class);
+        shownVideos = null;
+        repository.getLibrary().observe(getViewLifecycleOwner(), snapshot -> {
+            // 只有视频列表本身变化时才提交给适配器，音乐库或播放位置变化不触发列表比较
+            if (snapshot.getVideos() != shownVideos) {
+                shownVideos = snapshot.getVideos();
+                setVideos(shownVideos);
+            }
+            setCurrentPlayingPosition(snapshot.getVideoPlayingPosition());
+        });
+        repository.getVideoScanProgress().observe(getViewLifecycleOwner(),
+                progress -> setScanProgress(progress.done, progress.total));
     }
 
     private void setupRecyclerView() {
@@ -60,7 +86,7 @@ public class VideoFragment extends Fragment {
         });
     }
 
-    public void setVideos(java.util.List<VideoAdapter.VideoItem> videos) {
+    public void setVideos(List<VideoAdapter.VideoItem> videos) {
         if (videoAdapter != null) {
             videoAdapter.setVideoList(videos);
             
@@ -75,6 +101,20 @@ public class VideoFragment extends Fragment {
         }
     }
 
+    /**
+     * 显示扫描进度，total 为 0 或已全部完成时隐藏
+     */
+    public void setScanProgress(int done, int total) {
+        if (scanProgressView == null) return;
+        
+        if (total <= 0 || done >= total) {
+            scanProgressView.setVisibility(View.GONE);
+        } else {
+            scanProgressView.setVisibility(View.VISIBLE);
+            scanProgressView.setText(getString(R.string.scan_progress, done, total));
+        }
+    }
+
     public void setCurrentPlayingPosition(int position) {
         if (videoAdapter != null) {
             videoAdapter.setCurrentPlayingPosition(position);
@@ -0,0 +1,251 @@
+package com.example.lplayer.metadata;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import com.example.lplayer.scan.ScannedDocument;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 把 SAF 文件夹映射到 MediaStore 的 RELATIVE_PATH，直接读取系统已经建好的媒体索引
+ *
+ * 外部存储上的文件大多已被 MediaStore 扫描过，标题、艺术家、专辑、时长、大小和日期都在索引里。
+ * 这里对整个文件夹只发起一次查询，同时取回音频和视频；索引中没有（或大小对不上）的文件
+ * 才需要调用方回退到 MediaMetadataRetriever。
+ */
+public class MediaStoreResolver {
+    private static final String TAG = "MediaStoreResolver";
+
+    private static final String EXTERNAL_STORAGE_AUTHORITY = "com.android.externalstorage.documents";
+    private static final String PRIMARY_VOLUME_ID = "primary";
+
+    // Q 上 Files 表本身就包含 artist/album/duration 列，音频、视频视图都建立在它之上
+    private static final String COLUMN_ARTIST = MediaStore.Audio.AudioColumns.ARTIST;
+    private static final String COLUMN_ALBUM = MediaStore.Audio.AudioColumns.ALBUM;
+    private static final String COLUMN_DURATION = MediaStore.Video.VideoColumns.DURATION;
+
+    private static final String[] PROJECTION = {
+            MediaStore.Files.FileColumns._ID,
+            MediaStore.Files.FileColumns.MEDIA_TYPE,
+            MediaStore.MediaColumns.RELATIVE_PATH,
+            MediaStore.MediaColumns.DISPLAY_NAME,
+            MediaStore.MediaColumns.MIME_TYPE,
+            MediaStore.MediaColumns.TITLE,
+            COLUMN_ARTIST,
+            COLUMN_ALBUM,
+            COLUMN_DURATION,
+            MediaStore.MediaColumns.SIZE,
+            MediaStore.MediaColumns.DATE_MODIFIED
+    };
+
+    private static final String SELECTION = MediaStore.MediaColumns.RELATIVE_PATH + " LIKE ? ESCAPE '\\' AND "
+            + MediaStore.Files.FileColumns.MEDIA_TYPE + " IN ("
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_AUDIO + ","
+            + MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO + ")";
+
+    private final ContentResolver contentResolver;
+
+    public MediaStoreResolver(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * SAF 文件夹在 MediaStore 中的位置；不在外部存储提供者上（如云盘）时返回 null
+     */
+    public static Location locate(Uri treeUri) {
+        if (!EXTERNAL_STORAGE_AUTHORITY.equals(treeUri.getAuthority())) {
+            return null;
+        }
+        return locate(DocumentsContract.getTreeDocumentId(treeUri));
+    }
+
+    /**
+     * 外部存储提供者的文档 ID 形如 "primary:Music/Album"，冒号前是卷，冒号后是相对路径
+     */
+    static Location locate(String documentId) {
+        int colon = documentId.indexOf(':');
+        if (colon <= 0) {
+            return null;
+        }
+        String volumeId = documentId.substring(0, colon);
+        String path = documentId.substring(colon + 1);
+        if (path.isEmpty()) {
+            // 存储根目录不在 MediaStore 的相对路径体系内，交给慢速路径处理
+            return null;
+        }
+        String volumeName = PRIMARY_VOLUME_ID.equals(volumeId)
+                ? MediaStore.VOLUME_EXTERNAL_PRIMARY
+                : volumeId.toLowerCase(Locale.ROOT);
+        String relativePath = path.endsWith("/") ? path : path + "/";
+        return new Location(volumeName, relativePath);
+    }
+
+    /**
+     * 一次查询取回文件夹（含子文件夹）下 MediaStore 已知的全部音频和视频
+     *
+     * 返回以 "相对路径 + 文件名" 为键的索引；文件夹无法映射、没有权限或查询失败时返回空表。
+     */
+    public Map<String, Entry> queryTree(Uri treeUri) {
+        Location location = locate(treeUri);
+        if (location == null) {
+            return Collections.emptyMap();
+        }
+
+        Uri filesUri = MediaStore.Files.getContentUri(location.volumeName);
+        String[] selectionArgs = {escapeLike(location.relativePath) + "%"};
+        Map<String, Entry> entries = new HashMap<>();
+        try (Cursor cursor = contentResolver.query(filesUri, PROJECTION, SELECTION, selectionArgs, null)) {
+            if (cursor == null) {
+                return Collections.emptyMap();
+            }
+            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns._ID);
+            int typeColumn = cursor.getColumnIndexOrThrow(MediaStore.Files.FileColumns.MEDIA_TYPE);
+            int pathColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.RELATIVE_PATH);
+            int nameColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DISPLAY_NAME);
+            int mimeColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.MIME_TYPE);
+            int titleColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.TITLE);
+            int artistColumn = cursor.getColumnIndex(COLUMN_ARTIST);
+            int albumColumn = cursor.getColumnIndex(COLUMN_ALBUM);
+            int durationColumn = cursor.getColumnIndex(COLUMN_DURATION);
+            int sizeColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.SIZE);
+            int modifiedColumn = cursor.getColumnIndexOrThrow(MediaStore.MediaColumns.DATE_MODIFIED);
+
+            while (cursor.moveToNext()) {
+                String relativePath = cursor.getString(pathColumn);
+                String name = cursor.getString(nameColumn);
+                if (relativePath == null || name == null) {
+                    continue;
+                }
+                int mediaType = cursor.getInt(typeColumn);
+                long id = cursor.getLong(idColumn);
+                Entry entry = new Entry(
+                        mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_AUDIO
+                                ? ContentUris.withAppendedId(
+                                        MediaStore.Audio.Media.getContentUri(location.volumeName), id)
+                                : ContentUris.withAppendedId(
+                                        MediaStore.Video.Media.getContentUri(location.volumeName), id),
+                        mediaType,
+                        name,
+                        cursor.getString(mimeColumn),
+                        cursor.getString(titleColumn),
+                        knownString(cursor, artistColumn),
+                        knownString(cursor, albumColumn),
+                        durationColumn != -1 ? cursor.getLong(durationColumn) : 0,
+                        cursor.getLong(sizeColumn),
+                        cursor.getLong(modifiedColumn) * 1000);
+                entries.put(relativePath + name, entry);
+            }
+        } catch (SecurityException e) {
+            // 未授予媒体读取权限时 MediaStore 只返回本应用创建的文件，直接走慢速路径
+            Log.w(TAG, "没有读取 MediaStore 的权限: " + e.getMessage());
+            return Collections.emptyMap();
+        } catch (Exception e) {
+            Log.e(TAG, "查询 MediaStore 失败: " + treeUri, e);
+            return Collections.emptyMap();
+        }
+        Log.d(TAG, "MediaStore 中找到 " + entries.size() + " 个已索引文件: " + location.relativePath);
+        return entries;
+    }
+
+    /**
+     * 在 queryTree 的结果中查找扫描到的文档，大小不一致说明索引已过期，视为未找到
+     */
+    public static Entry lookup(Map<String, Entry> entries, ScannedDocument document) {
+        if (entries.isEmpty()) {
+            return null;
+        }
+        String documentId = document.getDocumentId();
+        int colon = documentId.indexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        Entry entry = entries.get(documentId.substring(colon + 1));
+        if (entry == null || (document.getSize() >= 0 && entry.size != document.getSize())) {
+            return null;
+        }
+        return entry;
+    }
+
+    private static String knownString(Cursor cursor, int column) {
+        if (column == -1 || cursor.isNull(column)) {
+            return null;
+        }
+        String value = cursor.getString(column);
+        // MediaStore 用 "<unknown>" 表示标签缺失
+        if (value == null || value.isEmpty() || MediaStore.UNKNOWN_STRING.equals(value)) {
+            return null;
+        }
+        return value;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    /**
+     * MediaStore 卷名与卷内相对路径
+     */
+    public static class Location {
+        public final String volumeName;
+        public final String relativePath;
+
+        Location(String volumeName, String relativePath) {
+            this.volumeName = volumeName;
+            this.relativePath = relativePath;
+        }
+    }
+
+    /**
+     * MediaStore 索引中的一个音频或视频文件
+     */
+    public static class Entry {
+        public final Uri contentUri;
+        public final int mediaType;
+        public final String displayName;
+        public final String mimeType;
+        public final String title;
+        public final String artist;
+        public final String album;
+        public final long durationMs;
+        public final long size;
+        public final long lastModified;
+
+        Entry(Uri contentUri, int mediaType, String displayName, String mimeType, String title, String artist,
+              String album, long durationMs, long size, long lastModified) {
+            this.contentUri = contentUri;
+            this.mediaType = mediaType;
+            this.displayName = displayName;
+            this.mimeType = mimeType;
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.durationMs = durationMs;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public boolean isAudio() {
+            return mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_AUDIO;
+        }
+
+        public boolean isVideo() {
+            return mediaType == MediaStore.Files.FileColumns.MEDIA_TYPE_VIDEO;
+        }
+
+        /**
+         * 转换为音乐元数据；显示名称与慢速路径一致，使用去掉扩展名的文件名
+         */
+        public MusicMetadata toMusicMetadata(String baseName) {
+            return new MusicMetadata(baseName, artist, album, durationMs);
+        }
+    }
+}
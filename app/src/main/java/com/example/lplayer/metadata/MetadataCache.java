@@ -0,0 +1,198 @@
+package com.example.lplayer.metadata;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.lplayer.scan.ScannedDocument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 持久化的音乐元数据缓存
+ *
+ * 以文档 ID 为键，同时记录文件大小和修改时间。大小或修改时间变化的条目视为失效，
+ * 未变化的文件不会再交给 MediaMetadataRetriever 解析。
+ */
+public class MetadataCache {
+    private static final String TAG = "MetadataCache";
+    private static final String FILE_NAME = "metadata_cache.bin";
+    private static final int MAGIC = 0x4C4D4443; // "LMDC"
+    private static final int VERSION = 1;
+
+    private static MetadataCache instance;
+
+    private final File file;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private volatile boolean loaded = false;
+    private volatile boolean dirty = false;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    private MetadataCache(Context context) {
+        file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+    }
+
+    public static synchronized MetadataCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new MetadataCache(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 查询缓存，大小和修改时间都一致才算命中；不一致的旧条目会被移除
+     */
+    public MusicMetadata get(ScannedDocument document) {
+        ensureLoaded();
+        Entry entry = entries.get(document.getDocumentId());
+        if (entry == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        if (entry.size != document.getSize() || entry.lastModified != document.getLastModified()) {
+            if (entries.remove(document.getDocumentId(), entry)) {
+                dirty = true;
+                invalidationCount.incrementAndGet();
+            }
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return entry.metadata;
+    }
+
+    public void put(ScannedDocument document, MusicMetadata metadata) {
+        ensureLoaded();
+        entries.put(document.getDocumentId(),
+                new Entry(document.getSize(), document.getLastModified(), metadata));
+        dirty = true;
+    }
+
+    public void remove(String documentId) {
+        ensureLoaded();
+        if (entries.remove(documentId) != null) {
+            dirty = true;
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getInvalidationCount() {
+        return invalidationCount.get();
+    }
+
+    public int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (this) {
+            if (loaded) {
+                return;
+            }
+            load();
+            loaded = true;
+        }
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                Log.w(TAG, "元数据缓存格式不匹配，忽略旧缓存");
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String documentId = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                String displayName = in.readUTF();
+                String artist = in.readUTF();
+                String album = in.readUTF();
+                long durationMs = in.readLong();
+                entries.put(documentId, new Entry(size, lastModified,
+                        new MusicMetadata(displayName, artist, album, durationMs)));
+            }
+            Log.d(TAG, "已加载元数据缓存，共 " + entries.size() + " 项");
+        } catch (IOException e) {
+            Log.e(TAG, "读取元数据缓存失败", e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * 有改动时写回磁盘，先写临时文件再替换，避免中途崩溃损坏缓存
+     */
+    public synchronized void save() {
+        if (!loaded || !dirty) {
+            return;
+        }
+        dirty = false;
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            Map<String, Entry> snapshot = new HashMap<>(entries);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(snapshot.size());
+            for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+                Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.metadata.getDisplayName());
+                out.writeUTF(entry.metadata.getArtist());
+                out.writeUTF(entry.metadata.getAlbum());
+                out.writeLong(entry.metadata.getDurationMs());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "保存元数据缓存失败", e);
+            dirty = true;
+            return;
+        }
+        if (!tmp.renameTo(file)) {
+            Log.e(TAG, "替换元数据缓存文件失败");
+            dirty = true;
+            return;
+        }
+        Log.d(TAG, "元数据缓存已保存，共 " + entries.size() + " 项，命中 " + hitCount.get()
+                + "，未命中 " + missCount.get() + "，失效 " + invalidationCount.get());
+    }
+
+    private static class Entry {
+        final long size;
+        final long lastModified;
+        final MusicMetadata metadata;
+
+        Entry(long size, long lastModified, MusicMetadata metadata) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.metadata = metadata;
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package com.example.lplayer.metadata;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lplayer.scan.ScannedDocument;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 并行提取音乐元数据的线程池
+ *
+ * - 工作线程数固定，每个工作线程在需要回退时才创建并复用自己的 MediaMetadataRetriever
+ * - 结果按输入顺序返回，与线程调度无关
+ * - 单个文件从开始解析起超过 timeoutMs 即放弃，只保留文件名，不会拖住整个扫描；
+ *   卡在原生解析中的工作线程不再计入线程数，临时补一个线程，排队的文件照常开始
+ * - 传入 MetadataCache 时先查缓存，只有未命中的文件才会真正解析
+ */
+public class MetadataExtractorPool {
+    private static final String TAG = "MetadataExtractorPool";
+
+    public static final long DEFAULT_TIMEOUT_MS = 5000;
+    private static final int MAX_WORKERS = 8;
+    // 任务尚在排队时的轮询间隔，排队时间不计入单文件超时
+    private static final long QUEUED_POLL_MS = 50;
+    // 最多为卡住的工作线程补充的线程数，超过后排队的文件等待 timeoutMs 仍未开始即放弃
+    private static final int MAX_STUCK_WORKERS = MAX_WORKERS;
+
+    private final MusicMetadataExtractor extractor;
+    private final MetadataCache cache;
+    private final ThreadPoolExecutor executor;
+    private final int workerCount;
+    private final long timeoutMs;
+
+    private final ThreadLocal<MediaMetadataRetriever> retrievers = new ThreadLocal<>();
+
+    // 已放弃但仍在原生解析中的工作线程数
+    private int stuckWorkers;
+
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private volatile double lastFilesPerSecond;
+
+    /**
+     * 单个文件的元数据就绪时回调，在调用 extractAll 的线程上执行
+     */
+    public interface ExtractionListener {
+        void onExtracted(int index, MusicMetadata metadata);
+    }
+
+    public MetadataExtractorPool(Context context, MetadataCache cache, int workerCount, long timeoutMs) {
+        this.extractor = new MusicMetadataExtractor(context);
+        this.cache = cache;
+        this.workerCount = Math.max(1, Math.min(workerCount, MAX_WORKERS));
+        this.timeoutMs = timeoutMs;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                this.workerCount, this.workerCount,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    // 线程退出（空闲超时或线程池关闭）时释放该线程自己的 retriever
+                    Thread thread = new Thread(() -> {
+                        try {
+                            runnable.run();
+                        } finally {
+                            discardRetriever();
+                        }
+                    }, "metadata-worker-" + threadIndex.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 根据 CPU 核数给出默认工作线程数，元数据解析以 IO 为主，上限为 4
+     */
+    public static int defaultWorkerCount() {
+        return Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * 并行提取一组文件的元数据，返回列表与输入列表一一对应
+     *
+     * 缓存命中的文件不会提交给工作线程；解析成功的结果写回缓存，超时或失败的不缓存，下次扫描重试。
+     */
+    public List<MusicMetadata> extractAll(List<ScannedDocument> documents) {
+        return extractAll(documents, null);
+    }
+
+    /**
+     * 同 extractAll(List)，每个文件的结果就绪后立即通过 listener 回调，便于逐步显示
+     */
+    public List<MusicMetadata> extractAll(List<ScannedDocument> documents, ExtractionListener listener) {
+        long start = SystemClock.elapsedRealtime();
+        MusicMetadata[] results = new MusicMetadata[documents.size()];
+        List<ExtractionTask> tasks = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            ScannedDocument document = documents.get(i);
+            MusicMetadata cached = cache != null ? cache.get(document) : null;
+            if (cached != null) {
+                results[i] = cached;
+                if (listener != null) {
+                    listener.onExtracted(i, cached);
+                }
+                continue;
+            }
+            ExtractionTask task = new ExtractionTask(i, document);
+            task.future = executor.submit(task::run);
+            tasks.add(task);
+        }
+
+        int maxQueueDepth = executor.getQueue().size();
+        int timeouts = 0;
+        int failures = 0;
+        boolean interrupted = false;
+
+        for (ExtractionTask task : tasks) {
+            MusicMetadata fallback = MusicMetadata.fromFileName(task.document.getBaseName());
+            if (interrupted) {
+                task.future.cancel(true);
+                results[task.index] = fallback;
+                continue;
+            }
+            maxQueueDepth = Math.max(maxQueueDepth, executor.getQueue().size());
+            try {
+                MusicMetadata metadata = awaitResult(task);
+                results[task.index] = metadata;
+                if (cache != null) {
+                    cache.put(task.document, metadata);
+                }
+            } catch (TimeoutException e) {
+                timeouts++;
+                timeoutCount.incrementAndGet();
+                Log.w(TAG, "解析元数据超时，已跳过: " + task.document.getDisplayName());
+                results[task.index] = fallback;
+            } catch (ExecutionException | CancellationException e) {
+                failures++;
+                failureCount.incrementAndGet();
+                Log.e(TAG, "解析元数据失败: " + task.document.getDisplayName(), e);
+                results[task.index] = fallback;
+            } catch (InterruptedException e) {
+                // 扫描线程被中断，剩余任务全部取消
+                interrupted = true;
+                task.future.cancel(true);
+                results[task.index] = fallback;
+            }
+            if (listener != null && !interrupted) {
+                listener.onExtracted(task.index, results[task.index]);
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (cache != null) {
+            cache.save();
+        }
+
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+        lastFilesPerSecond = documents.size() * 1000.0 / elapsed;
+        Log.d(TAG, String.format(Locale.US,
+                "元数据提取完成: %d 个文件, 缓存命中 %d, %d 线程, %.1f 文件/秒, 最大排队 %d, 超时 %d, 失败 %d",
+                documents.size(), documents.size() - tasks.size(), workerCount, lastFilesPerSecond,
+                maxQueueDepth, timeouts, failures));
+        return Arrays.asList(results);
+    }
+
+    private MusicMetadata awaitResult(ExtractionTask task)
+            throws TimeoutException, ExecutionException, InterruptedException {
+        // 排在前面的任务都已有结果，这个任务仍在排队说明所有线程都被占住，最多再等 timeoutMs
+        long queuedSince = SystemClock.elapsedRealtime();
+        while (true) {
+            long startedAt = task.startedAt;
+            long waitMs;
+            if (startedAt == 0) {
+                if (SystemClock.elapsedRealtime() - queuedSince >= timeoutMs) {
+                    task.future.cancel(false);
+                    Log.w(TAG, "工作线程全部卡住，排队的文件未能开始: " + task.document.getDisplayName());
+                    throw new TimeoutException();
+                }
+                waitMs = QUEUED_POLL_MS;
+            } else {
+                waitMs = timeoutMs - (SystemClock.elapsedRealtime() - startedAt);
+                if (waitMs <= 0) {
+                    // 原生解析无法被打断，这里只放弃等待，工作线程返回后会丢弃自己的 retriever
+                    task.abandon();
+                    task.future.cancel(true);
+                    throw new TimeoutException();
+                }
+            }
+            try {
+                return task.future.get(waitMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // 继续等待，直到任务开始执行后超过时限
+            }
+        }
+    }
+
+    /**
+     * 工作线程卡在已放弃的任务中，临时多开一个线程，保持可用线程数不变；已达上限时返回 false
+     */
+    private synchronized boolean onWorkerStuck() {
+        if (stuckWorkers >= MAX_STUCK_WORKERS || executor.isShutdown()) {
+            return false;
+        }
+        stuckWorkers++;
+        // 先调大上限再调大核心数，否则会抛出 IllegalArgumentException
+        executor.setMaximumPoolSize(workerCount + stuckWorkers);
+        executor.setCorePoolSize(workerCount + stuckWorkers);
+        Log.w(TAG, "工作线程卡住，临时补充线程，当前共 " + (workerCount + stuckWorkers) + " 个");
+        return true;
+    }
+
+    /**
+     * 卡住的任务终于返回，收回补充的线程
+     */
+    private synchronized void onWorkerRecovered() {
+        if (stuckWorkers == 0 || executor.isShutdown()) {
+            return;
+        }
+        stuckWorkers--;
+        executor.setCorePoolSize(workerCount + stuckWorkers);
+        executor.setMaximumPoolSize(workerCount + stuckWorkers);
+    }
+
+    private MediaMetadataRetriever obtainRetriever() {
+        MediaMetadataRetriever retriever = retrievers.get();
+        if (retriever == null) {
+            retriever = new MediaMetadataRetriever();
+            retrievers.set(retriever);
+        }
+        return retriever;
+    }
+
+    private void discardRetriever() {
+        MediaMetadataRetriever retriever = retrievers.get();
+        retrievers.remove();
+        if (retriever != null) {
+            releaseQuietly(retriever);
+        }
+    }
+
+    private static void releaseQuietly(MediaMetadataRetriever retriever) {
+        try {
+            retriever.release();
+        } catch (Exception e) {
+            Log.e(TAG, "释放 MediaMetadataRetriever 失败", e);
+        }
+    }
+
+    /**
+     * 当前统计信息，可在任意线程调用
+     */
+    public Stats getStats() {
+        return new Stats(workerCount, executor.getQueue().size(), executor.getActiveCount(),
+                completedCount.get(), timeoutCount.get(), failureCount.get(), lastFilesPerSecond);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+        Log.d(TAG, "元数据线程池已关闭: " + getStats());
+    }
+
+    private class ExtractionTask {
+        final int index;
+        final ScannedDocument document;
+        volatile long startedAt;
+        Future<MusicMetadata> future;
+        // 超时放弃与任务返回只有一方能计入卡住的线程
+        private boolean abandoned;
+        private boolean finished;
+
+        ExtractionTask(int index, ScannedDocument document) {
+            this.index = index;
+            this.document = document;
+        }
+
+        MusicMetadata run() throws IOException {
+            startedAt = SystemClock.elapsedRealtime();
+            try {
+                // 读取失败时抛出异常，extractAll 按失败处理，不写入缓存
+                return extractor.getMusicMetadata(
+                        MetadataExtractorPool.this::obtainRetriever, document.getUri(), document.getBaseName());
+            } finally {
+                if (Thread.interrupted()) {
+                    // 已经超时被放弃，retriever 状态不可信，下一个任务重新创建
+                    discardRetriever();
+                }
+                completedCount.incrementAndGet();
+                boolean recovered;
+                synchronized (this) {
+                    finished = true;
+                    recovered = abandoned;
+                }
+                if (recovered) {
+                    onWorkerRecovered();
+                }
+            }
+        }
+
+        /**
+         * 超时后调用；任务仍在执行时说明工作线程卡住，补充一个线程
+         */
+        synchronized void abandon() {
+            if (!finished) {
+                abandoned = onWorkerStuck();
+            }
+        }
+    }
+
+    /**
+     * 线程池吞吐量与排队情况
+     */
+    public static class Stats {
+        public final int workerCount;
+        public final int queueDepth;
+        public final int activeWorkers;
+        public final long completed;
+        public final long timedOut;
+        public final long failed;
+        // 最近一次 extractAll 的吞吐量
+        public final double filesPerSecond;
+
+        Stats(int workerCount, int queueDepth, int activeWorkers, long completed, long timedOut, long failed,
+              double filesPerSecond) {
+            this.workerCount = workerCount;
+            this.queueDepth = queueDepth;
+            this.activeWorkers = activeWorkers;
+            this.completed = completed;
+            this.timedOut = timedOut;
+            this.failed = failed;
+            this.filesPerSecond = filesPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return "workers=" + workerCount + ", queue=" + queueDepth + ", active=" + activeWorkers
+                    + ", completed=" + completed + ", timedOut=" + timedOut + ", failed=" + failed
+                    + String.format(Locale.US, ", %.1f files/s", filesPerSecond);
+        }
+    }
+}
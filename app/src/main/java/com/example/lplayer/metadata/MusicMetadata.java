@@ -0,0 +1,79 @@
+package com.example.lplayer.metadata;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个音乐文件的元数据
+ */
+public class MusicMetadata {
+    public static final String UNKNOWN_TITLE = "未知音乐";
+    public static final String UNKNOWN_ARTIST = "未知艺术家";
+    public static final String UNKNOWN_ALBUM = "未知专辑";
+
+    private final String displayName;
+    private final String artist;
+    private final String album;
+    private final long durationMs;
+
+    public MusicMetadata(String displayName, String artist, String album, long durationMs) {
+        this.displayName = displayName != null ? displayName : UNKNOWN_TITLE;
+        this.artist = artist != null ? artist : UNKNOWN_ARTIST;
+        this.album = album != null ? album : UNKNOWN_ALBUM;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * 只有文件名、没有标签信息时使用的元数据
+     */
+    public static MusicMetadata fromFileName(String baseName) {
+        return new MusicMetadata(baseName, null, null, 0);
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getArtist() {
+        return artist;
+    }
+
+    public String getAlbum() {
+        return album;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public String getDuration() {
+        return formatDuration(durationMs);
+    }
+
+    public static String formatDuration(long durationMs) {
+        return String.format(Locale.getDefault(), "%02d:%02d",
+                TimeUnit.MILLISECONDS.toMinutes(durationMs),
+                TimeUnit.MILLISECONDS.toSeconds(durationMs) -
+                        TimeUnit.MINUTES.toSeconds(TimeUnit.MILLISECONDS.toMinutes(durationMs)));
+    }
+
+    /**
+     * formatDuration 的逆运算，无法解析时返回 0
+     */
+    public static long parseDuration(String duration) {
+        if (duration == null) {
+            return 0;
+        }
+        int colon = duration.indexOf(':');
+        try {
+            if (colon < 0) {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(duration.trim()));
+            }
+            long minutes = Long.parseLong(duration.substring(0, colon).trim());
+            long seconds = Long.parseLong(duration.substring(colon + 1).trim());
+            return TimeUnit.MINUTES.toMillis(minutes) + TimeUnit.SECONDS.toMillis(seconds);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
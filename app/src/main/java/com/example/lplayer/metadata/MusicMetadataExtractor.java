@@ -0,0 +1,121 @@
+package com.example.lplayer.metadata;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * 读取音乐元数据：优先用纯 Java 的 TagReader 只读标签和头部，无法识别时再交给 MediaMetadataRetriever
+ *
+ * 调用方负责提供并复用 retriever，本类不持有任何线程相关状态。
+ */
+public class MusicMetadataExtractor {
+    private static final String TAG = "MusicMetadataExtractor";
+
+    private final Context context;
+
+    public MusicMetadataExtractor(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * @param retrievers 只在 TagReader 失败时才会调用，多数文件不需要创建原生解析器
+     * @throws IOException MediaMetadataRetriever 和 MediaStore 都无法读取时抛出，调用方不应缓存这次结果
+     */
+    public MusicMetadata getMusicMetadata(Supplier<MediaMetadataRetriever> retrievers, Uri uri, String baseName)
+            throws IOException {
+        // 文件名已由扫描游标提供，无需再为每个文件查询一次 DocumentFile
+        String displayName = baseName != null ? baseName : MusicMetadata.UNKNOWN_TITLE;
+
+        TagReader.Tags tags = readTags(uri);
+        if (tags != null && tags.durationMs > 0) {
+            return new MusicMetadata(displayName, tags.artist, tags.album, tags.durationMs);
+        }
+
+        // 标签已解析出来、只缺时长（如没有 Xing/VBRI/LAME 头的 CBR MP3）时保留标签中的艺术家和专辑，
+        // 它们已按 GBK 等编码正确解码；retriever 只补时长和标签里没有的字段
+        String artist = tags != null ? tags.artist : null;
+        String album = tags != null ? tags.album : null;
+        long durationMs = 0;
+        Exception failure = null;
+
+        try {
+            MediaMetadataRetriever retriever = retrievers.get();
+            retriever.setDataSource(context, uri);
+
+            // 获取艺术家信息
+            String retrievedArtist = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ARTIST);
+            if (artist == null && retrievedArtist != null && !retrievedArtist.isEmpty()) {
+                artist = retrievedArtist;
+            }
+
+            // 获取专辑信息
+            String retrievedAlbum = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_ALBUM);
+            if (album == null && retrievedAlbum != null && !retrievedAlbum.isEmpty()) {
+                album = retrievedAlbum;
+            }
+
+            // 获取持续时间
+            String durationStr = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            if (durationStr != null) {
+                durationMs = Long.parseLong(durationStr);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "获取音乐元数据失败: " + uri, e);
+            failure = e;
+        }
+
+        // 如果MediaMetadataRetriever无法获取到时长，尝试使用MediaStore
+        if (durationMs <= 0) {
+            durationMs = queryMediaStoreDuration(uri);
+        }
+        // 标签也没读到、两种方式都读不到时可能只是暂时的（提供方异常、权限尚未生效），交给调用方按失败处理
+        if (failure != null && durationMs <= 0 && tags == null) {
+            throw new IOException("无法读取音乐元数据: " + uri, failure);
+        }
+
+        return new MusicMetadata(displayName, artist, album, durationMs);
+    }
+
+    /**
+     * 通过文件描述符读取标签，格式不支持或解析失败时返回 null
+     */
+    private TagReader.Tags readTags(Uri uri) {
+        try {
+            ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+            try (ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+                return TagReader.read(in.getChannel());
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "读取标签失败，改用 MediaMetadataRetriever: " + uri, e);
+            return null;
+        }
+    }
+
+    private long queryMediaStoreDuration(Uri uri) {
+        try (Cursor cursor = context.getContentResolver().query(
+                uri,
+                new String[]{MediaStore.Audio.Media.DURATION},
+                null,
+                null,
+                null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int durationColumn = cursor.getColumnIndexOrThrow(MediaStore.Audio.Media.DURATION);
+                return cursor.getLong(durationColumn);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "通过MediaStore获取音乐时长失败", e);
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,1001 @@
+package com.example.lplayer.metadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 纯 Java 的音乐标签读取器，不依赖原生解析器
+ *
+ * 只读取标签块和计算时长所需的头部数据，不解码音频：
+ * - MP3：ID3v2.2/2.3/2.4 文本帧、ID3v1，时长取自 Xing/Info（扣除 LAME 编码延迟和填充）、VBRI，或按 CBR 码率估算
+ * - FLAC：STREAMINFO 与 VORBIS_COMMENT
+ * - Ogg Vorbis/Opus：注释包，时长取自最后一页的 granule position
+ * - MP4/M4A：moov/mvhd 与 udta/meta/ilst
+ *
+ * 内嵌封面（ID3 APIC/PIC、FLAC PICTURE、MP4 covr）只记录在文件中的位置，需要时再用 readPicture 读取，
+ * 同一文件有多张图片时优先取封面正面（图片类型 3）。
+ *
+ * ID3 中标为 ISO-8859-1 的文本在中文 MP3 里多半其实是 GBK 编码，这里会按 UTF-8、GBK 的顺序尝试解码。
+ * 本类没有 Android 依赖，可以在 JVM 单元测试中直接运行。
+ */
+public final class TagReader {
+    // 标签中的单个文本帧或注释块超过该大小时不再读取（通常是内嵌封面）
+    private static final int MAX_BLOCK_BYTES = 1 << 20;
+    // 在 ID3 标签之后查找第一个 MPEG 帧的范围
+    private static final int MPEG_SYNC_SEARCH_BYTES = 64 * 1024;
+    // 从文件末尾向前查找 Ogg 最后一页的范围
+    private static final int OGG_TAIL_BYTES = 64 * 1024;
+    private static final int MAX_BOX_DEPTH = 8;
+    // 解析图片头部（MIME、描述等）时读取的字节数，以及允许的最大图片
+    private static final int PICTURE_HEADER_BYTES = 4096;
+    private static final int MAX_PICTURE_BYTES = 16 << 20;
+    private static final int PICTURE_TYPE_FRONT_COVER = 3;
+
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private static final int[][] MPEG_BITRATES = {
+            // MPEG-1 Layer I, II, III
+            {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},
+            {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320},
+            // MPEG-2/2.5 Layer I, II/III
+            {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},
+            {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}
+    };
+    private static final int[][] MPEG_SAMPLE_RATES = {
+            {11025, 12000, 8000},   // MPEG-2.5
+            {0, 0, 0},              // 保留
+            {22050, 24000, 16000},  // MPEG-2
+            {44100, 48000, 32000}   // MPEG-1
+    };
+
+    private TagReader() {
+    }
+
+    /**
+     * 读取到的标签与时长，缺失的字段为 null 或 0
+     */
+    public static class Tags {
+        public final String title;
+        public final String artist;
+        public final String album;
+        public final long durationMs;
+        public final Picture picture;
+
+        Tags(String title, String artist, String album, long durationMs, Picture picture) {
+            this.title = title;
+            this.artist = artist;
+            this.album = album;
+            this.durationMs = durationMs;
+            this.picture = picture;
+        }
+
+        @Override
+        public String toString() {
+            return "title=" + title + ", artist=" + artist + ", album=" + album + ", durationMs=" + durationMs;
+        }
+    }
+
+    /**
+     * 内嵌图片在文件中的位置，读取标签时不载入图片数据
+     */
+    public static class Picture {
+        public final String mimeType;
+        public final long offset;
+        public final int length;
+        // 经过非同步化还原的 ID3 帧与文件位置对不上，只能直接保存数据
+        final byte[] data;
+
+        Picture(String mimeType, long offset, int length, byte[] data) {
+            this.mimeType = mimeType;
+            this.offset = offset;
+            this.length = length;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 读取标签，文件格式无法识别时返回 null
+     *
+     * 只使用带位置参数的读取，不会改变 channel 的当前位置。
+     */
+    public static Tags read(FileChannel channel) throws IOException {
+        TagBuilder tags = new TagBuilder();
+        long size = channel.size();
+        long offset = 0;
+        byte[] head = readAt(channel, 0, 12);
+
+        // ID3v2 可能出现在 MP3 之前，也可能被错误地加在 FLAC 之前
+        if (head.length >= 10 && startsWith(head, 0, "ID3")) {
+            offset = readId3v2(channel, head, tags);
+            head = readAt(channel, offset, 12);
+        }
+
+        if (startsWith(head, 0, "fLaC")) {
+            readFlac(channel, offset + 4, size, tags);
+        } else if (startsWith(head, 0, "OggS")) {
+            if (!readOgg(channel, offset, size, tags)) {
+                return null;
+            }
+        } else if (head.length >= 8 && startsWith(head, 4, "ftyp")) {
+            readMp4Boxes(channel, offset, size, 0, tags);
+        } else if (isOtherContainer(head) || !readMpeg(channel, offset, size, tags)) {
+            return null;
+        }
+        return tags.build();
+    }
+
+    /**
+     * 读取 read 找到的图片数据，文件被截断时返回 null
+     */
+    public static byte[] readPicture(FileChannel channel, Picture picture) throws IOException {
+        if (picture.data != null) {
+            return picture.data;
+        }
+        byte[] data = readAt(channel, picture.offset, picture.length);
+        return data.length == picture.length ? data : null;
+    }
+
+    /**
+     * 交给 MediaMetadataRetriever 处理的格式，避免在 PCM 或其他容器数据里误找到 MPEG 帧同步
+     */
+    private static boolean isOtherContainer(byte[] head) {
+        return startsWith(head, 0, "RIFF") || startsWith(head, 0, "FORM") || startsWith(head, 0, "MAC ")
+                || startsWith(head, 0, "wvpk") || startsWith(head, 0, "\u0030\u0026\u00B2\u0075");
+    }
+
+    // ---- ID3 ----
+
+    /**
+     * @return 标签之后的位置
+     */
+    private static long readId3v2(FileChannel channel, byte[] header, TagBuilder tags) throws IOException {
+        int major = header[3];
+        int flags = header[5] & 0xFF;
+        int tagSize = syncsafe(header, 6);
+        long end = 10L + tagSize + ((flags & 0x10) != 0 ? 10 : 0);
+        if (major < 2 || major > 4) {
+            return end;
+        }
+
+        Region region;
+        if ((flags & 0x80) != 0 && major < 4) {
+            // 2.2/2.3 的非同步化作用于整个标签，只能整体读入后还原
+            region = new Region(unsynchronize(readAt(channel, 10, Math.min(tagSize, MAX_BLOCK_BYTES))));
+        } else {
+            region = new Region(channel, 10, tagSize);
+        }
+
+        int pos = 0;
+        if ((flags & 0x40) != 0 && major >= 3) {
+            byte[] extended = region.read(0, 4);
+            if (extended.length < 4) {
+                return end;
+            }
+            // 2.3 的扩展头大小不含自身的 4 字节，2.4 的包含
+            pos = major == 3 ? 4 + u32be(extended, 0) : syncsafe(extended, 0);
+        }
+
+        int headerLength = major == 2 ? 6 : 10;
+        while (pos + headerLength <= region.length) {
+            byte[] frameHeader = region.read(pos, headerLength);
+            if (frameHeader.length < headerLength || frameHeader[0] == 0) {
+                break; // 填充区
+            }
+            String id;
+            int frameSize;
+            int frameFlags = 0;
+            if (major == 2) {
+                id = new String(frameHeader, 0, 3, StandardCharsets.ISO_8859_1);
+                frameSize = ((frameHeader[3] & 0xFF) << 16) | ((frameHeader[4] & 0xFF) << 8) | (frameHeader[5] & 0xFF);
+            } else {
+                id = new String(frameHeader, 0, 4, StandardCharsets.ISO_8859_1);
+                frameSize = major == 4 ? syncsafe(frameHeader, 4) : u32be(frameHeader, 4);
+                frameFlags = frameHeader[9] & 0xFF;
+            }
+            int bodyStart = pos + headerLength;
+            if (frameSize <= 0 || frameSize > region.length - bodyStart) {
+                break;
+            }
+            pos = bodyStart + frameSize;
+
+            boolean compressedOrEncrypted = major == 3 ? (frameFlags & 0xC0) != 0 : (frameFlags & 0x0C) != 0;
+            if ("APIC".equals(id) || "PIC".equals(id)) {
+                if (!compressedOrEncrypted && !tags.hasFrontCover()) {
+                    readId3Picture(region, major, frameFlags, bodyStart, frameSize, tags);
+                }
+                continue;
+            }
+            String field = id3Field(id);
+            if (field == null || frameSize > MAX_BLOCK_BYTES || tags.has(field) || compressedOrEncrypted) {
+                continue;
+            }
+            byte[] body = region.read(bodyStart, frameSize);
+            if (major == 4 && (frameFlags & 0x02) != 0) {
+                body = unsynchronize(body);
+            }
+            int bodyOffset = major == 4 && (frameFlags & 0x01) != 0 ? 4 : 0; // 数据长度指示
+            if (body.length <= bodyOffset) {
+                continue;
+            }
+            String value = decodeId3Text(body, bodyOffset, body.length - bodyOffset);
+            if ("length".equals(field)) {
+                tags.setDuration(parseLong(value));
+            } else {
+                tags.set(field, value);
+            }
+        }
+        return end;
+    }
+
+    /**
+     * APIC：编码、MIME（以 0 结尾）、图片类型、描述、图片数据；2.2 的 PIC 用 3 字节格式代替 MIME
+     */
+    private static void readId3Picture(Region region, int major, int frameFlags, int bodyStart, int frameSize,
+                                       TagBuilder tags) throws IOException {
+        if (frameSize > MAX_PICTURE_BYTES) {
+            return;
+        }
+        boolean frameUnsync = major == 4 && (frameFlags & 0x02) != 0;
+        byte[] head = frameUnsync ? unsynchronize(region.read(bodyStart, frameSize))
+                : region.read(bodyStart, Math.min(frameSize, PICTURE_HEADER_BYTES));
+        int pos = major == 4 && (frameFlags & 0x01) != 0 ? 4 : 0;
+        if (pos + 2 > head.length) {
+            return;
+        }
+        int encoding = head[pos++];
+        String mimeType;
+        if (major == 2) {
+            if (pos + 3 > head.length) {
+                return;
+            }
+            String format = new String(head, pos, 3, StandardCharsets.ISO_8859_1);
+            mimeType = "PNG".equalsIgnoreCase(format) ? "image/png" : "image/jpeg";
+            pos += 3;
+        } else {
+            int end = nullTerminated(head, pos, head.length);
+            mimeType = new String(head, pos, end - pos, StandardCharsets.ISO_8859_1);
+            pos = end + 1;
+        }
+        if (pos >= head.length || "-->".equals(mimeType)) {
+            return; // 只有链接没有数据
+        }
+        int pictureType = head[pos++] & 0xFF;
+        if (encoding == 1 || encoding == 2) {
+            while (pos + 1 < head.length && (head[pos] != 0 || head[pos + 1] != 0)) {
+                pos += 2;
+            }
+            pos += 2;
+        } else {
+            pos = nullTerminated(head, pos, head.length) + 1;
+        }
+        // 描述没有在读取范围内结束时放弃
+        if (pos >= head.length) {
+            return;
+        }
+
+        Picture picture;
+        if (frameUnsync) {
+            byte[] data = Arrays.copyOfRange(head, pos, head.length);
+            picture = new Picture(mimeType, 0, data.length, data);
+        } else if (region.bytes != null) {
+            byte[] data = region.read(bodyStart + pos, frameSize - pos);
+            picture = new Picture(mimeType, 0, data.length, data);
+        } else {
+            picture = new Picture(mimeType, region.base + bodyStart + pos, frameSize - pos, null);
+        }
+        tags.setPicture(picture, pictureType == PICTURE_TYPE_FRONT_COVER);
+    }
+
+    private static String id3Field(String id) {
+        switch (id) {
+            case "TIT2":
+            case "TT2":
+                return "title";
+            case "TPE1":
+            case "TP1":
+                return "artist";
+            case "TALB":
+            case "TAL":
+                return "album";
+            case "TLEN":
+            case "TLE":
+                return "length";
+            default:
+                return null;
+        }
+    }
+
+    private static void readId3v1(FileChannel channel, long size, TagBuilder tags) throws IOException {
+        if (size < 128) {
+            return;
+        }
+        byte[] tag = readAt(channel, size - 128, 128);
+        if (tag.length < 128 || !startsWith(tag, 0, "TAG")) {
+            return;
+        }
+        tags.set("title", decodeLegacy(tag, 3, fieldLength(tag, 3, 30)));
+        tags.set("artist", decodeLegacy(tag, 33, fieldLength(tag, 33, 30)));
+        tags.set("album", decodeLegacy(tag, 63, fieldLength(tag, 63, 30)));
+    }
+
+    private static boolean hasId3v1(FileChannel channel, long size) throws IOException {
+        return size >= 128 && startsWith(readAt(channel, size - 128, 3), 0, "TAG");
+    }
+
+    /**
+     * 按 ID3 文本编码字节解码，多值文本只取第一个
+     */
+    static String decodeId3Text(byte[] data, int offset, int length) {
+        if (length < 1) {
+            return null;
+        }
+        int encoding = data[offset];
+        int start = offset + 1;
+        int end = offset + length;
+        switch (encoding) {
+            case 1:
+            case 2: {
+                int terminator = start;
+                while (terminator + 1 < end && (data[terminator] != 0 || data[terminator + 1] != 0)) {
+                    terminator += 2;
+                }
+                Charset charset = encoding == 1 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_16BE;
+                return trimToNull(new String(data, start, Math.min(terminator, end) - start, charset));
+            }
+            case 3:
+                return trimToNull(new String(data, start, nullTerminated(data, start, end) - start,
+                        StandardCharsets.UTF_8));
+            default:
+                return decodeLegacy(data, start, nullTerminated(data, start, end) - start);
+        }
+    }
+
+    /**
+     * 标为 ISO-8859-1 的文本：纯 ASCII 直接返回，否则依次尝试 UTF-8、GBK，都不合法时才按 ISO-8859-1 解码
+     */
+    static String decodeLegacy(byte[] data, int offset, int length) {
+        boolean ascii = true;
+        for (int i = offset; i < offset + length; i++) {
+            if (data[i] < 0) {
+                ascii = false;
+                break;
+            }
+        }
+        if (!ascii) {
+            String decoded = decodeStrict(StandardCharsets.UTF_8, data, offset, length);
+            if (decoded == null) {
+                decoded = decodeStrict(GBK, data, offset, length);
+            }
+            if (decoded != null) {
+                return trimToNull(decoded);
+            }
+        }
+        return trimToNull(new String(data, offset, length, StandardCharsets.ISO_8859_1));
+    }
+
+    private static String decodeStrict(Charset charset, byte[] data, int offset, int length) {
+        try {
+            CharBuffer chars = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(ByteBuffer.wrap(data, offset, length));
+            return chars.toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+
+    private static byte[] unsynchronize(byte[] data) {
+        byte[] out = new byte[data.length];
+        int length = 0;
+        for (int i = 0; i < data.length; i++) {
+            out[length++] = data[i];
+            if ((data[i] & 0xFF) == 0xFF && i + 1 < data.length && data[i + 1] == 0) {
+                i++;
+            }
+        }
+        return length == data.length ? out : Arrays.copyOf(out, length);
+    }
+
+    // ---- MPEG 音频 ----
+
+    private static boolean readMpeg(FileChannel channel, long offset, long size, TagBuilder tags)
+            throws IOException {
+        byte[] data = readAt(channel, offset, MPEG_SYNC_SEARCH_BYTES);
+        int frame = -1;
+        for (int i = 0; i + 4 <= data.length; i++) {
+            if (isFrameHeader(data, i)) {
+                int next = i + frameLength(data, i);
+                // 有后续帧可供核对时要求其同样合法，避免把标签数据误当成帧头
+                if (next + 4 > data.length || isFrameHeader(data, next)) {
+                    frame = i;
+                    break;
+                }
+            }
+        }
+        if (frame < 0) {
+            return false;
+        }
+
+        int version = (data[frame + 1] >> 3) & 0x03;
+        int layer = (data[frame + 1] >> 1) & 0x03;
+        int sampleRate = MPEG_SAMPLE_RATES[version][(data[frame + 2] >> 2) & 0x03];
+        boolean mono = ((data[frame + 3] >> 6) & 0x03) == 3;
+        int samplesPerFrame = layer == 3 ? 384 : (layer == 1 && version != 3 ? 576 : 1152);
+
+        int sideInfo = version == 3 ? (mono ? 17 : 32) : (mono ? 9 : 17);
+        int xing = frame + 4 + sideInfo;
+        int vbri = frame + 4 + 32;
+        long durationMs = 0;
+        if (xing + 12 <= data.length && (startsWith(data, xing, "Xing") || startsWith(data, xing, "Info"))) {
+            int flags = u32be(data, xing + 4);
+            if ((flags & 0x01) != 0) {
+                long samples = (u32be(data, xing + 8) & 0xFFFFFFFFL) * samplesPerFrame;
+                // LAME/FFmpeg 在 Xing 头之后记录编码器延迟和末尾填充的采样数
+                int lame = xing + 120;
+                if (lame + 24 <= data.length && (startsWith(data, lame, "LAME") || startsWith(data, lame, "Lavf")
+                        || startsWith(data, lame, "Lavc"))) {
+                    int delay = ((data[lame + 21] & 0xFF) << 4) | ((data[lame + 22] & 0xFF) >> 4);
+                    int padding = ((data[lame + 22] & 0x0F) << 8) | (data[lame + 23] & 0xFF);
+                    samples = Math.max(0, samples - delay - padding);
+                }
+                durationMs = samples * 1000 / sampleRate;
+            }
+        } else if (vbri + 18 <= data.length && startsWith(data, vbri, "VBRI")) {
+            long frames = u32be(data, vbri + 14) & 0xFFFFFFFFL;
+            durationMs = frames * samplesPerFrame * 1000 / sampleRate;
+        }
+        if (durationMs <= 0) {
+            // 没有 VBR 头时按 CBR 估算：音频字节数 * 8 / 码率(kbps) 即毫秒数
+            int bitrate = bitrateKbps(data, frame);
+            long audioEnd = hasId3v1(channel, size) ? size - 128 : size;
+            long audioBytes = audioEnd - (offset + frame);
+            durationMs = bitrate > 0 && audioBytes > 0 ? audioBytes * 8 / bitrate : 0;
+        }
+        tags.setDuration(durationMs);
+
+        if (!tags.has("artist") || !tags.has("album")) {
+            readId3v1(channel, size, tags);
+        }
+        return true;
+    }
+
+    private static boolean isFrameHeader(byte[] data, int pos) {
+        if (pos + 4 > data.length || (data[pos] & 0xFF) != 0xFF || (data[pos + 1] & 0xE0) != 0xE0) {
+            return false;
+        }
+        int version = (data[pos + 1] >> 3) & 0x03;
+        int layer = (data[pos + 1] >> 1) & 0x03;
+        int bitrateIndex = (data[pos + 2] >> 4) & 0x0F;
+        int sampleRateIndex = (data[pos + 2] >> 2) & 0x03;
+        return version != 1 && layer != 0 && bitrateIndex != 0 && bitrateIndex != 15 && sampleRateIndex != 3;
+    }
+
+    private static int bitrateKbps(byte[] data, int pos) {
+        int version = (data[pos + 1] >> 3) & 0x03;
+        int layer = (data[pos + 1] >> 1) & 0x03;
+        int bitrateIndex = (data[pos + 2] >> 4) & 0x0F;
+        int table;
+        if (version == 3) {
+            table = 3 - layer; // Layer I=3 -> 0, II=2 -> 1, III=1 -> 2
+        } else {
+            table = layer == 3 ? 3 : 4;
+        }
+        return MPEG_BITRATES[table][bitrateIndex];
+    }
+
+    private static int frameLength(byte[] data, int pos) {
+        int version = (data[pos + 1] >> 3) & 0x03;
+        int layer = (data[pos + 1] >> 1) & 0x03;
+        int sampleRate = MPEG_SAMPLE_RATES[version][(data[pos + 2] >> 2) & 0x03];
+        int padding = (data[pos + 2] >> 1) & 0x01;
+        int bitrate = bitrateKbps(data, pos) * 1000;
+        if (layer == 3) {
+            return (12 * bitrate / sampleRate + padding) * 4;
+        }
+        int coefficient = layer == 1 && version != 3 ? 72 : 144;
+        return coefficient * bitrate / sampleRate + padding;
+    }
+
+    // ---- FLAC ----
+
+    private static void readFlac(FileChannel channel, long pos, long size, TagBuilder tags) throws IOException {
+        boolean last = false;
+        while (!last && pos + 4 <= size) {
+            byte[] header = readAt(channel, pos, 4);
+            if (header.length < 4) {
+                break;
+            }
+            last = (header[0] & 0x80) != 0;
+            int type = header[0] & 0x7F;
+            int length = ((header[1] & 0xFF) << 16) | ((header[2] & 0xFF) << 8) | (header[3] & 0xFF);
+            long body = pos + 4;
+            if (type == 0 && length >= 18) {
+                byte[] info = readAt(channel, body, 18);
+                if (info.length == 18) {
+                    int sampleRate = ((info[10] & 0xFF) << 12) | ((info[11] & 0xFF) << 4) | ((info[12] & 0xFF) >> 4);
+                    long totalSamples = ((long) (info[13] & 0x0F) << 32) | (u32be(info, 14) & 0xFFFFFFFFL);
+                    if (sampleRate > 0) {
+                        tags.setDuration(totalSamples * 1000 / sampleRate);
+                    }
+                }
+            } else if (type == 4) {
+                byte[] comments = readAt(channel, body, Math.min(length, MAX_BLOCK_BYTES));
+                readVorbisComments(comments, 0, tags);
+            } else if (type == 6 && !tags.hasFrontCover()) {
+                readFlacPicture(channel, body, length, tags);
+            }
+            pos = body + length;
+        }
+    }
+
+    /**
+     * PICTURE 块：类型、MIME、描述、宽高色深等 16 字节、数据长度、数据，整数均为大端
+     */
+    private static void readFlacPicture(FileChannel channel, long body, int length, TagBuilder tags)
+            throws IOException {
+        byte[] head = readAt(channel, body, Math.min(length, PICTURE_HEADER_BYTES));
+        if (head.length < 8) {
+            return;
+        }
+        int pictureType = u32be(head, 0);
+        long mimeLength = u32be(head, 4) & 0xFFFFFFFFL;
+        if (8 + mimeLength + 4 > head.length) {
+            return;
+        }
+        String mimeType = new String(head, 8, (int) mimeLength, StandardCharsets.ISO_8859_1);
+        int pos = 8 + (int) mimeLength;
+        long descriptionLength = u32be(head, pos) & 0xFFFFFFFFL;
+        pos += 4;
+        if (pos + descriptionLength + 20 > head.length) {
+            return;
+        }
+        pos += (int) descriptionLength + 16;
+        long dataLength = u32be(head, pos) & 0xFFFFFFFFL;
+        pos += 4;
+        if (dataLength <= 0 || dataLength > MAX_PICTURE_BYTES || pos + dataLength > length) {
+            return;
+        }
+        tags.setPicture(new Picture(mimeType, body + pos, (int) dataLength, null),
+                pictureType == PICTURE_TYPE_FRONT_COVER);
+    }
+
+    /**
+     * 解析 Vorbis 注释（小端长度前缀），数据被截断时只取完整的部分
+     */
+    private static void readVorbisComments(byte[] data, int pos, TagBuilder tags) {
+        if (pos + 4 > data.length) {
+            return;
+        }
+        long vendorLength = u32le(data, pos) & 0xFFFFFFFFL;
+        pos += 4;
+        if (pos + vendorLength + 4 > data.length) {
+            return;
+        }
+        pos += (int) vendorLength;
+        long count = u32le(data, pos) & 0xFFFFFFFFL;
+        pos += 4;
+        for (long i = 0; i < count && pos + 4 <= data.length; i++) {
+            long length = u32le(data, pos) & 0xFFFFFFFFL;
+            pos += 4;
+            if (pos + length > data.length) {
+                break;
+            }
+            String comment = new String(data, pos, (int) length, StandardCharsets.UTF_8);
+            pos += (int) length;
+            int equals = comment.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            switch (comment.substring(0, equals).toUpperCase(Locale.ROOT)) {
+                case "TITLE":
+                    tags.set("title", trimToNull(comment.substring(equals + 1)));
+                    break;
+                case "ARTIST":
+                    tags.set("artist", trimToNull(comment.substring(equals + 1)));
+                    break;
+                case "ALBUM":
+                    tags.set("album", trimToNull(comment.substring(equals + 1)));
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    // ---- Ogg ----
+
+    /**
+     * 读取逻辑流的前两个包（标识头和注释头），再从文件末尾取最后一页的 granule position 计算时长
+     *
+     * @return 不是 Vorbis 或 Opus 时返回 false
+     */
+    private static boolean readOgg(FileChannel channel, long pos, long size, TagBuilder tags) throws IOException {
+        byte[][] packets = new byte[2][];
+        ByteBuffer current = ByteBuffer.allocate(4096);
+        int packetIndex = 0;
+        int serial = 0;
+        boolean first = true;
+        while (packetIndex < 2 && pos + 27 <= size) {
+            byte[] header = readAt(channel, pos, 27);
+            if (header.length < 27 || !startsWith(header, 0, "OggS")) {
+                break;
+            }
+            int pageSerial = u32le(header, 14);
+            if (first) {
+                serial = pageSerial;
+                first = false;
+            }
+            int segmentCount = header[26] & 0xFF;
+            byte[] segments = readAt(channel, pos + 27, segmentCount);
+            int bodyLength = 0;
+            for (byte segment : segments) {
+                bodyLength += segment & 0xFF;
+            }
+            long body = pos + 27 + segmentCount;
+            pos = body + bodyLength;
+            if (pageSerial != serial) {
+                continue; // 复用的其他逻辑流
+            }
+            byte[] data = readAt(channel, body, bodyLength);
+            int offset = 0;
+            for (int i = 0; i < segments.length && packetIndex < 2; i++) {
+                int lacing = segments[i] & 0xFF;
+                int take = Math.min(lacing, data.length - offset);
+                // 超过上限的注释包（通常内嵌封面）只保留开头，文本注释一般在前面
+                if (take > 0 && current.position() < MAX_BLOCK_BYTES) {
+                    current = ensureCapacity(current, take);
+                    current.put(data, offset, take);
+                }
+                offset += Math.max(take, 0);
+                if (lacing < 255) {
+                    packets[packetIndex++] = Arrays.copyOf(current.array(), current.position());
+                    current.clear();
+                }
+            }
+        }
+        byte[] identification = packets[0];
+        if (identification == null) {
+            return false;
+        }
+
+        long sampleRate;
+        long preSkip = 0;
+        int commentOffset;
+        if (startsWith(identification, 0, "\u0001vorbis") && identification.length >= 16) {
+            sampleRate = u32le(identification, 12) & 0xFFFFFFFFL;
+            commentOffset = 7; // "\u0003vorbis"
+        } else if (startsWith(identification, 0, "OpusHead") && identification.length >= 12) {
+            // Opus 的 granule 始终以 48kHz 计，需要扣除 pre-skip
+            sampleRate = 48000;
+            preSkip = ((identification[11] & 0xFF) << 8) | (identification[10] & 0xFF);
+            commentOffset = 8; // "OpusTags"
+        } else {
+            return false;
+        }
+        if (packets[1] != null) {
+            readVorbisComments(packets[1], commentOffset, tags);
+        }
+
+        long tailStart = Math.max(0, size - OGG_TAIL_BYTES);
+        byte[] tail = readAt(channel, tailStart, (int) (size - tailStart));
+        for (int i = tail.length - 27; i >= 0; i--) {
+            if (startsWith(tail, i, "OggS") && u32le(tail, i + 14) == serial) {
+                long granule = u64le(tail, i + 6);
+                if (granule > 0 && sampleRate > 0) {
+                    tags.setDuration(Math.max(0, granule - preSkip) * 1000 / sampleRate);
+                    break;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static ByteBuffer ensureCapacity(ByteBuffer buffer, int extra) {
+        if (buffer.remaining() >= extra) {
+            return buffer;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + extra));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    // ---- MP4 ----
+
+    /**
+     * 遍历 [start, end) 范围内的 box，只进入 moov/udta/meta/ilst，跳过 mdat 等大块数据
+     */
+    private static void readMp4Boxes(FileChannel channel, long start, long end, int depth, TagBuilder tags)
+            throws IOException {
+        long pos = start;
+        while (pos + 8 <= end && depth < MAX_BOX_DEPTH) {
+            byte[] header = readAt(channel, pos, 16);
+            if (header.length < 8) {
+                break;
+            }
+            long boxSize = u32be(header, 0) & 0xFFFFFFFFL;
+            int headerLength = 8;
+            if (boxSize == 1 && header.length >= 16) {
+                boxSize = u64be(header, 8);
+                headerLength = 16;
+            } else if (boxSize == 0) {
+                boxSize = end - pos;
+            }
+            if (boxSize < headerLength || pos + boxSize > end) {
+                break;
+            }
+            String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+            long body = pos + headerLength;
+            long bodyEnd = pos + boxSize;
+            switch (type) {
+                case "moov":
+                case "udta":
+                case "ilst":
+                    readMp4Boxes(channel, body, bodyEnd, depth + 1, tags);
+                    break;
+                case "meta": {
+                    // ISO 的 meta 是带版本号的 full box，QuickTime 的不带
+                    byte[] probe = readAt(channel, body + 4, 4);
+                    long children = startsWith(probe, 0, "hdlr") ? body : body + 4;
+                    readMp4Boxes(channel, children, bodyEnd, depth + 1, tags);
+                    break;
+                }
+                case "mvhd": {
+                    byte[] mvhd = readAt(channel, body, 32);
+                    if (mvhd.length >= 20) {
+                        boolean version1 = mvhd[0] == 1;
+                        long timescale = u32be(mvhd, version1 ? 20 : 12) & 0xFFFFFFFFL;
+                        long duration = version1 && mvhd.length >= 32 ? u64be(mvhd, 24)
+                                : u32be(mvhd, 16) & 0xFFFFFFFFL;
+                        if (timescale > 0) {
+                            tags.setDuration(duration * 1000 / timescale);
+                        }
+                    }
+                    break;
+                }
+                case "\u00A9nam":
+                    tags.set("title", readMp4Text(channel, body, bodyEnd));
+                    break;
+                case "\u00A9ART":
+                    tags.set("artist", readMp4Text(channel, body, bodyEnd));
+                    break;
+                case "aART":
+                    // 没有单曲艺术家时用专辑艺术家
+                    if (!tags.has("artist")) {
+                        tags.set("artist", readMp4Text(channel, body, bodyEnd));
+                    }
+                    break;
+                case "\u00A9alb":
+                    tags.set("album", readMp4Text(channel, body, bodyEnd));
+                    break;
+                case "covr":
+                    readMp4Picture(channel, body, bodyEnd, tags);
+                    break;
+                default:
+                    break;
+            }
+            pos = bodyEnd;
+        }
+    }
+
+    /**
+     * ilst 条目中的 data box：4 字节类型标识、4 字节语言，之后是 UTF-8 文本
+     */
+    private static String readMp4Text(FileChannel channel, long body, long end) throws IOException {
+        if (end - body < 16 || end - body > MAX_BLOCK_BYTES) {
+            return null;
+        }
+        byte[] item = readAt(channel, body, (int) (end - body));
+        if (item.length < 16 || !startsWith(item, 4, "data")) {
+            return null;
+        }
+        int dataEnd = (int) Math.min(item.length, u32be(item, 0) & 0xFFFFFFFFL);
+        return dataEnd > 16 ? trimToNull(new String(item, 16, dataEnd - 16, StandardCharsets.UTF_8)) : null;
+    }
+
+    /**
+     * covr 中的第一个 data box，类型标识 13 为 JPEG、14 为 PNG
+     */
+    private static void readMp4Picture(FileChannel channel, long body, long end, TagBuilder tags)
+            throws IOException {
+        byte[] header = readAt(channel, body, 16);
+        if (header.length < 16 || !startsWith(header, 4, "data")) {
+            return;
+        }
+        long dataSize = u32be(header, 0) & 0xFFFFFFFFL;
+        if (dataSize <= 16 || body + dataSize > end || dataSize - 16 > MAX_PICTURE_BYTES) {
+            return;
+        }
+        int type = u32be(header, 8) & 0xFFFFFF;
+        String mimeType = type == 14 ? "image/png" : type == 27 ? "image/bmp" : "image/jpeg";
+        tags.setPicture(new Picture(mimeType, body + 16, (int) (dataSize - 16), null), true);
+    }
+
+    // ---- 工具方法 ----
+
+    private static byte[] readAt(FileChannel channel, long position, int length) throws IOException {
+        if (length <= 0 || position < 0) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String ascii) {
+        if (offset < 0 || offset + ascii.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if ((data[offset + i] & 0xFF) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int syncsafe(byte[] data, int offset) {
+        return ((data[offset] & 0x7F) << 21) | ((data[offset + 1] & 0x7F) << 14)
+                | ((data[offset + 2] & 0x7F) << 7) | (data[offset + 3] & 0x7F);
+    }
+
+    private static int u32be(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 24) | ((data[offset + 1] & 0xFF) << 16)
+                | ((data[offset + 2] & 0xFF) << 8) | (data[offset + 3] & 0xFF);
+    }
+
+    private static long u64be(byte[] data, int offset) {
+        return ((u32be(data, offset) & 0xFFFFFFFFL) << 32) | (u32be(data, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    private static int u32le(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8)
+                | ((data[offset + 2] & 0xFF) << 16) | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static long u64le(byte[] data, int offset) {
+        return (u32le(data, offset) & 0xFFFFFFFFL) | ((long) u32le(data, offset + 4) << 32);
+    }
+
+    private static int nullTerminated(byte[] data, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] == 0) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static int fieldLength(byte[] data, int offset, int max) {
+        return nullTerminated(data, offset, offset + max) - offset;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value.trim()) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String trimToNull(String value) {
+        if (value == null) {
+            return null;
+        }
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+
+    /**
+     * ID3 标签的一段字节，来自 channel 或已还原非同步化的数组
+     */
+    private static class Region {
+        final FileChannel channel;
+        final long base;
+        final byte[] bytes;
+        final int length;
+
+        Region(FileChannel channel, long base, int length) {
+            this.channel = channel;
+            this.base = base;
+            this.bytes = null;
+            this.length = length;
+        }
+
+        Region(byte[] bytes) {
+            this.channel = null;
+            this.base = 0;
+            this.bytes = bytes;
+            this.length = bytes.length;
+        }
+
+        byte[] read(int pos, int count) throws IOException {
+            count = Math.min(count, length - pos);
+            if (bytes != null) {
+                return Arrays.copyOfRange(bytes, pos, pos + Math.max(count, 0));
+            }
+            return readAt(channel, base + pos, count);
+        }
+    }
+
+    /**
+     * 先出现的值优先，ID3v2 之后再读到的 ID3v1 或重复帧不会覆盖
+     */
+    private static class TagBuilder {
+        String title;
+        String artist;
+        String album;
+        long durationMs;
+        Picture picture;
+        boolean frontCover;
+
+        boolean has(String field) {
+            switch (field) {
+                case "title":
+                    return title != null;
+                case "artist":
+                    return artist != null;
+                case "album":
+                    return album != null;
+                default:
+                    return durationMs > 0;
+            }
+        }
+
+        void set(String field, String value) {
+            if (value == null || has(field)) {
+                return;
+            }
+            switch (field) {
+                case "title":
+                    title = value;
+                    break;
+                case "artist":
+                    artist = value;
+                    break;
+                case "album":
+                    album = value;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // 容器头部给出的时长比 TLEN 更可靠，后读到的非零值覆盖先前的值
+        void setDuration(long durationMs) {
+            if (durationMs > 0) {
+                this.durationMs = durationMs;
+            }
+        }
+
+        // 封面正面优先，其余类型的图片只在还没有图片时使用
+        void setPicture(Picture picture, boolean frontCover) {
+            if (this.picture == null || (frontCover && !this.frontCover)) {
+                this.picture = picture;
+                this.frontCover = frontCover;
+            }
+        }
+
+        boolean hasFrontCover() {
+            return frontCover;
+        }
+
+        Tags build() {
+            return new Tags(title, artist, album, durationMs, picture);
+        }
+    }
+}
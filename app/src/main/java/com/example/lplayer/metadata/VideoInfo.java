@@ -0,0 +1,94 @@
+package com.example.lplayer.metadata;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * 视频容器头部中的基本信息，无法得知的字段为 0 或 null
+ */
+public class VideoInfo {
+    private final long durationMs;
+    private final int width;
+    private final int height;
+    private final String codec;
+    private final float frameRate;
+
+    public VideoInfo(long durationMs, int width, int height, String codec, float frameRate) {
+        this.durationMs = durationMs;
+        this.width = width;
+        this.height = height;
+        this.codec = codec;
+        this.frameRate = frameRate;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public String getCodec() {
+        return codec;
+    }
+
+    public float getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * 列表中显示的一行摘要，例如 "01:32:10 · 1920×1080 · H.264 · 23.98fps"
+     */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        if (durationMs > 0) {
+            long seconds = durationMs / 1000;
+            if (seconds >= 3600) {
+                summary.append(String.format(Locale.getDefault(), "%d:%02d:%02d",
+                        seconds / 3600, seconds / 60 % 60, seconds % 60));
+            } else {
+                summary.append(MusicMetadata.formatDuration(durationMs));
+            }
+        }
+        if (width > 0 && height > 0) {
+            appendSeparator(summary).append(width).append('×').append(height);
+        }
+        if (codec != null) {
+            appendSeparator(summary).append(codec);
+        }
+        if (frameRate > 0) {
+            // 整数帧率不显示小数，23.976 这类显示两位
+            String format = Math.abs(frameRate - Math.round(frameRate)) < 0.01f ? "%.0ffps" : "%.2ffps";
+            appendSeparator(summary).append(String.format(Locale.US, format, frameRate));
+        }
+        return summary.toString();
+    }
+
+    private static StringBuilder appendSeparator(StringBuilder summary) {
+        return summary.length() > 0 ? summary.append(" · ") : summary;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        VideoInfo other = (VideoInfo) obj;
+        return durationMs == other.durationMs && width == other.width && height == other.height
+                && Float.compare(frameRate, other.frameRate) == 0 && Objects.equals(codec, other.codec);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(durationMs, width, height, codec, frameRate);
+    }
+
+    @Override
+    public String toString() {
+        return getSummary();
+    }
+}
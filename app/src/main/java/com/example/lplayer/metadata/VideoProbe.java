@@ -0,0 +1,614 @@
+package com.example.lplayer.metadata;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 纯 Java 的视频容器探测，读取时长、分辨率、编码和帧率，不创建原生解码器
+ *
+ * - MP4/MOV：只进入 moov，读取 mvhd、第一条视频轨道的 tkhd、mdhd、stsd 和 stsz 的头部，跳过 mdat
+ * - Matroska/WebM：读取 Segment 下的 Info 与 Tracks；遇到 Cluster 时按 SeekHead 跳转，不读取音视频数据
+ *
+ * 各字段都拿到后立即停止读取。静态方法没有 Android 依赖，可以在 JVM 单元测试中运行。
+ */
+public class VideoProbe {
+    private static final String TAG = "VideoProbe";
+
+    private static final int MAX_BOX_DEPTH = 8;
+    private static final int MAX_EBML_DEPTH = 6;
+
+    private static final int EBML_HEADER = 0x1A45DFA3;
+    private static final int SEGMENT = 0x18538067;
+    private static final int SEEK_HEAD = 0x114D9B74;
+    private static final int SEEK = 0x4DBB;
+    private static final int SEEK_ID = 0x53AB;
+    private static final int SEEK_POSITION = 0x53AC;
+    private static final int INFO = 0x1549A966;
+    private static final int TIMECODE_SCALE = 0x2AD7B1;
+    private static final int DURATION = 0x4489;
+    private static final int TRACKS = 0x1654AE6B;
+    private static final int TRACK_ENTRY = 0xAE;
+    private static final int TRACK_TYPE = 0x83;
+    private static final int CODEC_ID = 0x86;
+    private static final int DEFAULT_DURATION = 0x23E383;
+    private static final int VIDEO = 0xE0;
+    private static final int PIXEL_WIDTH = 0xB0;
+    private static final int PIXEL_HEIGHT = 0xBA;
+    private static final int CLUSTER = 0x1F43B675;
+
+    private final ContentResolver contentResolver;
+
+    public VideoProbe(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * 探测文件，格式不支持或读取失败时返回 null
+     */
+    public VideoInfo probe(Uri uri) {
+        try {
+            ParcelFileDescriptor descriptor = contentResolver.openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return null;
+            }
+            try (ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+                return probe(in.getChannel());
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "探测视频信息失败: " + uri, e);
+            return null;
+        }
+    }
+
+    /**
+     * 只使用带位置参数的读取，不会改变 channel 的当前位置
+     */
+    public static VideoInfo probe(FileChannel channel) throws IOException {
+        byte[] head = readAt(channel, 0, 12);
+        Builder info = new Builder();
+        if (head.length >= 8 && (startsWith(head, 4, "ftyp") || startsWith(head, 4, "moov")
+                || startsWith(head, 4, "mdat") || startsWith(head, 4, "wide") || startsWith(head, 4, "free"))) {
+            readBoxes(channel, 0, channel.size(), 0, info, null);
+        } else if (head.length >= 4 && u32be(head, 0) == EBML_HEADER) {
+            readMatroska(channel, info);
+        } else {
+            return null;
+        }
+        return info.isEmpty() ? null : info.build();
+    }
+
+    // ---- MP4 ----
+
+    /**
+     * 遍历 [start, end) 范围内的 box，只进入需要的容器
+     *
+     * @param track 当前所在轨道的信息，不在 trak 内时为 null
+     */
+    private static void readBoxes(FileChannel channel, long start, long end, int depth, Builder info, Track track)
+            throws IOException {
+        long pos = start;
+        while (pos + 8 <= end && depth < MAX_BOX_DEPTH && !info.isComplete()) {
+            byte[] header = readAt(channel, pos, 16);
+            if (header.length < 8) {
+                break;
+            }
+            long size = u32be(header, 0) & 0xFFFFFFFFL;
+            int headerLength = 8;
+            if (size == 1 && header.length >= 16) {
+                size = u64be(header, 8);
+                headerLength = 16;
+            } else if (size == 0) {
+                size = end - pos;
+            }
+            if (size < headerLength || pos + size > end) {
+                break;
+            }
+            String type = new String(header, 4, 4, StandardCharsets.ISO_8859_1);
+            long body = pos + headerLength;
+            long bodyEnd = pos + size;
+            switch (type) {
+                case "moov":
+                case "mdia":
+                case "minf":
+                case "stbl":
+                    readBoxes(channel, body, bodyEnd, depth + 1, info, track);
+                    break;
+                case "trak": {
+                    // 只关心第一条视频轨道，已经拿到时跳过其余轨道
+                    if (info.hasVideoTrack) {
+                        break;
+                    }
+                    Track current = new Track();
+                    readBoxes(channel, body, bodyEnd, depth + 1, info, current);
+                    if (current.isVideo) {
+                        info.applyTrack(current);
+                    }
+                    break;
+                }
+                case "mvhd": {
+                    byte[] mvhd = readAt(channel, body, 32);
+                    if (mvhd.length >= 20) {
+                        boolean version1 = mvhd[0] == 1;
+                        long timescale = u32be(mvhd, version1 ? 20 : 12) & 0xFFFFFFFFL;
+                        long duration = version1 && mvhd.length >= 32 ? u64be(mvhd, 24)
+                                : u32be(mvhd, 16) & 0xFFFFFFFFL;
+                        if (timescale > 0) {
+                            info.durationMs = duration * 1000 / timescale;
+                        }
+                    }
+                    break;
+                }
+                case "tkhd":
+                    if (track != null) {
+                        // 宽高为 16.16 定点数，位于 tkhd 末尾
+                        byte[] tkhd = readAt(channel, body, 96);
+                        int offset = tkhd.length > 0 && tkhd[0] == 1 ? 88 : 76;
+                        if (tkhd.length >= offset + 8) {
+                            track.width = u32be(tkhd, offset) >>> 16;
+                            track.height = u32be(tkhd, offset + 4) >>> 16;
+                        }
+                    }
+                    break;
+                case "hdlr":
+                    if (track != null) {
+                        byte[] hdlr = readAt(channel, body, 12);
+                        track.isVideo = startsWith(hdlr, 8, "vide");
+                        if (!track.isVideo) {
+                            return; // 不是视频轨道，不再读取这条轨道的其余部分
+                        }
+                    }
+                    break;
+                case "mdhd":
+                    if (track != null) {
+                        byte[] mdhd = readAt(channel, body, 32);
+                        if (mdhd.length >= 20) {
+                            boolean version1 = mdhd[0] == 1;
+                            track.timescale = u32be(mdhd, version1 ? 20 : 12) & 0xFFFFFFFFL;
+                            track.duration = version1 && mdhd.length >= 32 ? u64be(mdhd, 24)
+                                    : u32be(mdhd, 16) & 0xFFFFFFFFL;
+                        }
+                    }
+                    break;
+                case "stsd":
+                    if (track != null) {
+                        // 第一个样本描述：4 字节条目数之后是 size + format，视觉样本项的宽高位于 format 之后第 24 字节
+                        byte[] stsd = readAt(channel, body, 8 + 8 + 28);
+                        if (stsd.length >= 16) {
+                            track.codec = mp4CodecName(new String(stsd, 12, 4, StandardCharsets.ISO_8859_1));
+                        }
+                        if (stsd.length >= 44 && (track.width == 0 || track.height == 0)) {
+                            track.width = ((stsd[40] & 0xFF) << 8) | (stsd[41] & 0xFF);
+                            track.height = ((stsd[42] & 0xFF) << 8) | (stsd[43] & 0xFF);
+                        }
+                    }
+                    break;
+                case "stsz":
+                case "stz2":
+                    if (track != null) {
+                        // 只读头部的样本数，不读取样本大小表
+                        byte[] stsz = readAt(channel, body, 12);
+                        if (stsz.length >= 12) {
+                            track.sampleCount = u32be(stsz, 8) & 0xFFFFFFFFL;
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pos = bodyEnd;
+        }
+    }
+
+    private static String mp4CodecName(String format) {
+        switch (format) {
+            case "avc1":
+            case "avc3":
+                return "H.264";
+            case "hvc1":
+            case "hev1":
+                return "HEVC";
+            case "av01":
+                return "AV1";
+            case "vp08":
+                return "VP8";
+            case "vp09":
+                return "VP9";
+            case "mp4v":
+                return "MPEG-4";
+            case "s263":
+            case "h263":
+                return "H.263";
+            default:
+                return format.trim();
+        }
+    }
+
+    // ---- Matroska ----
+
+    private static void readMatroska(FileChannel channel, Builder info) throws IOException {
+        long size = channel.size();
+        long pos = 0;
+        while (pos < size) {
+            Element element = readElementHeader(channel, pos, size);
+            if (element == null) {
+                return;
+            }
+            if (element.id == SEGMENT) {
+                readSegment(channel, element.dataStart, element.dataEnd, info);
+                return;
+            }
+            pos = element.dataEnd;
+        }
+    }
+
+    private static void readSegment(FileChannel channel, long start, long end, Builder info) throws IOException {
+        long infoPosition = -1;
+        long tracksPosition = -1;
+        boolean infoRead = false;
+        boolean tracksRead = false;
+        long pos = start;
+        while (pos < end && !(infoRead && tracksRead)) {
+            Element element = readElementHeader(channel, pos, end);
+            if (element == null) {
+                break;
+            }
+            if (element.id == SEEK_HEAD) {
+                long[] positions = readSeekHead(channel, element);
+                infoPosition = positions[0] >= 0 ? start + positions[0] : -1;
+                tracksPosition = positions[1] >= 0 ? start + positions[1] : -1;
+            } else if (element.id == INFO) {
+                readInfo(channel, element, info);
+                infoRead = true;
+            } else if (element.id == TRACKS) {
+                readEbmlChildren(channel, element.dataStart, element.dataEnd, 1, info, null);
+                tracksRead = true;
+            } else if (element.id == CLUSTER || element.unknownSize) {
+                // 音视频数据开始了：剩下的头部只能通过 SeekHead 找到
+                if (!infoRead && infoPosition > pos) {
+                    Element target = readElementHeader(channel, infoPosition, end);
+                    if (target != null && target.id == INFO) {
+                        readInfo(channel, target, info);
+                    }
+                }
+                if (!tracksRead && tracksPosition > pos) {
+                    Element target = readElementHeader(channel, tracksPosition, end);
+                    if (target != null && target.id == TRACKS) {
+                        readEbmlChildren(channel, target.dataStart, target.dataEnd, 1, info, null);
+                    }
+                }
+                break;
+            }
+            pos = element.dataEnd;
+        }
+    }
+
+    /**
+     * @return Info 与 Tracks 相对 Segment 数据起点的位置，没有时为 -1
+     */
+    private static long[] readSeekHead(FileChannel channel, Element seekHead) throws IOException {
+        long[] positions = {-1, -1};
+        byte[] data = readAt(channel, seekHead.dataStart, (int) Math.min(seekHead.dataEnd - seekHead.dataStart, 4096));
+        int pos = 0;
+        while (pos < data.length) {
+            long[] seek = parseElementHeader(data, pos);
+            if (seek == null) {
+                break;
+            }
+            int seekStart = (int) seek[2];
+            int seekEnd = (int) Math.min(data.length, seekStart + seek[1]);
+            if (seek[0] == SEEK) {
+                long id = -1;
+                long position = -1;
+                int child = seekStart;
+                while (child < seekEnd) {
+                    long[] field = parseElementHeader(data, child);
+                    if (field == null) {
+                        break;
+                    }
+                    int fieldStart = (int) field[2];
+                    int fieldLength = (int) Math.min(field[1], seekEnd - fieldStart);
+                    if (field[0] == SEEK_ID || field[0] == SEEK_POSITION) {
+                        long value = readUnsigned(data, fieldStart, fieldLength);
+                        if (field[0] == SEEK_ID) {
+                            id = value;
+                        } else {
+                            position = value;
+                        }
+                    }
+                    child = fieldStart + fieldLength;
+                }
+                if (id == INFO) {
+                    positions[0] = position;
+                } else if (id == TRACKS) {
+                    positions[1] = position;
+                }
+            }
+            pos = seekEnd;
+        }
+        return positions;
+    }
+
+    private static void readInfo(FileChannel channel, Element element, Builder info) throws IOException {
+        byte[] data = readAt(channel, element.dataStart, (int) Math.min(element.dataEnd - element.dataStart, 4096));
+        long timecodeScale = 1_000_000;
+        double duration = 0;
+        int pos = 0;
+        while (pos < data.length) {
+            long[] field = parseElementHeader(data, pos);
+            if (field == null) {
+                break;
+            }
+            int start = (int) field[2];
+            int length = (int) Math.min(field[1], data.length - start);
+            if (field[0] == TIMECODE_SCALE) {
+                timecodeScale = readUnsigned(data, start, length);
+            } else if (field[0] == DURATION) {
+                duration = length == 4 ? Float.intBitsToFloat((int) readUnsigned(data, start, 4))
+                        : length == 8 ? Double.longBitsToDouble(readUnsigned(data, start, 8)) : 0;
+            }
+            pos = start + length;
+        }
+        if (duration > 0) {
+            info.durationMs = (long) (duration * timecodeScale / 1_000_000);
+        }
+    }
+
+    /**
+     * 解析 Tracks/TrackEntry/Video 的子元素，只处理第一条视频轨道
+     */
+    private static void readEbmlChildren(FileChannel channel, long start, long end, int depth, Builder info,
+                                         Track track) throws IOException {
+        long pos = start;
+        while (pos < end && depth < MAX_EBML_DEPTH && !info.hasVideoTrack) {
+            Element element = readElementHeader(channel, pos, end);
+            if (element == null) {
+                break;
+            }
+            switch (element.id) {
+                case TRACK_ENTRY: {
+                    Track current = new Track();
+                    readEbmlChildren(channel, element.dataStart, element.dataEnd, depth + 1, info, current);
+                    if (current.isVideo) {
+                        info.applyTrack(current);
+                    }
+                    break;
+                }
+                case VIDEO:
+                    if (track != null) {
+                        readEbmlChildren(channel, element.dataStart, element.dataEnd, depth + 1, info, track);
+                    }
+                    break;
+                case TRACK_TYPE:
+                case DEFAULT_DURATION:
+                case PIXEL_WIDTH:
+                case PIXEL_HEIGHT:
+                case CODEC_ID:
+                    if (track != null && element.dataEnd - element.dataStart <= 64) {
+                        byte[] value = readAt(channel, element.dataStart, (int) (element.dataEnd - element.dataStart));
+                        applyTrackField(track, element.id, value);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            pos = element.dataEnd;
+        }
+    }
+
+    private static void applyTrackField(Track track, int id, byte[] value) {
+        switch (id) {
+            case TRACK_TYPE:
+                track.isVideo = readUnsigned(value, 0, value.length) == 1;
+                break;
+            case DEFAULT_DURATION: {
+                long nanosPerFrame = readUnsigned(value, 0, value.length);
+                if (nanosPerFrame > 0) {
+                    track.frameRate = 1_000_000_000f / nanosPerFrame;
+                }
+                break;
+            }
+            case PIXEL_WIDTH:
+                track.width = (int) readUnsigned(value, 0, value.length);
+                break;
+            case PIXEL_HEIGHT:
+                track.height = (int) readUnsigned(value, 0, value.length);
+                break;
+            case CODEC_ID:
+                track.codec = matroskaCodecName(new String(value, StandardCharsets.US_ASCII).trim());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static String matroskaCodecName(String codecId) {
+        switch (codecId) {
+            case "V_MPEG4/ISO/AVC":
+                return "H.264";
+            case "V_MPEGH/ISO/HEVC":
+                return "HEVC";
+            case "V_AV1":
+                return "AV1";
+            case "V_VP8":
+                return "VP8";
+            case "V_VP9":
+                return "VP9";
+            case "V_MPEG4/ISO/ASP":
+            case "V_MPEG4/ISO/SP":
+                return "MPEG-4";
+            case "V_MPEG2":
+                return "MPEG-2";
+            default:
+                return codecId.startsWith("V_") ? codecId.substring(2) : codecId;
+        }
+    }
+
+    private static Element readElementHeader(FileChannel channel, long pos, long end) throws IOException {
+        byte[] header = readAt(channel, pos, 12);
+        long[] parsed = parseElementHeader(header, 0);
+        if (parsed == null) {
+            return null;
+        }
+        long dataStart = pos + parsed[2];
+        boolean unknownSize = parsed[1] < 0;
+        long dataEnd = unknownSize ? end : Math.min(end, dataStart + parsed[1]);
+        return new Element((int) parsed[0], dataStart, dataEnd, unknownSize);
+    }
+
+    /**
+     * 解析 EBML 元素头：ID 保留长度标记位，大小去掉标记位；大小全为 1 表示未知长度，返回 -1
+     *
+     * @return {id, size, 数据起始偏移}，数据不足时返回 null
+     */
+    private static long[] parseElementHeader(byte[] data, int pos) {
+        if (pos >= data.length) {
+            return null;
+        }
+        int idLength = vintLength(data[pos]);
+        if (idLength < 1 || idLength > 4 || pos + idLength >= data.length) {
+            return null;
+        }
+        long id = readUnsigned(data, pos, idLength);
+        int sizePos = pos + idLength;
+        int sizeLength = vintLength(data[sizePos]);
+        if (sizeLength < 1 || sizePos + sizeLength > data.length) {
+            return null;
+        }
+        long size = data[sizePos] & (0xFF >> sizeLength);
+        boolean allOnes = size == (0xFF >> sizeLength);
+        for (int i = 1; i < sizeLength; i++) {
+            int b = data[sizePos + i] & 0xFF;
+            allOnes &= b == 0xFF;
+            size = (size << 8) | b;
+        }
+        return new long[]{id, allOnes ? -1 : size, sizePos + sizeLength};
+    }
+
+    private static int vintLength(byte first) {
+        int b = first & 0xFF;
+        for (int length = 1; length <= 8; length++) {
+            if ((b & (0x80 >> (length - 1))) != 0) {
+                return length;
+            }
+        }
+        return -1;
+    }
+
+    // ---- 工具方法 ----
+
+    private static byte[] readAt(FileChannel channel, long position, int length) throws IOException {
+        if (length <= 0 || position < 0) {
+            return new byte[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                break;
+            }
+        }
+        return buffer.position() == length ? buffer.array() : Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static boolean startsWith(byte[] data, int offset, String ascii) {
+        if (offset < 0 || offset + ascii.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if ((data[offset + i] & 0xFF) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long readUnsigned(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length && offset + i < data.length; i++) {
+            value = (value << 8) | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int u32be(byte[] data, int offset) {
+        return (int) readUnsigned(data, offset, 4);
+    }
+
+    private static long u64be(byte[] data, int offset) {
+        return readUnsigned(data, offset, 8);
+    }
+
+    private static class Element {
+        final int id;
+        final long dataStart;
+        final long dataEnd;
+        final boolean unknownSize;
+
+        Element(int id, long dataStart, long dataEnd, boolean unknownSize) {
+            this.id = id;
+            this.dataStart = dataStart;
+            this.dataEnd = dataEnd;
+            this.unknownSize = unknownSize;
+        }
+    }
+
+    /**
+     * 一条轨道上读到的字段
+     */
+    private static class Track {
+        boolean isVideo;
+        int width;
+        int height;
+        String codec;
+        float frameRate;
+        long timescale;
+        long duration;
+        long sampleCount;
+    }
+
+    private static class Builder {
+        long durationMs;
+        boolean hasVideoTrack;
+        int width;
+        int height;
+        String codec;
+        float frameRate;
+
+        void applyTrack(Track track) {
+            hasVideoTrack = true;
+            width = track.width;
+            height = track.height;
+            codec = track.codec;
+            frameRate = track.frameRate;
+            if (frameRate <= 0 && track.sampleCount > 0 && track.duration > 0 && track.timescale > 0) {
+                // MP4 没有显式帧率，用样本数除以轨道时长得到平均帧率
+                frameRate = (float) (track.sampleCount * (double) track.timescale / track.duration);
+            }
+            if (durationMs <= 0 && track.duration > 0 && track.timescale > 0) {
+                durationMs = track.duration * 1000 / track.timescale;
+            }
+        }
+
+        /**
+         * 时长与视频轨道都已拿到，可以停止读取
+         */
+        boolean isComplete() {
+            return durationMs > 0 && hasVideoTrack;
+        }
+
+        boolean isEmpty() {
+            return durationMs <= 0 && !hasVideoTrack;
+        }
+
+        VideoInfo build() {
+            return new VideoInfo(durationMs, width, height, codec, frameRate);
+        }
+    }
+}
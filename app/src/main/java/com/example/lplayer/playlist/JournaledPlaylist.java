@@ -0,0 +1,315 @@
+package com.example.lplayer.playlist;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lplayer.MediaItemCodec;
+import com.example.lplayer.MusicAdapter;
+import com.example.lplayer.VideoAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+
+/**
+ * 以数据库检查点加追加日志保存的播放列表
+ *
+ * 保存时与上次保存的列表比较，只把变化（插入、删除、移动、播放位置）追加到日志，
+ * 列表没有变化时不写任何东西。加载时读取检查点再重放日志。日志超过一定大小后，
+ * 把当前列表整体写入数据库作为新检查点并清空日志。
+ * 所有方法都会读写磁盘，除 load 外应在后台线程调用。
+ */
+public class JournaledPlaylist<T> {
+    private static final String TAG = "JournaledPlaylist";
+    // 日志超过这个大小就合并到数据库
+    private static final long COMPACT_BYTES = 256 * 1024;
+
+    /**
+     * 检查点的存取，由 PlaylistDatabase 提供
+     */
+    interface Base<T> {
+        List<T> loadItems();
+
+        PlaylistDatabase.Checkpoint loadCheckpoint();
+
+        void replace(List<T> items, PlaylistDatabase.Checkpoint checkpoint);
+
+        void clear(PlaylistDatabase.Checkpoint checkpoint);
+    }
+
+    private final String name;
+    private final Base<T> base;
+    private final PlaylistJournal<T> journal;
+    // 判断两项内容是否相同，不同的项按删除再插入记录
+    private final BiPredicate<T, T> sameItem;
+
+    // 与检查点加日志一致的当前列表
+    private final List<T> items = new ArrayList<>();
+    private int playingPosition = -1;
+    private boolean loaded = false;
+    private boolean compactionNeeded = false;
+
+    JournaledPlaylist(String name, Base<T> base, PlaylistJournal<T> journal, BiPredicate<T, T> sameItem) {
+        this.name = name;
+        this.base = base;
+        this.journal = journal;
+        this.sameItem = sameItem;
+    }
+
+    public static JournaledPlaylist<VideoAdapter.VideoItem> forVideos(Context context, String playlist) {
+        PlaylistDatabase database = PlaylistDatabase.getInstance(context);
+        return new JournaledPlaylist<>(playlist, new Base<VideoAdapter.VideoItem>() {
+            @Override
+            public List<VideoAdapter.VideoItem> loadItems() {
+                return database.loadVideos(playlist);
+            }
+
+            @Override
+            public PlaylistDatabase.Checkpoint loadCheckpoint() {
+                return database.getCheckpoint(playlist);
+            }
+
+            @Override
+            public void replace(List<VideoAdapter.VideoItem> items, PlaylistDatabase.Checkpoint checkpoint) {
+                database.replaceVideos(playlist, items, checkpoint);
+            }
+
+            @Override
+            public void clear(PlaylistDatabase.Checkpoint checkpoint) {
+                database.clear(playlist, checkpoint);
+            }
+        }, new PlaylistJournal<>(journalFile(context, playlist), MediaItemCodec::writeVideo, MediaItemCodec::readVideo),
+                (a, b) -> a == b || (Objects.equals(a.getUri(), b.getUri())
+                        && Objects.equals(a.getDisplayName(), b.getDisplayName())
+                        && Objects.equals(a.getInfo(), b.getInfo())));
+    }
+
+    public static JournaledPlaylist<MusicAdapter.MusicItem> forMusic(Context context, String playlist) {
+        PlaylistDatabase database = PlaylistDatabase.getInstance(context);
+        return new JournaledPlaylist<>(playlist, new Base<MusicAdapter.MusicItem>() {
+            @Override
+            public List<MusicAdapter.MusicItem> loadItems() {
+                return database.loadMusic(playlist);
+            }
+
+            @Override
+            public PlaylistDatabase.Checkpoint loadCheckpoint() {
+                return database.getCheckpoint(playlist);
+            }
+
+            @Override
+            public void replace(List<MusicAdapter.MusicItem> items, PlaylistDatabase.Checkpoint checkpoint) {
+                database.replaceMusic(playlist, items, checkpoint);
+            }
+
+            @Override
+            public void clear(PlaylistDatabase.Checkpoint checkpoint) {
+                database.clear(playlist, checkpoint);
+            }
+        }, new PlaylistJournal<>(journalFile(context, playlist), MediaItemCodec::writeMusic, MediaItemCodec::readMusic),
+                (a, b) -> a == b || (Objects.equals(a.getUri(), b.getUri())
+                        && Objects.equals(a.getDisplayName(), b.getDisplayName())
+                        && Objects.equals(a.getArtist(), b.getArtist())
+                        && Objects.equals(a.getAlbum(), b.getAlbum())
+                        && Objects.equals(a.getDuration(), b.getDuration())));
+    }
+
+    private static File journalFile(Context context, String playlist) {
+        return new File(context.getApplicationContext().getFilesDir(), "playlist_" + playlist + ".journal");
+    }
+
+    /**
+     * 读取检查点并重放日志，返回只读副本；只在第一次调用时访问磁盘
+     */
+    public synchronized List<T> load() {
+        ensureLoaded();
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    public synchronized int getPlayingPosition() {
+        ensureLoaded();
+        return playingPosition;
+    }
+
+    /**
+     * 记录与上次保存相比的变化，没有变化时返回 false 且不写磁盘
+     */
+    public synchronized boolean save(List<T> newItems, int newPlayingPosition) throws IOException {
+        ensureLoaded();
+        try {
+            boolean changed = diff(newItems, journal);
+            if (newPlayingPosition != playingPosition) {
+                journal.position(newPlayingPosition);
+                changed = true;
+            }
+            if (!changed) {
+                return false;
+            }
+            journal.flush();
+        } catch (IOException e) {
+            journal.discardPending();
+            throw e;
+        }
+        items.clear();
+        items.addAll(newItems);
+        playingPosition = newPlayingPosition;
+        if (journal.length() > COMPACT_BYTES) {
+            compactionNeeded = true;
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * 日志过大或重放出错时把当前列表写成新检查点并清空日志
+     */
+    public synchronized void compactIfNeeded() {
+        ensureLoaded();
+        if (!compactionNeeded) {
+            return;
+        }
+        long start = SystemClock.elapsedRealtime();
+        long journalLength = journal.length();
+        try {
+            // 先提交检查点再清空日志：中间崩溃时日志里的记录序号都不大于检查点，不会被重复应用
+            base.replace(new ArrayList<>(items), new PlaylistDatabase.Checkpoint(playingPosition, journal.lastSequence()));
+            journal.reset();
+            compactionNeeded = false;
+            Log.d(TAG, "播放列表 " + name + " 日志已合并，" + journalLength + " 字节，耗时 "
+                    + (SystemClock.elapsedRealtime() - start) + "ms");
+        } catch (Exception e) {
+            Log.e(TAG, "合并播放列表日志失败: " + name, e);
+        }
+    }
+
+    /**
+     * 清空列表和日志
+     */
+    public synchronized void clear() {
+        ensureLoaded();
+        try {
+            base.clear(new PlaylistDatabase.Checkpoint(-1, journal.lastSequence()));
+            journal.reset();
+            items.clear();
+            playingPosition = -1;
+            compactionNeeded = false;
+        } catch (Exception e) {
+            Log.e(TAG, "清空播放列表失败: " + name, e);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        long start = SystemClock.elapsedRealtime();
+        PlaylistDatabase.Checkpoint checkpoint = base.loadCheckpoint();
+        items.addAll(base.loadItems());
+        playingPosition = checkpoint.playingPosition;
+        try {
+            int replayed = journal.replay(checkpoint.sequence, replayTarget);
+            compactionNeeded = journal.length() > COMPACT_BYTES;
+            Log.d(TAG, "播放列表 " + name + " 已加载，共 " + items.size() + " 项，重放 " + replayed
+                    + " 条日志，耗时 " + (SystemClock.elapsedRealtime() - start) + "ms");
+        } catch (IOException e) {
+            // 日志与检查点对不上，只使用检查点，下次合并时清空日志
+            Log.e(TAG, "重放播放列表日志失败: " + name, e);
+            items.clear();
+            items.addAll(base.loadItems());
+            playingPosition = checkpoint.playingPosition;
+            compactionNeeded = true;
+        }
+    }
+
+    /**
+     * 比较公共前缀和后缀，中间不同的部分记录为一次移动，或一次删除加一次插入
+     */
+    private boolean diff(List<T> newItems, PlaylistMutations<T> out) throws IOException {
+        int oldSize = items.size();
+        int newSize = newItems.size();
+        int prefix = 0;
+        while (prefix < oldSize && prefix < newSize && sameItem.test(items.get(prefix), newItems.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < oldSize - prefix && suffix < newSize - prefix
+                && sameItem.test(items.get(oldSize - 1 - suffix), newItems.get(newSize - 1 - suffix))) {
+            suffix++;
+        }
+        int removed = oldSize - prefix - suffix;
+        int inserted = newSize - prefix - suffix;
+        if (removed == 0 && inserted == 0) {
+            return false;
+        }
+        if (removed == inserted && removed >= 2) {
+            int last = prefix + removed - 1;
+            if (isShifted(newItems, prefix, last, 1) && sameItem.test(newItems.get(last), items.get(prefix))) {
+                // 中间段的第一项被移到了末尾
+                out.move(prefix, last);
+                return true;
+            }
+            if (isShifted(newItems, prefix + 1, last + 1, -1) && sameItem.test(newItems.get(prefix), items.get(last))) {
+                // 中间段的最后一项被移到了开头
+                out.move(last, prefix);
+                return true;
+            }
+        }
+        if (removed > 0) {
+            out.remove(prefix, removed);
+        }
+        if (inserted > 0) {
+            out.insert(prefix, newItems.subList(prefix, prefix + inserted));
+        }
+        return true;
+    }
+
+    // newItems[from, to) 是否与 items 中错开 offset 的位置逐项相同
+    private boolean isShifted(List<T> newItems, int from, int to, int offset) {
+        for (int i = from; i < to; i++) {
+            if (!sameItem.test(newItems.get(i), items.get(i + offset))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 重放时直接修改当前列表，越界说明日志与检查点不一致
+    private final PlaylistMutations<T> replayTarget = new PlaylistMutations<T>() {
+        @Override
+        public void insert(int position, List<T> inserted) throws IOException {
+            checkRange(position, items.size());
+            items.addAll(position, inserted);
+        }
+
+        @Override
+        public void remove(int position, int count) throws IOException {
+            checkRange(position, items.size());
+            checkRange(position + count, items.size());
+            items.subList(position, position + count).clear();
+        }
+
+        @Override
+        public void move(int from, int to) throws IOException {
+            checkRange(from, items.size() - 1);
+            checkRange(to, items.size() - 1);
+            items.add(to, items.remove(from));
+        }
+
+        @Override
+        public void position(int position) {
+            playingPosition = position;
+        }
+
+        private void checkRange(int value, int max) throws IOException {
+            if (value < 0 || value > max) {
+                throw new IOException("日志记录超出列表范围: " + value + " / " + max);
+            }
+        }
+    };
+}
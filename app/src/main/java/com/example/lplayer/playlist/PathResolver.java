@@ -0,0 +1,287 @@
+package com.example.lplayer.playlist;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import com.example.lplayer.scan.ScanManifest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 把播放列表文件中的位置解析为已配置文件夹中的文档 URI，以及反过来把文档 URI 写成相对路径
+ *
+ * 按以下顺序解析：
+ * 1. content:// 和 http(s):// 直接使用，file:// 取出路径后按路径处理；
+ * 2. 相对路径先按播放列表文件所在的目录拼接，再在扫描清单的索引中查找；
+ * 3. 依次去掉路径开头的目录在索引中查找，其他设备导出的绝对路径（包括 Windows 路径）也能匹配；
+ * 4. 系统外部存储中的根目录（文档 ID 形如“卷:路径”），把路径中与根目录对应的部分直接换算成文档 ID，
+ *    这样尚未扫描过的文件夹也能解析；换算出的文档各查询一次确认存在，不存在的按未找到处理。
+ * 索引键为小写的相对路径，只在第一次需要时从扫描清单建立，大小与媒体库相同，与播放列表长度无关。
+ */
+public class PathResolver {
+    private static final String TAG = "PathResolver";
+    // 系统外部存储的文档 ID 是“卷:相对路径”，可以直接由路径换算
+    private static final String EXTERNAL_STORAGE_AUTHORITY = "com.android.externalstorage.documents";
+
+    private final ContentResolver resolver;
+    private final Collection<ScanManifest> manifests;
+    private final List<Uri> roots;
+    private Map<String, Uri> byPath;
+    private Map<Uri, String> byUri;
+    // 播放列表文件所在目录，相对于 baseRoot 的路径段
+    private Uri baseRoot;
+    private List<String> baseSegments = new ArrayList<>();
+
+    public PathResolver(ContentResolver resolver, Collection<ScanManifest> manifests, List<Uri> roots) {
+        this.resolver = resolver;
+        this.manifests = manifests;
+        this.roots = roots;
+    }
+
+    /**
+     * 以播放列表文件所在的目录作为相对路径的基准；文件不在任何已配置文件夹中时只按后缀匹配
+     */
+    public void setBase(Uri playlistUri) {
+        baseRoot = null;
+        baseSegments = new ArrayList<>();
+        String documentId;
+        try {
+            documentId = DocumentsContract.getDocumentId(playlistUri);
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        for (Uri root : roots) {
+            String rootId = pathBasedRootId(root);
+            if (rootId == null || !root.getAuthority().equals(playlistUri.getAuthority())) {
+                continue;
+            }
+            // 整个卷作为根目录时文档 ID 为“primary:”
+            String prefix = rootId.endsWith(":") || rootId.endsWith("/") ? rootId : rootId + "/";
+            if (documentId.startsWith(prefix)) {
+                baseRoot = root;
+                List<String> segments = normalize(documentId.substring(prefix.length()), new ArrayList<>());
+                if (segments != null && !segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                    baseSegments = segments;
+                }
+                return;
+            }
+        }
+        // 文档 ID 不带路径的提供方（如下载、MediaStore）只能在清单中按 ID 找到所在目录
+        for (ScanManifest manifest : manifests) {
+            if (!manifest.getTreeUri().getAuthority().equals(playlistUri.getAuthority())) {
+                continue;
+            }
+            String[] found = new String[1];
+            manifest.forEachFilePath((path, document) -> {
+                if (found[0] == null && document.getDocumentId().equals(documentId)) {
+                    found[0] = path;
+                }
+            });
+            if (found[0] != null) {
+                baseRoot = manifest.getTreeUri();
+                List<String> segments = normalize(found[0], new ArrayList<>());
+                if (segments != null && !segments.isEmpty()) {
+                    segments.remove(segments.size() - 1);
+                    baseSegments = segments;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 解析一项的位置，无法解析时返回 null
+     */
+    public Uri resolve(String location) {
+        if (location == null || location.isEmpty()) {
+            return null;
+        }
+        String path = location;
+        int scheme = location.indexOf("://");
+        if (scheme > 1) {
+            String name = location.substring(0, scheme).toLowerCase(Locale.ROOT);
+            if (name.equals("content") || name.equals("http") || name.equals("https")) {
+                return Uri.parse(location);
+            }
+            if (!name.equals("file")) {
+                return null;
+            }
+            path = Uri.parse(location).getPath();
+            if (path == null) {
+                return null;
+            }
+        }
+        path = path.replace('\\', '/');
+        boolean relative = !path.startsWith("/") && !hasDrive(path);
+
+        if (relative && baseRoot != null) {
+            List<String> segments = normalize(path, new ArrayList<>(baseSegments));
+            if (segments != null) {
+                Uri uri = lookup(segments, 0);
+                if (uri != null) {
+                    return uri;
+                }
+                uri = buildFromRoot(baseRoot, segments);
+                if (uri != null && exists(uri)) {
+                    return uri;
+                }
+            }
+        }
+
+        List<String> segments = normalize(path, new ArrayList<>());
+        if (segments == null || segments.isEmpty()) {
+            return null;
+        }
+        for (int start = 0; start < segments.size(); start++) {
+            Uri uri = lookup(segments, start);
+            if (uri != null) {
+                return uri;
+            }
+        }
+        // 绝对路径中包含根目录自身的路径时，换算成根目录下的文档
+        for (Uri root : roots) {
+            String rootId = pathBasedRootId(root);
+            int colon = rootId != null ? rootId.indexOf(':') : -1;
+            if (colon < 0) {
+                continue;
+            }
+            List<String> rootSegments = normalize(rootId.substring(colon + 1), new ArrayList<>());
+            if (rootSegments == null) {
+                continue;
+            }
+            int match = indexOfSegments(segments, rootSegments);
+            if (match >= 0) {
+                Uri uri = buildFromRoot(root, segments.subList(match + rootSegments.size(), segments.size()));
+                if (uri != null && exists(uri)) {
+                    return uri;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 文档在扫描清单中相对于根目录的路径，不在清单中时返回 null
+     */
+    public String relativePath(Uri uri) {
+        if (byUri == null) {
+            byUri = new HashMap<>();
+            for (ScanManifest manifest : manifests) {
+                manifest.forEachMediaPath((path, document) -> byUri.putIfAbsent(document.getUri(), path));
+            }
+        }
+        return byUri.get(uri);
+    }
+
+    private Uri lookup(List<String> segments, int start) {
+        if (byPath == null) {
+            byPath = new HashMap<>();
+            for (ScanManifest manifest : manifests) {
+                manifest.forEachMediaPath((path, document) ->
+                        byPath.putIfAbsent(path.toLowerCase(Locale.ROOT), document.getUri()));
+            }
+            Log.d(TAG, "路径索引已建立，共 " + byPath.size() + " 个文件");
+        }
+        if (byPath.isEmpty()) {
+            return null;
+        }
+        StringBuilder key = new StringBuilder();
+        for (int i = start; i < segments.size(); i++) {
+            if (i > start) {
+                key.append('/');
+            }
+            key.append(segments.get(i).toLowerCase(Locale.ROOT));
+        }
+        return byPath.get(key.toString());
+    }
+
+    /**
+     * 换算出的文档 URI 不在扫描清单中，查询一次确认文件存在
+     */
+    private boolean exists(Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[]{DocumentsContract.Document.COLUMN_DOCUMENT_ID},
+                null, null, null)) {
+            return cursor != null && cursor.moveToFirst();
+        } catch (Exception e) {
+            // 文件不存在时提供方通常抛出 IllegalArgumentException 或 FileNotFoundException 包装的异常
+            return false;
+        }
+    }
+
+    // 文档 ID 就是根目录 ID 加相对路径，只适用于系统外部存储
+    private static Uri buildFromRoot(Uri root, List<String> segments) {
+        String rootId = pathBasedRootId(root);
+        if (rootId == null || rootId.indexOf(':') < 0 || segments.isEmpty()) {
+            return null;
+        }
+        StringBuilder documentId = new StringBuilder(rootId);
+        for (String segment : segments) {
+            if (documentId.charAt(documentId.length() - 1) != ':' && documentId.charAt(documentId.length() - 1) != '/') {
+                documentId.append('/');
+            }
+            documentId.append(segment);
+        }
+        return DocumentsContract.buildDocumentUriUsingTree(root, documentId.toString());
+    }
+
+    private static String pathBasedRootId(Uri root) {
+        if (!EXTERNAL_STORAGE_AUTHORITY.equals(root.getAuthority())) {
+            return null;
+        }
+        try {
+            return DocumentsContract.getTreeDocumentId(root);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 把路径按 / 拆开追加到 segments，去掉空段和“.”，“..”回退一段；回退超出开头时返回 null
+     */
+    private static List<String> normalize(String path, List<String> segments) {
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) {
+                continue;
+            }
+            if (segment.equals("..")) {
+                if (segments.isEmpty()) {
+                    return null;
+                }
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    // Windows 路径，如 C:/Music
+    private static boolean hasDrive(String path) {
+        return path.length() >= 2 && path.charAt(1) == ':' && Character.isLetter(path.charAt(0));
+    }
+
+    private static int indexOfSegments(List<String> segments, List<String> target) {
+        if (target.isEmpty()) {
+            return -1;
+        }
+        outer:
+        for (int i = 0; i + target.size() < segments.size(); i++) {
+            for (int j = 0; j < target.size(); j++) {
+                if (!segments.get(i + j).equalsIgnoreCase(target.get(j))) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
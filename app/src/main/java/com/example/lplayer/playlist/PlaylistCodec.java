@@ -0,0 +1,144 @@
+package com.example.lplayer.playlist;
+
+import android.net.Uri;
+
+import com.example.lplayer.MusicAdapter;
+import com.example.lplayer.VideoAdapter;
+import com.example.lplayer.metadata.VideoInfo;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+/**
+ * 旧版本 JSON 播放列表的流式解码
+ *
+ * 用 JsonReader 逐个读出数组元素，每读完一项就交给 consumer，不经过反射，
+ * 也不在内存中建立完整的列表，额外内存与列表长度无关。未知字段跳过，缺少的字段取默认值，
+ * 与旧版本 Gson 的读取结果一致。没有 uri 的项无法播放，直接丢弃。
+ */
+public final class PlaylistCodec {
+
+    private PlaylistCodec() {
+    }
+
+    /**
+     * 读取视频项数组，返回读出的项数
+     */
+    public static int readVideos(Reader in, Consumer<? super VideoAdapter.VideoItem> consumer) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String uri = null;
+            String displayName = null;
+            long durationMs = 0;
+            int width = 0;
+            int height = 0;
+            String codec = null;
+            float frameRate = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "uri":
+                        uri = reader.nextString();
+                        break;
+                    case "displayName":
+                        displayName = reader.nextString();
+                        break;
+                    case "durationMs":
+                        durationMs = reader.nextLong();
+                        break;
+                    case "width":
+                        width = reader.nextInt();
+                        break;
+                    case "height":
+                        height = reader.nextInt();
+                        break;
+                    case "codec":
+                        codec = reader.nextString();
+                        break;
+                    case "frameRate":
+                        frameRate = (float) reader.nextDouble();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (uri == null) {
+                continue;
+            }
+            // 旧版本保存的列表没有探测信息时不生成 VideoInfo
+            VideoInfo info = null;
+            if (durationMs > 0 || width > 0 || codec != null) {
+                info = new VideoInfo(durationMs, width, height, codec, frameRate);
+            }
+            consumer.accept(new VideoAdapter.VideoItem(Uri.parse(uri), displayName, info));
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+
+    /**
+     * 读取音乐项数组，返回读出的项数
+     */
+    public static int readMusic(Reader in, Consumer<? super MusicAdapter.MusicItem> consumer) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String uri = null;
+            String displayName = null;
+            String artist = null;
+            String album = null;
+            String duration = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "uri":
+                        uri = reader.nextString();
+                        break;
+                    case "displayName":
+                        displayName = reader.nextString();
+                        break;
+                    case "artist":
+                        artist = reader.nextString();
+                        break;
+                    case "album":
+                        album = reader.nextString();
+                        break;
+                    case "duration":
+                        duration = reader.nextString();
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            if (uri == null) {
+                continue;
+            }
+            consumer.accept(new MusicAdapter.MusicItem(Uri.parse(uri), displayName, artist, album, duration));
+            count++;
+        }
+        reader.endArray();
+        return count;
+    }
+}
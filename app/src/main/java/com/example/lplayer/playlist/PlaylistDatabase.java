@@ -0,0 +1,605 @@
+package com.example.lplayer.playlist;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lplayer.MusicAdapter;
+import com.example.lplayer.VideoAdapter;
+import com.example.lplayer.metadata.VideoInfo;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 播放列表和媒体条目的 SQLite 存储
+ *
+ * 媒体条目按 URI 唯一，播放列表只保存条目 ID 和位置，同一文件出现在多个列表中只存一份元数据。
+ * 整个列表的替换在一个事务中完成，语句预编译后逐行绑定，两万项的列表也只有一次提交。
+ * 启用预写日志，后台写入时读取不会被阻塞。
+ * playlists 表记录每个列表的播放位置和已并入的日志序号，PlaylistJournal 重放时跳过序号不大于它的记录。
+ * 用户创建的命名播放列表（user_playlists）只保存媒体条目的整数 ID 和排序键，排序键之间留有间隔，
+ * 移动一项只需要更新这一行的排序键。
+ */
+public class PlaylistDatabase extends SQLiteOpenHelper {
+    private static final String TAG = "PlaylistDatabase";
+    private static final String DATABASE_NAME = "playlists.db";
+    private static final int DATABASE_VERSION = 3;
+
+    public static final String PLAYLIST_VIDEO = "saved_video";
+    public static final String PLAYLIST_MUSIC = "saved_music";
+    public static final String KIND_VIDEO = "video";
+    public static final String KIND_MUSIC = "music";
+
+    private static final String MEDIA_COLUMNS = "m.uri, m.display_name, m.artist, m.album, m.duration, "
+            + "m.duration_ms, m.width, m.height, m.codec, m.frame_rate";
+
+    private static PlaylistDatabase instance;
+
+    /**
+     * 列表的检查点：播放位置和已并入的最后一条日志记录的序号
+     */
+    public static final class Checkpoint {
+        public static final Checkpoint EMPTY = new Checkpoint(-1, 0);
+
+        public final int playingPosition;
+        public final long sequence;
+
+        public Checkpoint(int playingPosition, long sequence) {
+            this.playingPosition = playingPosition;
+            this.sequence = sequence;
+        }
+    }
+
+    private PlaylistDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public static synchronized PlaylistDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new PlaylistDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE media ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "uri TEXT NOT NULL UNIQUE, "
+                + "display_name TEXT, "
+                + "artist TEXT, "
+                + "album TEXT, "
+                + "duration TEXT, "
+                + "duration_ms INTEGER NOT NULL DEFAULT 0, "
+                + "width INTEGER NOT NULL DEFAULT 0, "
+                + "height INTEGER NOT NULL DEFAULT 0, "
+                + "codec TEXT, "
+                + "frame_rate REAL NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE playlist_items ("
+                + "playlist TEXT NOT NULL, "
+                + "position INTEGER NOT NULL, "
+                + "media_id INTEGER NOT NULL REFERENCES media(_id) ON DELETE CASCADE, "
+                + "PRIMARY KEY (playlist, position)) WITHOUT ROWID");
+        db.execSQL("CREATE INDEX playlist_items_media ON playlist_items(media_id)");
+        createPlaylistsTable(db);
+        createUserPlaylistTables(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createPlaylistsTable(db);
+        }
+        if (oldVersion < 3) {
+            createUserPlaylistTables(db);
+        }
+    }
+
+    private static void createPlaylistsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE playlists ("
+                + "name TEXT PRIMARY KEY, "
+                + "playing_position INTEGER NOT NULL DEFAULT -1, "
+                + "journal_sequence INTEGER NOT NULL DEFAULT 0)");
+    }
+
+    private static void createUserPlaylistTables(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE user_playlists ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL UNIQUE, "
+                + "kind TEXT NOT NULL, "
+                + "created INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE user_playlist_items ("
+                + "playlist_id INTEGER NOT NULL REFERENCES user_playlists(_id) ON DELETE CASCADE, "
+                + "sort_key INTEGER NOT NULL, "
+                + "media_id INTEGER NOT NULL REFERENCES media(_id) ON DELETE CASCADE, "
+                + "PRIMARY KEY (playlist_id, sort_key)) WITHOUT ROWID");
+        // 同一文件在一个列表中只出现一次
+        db.execSQL("CREATE UNIQUE INDEX user_playlist_items_member ON user_playlist_items(playlist_id, media_id)");
+        db.execSQL("CREATE INDEX user_playlist_items_media ON user_playlist_items(media_id)");
+    }
+
+    /**
+     * 逐项提供要写入的条目，写入时不需要先在内存中建立完整的列表
+     */
+    public interface ItemSource<T> {
+        void forEach(Consumer<? super T> consumer) throws IOException;
+    }
+
+    /**
+     * 用视频列表整体替换播放列表，在调用线程上执行，不要在主线程调用
+     */
+    public void replaceVideos(String playlist, List<VideoAdapter.VideoItem> videos, Checkpoint checkpoint) {
+        try {
+            writeVideos(playlist, checkpoint, videos::forEach);
+        } catch (IOException e) {
+            // 内存中的列表不会抛出 IOException
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 用音乐列表整体替换播放列表，在调用线程上执行，不要在主线程调用
+     */
+    public void replaceMusic(String playlist, List<MusicAdapter.MusicItem> music, Checkpoint checkpoint) {
+        try {
+            writeMusic(playlist, checkpoint, music::forEach);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 边读边写视频播放列表，source 抛出异常时整个事务回滚，原来的列表保持不变
+     */
+    public void writeVideos(String playlist, Checkpoint checkpoint, ItemSource<VideoAdapter.VideoItem> source)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        int count;
+        try (MediaUpsert media = new MediaUpsert(db); MediaWriter writer = new MediaWriter(db, playlist)) {
+            source.forEach(video -> writer.add(media.upsertVideo(video)));
+            count = writer.position;
+            writeCheckpoint(db, playlist, checkpoint);
+            deleteOrphans(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "播放列表 " + playlist + " 已保存，共 " + count + " 项，耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    /**
+     * 边读边写音乐播放列表，source 抛出异常时整个事务回滚，原来的列表保持不变
+     */
+    public void writeMusic(String playlist, Checkpoint checkpoint, ItemSource<MusicAdapter.MusicItem> source)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        int count;
+        try (MediaUpsert media = new MediaUpsert(db); MediaWriter writer = new MediaWriter(db, playlist)) {
+            source.forEach(item -> writer.add(media.upsertMusic(item)));
+            count = writer.position;
+            writeCheckpoint(db, playlist, checkpoint);
+            deleteOrphans(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.d(TAG, "播放列表 " + playlist + " 已保存，共 " + count + " 项，耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+    }
+
+    public List<VideoAdapter.VideoItem> loadVideos(String playlist) {
+        List<VideoAdapter.VideoItem> videos = new ArrayList<>();
+        try (Cursor cursor = queryPlaylist(playlist)) {
+            while (cursor.moveToNext()) {
+                videos.add(readVideo(cursor));
+            }
+        }
+        return videos;
+    }
+
+    public List<MusicAdapter.MusicItem> loadMusic(String playlist) {
+        List<MusicAdapter.MusicItem> music = new ArrayList<>();
+        try (Cursor cursor = queryPlaylist(playlist)) {
+            while (cursor.moveToNext()) {
+                music.add(readMusic(cursor));
+            }
+        }
+        return music;
+    }
+
+    // 游标的前十列为 MEDIA_COLUMNS
+    private static VideoAdapter.VideoItem readVideo(Cursor cursor) {
+        long durationMs = cursor.getLong(5);
+        int width = cursor.getInt(6);
+        String codec = cursor.getString(8);
+        VideoInfo info = null;
+        // 与旧的 JSON 存储一致：没有探测到任何信息时不生成 VideoInfo
+        if (durationMs > 0 || width > 0 || codec != null) {
+            info = new VideoInfo(durationMs, width, cursor.getInt(7), codec, cursor.getFloat(9));
+        }
+        return new VideoAdapter.VideoItem(Uri.parse(cursor.getString(0)), cursor.getString(1), info);
+    }
+
+    private static MusicAdapter.MusicItem readMusic(Cursor cursor) {
+        return new MusicAdapter.MusicItem(Uri.parse(cursor.getString(0)), cursor.getString(1),
+                cursor.getString(2), cursor.getString(3), cursor.getString(4));
+    }
+
+    public Checkpoint getCheckpoint(String playlist) {
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT playing_position, journal_sequence FROM playlists WHERE name = ?", new String[]{playlist})) {
+            if (cursor.moveToFirst()) {
+                return new Checkpoint(cursor.getInt(0), cursor.getLong(1));
+            }
+        }
+        return Checkpoint.EMPTY;
+    }
+
+    /**
+     * 删除列表的所有项，检查点保留为 checkpoint（日志序号继续递增，旧记录不会被重放）
+     */
+    public void clear(String playlist, Checkpoint checkpoint) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            db.delete("playlist_items", "playlist = ?", new String[]{playlist});
+            writeCheckpoint(db, playlist, checkpoint);
+            deleteOrphans(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * 命名播放列表的概要，不含列表内容
+     */
+    public static final class UserPlaylistInfo {
+        public final long id;
+        public final String name;
+        public final String kind;
+        public final int itemCount;
+
+        UserPlaylistInfo(long id, String name, String kind, int itemCount) {
+            this.id = id;
+            this.name = name;
+            this.kind = kind;
+            this.itemCount = itemCount;
+        }
+    }
+
+    /**
+     * 读取命名播放列表内容时的一行
+     */
+    public interface UserPlaylistRow<T> {
+        void accept(long sortKey, long mediaId, T item);
+    }
+
+    /**
+     * 指定种类的命名播放列表，按名称排序；只统计项数，不读取内容
+     */
+    public List<UserPlaylistInfo> listUserPlaylists(String kind) {
+        List<UserPlaylistInfo> playlists = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT p._id, p.name, p.kind, COUNT(i.media_id) "
+                + "FROM user_playlists p LEFT JOIN user_playlist_items i ON i.playlist_id = p._id "
+                + "WHERE p.kind = ? GROUP BY p._id ORDER BY p.name COLLATE NOCASE", new String[]{kind})) {
+            while (cursor.moveToNext()) {
+                playlists.add(new UserPlaylistInfo(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getInt(3)));
+            }
+        }
+        return playlists;
+    }
+
+    /**
+     * 单个命名播放列表的概要，不存在时返回 null
+     */
+    public UserPlaylistInfo getUserPlaylist(long playlistId) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT p._id, p.name, p.kind, "
+                + "(SELECT COUNT(*) FROM user_playlist_items i WHERE i.playlist_id = p._id) "
+                + "FROM user_playlists p WHERE p._id = ?", new String[]{String.valueOf(playlistId)})) {
+            if (cursor.moveToFirst()) {
+                return new UserPlaylistInfo(cursor.getLong(0), cursor.getString(1), cursor.getString(2),
+                        cursor.getInt(3));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 创建空的命名播放列表，名称已存在时返回 -1
+     */
+    public long createUserPlaylist(String name, String kind) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        values.put("kind", kind);
+        values.put("created", System.currentTimeMillis());
+        return getWritableDatabase().insertWithOnConflict("user_playlists", null, values,
+                SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /**
+     * 重命名，名称已被其他列表使用时返回 false
+     */
+    public boolean renameUserPlaylist(long playlistId, String name) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        return getWritableDatabase().updateWithOnConflict("user_playlists", values, "_id = ?",
+                new String[]{String.valueOf(playlistId)}, SQLiteDatabase.CONFLICT_IGNORE) > 0;
+    }
+
+    public void deleteUserPlaylist(long playlistId) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            // 列表项随外键级联删除
+            db.delete("user_playlists", "_id = ?", new String[]{String.valueOf(playlistId)});
+            deleteOrphans(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void loadUserVideos(long playlistId, UserPlaylistRow<VideoAdapter.VideoItem> rows) {
+        try (Cursor cursor = queryUserPlaylist(playlistId)) {
+            while (cursor.moveToNext()) {
+                rows.accept(cursor.getLong(10), cursor.getLong(11), readVideo(cursor));
+            }
+        }
+    }
+
+    public void loadUserMusic(long playlistId, UserPlaylistRow<MusicAdapter.MusicItem> rows) {
+        try (Cursor cursor = queryUserPlaylist(playlistId)) {
+            while (cursor.moveToNext()) {
+                rows.accept(cursor.getLong(10), cursor.getLong(11), readMusic(cursor));
+            }
+        }
+    }
+
+    /**
+     * 媒体条目的 ID，URI 不在数据库中时返回 -1
+     */
+    public long findMediaId(Uri uri) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT _id FROM media WHERE uri = ?",
+                new String[]{uri.toString()})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    /**
+     * 在一个事务中把视频依次追加到命名播放列表，排序键从 firstKey 开始每项增加 gap；
+     * 返回每项的条目 ID，已在列表中的项不追加、不占用排序键，对应位置为 -1
+     */
+    public long[] appendUserVideos(long playlistId, long firstKey, long gap, List<VideoAdapter.VideoItem> videos) {
+        return appendUserItems(playlistId, firstKey, gap, videos, MediaUpsert::upsertVideo);
+    }
+
+    /**
+     * 在一个事务中把音乐依次追加到命名播放列表，规则同 appendUserVideos
+     */
+    public long[] appendUserMusic(long playlistId, long firstKey, long gap, List<MusicAdapter.MusicItem> music) {
+        return appendUserItems(playlistId, firstKey, gap, music, MediaUpsert::upsertMusic);
+    }
+
+    private interface Upserter<T> {
+        long upsert(MediaUpsert media, T item);
+    }
+
+    private <T> long[] appendUserItems(long playlistId, long firstKey, long gap, List<T> items, Upserter<T> upserter) {
+        long[] mediaIds = new long[items.size()];
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (MediaUpsert media = new MediaUpsert(db);
+             SQLiteStatement insertItem = db.compileStatement("INSERT OR IGNORE INTO user_playlist_items "
+                     + "(playlist_id, sort_key, media_id) VALUES (?, ?, ?)")) {
+            long key = firstKey;
+            for (int i = 0; i < items.size(); i++) {
+                long mediaId = upserter.upsert(media, items.get(i));
+                insertItem.bindLong(1, playlistId);
+                insertItem.bindLong(2, key);
+                insertItem.bindLong(3, mediaId);
+                // WITHOUT ROWID 表没有行号，用受影响的行数判断是否被忽略
+                if (insertItem.executeUpdateDelete() > 0) {
+                    mediaIds[i] = mediaId;
+                    key += gap;
+                } else {
+                    mediaIds[i] = -1;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return mediaIds;
+    }
+
+    /**
+     * 修改一项的排序键，列表中其他项不变
+     */
+    public void moveUserPlaylistItem(long playlistId, long fromKey, long toKey) {
+        getWritableDatabase().execSQL("UPDATE user_playlist_items SET sort_key = ? "
+                + "WHERE playlist_id = ? AND sort_key = ?", new Object[]{toKey, playlistId, fromKey});
+    }
+
+    /**
+     * 删除一项；媒体条目留到下次整体写入或删除列表时再清理
+     */
+    public void removeUserPlaylistItem(long playlistId, long sortKey) {
+        getWritableDatabase().delete("user_playlist_items", "playlist_id = ? AND sort_key = ?",
+                new String[]{String.valueOf(playlistId), String.valueOf(sortKey)});
+    }
+
+    /**
+     * 按 mediaIds 的顺序重新编号，第 i 项的排序键为 (i + 1) * gap
+     */
+    public void renumberUserPlaylist(long playlistId, long[] mediaIds, int count, long gap) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try (SQLiteStatement insertItem = db.compileStatement("INSERT INTO user_playlist_items "
+                + "(playlist_id, sort_key, media_id) VALUES (?, ?, ?)")) {
+            // 逐行修改排序键会与主键冲突，整体删除后重新插入
+            db.delete("user_playlist_items", "playlist_id = ?", new String[]{String.valueOf(playlistId)});
+            for (int i = 0; i < count; i++) {
+                insertItem.bindLong(1, playlistId);
+                insertItem.bindLong(2, (i + 1) * gap);
+                insertItem.bindLong(3, mediaIds[i]);
+                insertItem.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private Cursor queryUserPlaylist(long playlistId) {
+        return getReadableDatabase().rawQuery("SELECT " + MEDIA_COLUMNS + ", i.sort_key, i.media_id "
+                + "FROM user_playlist_items i JOIN media m ON m._id = i.media_id "
+                + "WHERE i.playlist_id = ? ORDER BY i.sort_key", new String[]{String.valueOf(playlistId)});
+    }
+
+    private Cursor queryPlaylist(String playlist) {
+        return getReadableDatabase().rawQuery("SELECT " + MEDIA_COLUMNS + " "
+                + "FROM playlist_items p JOIN media m ON m._id = p.media_id "
+                + "WHERE p.playlist = ? ORDER BY p.position", new String[]{playlist});
+    }
+
+    private static void writeCheckpoint(SQLiteDatabase db, String playlist, Checkpoint checkpoint) {
+        ContentValues values = new ContentValues();
+        values.put("name", playlist);
+        values.put("playing_position", checkpoint.playingPosition);
+        values.put("journal_sequence", checkpoint.sequence);
+        db.insertWithOnConflict("playlists", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    // 不再被任何播放列表引用的条目
+    private static void deleteOrphans(SQLiteDatabase db) {
+        db.execSQL("DELETE FROM media WHERE _id NOT IN (SELECT media_id FROM playlist_items "
+                + "UNION SELECT media_id FROM user_playlist_items)");
+    }
+
+    /**
+     * 按 URI 更新或插入媒体条目，返回条目 ID
+     *
+     * Android 10 自带的 SQLite 还不支持 UPSERT，先按 URI 更新，没有更新到行时再插入。
+     */
+    private static final class MediaUpsert implements AutoCloseable {
+        private final SQLiteStatement update;
+        private final SQLiteStatement insert;
+        private final SQLiteStatement selectId;
+
+        MediaUpsert(SQLiteDatabase db) {
+            update = db.compileStatement("UPDATE media SET display_name = ?, artist = ?, album = ?, duration = ?, "
+                    + "duration_ms = ?, width = ?, height = ?, codec = ?, frame_rate = ? WHERE uri = ?");
+            insert = db.compileStatement("INSERT INTO media (display_name, artist, album, duration, "
+                    + "duration_ms, width, height, codec, frame_rate, uri) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+            selectId = db.compileStatement("SELECT _id FROM media WHERE uri = ?");
+        }
+
+        long upsertVideo(VideoAdapter.VideoItem video) {
+            VideoInfo info = video.getInfo();
+            return upsert(video.getUri(), video.getDisplayName(), null, null, null,
+                    info != null ? info.getDurationMs() : 0,
+                    info != null ? info.getWidth() : 0,
+                    info != null ? info.getHeight() : 0,
+                    info != null ? info.getCodec() : null,
+                    info != null ? info.getFrameRate() : 0);
+        }
+
+        long upsertMusic(MusicAdapter.MusicItem item) {
+            return upsert(item.getUri(), item.getDisplayName(), item.getArtist(), item.getAlbum(),
+                    item.getDuration(), 0, 0, 0, null, 0);
+        }
+
+        private long upsert(Uri uri, String displayName, String artist, String album, String duration,
+                            long durationMs, int width, int height, String codec, float frameRate) {
+            String uriString = uri.toString();
+            bindMedia(update, uriString, displayName, artist, album, duration, durationMs, width, height, codec, frameRate);
+            if (update.executeUpdateDelete() > 0) {
+                selectId.bindString(1, uriString);
+                return selectId.simpleQueryForLong();
+            }
+            bindMedia(insert, uriString, displayName, artist, album, duration, durationMs, width, height, codec, frameRate);
+            return insert.executeInsert();
+        }
+
+        private static void bindMedia(SQLiteStatement statement, String uri, String displayName, String artist,
+                                      String album, String duration, long durationMs, int width, int height,
+                                      String codec, float frameRate) {
+            statement.clearBindings();
+            bindNullable(statement, 1, displayName);
+            bindNullable(statement, 2, artist);
+            bindNullable(statement, 3, album);
+            bindNullable(statement, 4, duration);
+            statement.bindLong(5, durationMs);
+            statement.bindLong(6, width);
+            statement.bindLong(7, height);
+            bindNullable(statement, 8, codec);
+            statement.bindDouble(9, frameRate);
+            statement.bindString(10, uri);
+        }
+
+        private static void bindNullable(SQLiteStatement statement, int index, String value) {
+            if (value != null) {
+                statement.bindString(index, value);
+            } else {
+                statement.bindNull(index);
+            }
+        }
+
+        @Override
+        public void close() {
+            update.close();
+            insert.close();
+            selectId.close();
+        }
+    }
+
+    /**
+     * 在同一事务内写入一个保存的播放列表：先删除旧的列表项，再按顺序追加
+     */
+    private static final class MediaWriter implements AutoCloseable {
+        private final String playlist;
+        private final SQLiteStatement insertItem;
+        private int position = 0;
+
+        MediaWriter(SQLiteDatabase db, String playlist) {
+            this.playlist = playlist;
+            db.delete("playlist_items", "playlist = ?", new String[]{playlist});
+            insertItem = db.compileStatement("INSERT INTO playlist_items (playlist, position, media_id) VALUES (?, ?, ?)");
+        }
+
+        void add(long mediaId) {
+            insertItem.bindString(1, playlist);
+            insertItem.bindLong(2, position++);
+            insertItem.bindLong(3, mediaId);
+            insertItem.executeInsert();
+        }
+
+        @Override
+        public void close() {
+            insertItem.close();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.lplayer.playlist;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * M3U、M3U8 和 PLS 播放列表文件的流式读写
+ *
+ * 读取 M3U 时逐行解析，每解析出一项就交给 consumer，额外内存只有当前一行和当前一项，
+ * 十万项的文件也不需要整体载入；PLS 的同一项可以分散在文件各处，只能读完后按编号输出。
+ * 写入时逐项输出到缓冲流。
+ * 三种格式都按 UTF-8 读写（扩展名为 .m3u 的文件实际上大多也是 UTF-8），开头的 BOM 会被跳过。
+ */
+public final class PlaylistFile {
+    private static final String M3U_HEADER = "#EXTM3U";
+    private static final String M3U_INFO = "#EXTINF:";
+    private static final String PLS_HEADER = "[playlist]";
+
+    private PlaylistFile() {
+    }
+
+    public enum Format {
+        M3U, M3U8, PLS;
+
+        /**
+         * 根据文件名或 MIME 类型判断格式，都无法判断时按 M3U8 处理
+         */
+        public static Format detect(String fileName, String mimeType) {
+            if (fileName != null) {
+                String lower = fileName.toLowerCase(Locale.ROOT);
+                if (lower.endsWith(".pls")) {
+                    return PLS;
+                } else if (lower.endsWith(".m3u8")) {
+                    return M3U8;
+                } else if (lower.endsWith(".m3u")) {
+                    return M3U;
+                }
+            }
+            if (mimeType != null && mimeType.toLowerCase(Locale.ROOT).contains("scpls")) {
+                return PLS;
+            }
+            return M3U8;
+        }
+    }
+
+    /**
+     * 播放列表中的一项：位置可以是绝对路径、相对路径或 URI，标题和时长可能没有
+     */
+    public static final class Entry {
+        public final String location;
+        public final String title;
+        // 秒，未知时为 -1
+        public final long durationSeconds;
+
+        public Entry(String location, String title, long durationSeconds) {
+            this.location = location;
+            this.title = title;
+            this.durationSeconds = durationSeconds;
+        }
+    }
+
+    public interface EntryConsumer {
+        void accept(Entry entry) throws IOException;
+    }
+
+    /**
+     * 读取播放列表，返回读出的项数；不关闭输入流
+     */
+    public static int read(InputStream in, Format format, EntryConsumer consumer) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        return format == Format.PLS ? readPls(reader, consumer) : readM3u(reader, consumer);
+    }
+
+    private static int readM3u(BufferedReader reader, EntryConsumer consumer) throws IOException {
+        int count = 0;
+        String title = null;
+        long duration = -1;
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                line = stripBom(line);
+                first = false;
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (line.startsWith(M3U_INFO)) {
+                // #EXTINF:时长[ 属性...],标题，属性值带引号，其中可能有逗号
+                String info = line.substring(M3U_INFO.length());
+                int comma = indexOfUnquotedComma(info);
+                String durationPart = comma >= 0 ? info.substring(0, comma) : info;
+                int space = durationPart.indexOf(' ');
+                duration = parseLong(space >= 0 ? durationPart.substring(0, space) : durationPart);
+                title = comma >= 0 ? emptyToNull(info.substring(comma + 1).trim()) : null;
+            } else if (line.startsWith("#")) {
+                // #EXTM3U 和其他扩展标签不影响列表内容
+                continue;
+            } else {
+                consumer.accept(new Entry(line, title, duration));
+                count++;
+                title = null;
+                duration = -1;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * PLS 的 FileN、TitleN、LengthN 按编号 N 分组，读完后按编号从小到大输出有 FileN 的组；
+     * 编号可以不连续，同一组的几行也不必相邻
+     */
+    private static int readPls(BufferedReader reader, EntryConsumer consumer) throws IOException {
+        Map<Long, String[]> groups = new TreeMap<>();
+        boolean first = true;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (first) {
+                line = stripBom(line);
+                first = false;
+            }
+            line = line.trim();
+            int equals = line.indexOf('=');
+            if (line.isEmpty() || line.startsWith("[") || line.startsWith(";") || equals <= 0) {
+                continue;
+            }
+            String key = line.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(equals + 1).trim();
+            int field;
+            String prefix;
+            if (key.startsWith("file")) {
+                field = 0;
+                prefix = "file";
+            } else if (key.startsWith("title")) {
+                field = 1;
+                prefix = "title";
+            } else if (key.startsWith("length")) {
+                field = 2;
+                prefix = "length";
+            } else {
+                // NumberOfEntries、Version 等
+                continue;
+            }
+            long index;
+            try {
+                index = Long.parseLong(key.substring(prefix.length()));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            // 位置、标题、时长
+            String[] group = groups.computeIfAbsent(index, k -> new String[3]);
+            group[field] = emptyToNull(value);
+        }
+        int count = 0;
+        for (String[] group : groups.values()) {
+            if (group[0] != null) {
+                consumer.accept(new Entry(group[0], group[1], group[2] != null ? parseLong(group[2]) : -1));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 逐项写出播放列表，close 时写入 PLS 的结尾并刷新缓冲，但不关闭底层输出流
+     */
+    public static final class EntryWriter implements Closeable {
+        private final Writer writer;
+        private final Format format;
+        private int count = 0;
+
+        public EntryWriter(OutputStream out, Format format) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            this.format = format;
+            writer.write(format == Format.PLS ? PLS_HEADER : M3U_HEADER);
+            writer.write('\n');
+        }
+
+        public void write(Entry entry) throws IOException {
+            count++;
+            if (format == Format.PLS) {
+                writer.write("File" + count + "=" + entry.location + "\n");
+                if (entry.title != null) {
+                    writer.write("Title" + count + "=" + entry.title + "\n");
+                }
+                writer.write("Length" + count + "=" + entry.durationSeconds + "\n");
+            } else {
+                writer.write(M3U_INFO + entry.durationSeconds + ","
+                        + (entry.title != null ? entry.title : "") + "\n");
+                writer.write(entry.location);
+                writer.write('\n');
+            }
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (format == Format.PLS) {
+                writer.write("NumberOfEntries=" + count + "\n");
+                writer.write("Version=2\n");
+            }
+            writer.flush();
+        }
+    }
+
+    private static int indexOfUnquotedComma(String value) {
+        boolean quoted = false;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String stripBom(String line) {
+        return !line.isEmpty() && line.charAt(0) == '\uFEFF' ? line.substring(1) : line;
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            // 有些软件写成带小数的秒数
+            try {
+                return (long) Double.parseDouble(value.trim());
+            } catch (NumberFormatException ignored) {
+                return -1;
+            }
+        }
+    }
+}
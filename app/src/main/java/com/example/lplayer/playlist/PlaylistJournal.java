@@ -0,0 +1,264 @@
+package com.example.lplayer.playlist;
+
+import android.util.Log;
+
+import com.example.lplayer.MediaItemCodec;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * 播放列表修改的追加日志
+ *
+ * 每次 flush 追加一帧：[负载长度 i32][负载 CRC32 i32][记录...]，每条记录为 [序号 i64][操作 u8][参数]。
+ * 一次保存产生的几条记录（如删除加插入）先写入内存缓冲，flush 时作为一帧追加到文件末尾并同步到磁盘，
+ * 整帧要么全部重放要么全部丢弃，不会只应用半次保存；进程在写入中途被杀时末尾会留下不完整的帧，
+ * 重放时在第一个长度或校验不对的帧处截断。序号单调递增，
+ * 已并入数据库检查点的记录在重放时跳过，所以先提交检查点、后清空日志的顺序下崩溃不会重复应用。
+ * 非线程安全，由 JournaledPlaylist 加锁使用。
+ */
+class PlaylistJournal<T> implements PlaylistMutations<T> {
+    private static final String TAG = "PlaylistJournal";
+    private static final byte OP_INSERT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte OP_MOVE = 3;
+    private static final byte OP_POSITION = 4;
+    // 单帧的上限，超过说明长度字段已损坏
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private final File file;
+    private final MediaItemCodec.Writer<T> writer;
+    private final MediaItemCodec.Reader<T> reader;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+    private final CRC32 crc = new CRC32();
+    // 已并入检查点的记录只解析不应用
+    private final PlaylistMutations<T> skipped = new PlaylistMutations<T>() {
+        @Override
+        public void insert(int position, List<T> items) {
+        }
+
+        @Override
+        public void remove(int position, int count) {
+        }
+
+        @Override
+        public void move(int from, int to) {
+        }
+
+        @Override
+        public void position(int playingPosition) {
+        }
+    };
+    private long nextSequence = 1;
+    private long length = 0;
+
+    PlaylistJournal(File file, MediaItemCodec.Writer<T> writer, MediaItemCodec.Reader<T> reader) {
+        this.file = file;
+        this.writer = writer;
+        this.reader = reader;
+    }
+
+    /**
+     * 按顺序重放序号大于 checkpoint 的记录，返回重放的条数；损坏的末尾会被截断
+     *
+     * 记录本身完好但无法应用到列表时抛出 IOException，调用方应丢弃日志，只使用检查点。
+     */
+    int replay(long checkpoint, PlaylistMutations<T> target) throws IOException {
+        nextSequence = checkpoint + 1;
+        length = 0;
+        if (!file.exists()) {
+            return 0;
+        }
+        int replayed = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] payload;
+                int expectedCrc;
+                try {
+                    int payloadLength = in.readInt();
+                    if (payloadLength <= 0 || payloadLength > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    expectedCrc = in.readInt();
+                    payload = new byte[payloadLength];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                crc.reset();
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != expectedCrc) {
+                    break;
+                }
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(payload));
+                while (recordIn.available() > 0) {
+                    long sequence = recordIn.readLong();
+                    if (sequence > checkpoint) {
+                        apply(recordIn, target);
+                        replayed++;
+                    } else {
+                        apply(recordIn, skipped);
+                    }
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                }
+                validLength += 8 + payload.length;
+            }
+        }
+        if (validLength < file.length()) {
+            Log.w(TAG, file.getName() + " 末尾有 " + (file.length() - validLength) + " 字节不完整的记录，已截断");
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(validLength);
+            }
+        }
+        length = validLength;
+        return replayed;
+    }
+
+    private void apply(DataInputStream in, PlaylistMutations<T> target) throws IOException {
+        byte op = in.readByte();
+        switch (op) {
+            case OP_INSERT: {
+                int position = in.readInt();
+                int count = in.readInt();
+                List<T> items = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    items.add(reader.read(in));
+                }
+                target.insert(position, items);
+                break;
+            }
+            case OP_REMOVE:
+                target.remove(in.readInt(), in.readInt());
+                break;
+            case OP_MOVE:
+                target.move(in.readInt(), in.readInt());
+                break;
+            case OP_POSITION:
+                target.position(in.readInt());
+                break;
+            default:
+                throw new IOException("未知的日志操作: " + op);
+        }
+    }
+
+    @Override
+    public void insert(int position, List<T> items) throws IOException {
+        DataOutputStream out = beginRecord(OP_INSERT);
+        out.writeInt(position);
+        out.writeInt(items.size());
+        for (T item : items) {
+            writer.write(out, item);
+        }
+        endRecord();
+    }
+
+    @Override
+    public void remove(int position, int count) throws IOException {
+        DataOutputStream out = beginRecord(OP_REMOVE);
+        out.writeInt(position);
+        out.writeInt(count);
+        endRecord();
+    }
+
+    @Override
+    public void move(int from, int to) throws IOException {
+        DataOutputStream out = beginRecord(OP_MOVE);
+        out.writeInt(from);
+        out.writeInt(to);
+        endRecord();
+    }
+
+    @Override
+    public void position(int playingPosition) throws IOException {
+        DataOutputStream out = beginRecord(OP_POSITION);
+        out.writeInt(playingPosition);
+        endRecord();
+    }
+
+    private DataOutputStream beginRecord(byte op) throws IOException {
+        record.reset();
+        recordOut.writeLong(nextSequence++);
+        recordOut.writeByte(op);
+        return recordOut;
+    }
+
+    private void endRecord() throws IOException {
+        recordOut.flush();
+        record.writeTo(pending);
+    }
+
+    /**
+     * 把缓冲的记录作为一帧追加到文件并同步；失败时把文件恢复到追加前的长度，缓冲的记录被丢弃
+     */
+    void flush() throws IOException {
+        if (pending.size() == 0) {
+            return;
+        }
+        byte[] payload = pending.toByteArray();
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            DataOutputStream frame = new DataOutputStream(new BufferedOutputStream(out));
+            frame.writeInt(payload.length);
+            frame.writeInt((int) crc.getValue());
+            frame.write(payload);
+            frame.flush();
+            out.getFD().sync();
+            length += 8 + payload.length;
+        } catch (IOException e) {
+            try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+                truncate.setLength(length);
+            } catch (IOException ignored) {
+                // 截断失败时残留的不完整记录会在下次重放时被截断
+            }
+            throw e;
+        } finally {
+            pending.reset();
+        }
+    }
+
+    /**
+     * 丢弃尚未写入的记录
+     */
+    void discardPending() {
+        pending.reset();
+    }
+
+    /**
+     * 最后分配的序号
+     */
+    long lastSequence() {
+        return nextSequence - 1;
+    }
+
+    long length() {
+        return length;
+    }
+
+    /**
+     * 清空日志文件，序号继续递增；只在所有记录都已并入检查点后调用
+     */
+    void reset() throws IOException {
+        pending.reset();
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+            truncate.setLength(0);
+        }
+        length = 0;
+    }
+}
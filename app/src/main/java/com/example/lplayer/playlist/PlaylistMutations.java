@@ -0,0 +1,20 @@
+package com.example.lplayer.playlist;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 播放列表的修改操作，写入日志和重放日志使用同一组操作
+ */
+interface PlaylistMutations<T> {
+    void insert(int position, List<T> items) throws IOException;
+
+    void remove(int position, int count) throws IOException;
+
+    /**
+     * 取出 from 处的项，插入到移除后列表的 to 处
+     */
+    void move(int from, int to) throws IOException;
+
+    void position(int playingPosition) throws IOException;
+}
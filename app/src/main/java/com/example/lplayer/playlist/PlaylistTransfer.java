@@ -0,0 +1,135 @@
+package com.example.lplayer.playlist;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 通过 ContentResolver 导入和导出 M3U、M3U8、PLS 播放列表文件
+ *
+ * 导入时边读边解析，每项立即解析成 URI 并转换为列表项，文件本身从不整体载入内存；
+ * 导出时逐项写入。都应在后台线程调用。
+ */
+public final class PlaylistTransfer {
+    private static final String TAG = "PlaylistTransfer";
+
+    private PlaylistTransfer() {
+    }
+
+    /**
+     * 由解析出的 URI 和文件中的一项生成列表项
+     */
+    public interface ItemFactory<T> {
+        T create(Uri uri, PlaylistFile.Entry entry);
+    }
+
+    /**
+     * 由列表项和写入文件的位置生成一项
+     */
+    public interface EntryFactory<T> {
+        PlaylistFile.Entry create(T item, String location);
+    }
+
+    public static final class ImportResult<T> {
+        public final List<T> items;
+        // 无法解析为已配置文件夹中文件的项数
+        public final int skipped;
+        // 解析到已导入过的文件而跳过的项数
+        public final int duplicates;
+
+        ImportResult(List<T> items, int skipped, int duplicates) {
+            this.items = items;
+            this.skipped = skipped;
+            this.duplicates = duplicates;
+        }
+    }
+
+    /**
+     * 读取播放列表文件，按 paths 解析每一项的位置，无法解析的项跳过
+     *
+     * 同一个文件只保留第一次出现的项，列表中的 URI 必须唯一（稳定 ID 和按 URI 查找位置都依赖这一点）。
+     */
+    public static <T> ImportResult<T> importFrom(ContentResolver resolver, Uri source, PathResolver paths,
+                                                 ItemFactory<T> factory) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        PlaylistFile.Format format = PlaylistFile.Format.detect(queryDisplayName(resolver, source),
+                resolver.getType(source));
+        paths.setBase(source);
+        List<T> items = new ArrayList<>();
+        Set<Uri> seen = new HashSet<>();
+        int[] skipped = new int[1];
+        int[] duplicates = new int[1];
+        try (InputStream in = resolver.openInputStream(source)) {
+            if (in == null) {
+                throw new FileNotFoundException("无法打开播放列表: " + source);
+            }
+            PlaylistFile.read(in, format, entry -> {
+                Uri uri = paths.resolve(entry.location);
+                if (uri == null) {
+                    skipped[0]++;
+                } else if (!seen.add(uri)) {
+                    duplicates[0]++;
+                } else {
+                    items.add(factory.create(uri, entry));
+                }
+            });
+        }
+        Log.d(TAG, "已导入 " + format + " 播放列表，" + items.size() + " 项，跳过 " + skipped[0]
+                + " 项，重复 " + duplicates[0] + " 项，耗时 " + (SystemClock.elapsedRealtime() - start) + "ms");
+        return new ImportResult<>(items, skipped[0], duplicates[0]);
+    }
+
+    /**
+     * 把列表写入播放列表文件，返回写入的项数
+     *
+     * 在扫描清单中的文件写成相对于其文件夹的路径，便于在其他设备上导入；其余的写出 URI。
+     */
+    public static <T> int exportTo(ContentResolver resolver, Uri target, List<T> items, PathResolver paths,
+                                   Function<T, Uri> uriOf, EntryFactory<T> factory) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        PlaylistFile.Format format = PlaylistFile.Format.detect(queryDisplayName(resolver, target),
+                resolver.getType(target));
+        int count;
+        // "wt" 截断已有内容，覆盖旧文件时不会留下多余的尾部
+        try (OutputStream out = resolver.openOutputStream(target, "wt")) {
+            if (out == null) {
+                throw new FileNotFoundException("无法写入播放列表: " + target);
+            }
+            try (PlaylistFile.EntryWriter writer = new PlaylistFile.EntryWriter(out, format)) {
+                for (T item : items) {
+                    Uri uri = uriOf.apply(item);
+                    String path = paths.relativePath(uri);
+                    writer.write(factory.create(item, path != null ? path : uri.toString()));
+                }
+                count = writer.getCount();
+            }
+        }
+        Log.d(TAG, "已导出 " + format + " 播放列表，" + count + " 项，耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return count;
+    }
+
+    private static String queryDisplayName(ContentResolver resolver, Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                return cursor.getString(0);
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "无法读取文件名: " + uri, e);
+        }
+        return uri.getLastPathSegment();
+    }
+}
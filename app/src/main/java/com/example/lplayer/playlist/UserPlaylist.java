@@ -0,0 +1,231 @@
+package com.example.lplayer.playlist;
+
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 已打开的命名播放列表
+ *
+ * 内容在第一次打开时从数据库读入，之后的修改先写数据库再更新内存。每项只记录条目 ID 和排序键，
+ * 成员关系用条目 ID（以及对应的 URI）的哈希集合判断，与列表长度无关。
+ * 排序键之间留有 GAP 的间隔，移动一项时取新位置前后两项排序键的中间值，只更新这一行；
+ * 间隔用尽时整体重新编号。所有方法都会访问数据库，应在后台线程调用。
+ */
+public class UserPlaylist<T> {
+    private static final String TAG = "UserPlaylist";
+    // 相邻两项排序键的初始间隔，同一位置连续插入约 16 次后才需要重新编号
+    static final long GAP = 1 << 16;
+
+    /**
+     * 把一批列表项追加到数据库，返回每项的条目 ID（已在列表中的为 -1）
+     */
+    interface Appender<T> {
+        long[] append(long playlistId, long firstKey, long gap, List<T> items);
+    }
+
+    private final PlaylistDatabase database;
+    private final long id;
+    private final String kind;
+    private final Function<T, Uri> uriOf;
+    private final Appender<T> appender;
+    private String name;
+
+    private final List<T> items = new ArrayList<>();
+    private long[] sortKeys = new long[16];
+    private long[] mediaIds = new long[16];
+    private final Set<Long> members = new HashSet<>();
+    private final Map<Uri, Long> memberUris = new HashMap<>();
+
+    UserPlaylist(PlaylistDatabase database, PlaylistDatabase.UserPlaylistInfo info, Function<T, Uri> uriOf,
+                 Appender<T> appender) {
+        this.database = database;
+        this.id = info.id;
+        this.kind = info.kind;
+        this.name = info.name;
+        this.uriOf = uriOf;
+        this.appender = appender;
+    }
+
+    /**
+     * 读取数据库时逐行调用，只在打开时使用
+     */
+    void onRow(long sortKey, long mediaId, T item) {
+        addLast(sortKey, mediaId, item);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public synchronized String getName() {
+        return name;
+    }
+
+    public synchronized int size() {
+        return items.size();
+    }
+
+    /**
+     * 当前内容的只读副本
+     */
+    public synchronized List<T> getItems() {
+        return Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    public synchronized boolean contains(long mediaId) {
+        return members.contains(mediaId);
+    }
+
+    public synchronized boolean contains(Uri uri) {
+        return memberUris.containsKey(uri);
+    }
+
+    /**
+     * 重命名，名称已被使用时返回 false
+     */
+    public synchronized boolean rename(String newName) {
+        if (!database.renameUserPlaylist(id, newName)) {
+            return false;
+        }
+        name = newName;
+        return true;
+    }
+
+    public boolean add(T item) {
+        return addAll(Collections.singletonList(item)) == 1;
+    }
+
+    /**
+     * 追加到末尾，已在列表中的项跳过，返回实际追加的项数
+     */
+    public synchronized int addAll(List<T> newItems) {
+        List<T> pending = new ArrayList<>(newItems.size());
+        Set<Uri> seen = new HashSet<>();
+        for (T item : newItems) {
+            Uri uri = uriOf.apply(item);
+            if (!memberUris.containsKey(uri) && seen.add(uri)) {
+                pending.add(item);
+            }
+        }
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long firstKey = items.isEmpty() ? GAP : sortKeys[items.size() - 1] + GAP;
+        long[] ids = appender.append(id, firstKey, GAP, pending);
+        long key = firstKey;
+        int added = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] < 0) {
+                continue;
+            }
+            addLast(key, ids[i], pending.get(i));
+            key += GAP;
+            added++;
+        }
+        return added;
+    }
+
+    public synchronized void remove(int position) {
+        database.removeUserPlaylistItem(id, sortKeys[position]);
+        T item = items.remove(position);
+        members.remove(mediaIds[position]);
+        memberUris.remove(uriOf.apply(item));
+        int tail = items.size() - position;
+        System.arraycopy(sortKeys, position + 1, sortKeys, position, tail);
+        System.arraycopy(mediaIds, position + 1, mediaIds, position, tail);
+    }
+
+    /**
+     * 把 from 处的项移到 to 处；通常只更新一行的排序键
+     */
+    public synchronized void move(int from, int to) {
+        int size = items.size();
+        if (from == to || from < 0 || to < 0 || from >= size || to >= size) {
+            return;
+        }
+        // 移除 from 后，新位置前后两项的排序键
+        long before;
+        long after;
+        boolean hasBefore;
+        boolean hasAfter;
+        if (from < to) {
+            hasBefore = true;
+            before = sortKeys[to];
+            hasAfter = to + 1 < size;
+            after = hasAfter ? sortKeys[to + 1] : 0;
+        } else {
+            hasBefore = to > 0;
+            before = hasBefore ? sortKeys[to - 1] : 0;
+            hasAfter = true;
+            after = sortKeys[to];
+        }
+        boolean renumber = false;
+        long newKey = 0;
+        if (!hasBefore) {
+            newKey = after - GAP;
+        } else if (!hasAfter) {
+            newKey = before + GAP;
+        } else if (after - before > 1) {
+            newKey = before + (after - before) / 2;
+        } else {
+            renumber = true;
+        }
+        if (renumber) {
+            Log.d(TAG, "播放列表 " + name + " 的排序键间隔已用尽，重新编号");
+            long[] reordered = Arrays.copyOf(mediaIds, size);
+            move(reordered, from, to);
+            database.renumberUserPlaylist(id, reordered, size, GAP);
+        } else {
+            database.moveUserPlaylistItem(id, sortKeys[from], newKey);
+        }
+
+        items.add(to, items.remove(from));
+        move(mediaIds, from, to);
+        if (renumber) {
+            for (int i = 0; i < size; i++) {
+                sortKeys[i] = (i + 1) * GAP;
+            }
+        } else {
+            move(sortKeys, from, to);
+            sortKeys[to] = newKey;
+        }
+    }
+
+    // 与 List 的 add(to, remove(from)) 相同的移动
+    private static void move(long[] values, int from, int to) {
+        long value = values[from];
+        if (from < to) {
+            System.arraycopy(values, from + 1, values, from, to - from);
+        } else {
+            System.arraycopy(values, to, values, to + 1, from - to);
+        }
+        values[to] = value;
+    }
+
+    private void addLast(long sortKey, long mediaId, T item) {
+        int size = items.size();
+        if (size == sortKeys.length) {
+            sortKeys = Arrays.copyOf(sortKeys, size * 2);
+            mediaIds = Arrays.copyOf(mediaIds, size * 2);
+        }
+        sortKeys[size] = sortKey;
+        mediaIds[size] = mediaId;
+        items.add(item);
+        members.add(mediaId);
+        memberUris.put(uriOf.apply(item), mediaId);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.lplayer.playlist;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.lplayer.MusicAdapter;
+import com.example.lplayer.VideoAdapter;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 用户创建的命名播放列表
+ *
+ * 与保存的视频、音乐列表共用 PlaylistDatabase 中的媒体条目，列表只引用条目的整数 ID。
+ * 列出播放列表时只读取名称和项数，某个列表的内容在第一次打开时才读入，之后在进程内复用。
+ * 所有方法都会访问数据库，应在后台线程调用。
+ */
+public class UserPlaylistStore {
+    private static final String TAG = "UserPlaylistStore";
+
+    private static UserPlaylistStore instance;
+
+    private final PlaylistDatabase database;
+    // 已打开的列表，ID -> 列表
+    private final Map<Long, UserPlaylist<?>> opened = new HashMap<>();
+
+    private UserPlaylistStore(Context context) {
+        database = PlaylistDatabase.getInstance(context);
+    }
+
+    public static synchronized UserPlaylistStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new UserPlaylistStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * 指定种类（PlaylistDatabase.KIND_VIDEO 或 KIND_MUSIC）的播放列表概要，不读取内容
+     */
+    public List<PlaylistDatabase.UserPlaylistInfo> getPlaylists(String kind) {
+        return database.listUserPlaylists(kind);
+    }
+
+    /**
+     * 创建空的播放列表，名称已存在时返回 -1
+     */
+    public long create(String name, String kind) {
+        long id = database.createUserPlaylist(name, kind);
+        Log.d(TAG, id >= 0 ? "已创建播放列表: " + name : "播放列表名称已存在: " + name);
+        return id;
+    }
+
+    public synchronized void delete(long playlistId) {
+        opened.remove(playlistId);
+        database.deleteUserPlaylist(playlistId);
+    }
+
+    /**
+     * 打开视频播放列表，不存在或不是视频列表时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized UserPlaylist<VideoAdapter.VideoItem> openVideos(long playlistId) {
+        UserPlaylist<?> playlist = opened.get(playlistId);
+        if (playlist != null) {
+            return PlaylistDatabase.KIND_VIDEO.equals(playlist.getKind())
+                    ? (UserPlaylist<VideoAdapter.VideoItem>) playlist : null;
+        }
+        PlaylistDatabase.UserPlaylistInfo info = database.getUserPlaylist(playlistId);
+        if (info == null || !PlaylistDatabase.KIND_VIDEO.equals(info.kind)) {
+            return null;
+        }
+        long start = SystemClock.elapsedRealtime();
+        UserPlaylist<VideoAdapter.VideoItem> videos = new UserPlaylist<>(database, info,
+                VideoAdapter.VideoItem::getUri, database::appendUserVideos);
+        database.loadUserVideos(playlistId, videos::onRow);
+        opened.put(playlistId, videos);
+        Log.d(TAG, "已打开播放列表 " + info.name + "，共 " + videos.size() + " 项，耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return videos;
+    }
+
+    /**
+     * 打开音乐播放列表，不存在或不是音乐列表时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized UserPlaylist<MusicAdapter.MusicItem> openMusic(long playlistId) {
+        UserPlaylist<?> playlist = opened.get(playlistId);
+        if (playlist != null) {
+            return PlaylistDatabase.KIND_MUSIC.equals(playlist.getKind())
+                    ? (UserPlaylist<MusicAdapter.MusicItem>) playlist : null;
+        }
+        PlaylistDatabase.UserPlaylistInfo info = database.getUserPlaylist(playlistId);
+        if (info == null || !PlaylistDatabase.KIND_MUSIC.equals(info.kind)) {
+            return null;
+        }
+        long start = SystemClock.elapsedRealtime();
+        UserPlaylist<MusicAdapter.MusicItem> music = new UserPlaylist<>(database, info,
+                MusicAdapter.MusicItem::getUri, database::appendUserMusic);
+        database.loadUserMusic(playlistId, music::onRow);
+        opened.put(playlistId, music);
+        Log.d(TAG, "已打开播放列表 " + info.name + "，共 " + music.size() + " 项，耗时 "
+                + (SystemClock.elapsedRealtime() - start) + "ms");
+        return music;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.lplayer.scan;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把工作线程逐个产生的结果攒成批次，按帧交给主线程
+ *
+ * 同一帧内到达的结果合并为一批，每帧最多回调一次，避免每个文件都触发一次界面刷新。
+ * post() 可在任意线程调用，回调始终在主线程。
+ */
+public class BatchDispatcher<T> implements Choreographer.FrameCallback {
+
+    public interface Consumer<T> {
+        void onBatch(List<T> batch);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Consumer<T> consumer;
+    private final Object lock = new Object();
+    private List<T> pending = new ArrayList<>();
+    private boolean scheduled = false;
+    private boolean cancelled = false;
+
+    public BatchDispatcher(Consumer<T> consumer) {
+        this.consumer = consumer;
+    }
+
+    public void post(T item) {
+        synchronized (lock) {
+            if (cancelled) {
+                return;
+            }
+            pending.add(item);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        // Choreographer 属于主线程，帧回调需要在主线程登记
+        mainHandler.post(() -> {
+            synchronized (lock) {
+                if (cancelled) {
+                    return;
+                }
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        });
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        List<T> batch;
+        synchronized (lock) {
+            scheduled = false;
+            if (cancelled || pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new ArrayList<>();
+        }
+        consumer.onBatch(batch);
+    }
+
+    /**
+     * 丢弃尚未交付的结果，之后的 post() 也会被忽略；只能在主线程调用
+     */
+    public void cancel() {
+        synchronized (lock) {
+            cancelled = true;
+            pending.clear();
+        }
+        Choreographer.getInstance().removeFrameCallback(this);
+    }
+}
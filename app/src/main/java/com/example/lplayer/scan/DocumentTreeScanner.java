@@ -0,0 +1,112 @@
+package com.example.lplayer.scan;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基于 DocumentsContract 的文件夹扫描器
+ *
+ * DocumentFile.listFiles() 之后再对每个子文件调用 isFile()/getType()/getName()，
+ * 每次调用都是一次独立的 ContentResolver 查询。这里改为只打开一个子文档游标，
+ * 并且只投影扫描需要的列，一次查询即可拿到整个文件夹的列表。
+ */
+public class DocumentTreeScanner {
+    private static final String TAG = "DocumentTreeScanner";
+
+    private static final String[] PROJECTION = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    private final ContentResolver contentResolver;
+
+    public DocumentTreeScanner(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * 列出树根目录下的直接子文档
+     */
+    public List<ScannedDocument> listChildren(Uri treeUri) throws FileNotFoundException {
+        return listChildren(treeUri, DocumentsContract.getTreeDocumentId(treeUri));
+    }
+
+    /**
+     * 列出树中指定目录下的直接子文档，整个目录只发起一次查询
+     */
+    public List<ScannedDocument> listChildren(Uri treeUri, String parentDocumentId) throws FileNotFoundException {
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentDocumentId);
+
+        try (Cursor cursor = contentResolver.query(childrenUri, PROJECTION, null, null, null)) {
+            if (cursor == null) {
+                throw new FileNotFoundException("无法访问文件夹: " + childrenUri);
+            }
+
+            int idColumn = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DOCUMENT_ID);
+            int nameColumn = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DISPLAY_NAME);
+            int mimeColumn = cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_MIME_TYPE);
+            int sizeColumn = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_SIZE);
+            int modifiedColumn = cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+
+            List<ScannedDocument> documents = new ArrayList<>(Math.max(cursor.getCount(), 0));
+            while (cursor.moveToNext()) {
+                ScannedDocument document = readRow(cursor, treeUri, idColumn, nameColumn, mimeColumn,
+                        sizeColumn, modifiedColumn);
+                if (document != null) {
+                    documents.add(document);
+                }
+            }
+
+            Log.d(TAG, "扫描目录 " + parentDocumentId + " 得到 " + documents.size() + " 个子文档");
+            return documents;
+        }
+    }
+
+    /**
+     * 只查询单个文档自身的一行，用于在不列出子文档的情况下检查目录是否变化
+     */
+    public ScannedDocument queryDocument(Uri treeUri, String documentId) throws FileNotFoundException {
+        Uri documentUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+
+        try (Cursor cursor = contentResolver.query(documentUri, PROJECTION, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                throw new FileNotFoundException("无法访问文档: " + documentUri);
+            }
+            return readRow(cursor, treeUri,
+                    cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DOCUMENT_ID),
+                    cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_DISPLAY_NAME),
+                    cursor.getColumnIndexOrThrow(DocumentsContract.Document.COLUMN_MIME_TYPE),
+                    cursor.getColumnIndex(DocumentsContract.Document.COLUMN_SIZE),
+                    cursor.getColumnIndex(DocumentsContract.Document.COLUMN_LAST_MODIFIED));
+        }
+    }
+
+    private static ScannedDocument readRow(Cursor cursor, Uri treeUri, int idColumn, int nameColumn,
+                                           int mimeColumn, int sizeColumn, int modifiedColumn) {
+        String documentId = cursor.getString(idColumn);
+        String name = cursor.getString(nameColumn);
+        if (documentId == null || name == null) {
+            return null;
+        }
+        long size = sizeColumn != -1 && !cursor.isNull(sizeColumn) ? cursor.getLong(sizeColumn) : -1;
+        long lastModified = modifiedColumn != -1 && !cursor.isNull(modifiedColumn)
+                ? cursor.getLong(modifiedColumn) : 0;
+        return new ScannedDocument(
+                DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId),
+                documentId,
+                name,
+                cursor.getString(mimeColumn),
+                size,
+                lastModified);
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 基于扫描清单的增量递归扫描
+ *
+ * 每个目录先只查询自身的一行：修改时间与清单一致时沿用清单中的子文档列表，不再列出子文档。
+ * 目录有变化（或强制刷新）时列出子文档。子目录作为 fork-join 子任务并行遍历，
+ * 各目录的结果分别排序后逐级归并，最后与旧清单比较得到新增、删除和修改的文件。
+ * 注意：原地改写文件内容通常不会更新目录的修改时间，这类变化只有强制刷新才能发现。
+ */
+public class IncrementalScanner {
+    private static final String TAG = "IncrementalScanner";
+    private static final String NO_MEDIA = ".nomedia";
+
+    private final DocumentTreeScanner treeScanner;
+    private final MediaTypeClassifier classifier;
+
+    public IncrementalScanner(DocumentTreeScanner treeScanner, MediaTypeClassifier classifier) {
+        this.treeScanner = treeScanner;
+        this.classifier = classifier;
+    }
+
+    /**
+     * 创建一个根目录的扫描任务，应提交给 ForkJoinPool 执行
+     *
+     * @param previous  上次扫描得到的清单，为 null 或属于其他文件夹时执行完整扫描
+     * @param force     为 true 时即使目录修改时间未变也重新列出子文档
+     * @param cancelled 置为 true 后尚未开始的目录直接放弃
+     */
+    RecursiveTask<Result> newRootTask(Uri treeUri, ScanManifest previous, boolean force, ScanOptions options,
+                                      AtomicBoolean cancelled) {
+        ScanManifest baseline = previous != null && previous.isFor(treeUri) ? previous : null;
+        Traversal traversal = new Traversal(treeUri, baseline, force, options, cancelled);
+        return new RecursiveTask<Result>() {
+            @Override
+            protected Result compute() {
+                return traversal.run();
+            }
+        };
+    }
+
+    static ScanDelta diff(List<ScannedDocument> oldMedia, List<ScannedDocument> newMedia) {
+        Map<String, ScannedDocument> oldById = new HashMap<>(oldMedia.size() * 2);
+        for (ScannedDocument document : oldMedia) {
+            oldById.put(document.getDocumentId(), document);
+        }
+
+        List<ScannedDocument> added = new ArrayList<>();
+        List<ScannedDocument> modified = new ArrayList<>();
+        for (ScannedDocument document : newMedia) {
+            ScannedDocument old = oldById.remove(document.getDocumentId());
+            if (old == null) {
+                added.add(document);
+            } else if (old.getSize() != document.getSize()
+                    || old.getLastModified() != document.getLastModified()
+                    || !old.getDisplayName().equals(document.getDisplayName())) {
+                modified.add(document);
+            }
+        }
+        List<ScannedDocument> removed = new ArrayList<>(oldById.values());
+        return new ScanDelta(false, added, modified, removed, newMedia);
+    }
+
+    /**
+     * 一个根目录的一次遍历，目录任务共享这里的状态
+     */
+    private class Traversal {
+        final Uri treeUri;
+        final ScanManifest previous;
+        final boolean force;
+        final ScanOptions options;
+        final AtomicBoolean cancelled;
+        final Map<String, ScanManifest.DirectoryListing> listings = new ConcurrentHashMap<>();
+
+        Traversal(Uri treeUri, ScanManifest previous, boolean force, ScanOptions options, AtomicBoolean cancelled) {
+            this.treeUri = treeUri;
+            this.previous = previous;
+            this.force = force;
+            this.options = options;
+            this.cancelled = cancelled;
+        }
+
+        Result run() {
+            String rootId = DocumentsContract.getTreeDocumentId(treeUri);
+            List<ScannedDocument> media = new DirectoryTask(this, rootId, 0, 0).compute();
+            ScanManifest manifest = new ScanManifest(treeUri, listings, media);
+
+            ScanDelta delta = previous == null
+                    ? new ScanDelta(true, new ArrayList<>(media), new ArrayList<>(), new ArrayList<>(), media)
+                    : diff(previous.getMedia(), media);
+            Log.d(TAG, "扫描完成: " + treeUri + " 目录 " + listings.size() + " 个, " + delta);
+            return new Result(manifest, delta);
+        }
+    }
+
+    /**
+     * 单个目录的扫描任务，返回该目录及其子目录中按 order 排好序的媒体文件
+     */
+    private class DirectoryTask extends RecursiveTask<List<ScannedDocument>> {
+        private final Traversal traversal;
+        private final String documentId;
+        private final int depth;
+        // 父目录刚刚列出时已知的修改时间，0 表示未知，需要单独查询
+        private final long knownModified;
+
+        DirectoryTask(Traversal traversal, String documentId, int depth, long knownModified) {
+            this.traversal = traversal;
+            this.documentId = documentId;
+            this.depth = depth;
+            this.knownModified = knownModified;
+        }
+
+        @Override
+        protected List<ScannedDocument> compute() {
+            if (traversal.cancelled.get()) {
+                throw new CancellationException("扫描已取消");
+            }
+            Map<String, ScannedDocument> children;
+            boolean fresh;
+            long modified;
+            try {
+                modified = knownModified > 0 ? knownModified
+                        : treeScanner.queryDocument(traversal.treeUri, documentId).getLastModified();
+                ScanManifest.DirectoryListing old = traversal.previous != null
+                        ? traversal.previous.getDirectory(documentId) : null;
+                if (old != null && !traversal.force && modified > 0 && modified == old.lastModified) {
+                    children = old.children;
+                    fresh = false;
+                } else {
+                    children = new LinkedHashMap<>();
+                    for (ScannedDocument child : treeScanner.listChildren(traversal.treeUri, documentId)) {
+                        children.put(child.getDocumentId(), child);
+                    }
+                    fresh = true;
+                }
+            } catch (FileNotFoundException e) {
+                if (depth == 0) {
+                    throw new UncheckedIOException(e);
+                }
+                // 子目录在扫描过程中被删除或无法访问时跳过，不影响整棵树
+                Log.w(TAG, "跳过无法访问的目录: " + documentId);
+                return new ArrayList<>();
+            }
+            traversal.listings.put(documentId, new ScanManifest.DirectoryListing(modified, children));
+
+            // 含 .nomedia 的子目录整体跳过；根目录是用户明确选择的，不受影响
+            if (depth > 0) {
+                for (ScannedDocument child : children.values()) {
+                    if (NO_MEDIA.equals(child.getDisplayName())) {
+                        return new ArrayList<>();
+                    }
+                }
+            }
+
+            ScanOptions options = traversal.options;
+            List<ScannedDocument> files = new ArrayList<>();
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            for (ScannedDocument child : children.values()) {
+                if (options.isExcluded(child.getDisplayName())) {
+                    continue;
+                }
+                if (child.isDirectory()) {
+                    if (depth < options.getMaxDepth()) {
+                        // 沿用旧列表时其中子目录的修改时间可能已过期，需要子任务自己查询
+                        subdirectories.add(new DirectoryTask(traversal, child.getDocumentId(), depth + 1,
+                                fresh ? child.getLastModified() : 0));
+                    }
+                } else {
+                    // 扩展名有歧义或未知时才读取文件头，结果记录在文档上随清单沿用
+                    if (child.getKind() == MediaTypeClassifier.Kind.UNKNOWN) {
+                        classifier.classify(child);
+                    }
+                    if (options.accepts(child)) {
+                        files.add(child);
+                    }
+                }
+            }
+            files.sort(options.getOrder());
+            if (subdirectories.isEmpty()) {
+                return files;
+            }
+
+            invokeAll(subdirectories);
+            List<List<ScannedDocument>> sorted = new ArrayList<>(subdirectories.size() + 1);
+            sorted.add(files);
+            for (DirectoryTask subdirectory : subdirectories) {
+                sorted.add(subdirectory.join());
+            }
+            return SortedMerge.merge(sorted, options.getOrder());
+        }
+    }
+
+    /**
+     * 扫描结果：新的清单以及与旧清单的差异
+     */
+    public static class Result {
+        public final ScanManifest manifest;
+        public final ScanDelta delta;
+
+        Result(ScanManifest manifest, ScanDelta delta) {
+            this.manifest = manifest;
+            this.delta = delta;
+        }
+    }
+}
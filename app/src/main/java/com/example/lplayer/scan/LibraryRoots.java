@@ -0,0 +1,65 @@
+package com.example.lplayer.scan;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+
+import androidx.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 媒体库的根目录：默认文件夹之外，视频和音乐还可以各自配置多个额外文件夹
+ */
+public final class LibraryRoots {
+    public static final String KEY_EXTRA_VIDEO_FOLDERS = "extra_video_folder_uris";
+    public static final String KEY_EXTRA_MUSIC_FOLDERS = "extra_music_folder_uris";
+
+    private LibraryRoots() {
+    }
+
+    /**
+     * 读取额外文件夹，按 URI 排序保证每次顺序一致
+     */
+    public static List<Uri> getExtraRoots(Context context, String key) {
+        Set<String> stored = PreferenceManager.getDefaultSharedPreferences(context)
+                .getStringSet(key, Collections.emptySet());
+        List<String> sorted = new ArrayList<>(stored);
+        Collections.sort(sorted);
+        List<Uri> roots = new ArrayList<>(sorted.size());
+        for (String uri : sorted) {
+            roots.add(Uri.parse(uri));
+        }
+        return roots;
+    }
+
+    public static void addExtraRoot(Context context, String key, Uri folderUri) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        // getStringSet 返回的集合不能直接修改
+        Set<String> roots = new HashSet<>(prefs.getStringSet(key, Collections.emptySet()));
+        if (roots.add(folderUri.toString())) {
+            prefs.edit().putStringSet(key, roots).apply();
+        }
+    }
+
+    public static void clearExtraRoots(Context context, String key) {
+        PreferenceManager.getDefaultSharedPreferences(context).edit().remove(key).apply();
+    }
+
+    /**
+     * 主文件夹在前，额外文件夹在后，去掉重复项
+     */
+    public static List<Uri> withExtras(Uri primary, List<Uri> extras) {
+        Set<Uri> roots = new LinkedHashSet<>();
+        if (primary != null) {
+            roots.add(primary);
+        }
+        roots.addAll(extras);
+        return new ArrayList<>(roots);
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多根目录的递归媒体库扫描
+ *
+ * 所有根目录的目录树都在同一个 fork-join 线程池中遍历，空闲线程会窃取其他子树的任务。
+ * 每个根目录得到按顺序排好的结果后再多路归并为一个增量。
+ */
+public class LibraryScanner {
+    private static final String TAG = "LibraryScanner";
+
+    // 目录查询以 Binder 调用为主，线程数不必超过核数
+    private static final int MAX_PARALLELISM = 4;
+
+    private final IncrementalScanner incrementalScanner;
+    private final ForkJoinPool pool;
+
+    public LibraryScanner(IncrementalScanner incrementalScanner) {
+        this.incrementalScanner = incrementalScanner;
+        this.pool = new ForkJoinPool(Math.max(2, Math.min(MAX_PARALLELISM,
+                Runtime.getRuntime().availableProcessors())));
+    }
+
+    /**
+     * 扫描全部根目录，调用线程被中断时取消尚未开始的目录并抛出 InterruptedException
+     *
+     * 单个根目录无法访问时保留它上次的清单，不影响其他根目录；全部根目录都失败时抛出第一个错误。
+     *
+     * @param previous 各根目录上次的清单，没有时执行完整扫描
+     * @param force    为 true 时不以上次的清单为基线，完整核对每个根目录；上次的清单仍用于失败时保留结果
+     */
+    public Result scan(List<Uri> roots, Map<Uri, ScanManifest> previous, boolean force, ScanOptions options)
+            throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        AtomicBoolean cancelled = new AtomicBoolean(false);
+        List<ForkJoinTask<IncrementalScanner.Result>> tasks = new ArrayList<>(roots.size());
+        for (Uri root : roots) {
+            ScanManifest baseline = force ? null : previous.get(root);
+            tasks.add(pool.submit(incrementalScanner.newRootTask(root, baseline, force, options, cancelled)));
+        }
+
+        Map<Uri, ScanManifest> manifests = new HashMap<>();
+        List<ScanDelta> deltas = new ArrayList<>(roots.size());
+        Exception firstError = null;
+        for (int i = 0; i < roots.size(); i++) {
+            Uri root = roots.get(i);
+            try {
+                IncrementalScanner.Result result = tasks.get(i).get();
+                manifests.put(root, result.manifest);
+                deltas.add(result.delta);
+            } catch (InterruptedException e) {
+                cancelled.set(true);
+                for (ForkJoinTask<?> task : tasks) {
+                    task.cancel(true);
+                }
+                throw e;
+            } catch (ExecutionException e) {
+                Exception cause = unwrap(e);
+                Log.e(TAG, "扫描根目录失败: " + root, cause);
+                if (firstError == null) {
+                    firstError = cause;
+                }
+                // 保留上次的结果，避免一个暂时不可访问的根目录清空整个列表
+                ScanManifest retained = previous.get(root);
+                if (retained != null) {
+                    manifests.put(root, retained);
+                    deltas.add(new ScanDelta(false, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                            retained.getMedia()));
+                }
+            }
+        }
+        if (firstError != null && manifests.isEmpty()) {
+            throw firstError;
+        }
+
+        ScanDelta delta = ScanDelta.combine(deltas, options.getOrder());
+        Log.d(TAG, "媒体库扫描完成: " + roots.size() + " 个根目录, " + options + ", " + delta
+                + ", 耗时 " + (SystemClock.elapsedRealtime() - start) + "ms, 窃取 " + pool.getStealCount());
+        return new Result(Collections.unmodifiableMap(manifests), delta);
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException) {
+            return ((UncheckedIOException) cause).getCause();
+        }
+        if (cause instanceof Exception) {
+            return (Exception) cause;
+        }
+        return e;
+    }
+
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 各根目录的新清单以及合并后的增量
+     */
+    public static class Result {
+        public final Map<Uri, ScanManifest> manifests;
+        public final ScanDelta delta;
+
+        Result(Map<Uri, ScanManifest> manifests, ScanDelta delta) {
+            this.manifests = manifests;
+            this.delta = delta;
+        }
+    }
+}
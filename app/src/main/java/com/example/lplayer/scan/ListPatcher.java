@@ -0,0 +1,100 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 把扫描增量原地应用到已排序的列表上
+ *
+ * 只删除被移除或修改过的项，再把新增和修改过的项按二分查找插回排序位置，
+ * 未变化的项保持不动，不再清空重建整个列表。
+ */
+public final class ListPatcher {
+    private static final int MERGE_THRESHOLD = 32;
+
+    private ListPatcher() {
+    }
+
+    /**
+     * 应用增量，必须在持有该列表的线程（通常是 UI 线程）调用
+     *
+     * @param list         已按 order 排序的列表，会被原地修改
+     * @param changedItems 增量中新增和修改过的文档对应的列表项，已过滤掉不属于该列表的类型
+     * @return 列表是否有变化
+     */
+    public static <T> boolean apply(List<T> list, ScanDelta delta, List<T> changedItems,
+                                    Function<T, Uri> uriOf, Comparator<? super T> order) {
+        Set<Uri> replaced = new HashSet<>(changedItems.size() * 2);
+        for (T item : changedItems) {
+            replaced.add(uriOf.apply(item));
+        }
+
+        boolean changed;
+        if (delta.isFull()) {
+            // 没有基线时列表可能来自保存的播放列表或其他文件夹，先整理顺序，
+            // 再移除不在当前文件列表中的项以及即将被新项替换的旧项
+            list.sort(order);
+            Set<Uri> current = uriSet(delta.getCurrent());
+            changed = list.removeIf(item -> {
+                Uri uri = uriOf.apply(item);
+                return !current.contains(uri) || replaced.contains(uri);
+            });
+        } else {
+            Set<Uri> stale = uriSet(delta.getRemoved());
+            stale.addAll(uriSet(delta.getModified()));
+            stale.addAll(replaced);
+            changed = !stale.isEmpty() && list.removeIf(item -> stale.contains(uriOf.apply(item)));
+        }
+
+        if (changedItems.isEmpty()) {
+            return changed;
+        }
+        if (changedItems.size() <= MERGE_THRESHOLD) {
+            for (T item : changedItems) {
+                int index = Collections.binarySearch(list, item, order);
+                list.add(index >= 0 ? index : -index - 1, item);
+            }
+        } else {
+            // 变化较多（如首次扫描）时先排序再线性归并，避免逐个插入带来的大量元素移动
+            List<T> sortedItems = new ArrayList<>(changedItems);
+            sortedItems.sort(order);
+            List<T> merged = SortedMerge.merge(Arrays.asList(list, sortedItems), order);
+            list.clear();
+            list.addAll(merged);
+        }
+        return true;
+    }
+
+    /**
+     * 扫描过程中先把已就绪的一批项插入到排序位置，同一文件的旧项会被替换；
+     * 扫描结束后仍需调用 apply() 处理删除并得到最终结果
+     */
+    public static <T> void insertSorted(List<T> list, List<T> items, Function<T, Uri> uriOf,
+                                        Comparator<? super T> order) {
+        Set<Uri> replaced = new HashSet<>(items.size() * 2);
+        for (T item : items) {
+            replaced.add(uriOf.apply(item));
+        }
+        list.removeIf(item -> replaced.contains(uriOf.apply(item)));
+        for (T item : items) {
+            int index = Collections.binarySearch(list, item, order);
+            list.add(index >= 0 ? index : -index - 1, item);
+        }
+    }
+
+    private static Set<Uri> uriSet(List<ScannedDocument> documents) {
+        Set<Uri> uris = new HashSet<>(documents.size() * 2);
+        for (ScannedDocument document : documents) {
+            uris.add(document.getUri());
+        }
+        return uris;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.lplayer.scan;
+
+import android.content.ContentResolver;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 判断文件是视频、音频还是其他文件
+ *
+ * 绝大多数文件只根据扩展名查表，不做任何 I/O。只有扩展名可能对应两种媒体（如 .ogg、.webm、.3gp），
+ * 或扩展名未知且提供者给不出明确类型时，才打开文件读取开头的容器标识（ftyp、EBML、fLaC、ID3、OggS、RIFF）。
+ */
+public class MediaTypeClassifier {
+    private static final String TAG = "MediaTypeClassifier";
+
+    // 足够覆盖 Ogg 首页和 WebM 开头的 Tracks 元素
+    static final int SNIFF_LENGTH = 4096;
+
+    public enum Kind {
+        VIDEO,
+        AUDIO,
+        OTHER,
+        // 仅凭文件名无法判断，需要读取文件头
+        UNKNOWN
+    }
+
+    private static final Map<String, Kind> EXTENSIONS = new HashMap<>();
+    // 同一扩展名可能是视频也可能是纯音频，值为读取文件头失败时的默认类型
+    private static final Map<String, Kind> AMBIGUOUS = new HashMap<>();
+
+    static {
+        for (String ext : new String[]{"mp4", "m4v", "mkv", "mov", "avi", "wmv", "flv", "f4v", "ts", "m2ts",
+                "mts", "mpg", "mpeg", "vob", "rm", "rmvb", "asf", "divx", "ogv"}) {
+            EXTENSIONS.put(ext, Kind.VIDEO);
+        }
+        for (String ext : new String[]{"mp3", "m4a", "m4b", "aac", "flac", "wav", "wma", "opus", "ape", "mka",
+                "oga", "amr", "aiff", "aif", "wv", "dsf", "dff", "mid", "midi", "spx", "tta", "ac3", "dts"}) {
+            EXTENSIONS.put(ext, Kind.AUDIO);
+        }
+        // 媒体文件夹里常见的非媒体文件，直接跳过
+        for (String ext : new String[]{"jpg", "jpeg", "png", "gif", "webp", "bmp", "heic", "lrc", "srt", "ass",
+                "ssa", "vtt", "sub", "idx", "nfo", "txt", "cue", "log", "m3u", "m3u8", "pls", "pdf", "db",
+                "ini", "xml", "json", "zip", "rar", "7z", "apk", "nomedia"}) {
+            EXTENSIONS.put(ext, Kind.OTHER);
+        }
+        AMBIGUOUS.put("ogg", Kind.AUDIO);
+        AMBIGUOUS.put("ogx", Kind.AUDIO);
+        AMBIGUOUS.put("webm", Kind.VIDEO);
+        AMBIGUOUS.put("3gp", Kind.VIDEO);
+        AMBIGUOUS.put("3gpp", Kind.VIDEO);
+        AMBIGUOUS.put("3g2", Kind.VIDEO);
+    }
+
+    private final ContentResolver contentResolver;
+
+    public MediaTypeClassifier(ContentResolver contentResolver) {
+        this.contentResolver = contentResolver;
+    }
+
+    /**
+     * 给文档确定类型，文件名无法判断时读取文件头并把结果记录在文档上
+     *
+     * 在扫描线程调用；同一文档只会读取一次，沿用清单时不会重复读取。
+     */
+    public Kind classify(ScannedDocument document) {
+        Kind kind = document.getKind();
+        if (kind != Kind.UNKNOWN) {
+            return kind;
+        }
+        byte[] header = new byte[SNIFF_LENGTH];
+        int length = 0;
+        try (InputStream in = contentResolver.openInputStream(document.getUri())) {
+            if (in != null) {
+                int read;
+                while (length < header.length && (read = in.read(header, length, header.length - length)) > 0) {
+                    length += read;
+                }
+            }
+            kind = sniff(header, length);
+        } catch (IOException | SecurityException e) {
+            Log.w(TAG, "读取文件头失败: " + document.getDisplayName(), e);
+            kind = fallback(document.getDisplayName(), document.getMimeType());
+        }
+        document.setKind(kind);
+        return kind;
+    }
+
+    /**
+     * 只根据文件名和提供者给出的 MIME 类型判断，不做 I/O
+     *
+     * @return 无法判断时返回 UNKNOWN
+     */
+    public static Kind classifyByName(String displayName, String mimeType) {
+        String ext = extension(displayName);
+        if (ext != null) {
+            Kind kind = EXTENSIONS.get(ext);
+            if (kind != null) {
+                return kind;
+            }
+            if (AMBIGUOUS.containsKey(ext)) {
+                return Kind.UNKNOWN;
+            }
+        }
+        // 扩展名未知：提供者给出了明确的非媒体类型时不必读取文件
+        if (mimeType == null || "application/octet-stream".equals(mimeType)
+                || mimeType.startsWith("audio/") || mimeType.startsWith("video/")) {
+            return Kind.UNKNOWN;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * 无法读取文件头时的判断：歧义扩展名取其常见类型，其余信任提供者的 MIME 类型
+     */
+    static Kind fallback(String displayName, String mimeType) {
+        Kind kind = AMBIGUOUS.get(extension(displayName));
+        if (kind != null) {
+            return kind;
+        }
+        if (mimeType != null && mimeType.startsWith("video/")) {
+            return Kind.VIDEO;
+        }
+        if (mimeType != null && mimeType.startsWith("audio/")) {
+            return Kind.AUDIO;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * 根据文件开头的容器标识判断类型
+     */
+    public static Kind sniff(byte[] header, int length) {
+        if (length >= 12 && matches(header, 4, "ftyp")) {
+            // MP4/3GP：主品牌 M4A/M4B/M4P/F4A/F4B 为纯音频
+            if (matches(header, 8, "M4A ") || matches(header, 8, "M4B ") || matches(header, 8, "M4P ")
+                    || matches(header, 8, "F4A ") || matches(header, 8, "F4B ")) {
+                return Kind.AUDIO;
+            }
+            return Kind.VIDEO;
+        }
+        if (length >= 4 && (header[0] & 0xFF) == 0x1A && (header[1] & 0xFF) == 0x45
+                && (header[2] & 0xFF) == 0xDF && (header[3] & 0xFF) == 0xA3) {
+            return sniffMatroska(header, length);
+        }
+        if (length >= 4 && matches(header, 0, "fLaC")) {
+            return Kind.AUDIO;
+        }
+        if (length >= 3 && matches(header, 0, "ID3")) {
+            return Kind.AUDIO;
+        }
+        if (length >= 4 && matches(header, 0, "OggS")) {
+            return sniffOgg(header, length);
+        }
+        if (length >= 12 && matches(header, 0, "RIFF")) {
+            if (matches(header, 8, "WAVE")) {
+                return Kind.AUDIO;
+            }
+            if (matches(header, 8, "AVI ")) {
+                return Kind.VIDEO;
+            }
+            return Kind.OTHER;
+        }
+        if (length >= 12 && matches(header, 0, "FORM")
+                && (matches(header, 8, "AIFF") || matches(header, 8, "AIFC"))) {
+            return Kind.AUDIO;
+        }
+        // MPEG-TS：每 188 字节一个同步字节
+        if (length > 188 && header[0] == 0x47 && header[188] == 0x47) {
+            return Kind.VIDEO;
+        }
+        // 没有 ID3 标签的 MP3 或 ADTS 格式的 AAC，以 11 位帧同步开头
+        if (length >= 2 && (header[0] & 0xFF) == 0xFF && (header[1] & 0xE0) == 0xE0) {
+            return Kind.AUDIO;
+        }
+        return Kind.OTHER;
+    }
+
+    /**
+     * Matroska/WebM 在文件头中找 CodecID 元素：只有 A_ 开头的编解码器时是纯音频
+     */
+    private static Kind sniffMatroska(byte[] header, int length) {
+        boolean hasAudio = false;
+        for (int i = 0; i + 3 < length; i++) {
+            // CodecID 元素 ID 0x86，紧跟 1 字节长度
+            if ((header[i] & 0xFF) != 0x86 || (header[i + 1] & 0x80) == 0) {
+                continue;
+            }
+            if (header[i + 2] == 'V' && header[i + 3] == '_') {
+                return Kind.VIDEO;
+            }
+            if (header[i + 2] == 'A' && header[i + 3] == '_') {
+                hasAudio = true;
+            }
+        }
+        // Tracks 不在读取范围内时无法确定，按视频处理
+        return hasAudio ? Kind.AUDIO : Kind.VIDEO;
+    }
+
+    /**
+     * Ogg 首页的第一个包是编解码器标识头
+     */
+    private static Kind sniffOgg(byte[] header, int length) {
+        if (length < 27) {
+            return Kind.OTHER;
+        }
+        int segments = header[26] & 0xFF;
+        int packet = 27 + segments;
+        if (packet + 8 > length) {
+            return Kind.AUDIO;
+        }
+        if ((header[packet] & 0xFF) == 0x80 && matches(header, packet + 1, "theora")) {
+            return Kind.VIDEO;
+        }
+        return Kind.AUDIO;
+    }
+
+    private static boolean matches(byte[] data, int offset, String ascii) {
+        if (offset + ascii.length() > data.length) {
+            return false;
+        }
+        for (int i = 0; i < ascii.length(); i++) {
+            if ((data[offset + i] & 0xFF) != ascii.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String extension(String displayName) {
+        if (displayName == null) {
+            return null;
+        }
+        int lastDot = displayName.lastIndexOf('.');
+        if (lastDot < 0 || lastDot == displayName.length() - 1) {
+            return null;
+        }
+        return displayName.substring(lastDot + 1).toLowerCase(Locale.ROOT);
+    }
+}
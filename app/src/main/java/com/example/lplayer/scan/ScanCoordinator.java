@@ -0,0 +1,298 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 扫描协调器：同一通道（视频、音乐）同一时间只有一次扫描在进行
+ *
+ * - 扫描进行中再次请求同一组文件夹时合并为这一次扫描，不再另起线程
+ * - 请求了不同的文件夹或调用 cancel() 时，旧扫描被中断，并通过代数（generation）作废
+ * - 结果只交给仍然存活的观察者，且只有当前代数的结果才会被交付
+ * - 扫描过程中产生的中间结果按帧分批交付，每帧最多一次
+ *
+ * 除扫描任务本身外，所有方法都只能在主线程调用。
+ */
+public class ScanCoordinator {
+    private static final String TAG = "ScanCoordinator";
+
+    /**
+     * 在后台线程执行的扫描任务，被取消时线程会收到中断
+     */
+    public interface ScanJob<R, P> {
+        R scan(List<Uri> roots, boolean force, ScanProgress<P> progress) throws Exception;
+    }
+
+    /**
+     * 扫描任务发布中间结果的入口，可在任意线程调用
+     */
+    public interface ScanProgress<P> {
+        void setTotal(int total);
+
+        void publish(P item);
+    }
+
+    /**
+     * 扫描结果观察者，回调都在主线程
+     */
+    public interface ScanObserver<R, P> {
+        /**
+         * 一批中间结果，done/total 为已完成数和总数
+         */
+        default void onScanProgress(List<P> batch, int done, int total) {
+        }
+
+        void onScanComplete(R result);
+
+        void onScanFailed(Exception e);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor;
+    private final Map<String, Integer> generations = new HashMap<>();
+    private final Map<String, Flight<?, ?>> flights = new HashMap<>();
+    private boolean shutdown = false;
+
+    public ScanCoordinator() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "scan-" + threadIndex.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        });
+    }
+
+    /**
+     * 请求扫描
+     *
+     * 同一通道已有同一组文件夹的扫描在进行时，只登记观察者；如果本次要求强制扫描而进行中的不是，
+     * 当前扫描结束后会再强制扫描一次。文件夹不同时取消旧扫描并立即开始新扫描。
+     */
+    public <R, P> void request(@NonNull LifecycleOwner owner, @NonNull String channel,
+                               @NonNull List<Uri> roots, boolean force, @NonNull ScanJob<R, P> job, @NonNull ScanObserver<R, P> observer) {
+        if (shutdown || owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+            return;
+        }
+
+        Flight<?, ?> current = flights.get(channel);
+        if (current != null && current.roots.equals(roots)) {
+            @SuppressWarnings("unchecked")
+            Flight<R, P> flight = (Flight<R, P>) current;
+            flight.addObserver(owner, observer);
+            if (force && !flight.force) {
+                flight.rerunForced = true;
+            }
+            Log.d(TAG, "合并扫描请求: " + channel + " " + roots);
+            return;
+        }
+        if (current != null) {
+            Log.d(TAG, "文件夹已变化，取消旧扫描: " + channel + " " + current.roots);
+            cancel(channel);
+        }
+
+        Flight<R, P> flight = new Flight<>(channel, roots, force, nextGeneration(channel), job);
+        flight.addObserver(owner, observer);
+        start(flight);
+    }
+
+    /**
+     * 取消通道上进行中的扫描，之后到达的旧结果全部丢弃
+     */
+    public void cancel(@NonNull String channel) {
+        nextGeneration(channel);
+        Flight<?, ?> flight = flights.remove(channel);
+        if (flight != null) {
+            flight.detach();
+            flight.dispatcher.cancel();
+            if (flight.future != null) {
+                flight.future.cancel(true);
+            }
+        }
+    }
+
+    public boolean isScanning(@NonNull String channel) {
+        return flights.containsKey(channel);
+    }
+
+    public void shutdown() {
+        shutdown = true;
+        for (String channel : new ArrayList<>(flights.keySet())) {
+            cancel(channel);
+        }
+        executor.shutdownNow();
+    }
+
+    private int nextGeneration(String channel) {
+        Integer generation = generations.get(channel);
+        int next = generation == null ? 1 : generation + 1;
+        generations.put(channel, next);
+        return next;
+    }
+
+    private boolean isCurrent(Flight<?, ?> flight) {
+        Integer generation = generations.get(flight.channel);
+        return generation != null && generation == flight.generation && flights.get(flight.channel) == flight;
+    }
+
+    private <R, P> void start(Flight<R, P> flight) {
+        flights.put(flight.channel, flight);
+        flight.dispatcher = new BatchDispatcher<>(batch -> deliverProgress(flight, batch));
+        Log.d(TAG, "开始扫描: " + flight.channel + " " + flight.roots + " 第 " + flight.generation + " 代"
+                + (flight.force ? "（强制）" : ""));
+        flight.future = executor.submit(() -> {
+            R result = null;
+            Exception error = null;
+            try {
+                result = flight.job.scan(flight.roots, flight.force, flight);
+            } catch (Exception e) {
+                error = e;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            R finalResult = result;
+            Exception finalError = error;
+            mainHandler.post(() -> finish(flight, finalResult, finalError));
+        });
+    }
+
+    private <R, P> void deliverProgress(Flight<R, P> flight, List<P> batch) {
+        if (!isCurrent(flight)) {
+            return;
+        }
+        int done = flight.done.get();
+        int total = Math.max(flight.total, done);
+        for (Registration<R, P> registration : flight.liveObservers()) {
+            registration.observer.onScanProgress(batch, done, total);
+        }
+    }
+
+    private <R, P> void finish(Flight<R, P> flight, R result, Exception error) {
+        if (!isCurrent(flight)) {
+            Log.d(TAG, "丢弃过期的扫描结果: " + flight.channel + " 第 " + flight.generation + " 代");
+            return;
+        }
+        flights.remove(flight.channel);
+        flight.detach();
+        // 最终结果包含全部中间结果，尚未交付的批次直接丢弃
+        flight.dispatcher.cancel();
+
+        for (Registration<R, P> registration : flight.liveObservers()) {
+            if (error != null) {
+                registration.observer.onScanFailed(error);
+            } else {
+                registration.observer.onScanComplete(result);
+            }
+        }
+
+        if (flight.rerunForced && !shutdown) {
+            Flight<R, P> rerun = new Flight<>(flight.channel, flight.roots, true,
+                    nextGeneration(flight.channel), flight.job);
+            for (Registration<R, P> registration : flight.liveObservers()) {
+                rerun.addObserver(registration.owner, registration.observer);
+            }
+            start(rerun);
+        }
+    }
+
+    private static class Flight<R, P> implements ScanProgress<P> {
+        final String channel;
+        final List<Uri> roots;
+        final boolean force;
+        final int generation;
+        final ScanJob<R, P> job;
+        final List<Registration<R, P>> observers = new ArrayList<>();
+        final AtomicInteger done = new AtomicInteger();
+        volatile int total;
+        boolean rerunForced = false;
+        Future<?> future;
+        BatchDispatcher<P> dispatcher;
+
+        Flight(String channel, List<Uri> roots, boolean force, int generation, ScanJob<R, P> job) {
+            this.channel = channel;
+            this.roots = new ArrayList<>(roots);
+            this.force = force;
+            this.generation = generation;
+            this.job = job;
+        }
+
+        @Override
+        public void setTotal(int total) {
+            this.total = total;
+        }
+
+        @Override
+        public void publish(P item) {
+            done.incrementAndGet();
+            dispatcher.post(item);
+        }
+
+        void addObserver(LifecycleOwner owner, ScanObserver<R, P> observer) {
+            for (Registration<R, P> registration : observers) {
+                if (registration.observer == observer) {
+                    return;
+                }
+            }
+            Registration<R, P> registration = new Registration<>(owner, observer);
+            // 观察者销毁后立即移除，不再持有已销毁的界面
+            registration.lifecycleObserver = (source, event) -> {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    observers.remove(registration);
+                }
+            };
+            observers.add(registration);
+            owner.getLifecycle().addObserver(registration.lifecycleObserver);
+        }
+
+        /**
+         * 扫描结束或被取消后解除对观察者生命周期的监听
+         */
+        void detach() {
+            for (Registration<R, P> registration : observers) {
+                registration.owner.getLifecycle().removeObserver(registration.lifecycleObserver);
+            }
+        }
+
+        List<Registration<R, P>> liveObservers() {
+            List<Registration<R, P>> live = new ArrayList<>();
+            Iterator<Registration<R, P>> iterator = observers.iterator();
+            while (iterator.hasNext()) {
+                Registration<R, P> registration = iterator.next();
+                if (registration.owner.getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED) {
+                    iterator.remove();
+                } else {
+                    live.add(registration);
+                }
+            }
+            return live;
+        }
+    }
+
+    private static class Registration<R, P> {
+        final LifecycleOwner owner;
+        final ScanObserver<R, P> observer;
+        LifecycleEventObserver lifecycleObserver;
+
+        Registration(LifecycleOwner owner, ScanObserver<R, P> observer) {
+            this.owner = owner;
+            this.observer = observer;
+        }
+    }
+}
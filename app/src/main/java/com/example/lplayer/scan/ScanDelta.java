@@ -0,0 +1,92 @@
+package com.example.lplayer.scan;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 两次扫描之间的差异
+ *
+ * full 为 true 表示没有可用的基线清单，此时 current 是完整列表，
+ * 调用方应移除列表中不在 current 内的项。
+ */
+public class ScanDelta {
+    private final boolean full;
+    private final List<ScannedDocument> added;
+    private final List<ScannedDocument> modified;
+    private final List<ScannedDocument> removed;
+    private final List<ScannedDocument> current;
+
+    ScanDelta(boolean full, List<ScannedDocument> added, List<ScannedDocument> modified,
+              List<ScannedDocument> removed, List<ScannedDocument> current) {
+        this.full = full;
+        this.added = Collections.unmodifiableList(added);
+        this.modified = Collections.unmodifiableList(modified);
+        this.removed = Collections.unmodifiableList(removed);
+        this.current = Collections.unmodifiableList(current);
+    }
+
+    /**
+     * 合并多个根目录的增量；任一根目录没有基线时合并结果按完整扫描处理，
+     * current 由各根目录已排序的结果多路归并得到
+     */
+    static ScanDelta combine(List<ScanDelta> deltas, Comparator<ScannedDocument> order) {
+        boolean full = false;
+        List<ScannedDocument> added = new ArrayList<>();
+        List<ScannedDocument> modified = new ArrayList<>();
+        List<ScannedDocument> removed = new ArrayList<>();
+        List<List<ScannedDocument>> currents = new ArrayList<>(deltas.size());
+        for (ScanDelta delta : deltas) {
+            full |= delta.full;
+            added.addAll(delta.added);
+            modified.addAll(delta.modified);
+            removed.addAll(delta.removed);
+            currents.add(delta.current);
+        }
+        return new ScanDelta(full, added, modified, removed, SortedMerge.merge(currents, order));
+    }
+
+    public boolean isFull() {
+        return full;
+    }
+
+    public boolean isEmpty() {
+        return !full && added.isEmpty() && modified.isEmpty() && removed.isEmpty();
+    }
+
+    public List<ScannedDocument> getAdded() {
+        return added;
+    }
+
+    public List<ScannedDocument> getModified() {
+        return modified;
+    }
+
+    public List<ScannedDocument> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * 扫描后文件夹中的全部文档
+     */
+    public List<ScannedDocument> getCurrent() {
+        return current;
+    }
+
+    /**
+     * 需要重新处理（读取元数据、插入列表）的文档：新增和修改过的
+     */
+    public List<ScannedDocument> getChanged() {
+        List<ScannedDocument> changed = new ArrayList<>(added.size() + modified.size());
+        changed.addAll(added);
+        changed.addAll(modified);
+        return changed;
+    }
+
+    @Override
+    public String toString() {
+        return (full ? "full" : "delta") + " +" + added.size() + " ~" + modified.size()
+                + " -" + removed.size() + " (共 " + current.size() + ")";
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * 一次文件夹扫描的清单：记录每个目录的修改时间以及其子文档的大小、修改时间，
+ * 以及这次扫描收集到的媒体文件
+ *
+ * 清单创建后不再修改，下一次扫描基于旧清单生成新清单和增量。
+ */
+public class ScanManifest {
+    private final Uri treeUri;
+    private final Map<String, DirectoryListing> directories;
+    // 按扫描顺序排好的媒体文件
+    private final List<ScannedDocument> media;
+
+    ScanManifest(Uri treeUri, Map<String, DirectoryListing> directories, List<ScannedDocument> media) {
+        this.treeUri = treeUri;
+        this.directories = Collections.unmodifiableMap(new HashMap<>(directories));
+        this.media = Collections.unmodifiableList(new ArrayList<>(media));
+    }
+
+    public Uri getTreeUri() {
+        return treeUri;
+    }
+
+    DirectoryListing getDirectory(String documentId) {
+        return directories.get(documentId);
+    }
+
+    Map<String, DirectoryListing> getDirectories() {
+        return directories;
+    }
+
+    public List<ScannedDocument> getMedia() {
+        return media;
+    }
+
+    /**
+     * 清单是否属于指定文件夹，不属于时不能作为增量扫描的基线
+     */
+    public boolean isFor(Uri folderUri) {
+        return treeUri.equals(folderUri);
+    }
+
+    /**
+     * 遍历这次扫描收集到的媒体文件及其相对于扫描根目录的路径（以 / 分隔，不含根目录本身的名称）
+     */
+    public void forEachMediaPath(BiConsumer<String, ScannedDocument> consumer) {
+        Set<String> mediaIds = new HashSet<>(media.size() * 2);
+        for (ScannedDocument document : media) {
+            mediaIds.add(document.getDocumentId());
+        }
+        forEachFilePath((path, document) -> {
+            if (mediaIds.contains(document.getDocumentId())) {
+                consumer.accept(path, document);
+            }
+        });
+    }
+
+    /**
+     * 遍历清单中列出的所有文件（包括非媒体文件）及其相对于扫描根目录的路径
+     */
+    public void forEachFilePath(BiConsumer<String, ScannedDocument> consumer) {
+        // 目录 ID 与其路径前缀成对入栈
+        ArrayDeque<String> pending = new ArrayDeque<>();
+        pending.push("");
+        pending.push(DocumentsContract.getTreeDocumentId(treeUri));
+        while (!pending.isEmpty()) {
+            String directoryId = pending.pop();
+            String prefix = pending.pop();
+            DirectoryListing listing = directories.get(directoryId);
+            if (listing == null) {
+                continue;
+            }
+            for (ScannedDocument child : listing.children.values()) {
+                String name = child.getDisplayName();
+                if (name == null || name.isEmpty()) {
+                    continue;
+                }
+                String path = prefix + name;
+                if (child.isDirectory()) {
+                    pending.push(path + "/");
+                    pending.push(child.getDocumentId());
+                } else {
+                    consumer.accept(path, child);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入紧凑的二进制形式；媒体文件只记录文档 ID，读取时从目录列表中找回
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeUTF(treeUri.toString());
+        out.writeInt(directories.size());
+        for (Map.Entry<String, DirectoryListing> entry : directories.entrySet()) {
+            DirectoryListing listing = entry.getValue();
+            out.writeUTF(entry.getKey());
+            out.writeLong(listing.lastModified);
+            out.writeInt(listing.children.size());
+            for (ScannedDocument child : listing.children.values()) {
+                out.writeUTF(child.getDocumentId());
+                out.writeUTF(child.getDisplayName() != null ? child.getDisplayName() : "");
+                out.writeUTF(child.getMimeType() != null ? child.getMimeType() : "");
+                out.writeLong(child.getSize());
+                out.writeLong(child.getLastModified());
+                out.writeByte(child.getKind().ordinal());
+            }
+        }
+        out.writeInt(media.size());
+        for (ScannedDocument document : media) {
+            out.writeUTF(document.getDocumentId());
+        }
+    }
+
+    /**
+     * 读取 writeTo 写入的清单，文档 URI 按树 URI 重新构建
+     *
+     * 调用方通常在读完整个文件后才校验 CRC，这里的数量可能来自损坏的数据，不能用来预分配容量。
+     */
+    public static ScanManifest readFrom(DataInput in) throws IOException {
+        Uri treeUri = Uri.parse(in.readUTF());
+        MediaTypeClassifier.Kind[] kinds = MediaTypeClassifier.Kind.values();
+        int directoryCount = in.readInt();
+        Map<String, DirectoryListing> directories = new HashMap<>();
+        Map<String, ScannedDocument> documents = new HashMap<>();
+        for (int i = 0; i < directoryCount; i++) {
+            String directoryId = in.readUTF();
+            long lastModified = in.readLong();
+            int childCount = in.readInt();
+            Map<String, ScannedDocument> children = new LinkedHashMap<>();
+            for (int j = 0; j < childCount; j++) {
+                String documentId = in.readUTF();
+                String displayName = in.readUTF();
+                String mimeType = in.readUTF();
+                long size = in.readLong();
+                long childModified = in.readLong();
+                int kind = in.readByte();
+                if (kind < 0 || kind >= kinds.length) {
+                    throw new IOException("无效的媒体类型: " + kind);
+                }
+                ScannedDocument child = new ScannedDocument(
+                        DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId), documentId,
+                        displayName, mimeType.isEmpty() ? null : mimeType, size, childModified);
+                child.setKind(kinds[kind]);
+                children.put(documentId, child);
+                documents.put(documentId, child);
+            }
+            directories.put(directoryId, new DirectoryListing(lastModified, children));
+        }
+        int mediaCount = in.readInt();
+        List<ScannedDocument> media = new ArrayList<>();
+        for (int i = 0; i < mediaCount; i++) {
+            ScannedDocument document = documents.get(in.readUTF());
+            if (document == null) {
+                throw new IOException("清单中的媒体文件不在任何目录中");
+            }
+            media.add(document);
+        }
+        return new ScanManifest(treeUri, directories, media);
+    }
+
+    /**
+     * 单个目录的列表
+     */
+    static class DirectoryListing {
+        final long lastModified;
+        // 文档 ID -> 子文档，保持列出时的顺序
+        final Map<String, ScannedDocument> children;
+
+        DirectoryListing(long lastModified, Map<String, ScannedDocument> children) {
+            this.lastModified = lastModified;
+            this.children = Collections.unmodifiableMap(new LinkedHashMap<>(children));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.lplayer.scan;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+/**
+ * 递归扫描的参数：要收集哪些文件、如何排序、最大深度以及排除规则
+ */
+public class ScanOptions {
+    private static final String TAG = "ScanOptions";
+
+    public static final String KEY_MAX_DEPTH = "scan_max_depth";
+    public static final String KEY_EXCLUDE_PATTERNS = "scan_exclude_patterns";
+    public static final int DEFAULT_MAX_DEPTH = 8;
+    // "不限" 时的实际上限，防止异常的目录结构导致无限递归
+    public static final int UNLIMITED_DEPTH = 64;
+
+    public static final Comparator<ScannedDocument> BY_DISPLAY_NAME =
+            Comparator.comparing(document -> document.getDisplayName().toLowerCase());
+    public static final Comparator<ScannedDocument> BY_BASE_NAME =
+            Comparator.comparing(document -> document.getBaseName().toLowerCase());
+
+    private final Predicate<ScannedDocument> mediaFilter;
+    private final Comparator<ScannedDocument> order;
+    private final int maxDepth;
+    private final List<Pattern> excludePatterns;
+
+    /**
+     * @param maxDepth 0 表示只扫描根目录本身
+     * @param excludes 文件或文件夹名的通配符规则，支持 * 和 ?，不区分大小写
+     */
+    public ScanOptions(Predicate<ScannedDocument> mediaFilter, Comparator<ScannedDocument> order,
+                       int maxDepth, List<String> excludes) {
+        this.mediaFilter = mediaFilter;
+        this.order = order;
+        this.maxDepth = maxDepth < 0 ? UNLIMITED_DEPTH : Math.min(maxDepth, UNLIMITED_DEPTH);
+        List<Pattern> patterns = new ArrayList<>();
+        for (String exclude : excludes) {
+            String glob = exclude.trim();
+            if (!glob.isEmpty()) {
+                patterns.add(globToPattern(glob));
+            }
+        }
+        this.excludePatterns = Collections.unmodifiableList(patterns);
+    }
+
+    public static ScanOptions forVideo(Context context) {
+        return fromPreferences(context, ScannedDocument::isVideo, BY_DISPLAY_NAME);
+    }
+
+    public static ScanOptions forMusic(Context context) {
+        return fromPreferences(context, ScannedDocument::isAudio, BY_BASE_NAME);
+    }
+
+    private static ScanOptions fromPreferences(Context context, Predicate<ScannedDocument> mediaFilter,
+                                               Comparator<ScannedDocument> order) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        int maxDepth = DEFAULT_MAX_DEPTH;
+        String configured = prefs.getString(KEY_MAX_DEPTH, String.valueOf(DEFAULT_MAX_DEPTH));
+        try {
+            maxDepth = Integer.parseInt(configured);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "无效的扫描深度设置: " + configured);
+        }
+        List<String> excludes = new ArrayList<>();
+        for (String exclude : prefs.getString(KEY_EXCLUDE_PATTERNS, "").split("[,，\\n]")) {
+            excludes.add(exclude);
+        }
+        return new ScanOptions(mediaFilter, order, maxDepth, excludes);
+    }
+
+    public boolean accepts(ScannedDocument document) {
+        return mediaFilter.test(document);
+    }
+
+    public Comparator<ScannedDocument> getOrder() {
+        return order;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * 名称是否命中排除规则，命中的文件夹整棵子树都不再扫描
+     */
+    public boolean isExcluded(String name) {
+        for (Pattern pattern : excludePatterns) {
+            if (pattern.matcher(name).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (char c : glob.toCharArray()) {
+            if (c == '*') {
+                regex.append(".*");
+            } else if (c == '?') {
+                regex.append('.');
+            } else {
+                regex.append(Pattern.quote(String.valueOf(c)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "maxDepth=%d, excludes=%d", maxDepth, excludePatterns.size());
+    }
+}
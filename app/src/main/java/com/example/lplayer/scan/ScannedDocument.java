@@ -0,0 +1,92 @@
+package com.example.lplayer.scan;
+
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+/**
+ * 文件夹扫描得到的单个文档，字段全部来自子文档游标的一行
+ */
+public class ScannedDocument {
+    private final Uri uri;
+    private final String documentId;
+    private final String displayName;
+    private final String mimeType;
+    private final long size;
+    private final long lastModified;
+    // 由文件名推断，需要时由 MediaTypeClassifier 读取文件头后补全
+    private volatile MediaTypeClassifier.Kind kind;
+
+    public ScannedDocument(Uri uri, String documentId, String displayName, String mimeType,
+                           long size, long lastModified) {
+        this.uri = uri;
+        this.documentId = documentId;
+        this.displayName = displayName;
+        this.mimeType = mimeType;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    public String getDocumentId() {
+        return documentId;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public boolean isDirectory() {
+        return DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType);
+    }
+
+    /**
+     * 媒体类型；文件名无法判断且尚未读取文件头时为 UNKNOWN
+     */
+    public MediaTypeClassifier.Kind getKind() {
+        MediaTypeClassifier.Kind current = kind;
+        if (current == null) {
+            current = isDirectory() ? MediaTypeClassifier.Kind.OTHER
+                    : MediaTypeClassifier.classifyByName(displayName, mimeType);
+            kind = current;
+        }
+        return current;
+    }
+
+    void setKind(MediaTypeClassifier.Kind kind) {
+        this.kind = kind;
+    }
+
+    public boolean isVideo() {
+        return getKind() == MediaTypeClassifier.Kind.VIDEO;
+    }
+
+    public boolean isAudio() {
+        return getKind() == MediaTypeClassifier.Kind.AUDIO;
+    }
+
+    /**
+     * 去除扩展名后的文件名，用作音乐标题
+     */
+    public String getBaseName() {
+        if (displayName == null) {
+            return null;
+        }
+        int lastDot = displayName.lastIndexOf('.');
+        return lastDot > 0 ? displayName.substring(0, lastDot) : displayName;
+    }
+}
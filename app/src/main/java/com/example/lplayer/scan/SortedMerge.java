@@ -0,0 +1,93 @@
+package com.example.lplayer.scan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * 多路归并已排序的列表
+ *
+ * 各目录、各根目录的结果分别排好序后在这里合并，总耗时 O(n log k)，不需要对整体重新排序。
+ */
+public final class SortedMerge {
+
+    private SortedMerge() {
+    }
+
+    public static <T> List<T> merge(List<? extends List<? extends T>> lists, Comparator<? super T> order) {
+        int total = 0;
+        List<List<? extends T>> nonEmpty = new ArrayList<>(lists.size());
+        for (List<? extends T> list : lists) {
+            if (!list.isEmpty()) {
+                nonEmpty.add(list);
+                total += list.size();
+            }
+        }
+        if (nonEmpty.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (nonEmpty.size() == 1) {
+            return new ArrayList<>(nonEmpty.get(0));
+        }
+        if (nonEmpty.size() == 2) {
+            return mergeTwo(nonEmpty.get(0), nonEmpty.get(1), order, total);
+        }
+
+        List<T> merged = new ArrayList<>(total);
+        PriorityQueue<Cursor<T>> heap = new PriorityQueue<>(nonEmpty.size(),
+                (a, b) -> {
+                    int result = order.compare(a.current(), b.current());
+                    // 相等时按来源顺序输出，保证归并稳定
+                    return result != 0 ? result : Integer.compare(a.source, b.source);
+                });
+        for (int i = 0; i < nonEmpty.size(); i++) {
+            heap.add(new Cursor<>(nonEmpty.get(i), i));
+        }
+        while (!heap.isEmpty()) {
+            Cursor<T> cursor = heap.poll();
+            merged.add(cursor.current());
+            cursor.position++;
+            if (cursor.position < cursor.list.size()) {
+                heap.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    private static <T> List<T> mergeTwo(List<? extends T> a, List<? extends T> b, Comparator<? super T> order,
+                                        int total) {
+        List<T> merged = new ArrayList<>(total);
+        int i = 0;
+        int j = 0;
+        while (i < a.size() && j < b.size()) {
+            if (order.compare(b.get(j), a.get(i)) < 0) {
+                merged.add(b.get(j++));
+            } else {
+                merged.add(a.get(i++));
+            }
+        }
+        while (i < a.size()) {
+            merged.add(a.get(i++));
+        }
+        while (j < b.size()) {
+            merged.add(b.get(j++));
+        }
+        return merged;
+    }
+
+    private static class Cursor<T> {
+        final List<? extends T> list;
+        final int source;
+        int position = 0;
+
+        Cursor(List<? extends T> list, int source) {
+            this.list = list;
+            this.source = source;
+        }
+
+        T current() {
+            return list.get(position);
+        }
+    }
+}
@@ -0,0 +1,373 @@
+package com.example.lplayer.thumbnail;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.palette.graphics.Palette;
+
+import com.example.lplayer.metadata.MusicMetadata;
+import com.example.lplayer.metadata.TagReader;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 音乐封面加载器
+ *
+ * 在后台线程用 TagReader 定位内嵌封面（ID3 APIC、FLAC PICTURE、MP4 covr），找不到时再交给
+ * MediaMetadataRetriever.getEmbeddedPicture。每张封面只完整解码一次，同时缩放出列表行和播放器头部两种尺寸，
+ * 并在同一次处理中用 Palette 取出播放器的背景色，结果都写入 ThumbnailArchive。
+ * 同一专辑（专辑名 + 艺术家）的曲目共用一个键，内存中也只保留一份位图。
+ */
+public class AlbumArtLoader {
+    private static final String TAG = "AlbumArtLoader";
+    private static final int THREAD_COUNT = 2;
+    private static final int MAX_PENDING = 32;
+    private static final int MAX_MISSING = 1024;
+    private static final int JPEG_QUALITY = 90;
+    private static final int ROW_SIZE_DP = 48;
+    private static final int HEADER_SIZE_DP = 320;
+    private static final int MAX_HEADER_SIZE_PX = 1024;
+
+    private static AlbumArtLoader instance;
+
+    /**
+     * 预先缩放好的两种尺寸
+     */
+    public enum Size {
+        ROW, HEADER
+    }
+
+    /**
+     * 封面位图和从中提取的颜色，颜色取不到时为 0
+     */
+    public static final class AlbumArt {
+        public final Bitmap bitmap;
+        public final int backgroundColor;
+        public final int accentColor;
+
+        AlbumArt(Bitmap bitmap, int backgroundColor, int accentColor) {
+            this.bitmap = bitmap;
+            this.backgroundColor = backgroundColor;
+            this.accentColor = accentColor;
+        }
+    }
+
+    public interface Callback {
+        /**
+         * 在主线程回调，没有封面或请求已取消时不会调用
+         */
+        void onAlbumArtLoaded(AlbumArt art);
+    }
+
+    private final Context context;
+    private final ThumbnailArchive archive;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<String, AlbumArt> memoryCache;
+    // 确认没有内嵌封面的曲目，避免反复打开文件
+    private final Set<Uri> missing = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<Uri, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Uri, Boolean> eldest) {
+                    return size() > MAX_MISSING;
+                }
+            }));
+    private final LoadQueue queue = new LoadQueue("AlbumArt", THREAD_COUNT, MAX_PENDING);
+    private final int rowSizePx;
+    private final int headerSizePx;
+
+    private AlbumArtLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.archive = ThumbnailArchive.getInstance(context);
+        float density = this.context.getResources().getDisplayMetrics().density;
+        rowSizePx = Math.round(ROW_SIZE_DP * density);
+        headerSizePx = Math.min(Math.round(HEADER_SIZE_DP * density), MAX_HEADER_SIZE_PX);
+
+        // 封面缓存占可用内存的 1/16，以 KB 计
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memoryCache = new LruCache<String, AlbumArt>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(String key, AlbumArt art) {
+                return Math.max(1, art.bitmap.getAllocationByteCount() / 1024);
+            }
+        };
+    }
+
+    public static synchronized AlbumArtLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlbumArtLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 请求一首曲目的封面，必须在主线程调用
+     *
+     * 内存缓存命中时同步回调并返回 null；已知没有封面时直接返回 null；否则返回可取消的请求。
+     */
+    public Request load(Uri uri, String album, String artist, Size size, Callback callback) {
+        if (uri == null) {
+            return null;
+        }
+        String albumKey = albumKey(uri, album, artist);
+        AlbumArt cached = memoryCache.get(cacheKey(albumKey, size));
+        if (cached != null) {
+            callback.onAlbumArtLoaded(cached);
+            return null;
+        }
+        if (missing.contains(uri)) {
+            return null;
+        }
+        Request request = new Request(this, uri, albumKey, size, callback);
+        queue.submit(request);
+        return request;
+    }
+
+    /**
+     * 响应系统的内存回调，界面不可见或内存紧张时释放缓存
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            memoryCache.evictAll();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            memoryCache.trimToSize(memoryCache.maxSize() / 2);
+        }
+    }
+
+    /**
+     * 依次查找内存缓存、磁盘存档，都没有时才读取音乐文件
+     */
+    private void loadOnWorker(Request request) {
+        String cacheKey = cacheKey(request.albumKey, request.size);
+        AlbumArt art = memoryCache.get(cacheKey);
+        if (art == null) {
+            art = readArchived(request.albumKey, request.size);
+        }
+        if (art == null) {
+            if (archive.get(missingKey(request.uri)) != null) {
+                missing.add(request.uri);
+                return;
+            }
+            art = extract(request);
+            if (art == null) {
+                missing.add(request.uri);
+                archive.put(missingKey(request.uri), new byte[0]);
+                return;
+            }
+        }
+        memoryCache.put(cacheKey, art);
+
+        AlbumArt result = art;
+        mainHandler.post(() -> {
+            if (!request.isCancelled()) {
+                request.callback.onAlbumArtLoaded(result);
+            }
+        });
+    }
+
+    private AlbumArt readArchived(String albumKey, Size size) {
+        byte[] data = archive.get(archiveKey(albumKey, size));
+        if (data == null || data.length == 0) {
+            return null;
+        }
+        Bitmap bitmap = BitmapFactory.decodeByteArray(data, 0, data.length);
+        if (bitmap == null) {
+            return null;
+        }
+        byte[] colors = archive.get(colorsKey(albumKey));
+        if (colors == null || colors.length < 8) {
+            return new AlbumArt(bitmap, 0, 0);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(colors);
+        return new AlbumArt(bitmap, buffer.getInt(), buffer.getInt());
+    }
+
+    /**
+     * 读取内嵌图片，按头部尺寸下采样解码一次，缩放出两种尺寸并提取颜色
+     *
+     * @return 请求的尺寸，另一种尺寸同时放入缓存
+     */
+    private AlbumArt extract(Request request) {
+        byte[] picture = readEmbeddedPicture(request.uri);
+        if (picture == null) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.w(TAG, "无法识别的封面图片: " + request.uri);
+            return null;
+        }
+        // 先用 2 的幂次下采样到不小于目标尺寸，再精确缩放
+        int sampleSize = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= headerSizePx) {
+            sampleSize *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        Bitmap decoded = BitmapFactory.decodeByteArray(picture, 0, picture.length, options);
+        if (decoded == null) {
+            return null;
+        }
+
+        Bitmap header = scale(decoded, headerSizePx);
+        Bitmap row = scale(header, rowSizePx);
+        if (decoded != header) {
+            decoded.recycle();
+        }
+
+        Palette palette = Palette.from(header).maximumColorCount(16).generate();
+        int backgroundColor = palette.getDarkMutedColor(palette.getDarkVibrantColor(palette.getMutedColor(0)));
+        int accentColor = palette.getVibrantColor(palette.getLightVibrantColor(0));
+
+        AlbumArt headerArt = new AlbumArt(header, backgroundColor, accentColor);
+        AlbumArt rowArt = new AlbumArt(row, backgroundColor, accentColor);
+        writeArchived(request.albumKey, Size.HEADER, header);
+        writeArchived(request.albumKey, Size.ROW, row);
+        archive.put(colorsKey(request.albumKey), ByteBuffer.allocate(8)
+                .putInt(backgroundColor).putInt(accentColor).array());
+
+        if (request.size == Size.HEADER) {
+            memoryCache.put(cacheKey(request.albumKey, Size.ROW), rowArt);
+            return headerArt;
+        }
+        memoryCache.put(cacheKey(request.albumKey, Size.HEADER), headerArt);
+        return rowArt;
+    }
+
+    private byte[] readEmbeddedPicture(Uri uri) {
+        try {
+            ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (pfd != null) {
+                try (ParcelFileDescriptor.AutoCloseInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(pfd)) {
+                    TagReader.Tags tags = TagReader.read(in.getChannel());
+                    if (tags != null && tags.picture != null) {
+                        byte[] data = TagReader.readPicture(in.getChannel(), tags.picture);
+                        if (data != null) {
+                            return data;
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "读取内嵌封面失败，改用 MediaMetadataRetriever: " + uri, e);
+        }
+
+        // Ogg 注释中的封面、WAV/APE 等 TagReader 不处理的情况
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            return retriever.getEmbeddedPicture();
+        } catch (Exception e) {
+            Log.w(TAG, "MediaMetadataRetriever 读取封面失败: " + uri, e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.e(TAG, "释放 MediaMetadataRetriever 失败", e);
+            }
+        }
+    }
+
+    private void writeArchived(String albumKey, Size size, Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size == Size.ROW ? 8 * 1024 : 64 * 1024);
+        if (bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+            archive.put(archiveKey(albumKey, size), out.toByteArray());
+        }
+    }
+
+    /**
+     * 按短边缩放到目标尺寸，本来就不大于目标时原样返回
+     */
+    private static Bitmap scale(Bitmap source, int targetShortSide) {
+        int shortSide = Math.min(source.getWidth(), source.getHeight());
+        if (shortSide <= targetShortSide) {
+            return source;
+        }
+        float ratio = (float) targetShortSide / shortSide;
+        return Bitmap.createScaledBitmap(source, Math.round(source.getWidth() * ratio),
+                Math.round(source.getHeight() * ratio), true);
+    }
+
+    /**
+     * 有专辑名的曲目按专辑名 + 艺术家共享封面，没有的按曲目单独保存
+     */
+    static String albumKey(Uri uri, String album, String artist) {
+        return albumKey(String.valueOf(uri), album, artist);
+    }
+
+    /**
+     * 列表项中没有标签时填的是“未知专辑”“未知艺术家”占位文字，按没有标签处理，
+     * 否则所有无标签的曲目会共用第一个解码出的封面
+     */
+    static String albumKey(String track, String album, String artist) {
+        if (isBlankTag(album, MusicMetadata.UNKNOWN_ALBUM)) {
+            return "track:" + track;
+        }
+        String normalizedArtist = isBlankTag(artist, MusicMetadata.UNKNOWN_ARTIST)
+                ? "" : artist.trim().toLowerCase(Locale.ROOT);
+        return "album:" + album.trim().toLowerCase(Locale.ROOT) + "\u0000" + normalizedArtist;
+    }
+
+    private static boolean isBlankTag(String value, String placeholder) {
+        return value == null || value.trim().isEmpty() || value.equals(placeholder);
+    }
+
+    private static String cacheKey(String albumKey, Size size) {
+        return albumKey + "#" + size;
+    }
+
+    private static String archiveKey(String albumKey, Size size) {
+        return "art:" + albumKey + "#" + size;
+    }
+
+    private static String colorsKey(String albumKey) {
+        return "art:" + albumKey + "#colors";
+    }
+
+    private static String missingKey(Uri uri) {
+        return "art-missing:" + uri;
+    }
+
+    /**
+     * 一次封面请求，视图被回收或切换曲目时调用 cancel
+     */
+    public static final class Request extends LoadRequest {
+        private final AlbumArtLoader loader;
+        final Uri uri;
+        final String albumKey;
+        final Size size;
+        final Callback callback;
+
+        Request(AlbumArtLoader loader, Uri uri, String albumKey, Size size, Callback callback) {
+            super(loader.queue);
+            this.loader = loader;
+            this.uri = uri;
+            this.albumKey = albumKey;
+            this.size = size;
+            this.callback = callback;
+        }
+
+        @Override
+        void load() {
+            loader.loadOnWorker(this);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.lplayer.thumbnail;
+
+import android.graphics.Bitmap;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 按字节数索引的可复用位图池
+ *
+ * 内存 LRU 因容量不足淘汰的缩略图放入这里，解码新缩略图时通过 BitmapFactory.Options.inBitmap
+ * 复用其内存，不必每次都分配新位图。只要可复用位图的分配大小不小于解码所需即可，
+ * 所以按字节数取不小于所需的最小一张。池的总数有上限，多余的位图直接交给 GC。
+ */
+final class BitmapPool {
+    private final int maxCount;
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> bitmaps = new TreeMap<>();
+    private int count = 0;
+
+    BitmapPool(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    /**
+     * 放入一张不再显示的位图，不可变、已回收或配置不同的位图不能用作 inBitmap，直接丢弃
+     */
+    synchronized void put(Bitmap bitmap, Bitmap.Config config) {
+        if (count >= maxCount || bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() != config) {
+            return;
+        }
+        bitmaps.computeIfAbsent(bitmap.getAllocationByteCount(), size -> new ArrayDeque<>()).addLast(bitmap);
+        count++;
+    }
+
+    /**
+     * 取出一张分配大小至少为 byteCount 的位图，没有时返回 null
+     */
+    synchronized Bitmap get(int byteCount) {
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = bitmaps.ceilingEntry(byteCount);
+        // 过大的位图复用后占着多余的内存留在缓存里，不如重新分配
+        if (entry == null || entry.getKey() > byteCount * 2) {
+            return null;
+        }
+        Bitmap bitmap = entry.getValue().pollLast();
+        if (entry.getValue().isEmpty()) {
+            bitmaps.remove(entry.getKey());
+        }
+        count--;
+        return bitmap;
+    }
+
+    synchronized void clear() {
+        bitmaps.clear();
+        count = 0;
+    }
+}
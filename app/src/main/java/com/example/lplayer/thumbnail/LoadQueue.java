@@ -0,0 +1,79 @@
+package com.example.lplayer.thumbnail;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 后进先出、长度有上限的后台加载队列
+ *
+ * 最近提交的请求最先执行，超出上限时丢弃最早的请求。列表滚动时最近绑定的行就是正在进入屏幕的行，
+ * 滚过去的行要么已在回收时取消，要么排在队首被丢弃，不会积压大量解码任务。
+ */
+final class LoadQueue {
+    private static final String TAG = "LoadQueue";
+
+    private final ArrayDeque<LoadRequest> pending = new ArrayDeque<>();
+    private final ExecutorService executor;
+    private final int threadCount;
+    private final int maxPending;
+    private int activeWorkers = 0;
+
+    LoadQueue(String name, int threadCount, int maxPending) {
+        this.threadCount = threadCount;
+        this.maxPending = maxPending;
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    synchronized void submit(LoadRequest request) {
+        pending.addLast(request);
+        // 超出上限时丢弃最早的请求，这些行多半已经滚出屏幕，重新绑定时会再次请求
+        while (pending.size() > maxPending) {
+            pending.pollFirst().drop();
+        }
+        if (activeWorkers < threadCount) {
+            activeWorkers++;
+            executor.execute(this::drain);
+        }
+    }
+
+    synchronized void remove(LoadRequest request) {
+        pending.remove(request);
+    }
+
+    /**
+     * 工作线程循环取队尾的请求，队列空了才退出
+     */
+    private void drain() {
+        while (true) {
+            LoadRequest request;
+            synchronized (this) {
+                request = pending.pollLast();
+                if (request == null) {
+                    activeWorkers--;
+                    return;
+                }
+            }
+            if (request.isCancelled()) {
+                continue;
+            }
+            try {
+                request.load();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "后台加载失败", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.lplayer.thumbnail;
+
+/**
+ * 可取消的后台加载请求，视图被回收时调用 cancel
+ */
+public abstract class LoadRequest {
+    private final LoadQueue queue;
+    private volatile boolean cancelled = false;
+
+    LoadRequest(LoadQueue queue) {
+        this.queue = queue;
+    }
+
+    public void cancel() {
+        cancelled = true;
+        queue.remove(this);
+    }
+
+    /**
+     * 被主动取消或因队列超限被丢弃
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    void drop() {
+        cancelled = true;
+    }
+
+    /**
+     * 在工作线程中执行，结果需要自行切回主线程
+     */
+    abstract void load();
+}
@@ -0,0 +1,458 @@
+package com.example.lplayer.thumbnail;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 缩略图和专辑封面的打包存储
+ *
+ * 所有图片追加写入同一个数据文件，不会产生成千上万个小文件；索引文件只记录键的哈希、偏移和长度。
+ * 打开时索引读入内存，数据文件通过内存映射读取，之后的查找和读取都不需要系统调用。
+ * 覆盖、淘汰留下的失效数据由后台压缩清理，总大小超过预算时按最近最少使用的顺序淘汰。
+ *
+ * 数据记录格式：[键长度 u16][键 UTF-8][图片数据]，读取时比对键以排除哈希冲突。
+ * 索引记录格式：[键哈希 i64][偏移 i64][记录长度 i32]，长度为 0 表示删除。
+ */
+public class ThumbnailArchive {
+    private static final String TAG = "ThumbnailArchive";
+    private static final String PACK_NAME = "thumbnails.pack";
+    private static final String INDEX_NAME = "thumbnails.idx";
+    private static final int MAGIC = 0x4C544841; // "LTHA"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int INDEX_ENTRY_BYTES = 20;
+    private static final long DEFAULT_BYTE_BUDGET = 64L * 1024 * 1024;
+    // 失效数据至少达到这个量并且超过有效数据的一半才压缩
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    private static ThumbnailArchive instance;
+
+    private final File packFile;
+    private final File indexFile;
+    private final long byteBudget;
+    // 访问顺序的 LinkedHashMap，最前面的条目最久未使用
+    private final LinkedHashMap<Long, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ThumbnailArchive-Compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private boolean opened = false;
+    private boolean compactionScheduled = false;
+    private RandomAccessFile pack;
+    private DataOutputStream indexOut;
+    private MappedByteBuffer mapped;
+    private long packLength;
+    private long liveBytes;
+
+    private static class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    ThumbnailArchive(File directory, long byteBudget) {
+        this.packFile = new File(directory, PACK_NAME);
+        this.indexFile = new File(directory, INDEX_NAME);
+        this.byteBudget = byteBudget;
+    }
+
+    public static synchronized ThumbnailArchive getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailArchive(context.getApplicationContext().getCacheDir(), DEFAULT_BYTE_BUDGET);
+        }
+        return instance;
+    }
+
+    /**
+     * 读取一条记录的图片数据，不存在时返回 null
+     */
+    public synchronized byte[] get(String key) {
+        if (!ensureOpen()) {
+            return null;
+        }
+        Entry entry = index.get(hash(key));
+        if (entry == null) {
+            return null;
+        }
+        try {
+            ByteBuffer record = slice(entry);
+            byte[] expectedKey = key.getBytes(StandardCharsets.UTF_8);
+            int keyLength = record.getShort() & 0xFFFF;
+            if (keyLength != expectedKey.length) {
+                return null;
+            }
+            for (byte b : expectedKey) {
+                if (record.get() != b) {
+                    return null;
+                }
+            }
+            byte[] data = new byte[record.remaining()];
+            record.get(data);
+            return data;
+        } catch (IOException e) {
+            Log.e(TAG, "读取缩略图记录失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 追加一条记录，同一个键的旧记录变为失效数据
+     */
+    public synchronized void put(String key, byte[] data) {
+        if (!ensureOpen()) {
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        if (keyBytes.length > 0xFFFF) {
+            return;
+        }
+        int length = 2 + keyBytes.length + data.length;
+        ByteBuffer record = ByteBuffer.allocate(length);
+        record.putShort((short) keyBytes.length).put(keyBytes).put(data);
+        record.flip();
+
+        long hash = hash(key);
+        long offset = packLength;
+        try {
+            FileChannel channel = pack.getChannel();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+            packLength += length;
+            writeIndexEntry(hash, offset, length);
+        } catch (IOException e) {
+            Log.e(TAG, "写入缩略图记录失败", e);
+            return;
+        }
+
+        Entry previous = index.put(hash, new Entry(offset, length));
+        if (previous != null) {
+            liveBytes -= previous.length;
+        }
+        liveBytes += length;
+        evictOverBudget();
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 删除一条记录，空间在下次压缩时回收
+     */
+    public synchronized void remove(String key) {
+        if (!ensureOpen()) {
+            return;
+        }
+        long hash = hash(key);
+        Entry entry = index.remove(hash);
+        if (entry == null) {
+            return;
+        }
+        liveBytes -= entry.length;
+        try {
+            writeIndexEntry(hash, 0, 0);
+        } catch (IOException e) {
+            Log.e(TAG, "写入删除记录失败", e);
+        }
+        scheduleCompactionIfNeeded();
+    }
+
+    /**
+     * 超出预算时淘汰最久未使用的记录
+     */
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Long, Entry>> iterator = index.entrySet().iterator();
+        while (liveBytes > byteBudget && iterator.hasNext()) {
+            Map.Entry<Long, Entry> eldest = iterator.next();
+            iterator.remove();
+            liveBytes -= eldest.getValue().length;
+            try {
+                writeIndexEntry(eldest.getKey(), 0, 0);
+            } catch (IOException e) {
+                Log.e(TAG, "写入淘汰记录失败", e);
+            }
+        }
+    }
+
+    private void scheduleCompactionIfNeeded() {
+        long deadBytes = packLength - liveBytes;
+        if (compactionScheduled || deadBytes < MIN_COMPACT_BYTES || deadBytes < liveBytes / 2) {
+            return;
+        }
+        compactionScheduled = true;
+        compactor.execute(this::compact);
+    }
+
+    /**
+     * 把有效记录复制到新文件，然后替换旧文件
+     *
+     * 复制在锁外进行：先在锁内取索引快照和数据文件的映射，数据文件只追加，快照中的记录在复制期间不会变化；
+     * 复制完成后回到锁内，只保留仍指向同一条记录的键，复制期间新写入、覆盖或删除的记录直接丢弃。
+     * 先删除旧索引再替换数据文件，中途崩溃时下次打开找不到索引，会整体丢弃重建，
+     * 不会出现索引和数据文件对不上的情况。
+     */
+    void compact() {
+        LinkedHashMap<Long, Entry> snapshot;
+        ByteBuffer source;
+        RandomAccessFile snapshotPack;
+        long oldLength;
+        synchronized (this) {
+            if (pack == null) {
+                compactionScheduled = false;
+                return;
+            }
+            snapshot = new LinkedHashMap<>(index);
+            snapshotPack = pack;
+            oldLength = packLength;
+            try {
+                source = pack.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, packLength);
+            } catch (IOException e) {
+                Log.e(TAG, "映射缩略图文件失败", e);
+                compactionScheduled = false;
+                return;
+            }
+        }
+
+        File packTemp = new File(packFile.getPath() + ".tmp");
+        File indexTemp = new File(indexFile.getPath() + ".tmp");
+        long start = System.currentTimeMillis();
+        // 记录 -> 在新数据文件中的偏移，按对象判断记录在复制期间是否被替换
+        IdentityHashMap<Entry, Long> copied = new IdentityHashMap<>(snapshot.size());
+        try (FileOutputStream packOut = new FileOutputStream(packTemp)) {
+            FileChannel channel = packOut.getChannel();
+            long offset = 0;
+            for (Entry entry : snapshot.values()) {
+                ByteBuffer record = source.duplicate();
+                record.position((int) entry.offset);
+                record.limit((int) (entry.offset + entry.length));
+                while (record.hasRemaining()) {
+                    channel.write(record);
+                }
+                copied.put(entry, offset);
+                offset += entry.length;
+            }
+            packOut.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "复制缩略图记录失败", e);
+            packTemp.delete();
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            compactionScheduled = false;
+            if (pack != snapshotPack) {
+                // 复制期间文件已被重新打开，快照作废
+                packTemp.delete();
+                return;
+            }
+            try {
+                // 按当前的最近使用顺序写索引，只写复制期间没有变化的键
+                try (FileOutputStream indexStream = new FileOutputStream(indexTemp);
+                     DataOutputStream newIndex = new DataOutputStream(new BufferedOutputStream(indexStream))) {
+                    newIndex.writeInt(MAGIC);
+                    newIndex.writeInt(VERSION);
+                    for (Map.Entry<Long, Entry> item : index.entrySet()) {
+                        Long newOffset = copied.get(item.getValue());
+                        if (newOffset != null) {
+                            newIndex.writeLong(item.getKey());
+                            newIndex.writeLong(newOffset);
+                            newIndex.writeInt(item.getValue().length);
+                        }
+                    }
+                    newIndex.flush();
+                    indexStream.getFD().sync();
+                }
+
+                closeFiles();
+                if (!indexFile.delete() && indexFile.exists()) {
+                    throw new IOException("无法删除旧索引");
+                }
+                if (!packTemp.renameTo(packFile) || !indexTemp.renameTo(indexFile)) {
+                    throw new IOException("无法替换缩略图文件");
+                }
+                // 重新读取新索引，顺序与压缩时的最近使用顺序一致
+                opened = false;
+                ensureOpen();
+                Log.d(TAG, "压缩完成: " + oldLength + " -> " + packLength + " 字节, 耗时 "
+                        + (System.currentTimeMillis() - start) + "ms");
+            } catch (IOException e) {
+                Log.e(TAG, "压缩缩略图文件失败", e);
+                packTemp.delete();
+                indexTemp.delete();
+                // 文件状态不确定时重新打开，索引缺失会导致整体重建
+                closeFiles();
+                index.clear();
+                opened = false;
+            }
+        }
+    }
+
+    /**
+     * 首次使用时读取索引、映射数据文件，失败则清空重建
+     */
+    private boolean ensureOpen() {
+        if (opened) {
+            return pack != null;
+        }
+        opened = true;
+        index.clear();
+        liveBytes = 0;
+        try {
+            File directory = packFile.getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("无法创建目录 " + directory);
+            }
+            long validIndexLength = indexFile.exists() && packFile.exists() ? readIndex() : -1;
+            if (validIndexLength < 0) {
+                // 索引缺失或损坏，丢弃全部数据
+                packFile.delete();
+                try (DataOutputStream header = new DataOutputStream(new FileOutputStream(indexFile))) {
+                    header.writeInt(MAGIC);
+                    header.writeInt(VERSION);
+                }
+                validIndexLength = HEADER_BYTES;
+                index.clear();
+                liveBytes = 0;
+            }
+            // 截掉崩溃时写了一半的索引记录，保证后续追加对齐
+            try (RandomAccessFile indexRaf = new RandomAccessFile(indexFile, "rw")) {
+                indexRaf.setLength(validIndexLength);
+            }
+            pack = new RandomAccessFile(packFile, "rw");
+            packLength = pack.length();
+            indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile, true)));
+            mapped = null;
+            Log.d(TAG, "打开缩略图文件: " + index.size() + " 条, 有效 " + liveBytes + "/" + packLength + " 字节");
+            evictOverBudget();
+            scheduleCompactionIfNeeded();
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "打开缩略图文件失败", e);
+            closeFiles();
+            index.clear();
+            return false;
+        }
+    }
+
+    /**
+     * 重放索引文件，返回有效部分的长度，格式不对时返回 -1
+     */
+    private long readIndex() throws IOException {
+        long dataLength = packFile.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return -1;
+            }
+            long validLength = HEADER_BYTES;
+            while (true) {
+                long hash;
+                long offset;
+                int length;
+                try {
+                    hash = in.readLong();
+                    offset = in.readLong();
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                validLength += INDEX_ENTRY_BYTES;
+                Entry previous;
+                if (length == 0) {
+                    previous = index.remove(hash);
+                } else if (offset >= 0 && length > 0 && offset + length <= dataLength) {
+                    previous = index.put(hash, new Entry(offset, length));
+                    liveBytes += length;
+                } else {
+                    // 指向数据文件之外，数据没有写完整
+                    previous = index.remove(hash);
+                }
+                if (previous != null) {
+                    liveBytes -= previous.length;
+                }
+            }
+            return validLength;
+        } catch (EOFException e) {
+            return -1;
+        }
+    }
+
+    private void writeIndexEntry(long hash, long offset, int length) throws IOException {
+        indexOut.writeLong(hash);
+        indexOut.writeLong(offset);
+        indexOut.writeInt(length);
+        indexOut.flush();
+    }
+
+    /**
+     * 取一条记录在映射区中的视图，数据文件增长超出映射范围时重新映射
+     */
+    private ByteBuffer slice(Entry entry) throws IOException {
+        if (mapped == null || entry.offset + entry.length > mapped.capacity()) {
+            mapped = pack.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, packLength);
+        }
+        ByteBuffer record = mapped.duplicate();
+        record.position((int) entry.offset);
+        record.limit((int) (entry.offset + entry.length));
+        return record;
+    }
+
+    private void closeFiles() {
+        mapped = null;
+        try {
+            if (indexOut != null) {
+                indexOut.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "关闭索引文件失败", e);
+        }
+        try {
+            if (pack != null) {
+                pack.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "关闭数据文件失败", e);
+        }
+        indexOut = null;
+        pack = null;
+    }
+
+    /**
+     * 64 位 FNV-1a，键冲突时由记录里保存的完整键区分
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.lplayer.thumbnail;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 视频缩略图加载器
+ *
+ * 用 MediaMetadataRetriever.getScaledFrameAtTime 取最近的关键帧（OPTION_CLOSEST_SYNC），
+ * 不必解码到精确的时间点。解码结果放在按字节计算大小的内存 LRU 中，同一视频的各行共享同一张位图。
+ * 请求经由 LoadQueue 后进先出地执行，最近绑定的行（也就是正在进入屏幕的行）先解码，
+ * 行被回收时请求随之取消，快速滚动长列表也不会积压大量解码任务。
+ * 解码结果同时以 JPEG 写入 ThumbnailArchive，下次启动直接从磁盘读取，不再打开视频文件。
+ * LRU 因容量不足淘汰的位图放入 BitmapPool，从存档解码时通过 inBitmap 复用它们的内存。
+ */
+public class ThumbnailLoader {
+    private static final String TAG = "ThumbnailLoader";
+    private static final int THREAD_COUNT = 2;
+    private static final int MAX_PENDING = 32;
+    private static final int MAX_FAILURES = 256;
+    // 取片头 10% 处的关键帧，最多 10 秒，避开黑屏的开头
+    private static final long MAX_FRAME_TIME_MS = 10_000;
+    private static final int JPEG_QUALITY = 85;
+    private static final Bitmap.Config CONFIG = Bitmap.Config.RGB_565;
+    private static final int MAX_POOLED = 8;
+
+    private static ThumbnailLoader instance;
+
+    private final Context context;
+    private final ThumbnailArchive archive;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LruCache<Uri, Bitmap> memoryCache;
+    private final BitmapPool bitmapPool = new BitmapPool(MAX_POOLED);
+    // 响应内存回调时淘汰的位图可能还显示在隐藏的界面上，而且本就是为了释放内存，不放入复用池
+    private volatile boolean trimming = false;
+    // 解码失败的视频不再重试，避免每次滚动都重新打开损坏的文件
+    private final Set<Uri> failures = Collections.synchronizedSet(Collections.newSetFromMap(
+            new LinkedHashMap<Uri, Boolean>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Uri, Boolean> eldest) {
+                    return size() > MAX_FAILURES;
+                }
+            }));
+    private final LoadQueue queue = new LoadQueue("Thumbnail", THREAD_COUNT, MAX_PENDING);
+
+    public interface Callback {
+        /**
+         * 在主线程回调，请求已取消时不会调用
+         */
+        void onThumbnailLoaded(Bitmap bitmap);
+    }
+
+    private ThumbnailLoader(Context context) {
+        this.context = context.getApplicationContext();
+        this.archive = ThumbnailArchive.getInstance(context);
+
+        // 缩略图缓存占可用内存的 1/16，以 KB 计
+        int cacheSizeKb = (int) (Runtime.getRuntime().maxMemory() / 1024 / 16);
+        memoryCache = new LruCache<Uri, Bitmap>(cacheSizeKb) {
+            @Override
+            protected int sizeOf(Uri key, Bitmap bitmap) {
+                return Math.max(1, bitmap.getAllocationByteCount() / 1024);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Uri key, Bitmap oldValue, Bitmap newValue) {
+                // 只复用因容量不足淘汰的位图：它是最久没有绑定过的一张，早已滚出屏幕
+                if (evicted && !trimming) {
+                    bitmapPool.put(oldValue, CONFIG);
+                }
+            }
+        };
+    }
+
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context);
+        }
+        return instance;
+    }
+
+    /**
+     * 请求一张缩略图，必须在主线程调用
+     *
+     * 内存缓存命中时同步回调并返回 null；否则返回可取消的请求。
+     * width、height 是目标边界，解码结果保持原始宽高比缩放到边界之内。
+     */
+    public Request load(Uri uri, long durationMs, int width, int height, Callback callback) {
+        if (uri == null) {
+            return null;
+        }
+        Bitmap cached = memoryCache.get(uri);
+        if (cached != null) {
+            callback.onThumbnailLoaded(cached);
+            return null;
+        }
+        if (failures.contains(uri)) {
+            return null;
+        }
+
+        Request request = new Request(this, uri, frameTimeUs(durationMs), width, height, callback);
+        queue.submit(request);
+        return request;
+    }
+
+    /**
+     * 响应系统的内存回调，界面不可见或内存紧张时释放缓存
+     */
+    public void trimMemory(int level) {
+        if (level < ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            return;
+        }
+        trimming = true;
+        try {
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+                memoryCache.evictAll();
+            } else {
+                memoryCache.trimToSize(memoryCache.maxSize() / 2);
+            }
+        } finally {
+            trimming = false;
+        }
+        bitmapPool.clear();
+    }
+
+    /**
+     * 依次查找内存缓存、磁盘存档，都没有时才打开视频解码
+     */
+    private void loadOnWorker(Request request) {
+        // 同一视频可能在排队期间已被别的请求解码
+        Bitmap bitmap = memoryCache.get(request.uri);
+        if (bitmap == null) {
+            bitmap = readArchived(request);
+            if (bitmap == null) {
+                bitmap = decode(request);
+                if (bitmap == null) {
+                    failures.add(request.uri);
+                    return;
+                }
+                writeArchived(request, bitmap);
+            }
+            memoryCache.put(request.uri, bitmap);
+        }
+
+        Bitmap result = bitmap;
+        mainHandler.post(() -> {
+            if (!request.isCancelled()) {
+                request.callback.onThumbnailLoaded(result);
+            }
+        });
+    }
+
+    private Bitmap readArchived(Request request) {
+        byte[] data = archive.get(request.archiveKey());
+        if (data == null) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        // RGB_565 每像素 2 字节
+        Bitmap reusable = bitmapPool.get(options.outWidth * options.outHeight * 2);
+        options.inJustDecodeBounds = false;
+        options.inPreferredConfig = CONFIG;
+        options.inMutable = true;
+        options.inBitmap = reusable;
+        try {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // 复用的位图不合适时放弃复用，重新分配
+            Log.w(TAG, "复用位图解码失败: " + request.uri, e);
+            options.inBitmap = null;
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+    }
+
+    private void writeArchived(Request request, Bitmap bitmap) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        if (bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out)) {
+            archive.put(request.archiveKey(), out.toByteArray());
+        }
+    }
+
+    private Bitmap decode(Request request) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, request.uri);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+                // 缩略图不需要透明通道，RGB_565 占用的内存只有 ARGB_8888 的一半
+                MediaMetadataRetriever.BitmapParams params = new MediaMetadataRetriever.BitmapParams();
+                params.setPreferredConfig(CONFIG);
+                return retriever.getScaledFrameAtTime(request.timeUs,
+                        MediaMetadataRetriever.OPTION_CLOSEST_SYNC, request.width, request.height, params);
+            }
+            return retriever.getScaledFrameAtTime(request.timeUs,
+                    MediaMetadataRetriever.OPTION_CLOSEST_SYNC, request.width, request.height);
+        } catch (Exception e) {
+            Log.w(TAG, "提取缩略图失败: " + request.uri, e);
+            return null;
+        } finally {
+            try {
+                retriever.release();
+            } catch (Exception e) {
+                Log.e(TAG, "释放 MediaMetadataRetriever 失败", e);
+            }
+        }
+    }
+
+    /**
+     * 时长未知时返回 -1，由解码器自行挑选有代表性的帧
+     */
+    private static long frameTimeUs(long durationMs) {
+        if (durationMs <= 0) {
+            return -1;
+        }
+        return Math.min(durationMs / 10, MAX_FRAME_TIME_MS) * 1000;
+    }
+
+    /**
+     * 一次缩略图请求，视图被回收时调用 cancel
+     */
+    public static final class Request extends LoadRequest {
+        private final ThumbnailLoader loader;
+        final Uri uri;
+        final long timeUs;
+        final int width;
+        final int height;
+        final Callback callback;
+
+        Request(ThumbnailLoader loader, Uri uri, long timeUs, int width, int height, Callback callback) {
+            super(loader.queue);
+            this.loader = loader;
+            this.uri = uri;
+            this.timeUs = timeUs;
+            this.width = width;
+            this.height = height;
+            this.callback = callback;
+        }
+
+        @Override
+        void load() {
+            loader.loadOnWorker(this);
+        }
+
+        /**
+         * 磁盘存档的键，尺寸不同的缩略图分开保存
+         */
+        String archiveKey() {
+            return "video:" + uri + "@" + width + "x" + height;
+        }
+    }
+}
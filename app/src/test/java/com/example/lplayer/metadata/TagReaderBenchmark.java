@@ -0,0 +1,323 @@
+package com.example.lplayer.metadata;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 纯 Java 标签读取的正确性与吞吐量基准，在开发机 JVM 上运行
+ *
+ * MediaMetadataRetriever 只能在设备上运行，两条路径的对比见 androidTest 中的 MusicMetadataExtractorBenchmark；
+ * 这里额外给出把整个文件读入内存的耗时，作为“只读头部”的参照。
+ */
+public class TagReaderBenchmark {
+    private static final int ITERATIONS = 2000;
+    // 模拟一首约 4 分钟 128kbps 的歌曲
+    private static final int AUDIO_BYTES = 4 * 1024 * 1024;
+    private static final byte[] COVER = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0, 'c', 'o', 'v', 'e', 'r'};
+    private static final byte[] BACK_COVER = {(byte) 0x89, 'P', 'N', 'G', 'b', 'a', 'c', 'k'};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void mp3_readsGbkId3AndLameDuration() throws Exception {
+        File file = write("gbk.mp3", mp3(Charset.forName("GBK"), 10000, 576, 1000));
+        TagReader.Tags tags = read(file);
+        assertEquals("周杰伦", tags.artist);
+        assertEquals("叶惠美", tags.album);
+        // (10000 * 1152 - 576 - 1000) / 44100
+        assertEquals((10000L * 1152 - 576 - 1000) * 1000 / 44100, tags.durationMs);
+    }
+
+    @Test
+    public void mp3_readsUtf8Id3() throws Exception {
+        File file = write("utf8.mp3", mp3(StandardCharsets.UTF_8, 500, 0, 0));
+        TagReader.Tags tags = read(file);
+        assertEquals("周杰伦", tags.artist);
+        assertEquals(500L * 1152 * 1000 / 44100, tags.durationMs);
+    }
+
+    @Test
+    public void flac_readsStreamInfoAndVorbisComments() throws Exception {
+        TagReader.Tags tags = read(write("a.flac", flac()));
+        assertEquals("Artist", tags.artist);
+        assertEquals("专辑", tags.album);
+        assertEquals(180_000, tags.durationMs);
+    }
+
+    @Test
+    public void mp4_readsMvhdAndIlst() throws Exception {
+        TagReader.Tags tags = read(write("a.m4a", mp4()));
+        assertEquals("Artist", tags.artist);
+        assertEquals("Album", tags.album);
+        assertEquals(215_500, tags.durationMs);
+    }
+
+    @Test
+    public void opus_readsTagsAndLastGranule() throws Exception {
+        TagReader.Tags tags = read(write("a.opus", opus()));
+        assertEquals("Artist", tags.artist);
+        assertEquals("Album", tags.album);
+        assertEquals(60_000, tags.durationMs);
+    }
+
+    @Test
+    public void embeddedPictures_preferFrontCover() throws Exception {
+        assertArrayEquals(COVER, picture(write("cover.mp3", mp3(StandardCharsets.UTF_8, 10, 0, 0))));
+        assertArrayEquals(COVER, picture(write("cover.flac", flac())));
+        assertArrayEquals(COVER, picture(write("cover.m4a", mp4())));
+    }
+
+    @Test
+    public void unknownFormat_returnsNull() throws Exception {
+        byte[] wav = new byte[1024];
+        System.arraycopy("RIFF\0\0\0\0WAVE".getBytes(StandardCharsets.ISO_8859_1), 0, wav, 0, 12);
+        assertNull(read(write("a.wav", wav)));
+    }
+
+    @Test
+    public void headerOnlyRead_filesPerSecond() throws Exception {
+        File[] files = {
+                write("b.mp3", mp3(Charset.forName("GBK"), 10000, 576, 1000)),
+                write("b.flac", flac()),
+                write("b.m4a", mp4()),
+                write("b.opus", opus())
+        };
+        for (File file : files) {
+            read(file); // 预热
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            assertNotNull(read(files[i % files.length]));
+        }
+        long tagReaderNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        byte[] buffer = new byte[64 * 1024];
+        for (int i = 0; i < ITERATIONS / 10; i++) {
+            try (RandomAccessFile in = new RandomAccessFile(files[i % files.length], "r")) {
+                while (in.read(buffer) > 0) {
+                    // 只计读取时间
+                }
+            }
+        }
+        long fullReadNanos = (System.nanoTime() - start) * 10;
+
+        System.out.println("TagReader: " + (ITERATIONS * 1_000_000_000L / Math.max(1, tagReaderNanos))
+                + " 文件/秒；读完整个文件: " + (ITERATIONS * 1_000_000_000L / Math.max(1, fullReadNanos)) + " 文件/秒");
+    }
+
+    private static TagReader.Tags read(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            return TagReader.read(channel);
+        }
+    }
+
+    private static byte[] picture(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); FileChannel channel = in.getChannel()) {
+            TagReader.Tags tags = TagReader.read(channel);
+            assertNotNull(tags.picture);
+            return TagReader.readPicture(channel, tags.picture);
+        }
+    }
+
+    private File write(String name, byte[] data) throws IOException {
+        File file = folder.newFile(name);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+
+    // ---- 合成测试文件 ----
+
+    /**
+     * ID3v2.3（文本编码字节标为 ISO-8859-1，实际内容用给定字符集）+ Xing/LAME 帧 + CBR 帧
+     */
+    private static byte[] mp3(Charset textCharset, int frames, int delay, int padding) throws IOException {
+        ByteArrayOutputStream frames3 = new ByteArrayOutputStream();
+        id3Frame(frames3, "TPE1", textCharset.encode("周杰伦"));
+        id3Frame(frames3, "TALB", textCharset.encode("叶惠美"));
+        // 封底在前，应当选中后面的封面正面
+        apicFrame(frames3, 4, "image/png", BACK_COVER);
+        apicFrame(frames3, 3, "image/jpeg", COVER);
+        byte[] body = frames3.toByteArray();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("ID3".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(new byte[]{3, 0, 0});
+        out.write(syncsafe(body.length + 256));
+        out.write(body);
+        out.write(new byte[256]); // 填充区
+
+        // MPEG-1 Layer III 128kbps 44.1kHz 立体声，每帧 417 字节
+        byte[] header = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+        byte[] xingFrame = new byte[417];
+        System.arraycopy(header, 0, xingFrame, 0, 4);
+        int xing = 4 + 32;
+        put(xingFrame, xing, "Xing");
+        ByteBuffer.wrap(xingFrame, xing + 4, 8).putInt(0x0F).putInt(frames);
+        put(xingFrame, xing + 120, "LAME");
+        xingFrame[xing + 141] = (byte) (delay >> 4);
+        xingFrame[xing + 142] = (byte) (((delay & 0x0F) << 4) | (padding >> 8));
+        xingFrame[xing + 143] = (byte) padding;
+        out.write(xingFrame);
+
+        byte[] frame = new byte[417];
+        System.arraycopy(header, 0, frame, 0, 4);
+        for (int written = 0; written < AUDIO_BYTES / 8; written += frame.length) {
+            out.write(frame);
+        }
+        return out.toByteArray();
+    }
+
+    private static void id3Frame(ByteArrayOutputStream out, String id, ByteBuffer text) throws IOException {
+        byte[] bytes = new byte[text.remaining()];
+        text.get(bytes);
+        out.write(id.getBytes(StandardCharsets.ISO_8859_1));
+        out.write(ByteBuffer.allocate(4).putInt(bytes.length + 1).array());
+        out.write(new byte[]{0, 0, 0}); // 标志位 + 编码 ISO-8859-1
+        out.write(bytes);
+    }
+
+    private static void apicFrame(ByteArrayOutputStream out, int type, String mimeType, byte[] data)
+            throws IOException {
+        byte[] body = concat(new byte[]{0}, (mimeType + "\0").getBytes(StandardCharsets.ISO_8859_1),
+                new byte[]{(byte) type}, "描述\0".getBytes(StandardCharsets.ISO_8859_1), data);
+        out.write("APIC".getBytes(StandardCharsets.ISO_8859_1));
+        out.write(ByteBuffer.allocate(4).putInt(body.length).array());
+        out.write(new byte[]{0, 0});
+        out.write(body);
+    }
+
+    private static byte[] flac() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write("fLaC".getBytes(StandardCharsets.ISO_8859_1));
+        // STREAMINFO：44.1kHz，180 秒
+        long totalSamples = 44100L * 180;
+        byte[] info = new byte[34];
+        int sampleRate = 44100;
+        info[10] = (byte) (sampleRate >> 12);
+        info[11] = (byte) (sampleRate >> 4);
+        info[12] = (byte) (((sampleRate & 0x0F) << 4) | (1 << 1)); // 2 声道
+        info[13] = (byte) ((15 << 4) | (int) (totalSamples >> 32)); // 16 位
+        ByteBuffer.wrap(info, 14, 4).putInt((int) totalSamples);
+        out.write(new byte[]{0, 0, 0, 34});
+        out.write(info);
+
+        byte[] mime = "image/jpeg".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] picture = ByteBuffer.allocate(32 + mime.length + COVER.length)
+                .putInt(3).putInt(mime.length).put(mime).putInt(0)
+                .putInt(500).putInt(500).putInt(24).putInt(0).putInt(COVER.length).put(COVER).array();
+        out.write(new byte[]{6, 0, 0, (byte) picture.length});
+        out.write(picture);
+
+        byte[] comments = vorbisComments("ARTIST=Artist", "album=专辑");
+        out.write(new byte[]{(byte) 0x84, 0, (byte) (comments.length >> 8), (byte) comments.length});
+        out.write(comments);
+        out.write(new byte[AUDIO_BYTES]);
+        return out.toByteArray();
+    }
+
+    private static byte[] mp4() throws IOException {
+        byte[] mvhd = new byte[100];
+        ByteBuffer.wrap(mvhd, 12, 8).putInt(1000).putInt(215_500);
+        byte[] ilst = box("ilst", concat(
+                box("©ART", box("data", concat(new byte[8], "Artist".getBytes(StandardCharsets.UTF_8)))),
+                box("©alb", box("data", concat(new byte[8], "Album".getBytes(StandardCharsets.UTF_8)))),
+                box("covr", box("data", concat(new byte[]{0, 0, 0, 13, 0, 0, 0, 0}, COVER)))));
+        byte[] meta = box("meta", concat(new byte[4], box("hdlr", new byte[25]), ilst));
+        byte[] moov = box("moov", concat(box("mvhd", mvhd), box("udta", meta)));
+        // moov 放在 mdat 之后，检验能跳过大块数据
+        return concat(box("ftyp", "M4A \0\0\0\0".getBytes(StandardCharsets.ISO_8859_1)),
+                box("mdat", new byte[AUDIO_BYTES]), moov);
+    }
+
+    private static byte[] opus() throws IOException {
+        byte[] head = new byte[19];
+        put(head, 0, "OpusHead");
+        head[8] = 1;
+        head[9] = 2;
+        head[10] = (byte) 0x38; // pre-skip 312
+        head[11] = 0x01;
+        byte[] tags = concat("OpusTags".getBytes(StandardCharsets.ISO_8859_1),
+                vorbisComments("ARTIST=Artist", "ALBUM=Album"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(oggPage(0, 0, head));
+        out.write(oggPage(1, 0, tags));
+        for (int i = 0; i < 16; i++) {
+            out.write(oggPage(2 + i, 0, new byte[250]));
+        }
+        out.write(oggPage(100, 48000L * 60 + 312, new byte[100]));
+        return out.toByteArray();
+    }
+
+    private static byte[] oggPage(int sequence, long granule, byte[] packet) {
+        int segments = packet.length / 255 + 1;
+        ByteBuffer page = ByteBuffer.allocate(27 + segments + packet.length).order(ByteOrder.LITTLE_ENDIAN);
+        page.put("OggS".getBytes(StandardCharsets.ISO_8859_1)).put((byte) 0).put((byte) 0)
+                .putLong(granule).putInt(0x1234).putInt(sequence).putInt(0).put((byte) segments);
+        for (int i = 0; i < segments - 1; i++) {
+            page.put((byte) 255);
+        }
+        page.put((byte) (packet.length % 255));
+        page.put(packet);
+        return page.array();
+    }
+
+    private static byte[] vorbisComments(String... comments) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] vendor = "test".getBytes(StandardCharsets.UTF_8);
+        out.write(le(vendor.length));
+        out.write(vendor);
+        out.write(le(comments.length));
+        for (String comment : comments) {
+            byte[] bytes = comment.getBytes(StandardCharsets.UTF_8);
+            out.write(le(bytes.length));
+            out.write(bytes);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] box(String type, byte[] body) {
+        return ByteBuffer.allocate(8 + body.length).putInt(8 + body.length)
+                .put(type.getBytes(StandardCharsets.ISO_8859_1)).put(body).array();
+    }
+
+    private static byte[] concat(byte[]... parts) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] le(int value) {
+        return ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(value).array();
+    }
+
+    private static byte[] syncsafe(int value) {
+        return new byte[]{(byte) ((value >> 21) & 0x7F), (byte) ((value >> 14) & 0x7F),
+                (byte) ((value >> 7) & 0x7F), (byte) (value & 0x7F)};
+    }
+
+    private static void put(byte[] target, int offset, String ascii) {
+        byte[] bytes = ascii.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, target, offset, bytes.length);
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.lplayer.playlist;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.Assert.*;
+
+/**
+ * 日志重放、损坏末尾的截断、检查点序号和移动识别的正确性，在开发机 JVM 上运行
+ */
+public class JournaledPlaylistTest {
+
+    private File file;
+    private MemoryBase base;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("playlist", ".journal");
+        base = new MemoryBase();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void replay_restoresEverySave() throws IOException {
+        JournaledPlaylist<String> playlist = open();
+        playlist.save(list("a", "b", "c"), 0);
+        playlist.save(list("a", "x", "b", "c"), 2);
+        playlist.save(list("x", "b", "c"), 1);
+        playlist.save(list("x", "b", "c", "d", "e"), 1);
+
+        JournaledPlaylist<String> reopened = open();
+        assertEquals(list("x", "b", "c", "d", "e"), reopened.load());
+        assertEquals(1, reopened.getPlayingPosition());
+    }
+
+    @Test
+    public void replay_truncatesTornLastRecord() throws IOException {
+        JournaledPlaylist<String> playlist = open();
+        playlist.save(list("a", "b", "c"), 0);
+        long intact = file.length();
+        playlist.save(list("a", "b", "c", "d"), 3);
+        // 进程在追加最后一条记录的中途被杀
+        setLength(file.length() - 3);
+
+        JournaledPlaylist<String> reopened = open();
+        assertEquals(list("a", "b", "c"), reopened.load());
+        assertEquals(0, reopened.getPlayingPosition());
+        assertEquals(intact, file.length());
+
+        // 截断后继续追加，再次打开时新记录可以正常重放
+        reopened.save(list("a", "c"), 1);
+        JournaledPlaylist<String> again = open();
+        assertEquals(list("a", "c"), again.load());
+        assertEquals(1, again.getPlayingPosition());
+    }
+
+    @Test
+    public void replay_stopsAtCrcMismatch() throws IOException {
+        JournaledPlaylist<String> playlist = open();
+        playlist.save(list("a", "b"), 0);
+        long intact = file.length();
+        playlist.save(list("a", "b", "c"), 0);
+        playlist.save(list("a", "b", "c", "d"), 0);
+        // 破坏第二次保存写入的记录负载，之后的记录也不可信
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long position = intact + 8 + 9;
+            raf.seek(position);
+            int value = raf.read();
+            raf.seek(position);
+            raf.write(value ^ 0xFF);
+        }
+
+        JournaledPlaylist<String> reopened = open();
+        assertEquals(list("a", "b"), reopened.load());
+        assertEquals(intact, file.length());
+    }
+
+    @Test
+    public void replay_skipsRecordsAlreadyInCheckpoint() throws IOException {
+        PlaylistJournal<String> journal = newJournal();
+        JournaledPlaylist<String> playlist = new JournaledPlaylist<>("test", base, journal, Objects::equals);
+        playlist.save(list("a", "b"), 0);
+        playlist.save(list("a", "b", "c"), 2);
+        // 合并时检查点已提交，但清空日志之前进程被杀
+        base.replace(list("a", "b", "c"), new PlaylistDatabase.Checkpoint(2, journal.lastSequence()));
+
+        JournaledPlaylist<String> reopened = open();
+        assertEquals(list("a", "b", "c"), reopened.load());
+        assertEquals(2, reopened.getPlayingPosition());
+
+        // 新记录的序号接在旧日志之后，不会被当作已合并的记录跳过
+        reopened.save(list("a", "b", "c", "d"), 3);
+        JournaledPlaylist<String> again = open();
+        assertEquals(list("a", "b", "c", "d"), again.load());
+        assertEquals(3, again.getPlayingPosition());
+    }
+
+    @Test
+    public void save_recordsSingleItemMovesAsMove() throws IOException {
+        JournaledPlaylist<String> playlist = open();
+        playlist.save(list("a", "b", "c", "d", "e"), -1);
+        long before = file.length();
+
+        // 向后移动：b 移到 d 之后
+        playlist.save(list("a", "c", "d", "b", "e"), -1);
+        assertEquals(Arrays.asList("move 1 3"), opsAfter(before));
+        assertEquals(list("a", "c", "d", "b", "e"), open().load());
+
+        // 向前移动：b 移回 a 之后
+        before = file.length();
+        playlist.save(list("a", "b", "c", "d", "e"), -1);
+        assertEquals(Arrays.asList("move 3 1"), opsAfter(before));
+        assertEquals(list("a", "b", "c", "d", "e"), open().load());
+
+        // 首尾对调不是单项移动，记录为删除加插入
+        before = file.length();
+        playlist.save(list("e", "b", "c", "d", "a"), -1);
+        assertEquals(Arrays.asList("remove 0 5", "insert 0 5"), opsAfter(before));
+        assertEquals(list("e", "b", "c", "d", "a"), open().load());
+    }
+
+    @Test
+    public void save_withoutChangesWritesNothing() throws IOException {
+        JournaledPlaylist<String> playlist = open();
+        assertTrue(playlist.save(list("a", "b"), 1));
+        long length = file.length();
+        assertFalse(playlist.save(list("a", "b"), 1));
+        assertEquals(length, file.length());
+    }
+
+    private JournaledPlaylist<String> open() {
+        return new JournaledPlaylist<>("test", base, newJournal(), Objects::equals);
+    }
+
+    private PlaylistJournal<String> newJournal() {
+        return new PlaylistJournal<>(file, (out, item) -> out.writeUTF(item), DataInput::readUTF);
+    }
+
+    /**
+     * 重放 offset 之后的记录，返回其中的操作
+     */
+    private List<String> opsAfter(long offset) throws IOException {
+        File tail = File.createTempFile("playlist", ".tail");
+        try {
+            try (RandomAccessFile in = new RandomAccessFile(file, "r");
+                 RandomAccessFile out = new RandomAccessFile(tail, "rw")) {
+                byte[] bytes = new byte[(int) (in.length() - offset)];
+                in.seek(offset);
+                in.readFully(bytes);
+                out.write(bytes);
+            }
+            List<String> ops = new ArrayList<>();
+            new PlaylistJournal<String>(tail, (out, item) -> out.writeUTF(item), DataInput::readUTF)
+                    .replay(0, new PlaylistMutations<String>() {
+                        @Override
+                        public void insert(int position, List<String> items) {
+                            ops.add("insert " + position + " " + items.size());
+                        }
+
+                        @Override
+                        public void remove(int position, int count) {
+                            ops.add("remove " + position + " " + count);
+                        }
+
+                        @Override
+                        public void move(int from, int to) {
+                            ops.add("move " + from + " " + to);
+                        }
+
+                        @Override
+                        public void position(int playingPosition) {
+                            ops.add("position " + playingPosition);
+                        }
+                    });
+            return ops;
+        } finally {
+            tail.delete();
+        }
+    }
+
+    private void setLength(long length) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(length);
+        }
+    }
+
+    private static List<String> list(String... items) {
+        return Arrays.asList(items);
+    }
+
+    /**
+     * 内存中的检查点，代替 PlaylistDatabase
+     */
+    private static class MemoryBase implements JournaledPlaylist.Base<String> {
+        private List<String> items = new ArrayList<>();
+        private PlaylistDatabase.Checkpoint checkpoint = PlaylistDatabase.Checkpoint.EMPTY;
+
+        @Override
+        public List<String> loadItems() {
+            return new ArrayList<>(items);
+        }
+
+        @Override
+        public PlaylistDatabase.Checkpoint loadCheckpoint() {
+            return checkpoint;
+        }
+
+        @Override
+        public void replace(List<String> newItems, PlaylistDatabase.Checkpoint newCheckpoint) {
+            items = new ArrayList<>(newItems);
+            checkpoint = newCheckpoint;
+        }
+
+        @Override
+        public void clear(PlaylistDatabase.Checkpoint newCheckpoint) {
+            items = new ArrayList<>();
+            checkpoint = newCheckpoint;
+        }
+    }
+}
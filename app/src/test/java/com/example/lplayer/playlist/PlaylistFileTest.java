@@ -0,0 +1,120 @@
+package com.example.lplayer.playlist;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * M3U、PLS 解析的正确性，在开发机 JVM 上运行
+ */
+public class PlaylistFileTest {
+
+    @Test
+    public void m3u_skipsByteOrderMark() throws IOException {
+        List<PlaylistFile.Entry> entries = read("\uFEFF#EXTM3U\n#EXTINF:10,A\na.mp3\n", PlaylistFile.Format.M3U8);
+        assertEquals(1, entries.size());
+        assertEquals("a.mp3", entries.get(0).location);
+        assertEquals("A", entries.get(0).title);
+
+        // 没有文件头时 BOM 直接在第一项的路径前面
+        entries = read("\uFEFFMusic/b.mp3\r\nc.mp3\r\n", PlaylistFile.Format.M3U);
+        assertEquals(2, entries.size());
+        assertEquals("Music/b.mp3", entries.get(0).location);
+        assertEquals(-1, entries.get(0).durationSeconds);
+        assertNull(entries.get(0).title);
+    }
+
+    @Test
+    public void m3u_readsExtinfAttributesAndDecimalDurations() throws IOException {
+        List<PlaylistFile.Entry> entries = read("#EXTM3U\n"
+                + "#EXTINF:-1 tvg-id=\"one\" group-title=\"Rock, Pop\",Artist - Title\n"
+                + "http://example.com/stream\n"
+                + "#EXTINF:215.73,Decimal\n"
+                + "  C:\\Music\\decimal.flac  \n"
+                + "#EXTVLCOPT:network-caching=1000\n"
+                + "\n"
+                + "#EXTINF:abc,Bad duration\n"
+                + "bad.mp3\n"
+                + "plain.mp3\n", PlaylistFile.Format.M3U8);
+        assertEquals(4, entries.size());
+
+        assertEquals("http://example.com/stream", entries.get(0).location);
+        assertEquals("Artist - Title", entries.get(0).title);
+        assertEquals(-1, entries.get(0).durationSeconds);
+
+        assertEquals("C:\\Music\\decimal.flac", entries.get(1).location);
+        assertEquals("Decimal", entries.get(1).title);
+        assertEquals(215, entries.get(1).durationSeconds);
+
+        assertEquals("Bad duration", entries.get(2).title);
+        assertEquals(-1, entries.get(2).durationSeconds);
+
+        // #EXTINF 只作用于紧随其后的一项
+        assertNull(entries.get(3).title);
+        assertEquals(-1, entries.get(3).durationSeconds);
+    }
+
+    @Test
+    public void pls_groupsByIndexInNumericOrder() throws IOException {
+        List<PlaylistFile.Entry> entries = read("\uFEFF[playlist]\n"
+                + "File10=ten.mp3\n"
+                + "File2=two.mp3\n"
+                + "Title2=Two\n"
+                + "; 注释\n"
+                + "File7=seven.mp3\n"
+                + "Title10=Ten\n"
+                + "Length10=12.5\n"
+                + "Length2=200\n"
+                + "Title5=No file\n"
+                + "NumberOfEntries=3\n"
+                + "Version=2\n", PlaylistFile.Format.PLS);
+        assertEquals(3, entries.size());
+
+        assertEquals("two.mp3", entries.get(0).location);
+        assertEquals("Two", entries.get(0).title);
+        assertEquals(200, entries.get(0).durationSeconds);
+
+        assertEquals("seven.mp3", entries.get(1).location);
+        assertNull(entries.get(1).title);
+        assertEquals(-1, entries.get(1).durationSeconds);
+
+        assertEquals("ten.mp3", entries.get(2).location);
+        assertEquals("Ten", entries.get(2).title);
+        assertEquals(12, entries.get(2).durationSeconds);
+    }
+
+    @Test
+    public void writtenFilesReadBack() throws IOException {
+        for (PlaylistFile.Format format : PlaylistFile.Format.values()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (PlaylistFile.EntryWriter writer = new PlaylistFile.EntryWriter(out, format)) {
+                writer.write(new PlaylistFile.Entry("Music/一.mp3", "标题", 61));
+                writer.write(new PlaylistFile.Entry("content://provider/document/2", null, -1));
+            }
+            List<PlaylistFile.Entry> entries = new ArrayList<>();
+            PlaylistFile.read(new ByteArrayInputStream(out.toByteArray()), format, entries::add);
+            assertEquals(format.toString(), 2, entries.size());
+            assertEquals("Music/一.mp3", entries.get(0).location);
+            assertEquals("标题", entries.get(0).title);
+            assertEquals(61, entries.get(0).durationSeconds);
+            assertEquals("content://provider/document/2", entries.get(1).location);
+            assertNull(entries.get(1).title);
+            assertEquals(-1, entries.get(1).durationSeconds);
+        }
+    }
+
+    private static List<PlaylistFile.Entry> read(String text, PlaylistFile.Format format) throws IOException {
+        List<PlaylistFile.Entry> entries = new ArrayList<>();
+        int count = PlaylistFile.read(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)), format,
+                entries::add);
+        assertEquals(entries.size(), count);
+        return entries;
+    }
+}
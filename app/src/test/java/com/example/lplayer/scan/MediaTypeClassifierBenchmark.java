@@ -0,0 +1,114 @@
+package com.example.lplayer.scan;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * 媒体类型判断的正确性与吞吐量基准，在开发机 JVM 上运行
+ */
+public class MediaTypeClassifierBenchmark {
+    private static final int ITERATIONS = 2_000_000;
+
+    private static final String[] NAMES = {
+            "Movie.2019.1080p.MKV", "clip.mp4", "song.flac", "track 01.mp3", "cover.jpg", "lyrics.lrc",
+            "voice.opus", "album.ape", "live.webm", "podcast.ogg", "README", "subs.srt"
+    };
+
+    @Test
+    public void classifyByName_usesExtensionTable() {
+        assertEquals(MediaTypeClassifier.Kind.VIDEO, MediaTypeClassifier.classifyByName("a.MKV", null));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, MediaTypeClassifier.classifyByName("a.opus", "application/octet-stream"));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, MediaTypeClassifier.classifyByName("a.ape", null));
+        assertEquals(MediaTypeClassifier.Kind.OTHER, MediaTypeClassifier.classifyByName("cover.jpg", "image/jpeg"));
+        assertEquals(MediaTypeClassifier.Kind.OTHER, MediaTypeClassifier.classifyByName(".nomedia", null));
+        // 歧义或未知的扩展名需要读取文件头
+        assertEquals(MediaTypeClassifier.Kind.UNKNOWN, MediaTypeClassifier.classifyByName("a.ogg", "audio/ogg"));
+        assertEquals(MediaTypeClassifier.Kind.UNKNOWN, MediaTypeClassifier.classifyByName("a.webm", "video/webm"));
+        assertEquals(MediaTypeClassifier.Kind.UNKNOWN, MediaTypeClassifier.classifyByName("README", null));
+        assertEquals(MediaTypeClassifier.Kind.OTHER, MediaTypeClassifier.classifyByName("notes.foo", "text/plain"));
+    }
+
+    @Test
+    public void sniff_recognizesContainerSignatures() {
+        assertEquals(MediaTypeClassifier.Kind.VIDEO, sniff(header(4, "ftypisom")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(header(4, "ftypM4A ")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(header(0, "fLaC")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(header(0, "ID3")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(header(0, "RIFF\0\0\0\0WAVE")));
+        assertEquals(MediaTypeClassifier.Kind.VIDEO, sniff(header(0, "RIFF\0\0\0\0AVI ")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(oggPage("\u0001vorbis")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(oggPage("OpusHead")));
+        assertEquals(MediaTypeClassifier.Kind.VIDEO, sniff(oggPage("\u0080theora")));
+        assertEquals(MediaTypeClassifier.Kind.AUDIO, sniff(matroska("A_OPUS")));
+        assertEquals(MediaTypeClassifier.Kind.VIDEO, sniff(matroska("V_VP9")));
+        assertEquals(MediaTypeClassifier.Kind.OTHER, sniff(header(0, "%PDF-1.7")));
+    }
+
+    @Test
+    public void classifyByName_namesPerSecond() {
+        int media = 0;
+        for (int i = 0; i < ITERATIONS / 10; i++) { // 预热
+            media += MediaTypeClassifier.classifyByName(NAMES[i % NAMES.length], null).ordinal();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            media += MediaTypeClassifier.classifyByName(NAMES[i % NAMES.length], null).ordinal();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("按文件名判断: " + (ITERATIONS * 1_000_000_000L / Math.max(1, elapsed))
+                + " 个/秒 (" + media + ")");
+    }
+
+    @Test
+    public void sniff_headersPerSecond() {
+        byte[][] headers = {
+                header(4, "ftypisom"), header(0, "fLaC"), header(0, "ID3"), oggPage("OpusHead"),
+                matroska("V_VP9"), header(0, "RIFF\0\0\0\0WAVE")
+        };
+        int media = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            byte[] header = headers[i % headers.length];
+            media += MediaTypeClassifier.sniff(header, header.length).ordinal();
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println("按文件头判断: " + (ITERATIONS * 1_000_000_000L / Math.max(1, elapsed))
+                + " 个/秒 (" + media + ")");
+    }
+
+    private static MediaTypeClassifier.Kind sniff(byte[] header) {
+        return MediaTypeClassifier.sniff(header, header.length);
+    }
+
+    private static byte[] header(int offset, String ascii) {
+        byte[] header = new byte[64];
+        byte[] bytes = ascii.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(bytes, 0, header, offset, bytes.length);
+        return header;
+    }
+
+    private static byte[] oggPage(String codecHeader) {
+        byte[] page = header(0, "OggS");
+        page[26] = 1; // 一个分段
+        page[27] = 30;
+        byte[] codec = codecHeader.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(codec, 0, page, 28, codec.length);
+        return page;
+    }
+
+    private static byte[] matroska(String codecId) {
+        byte[] header = new byte[256];
+        header[0] = 0x1A;
+        header[1] = 0x45;
+        header[2] = (byte) 0xDF;
+        header[3] = (byte) 0xA3;
+        header[100] = (byte) 0x86;
+        header[101] = (byte) (0x80 | codecId.length());
+        byte[] codec = codecId.getBytes(StandardCharsets.ISO_8859_1);
+        System.arraycopy(codec, 0, header, 102, codec.length);
+        return header;
+    }
+}
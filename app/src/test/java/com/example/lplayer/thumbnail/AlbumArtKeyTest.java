@@ -0,0 +1,36 @@
+package com.example.lplayer.thumbnail;
+
+import com.example.lplayer.metadata.MusicMetadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 封面共享键的正确性，在开发机 JVM 上运行
+ */
+public class AlbumArtKeyTest {
+    private static final String FIRST = "content://com.android.externalstorage.documents/document/primary%3AMusic%2Fa.mp3";
+    private static final String SECOND = "content://com.android.externalstorage.documents/document/primary%3AMusic%2Fb.mp3";
+
+    @Test
+    public void untaggedTracks_getSeparateKeys() {
+        String first = AlbumArtLoader.albumKey(FIRST, MusicMetadata.UNKNOWN_ALBUM, MusicMetadata.UNKNOWN_ARTIST);
+        String second = AlbumArtLoader.albumKey(SECOND, MusicMetadata.UNKNOWN_ALBUM, MusicMetadata.UNKNOWN_ARTIST);
+        assertNotEquals(first, second);
+        assertEquals("track:" + FIRST, first);
+
+        assertNotEquals(AlbumArtLoader.albumKey(FIRST, null, null), AlbumArtLoader.albumKey(SECOND, "  ", null));
+    }
+
+    @Test
+    public void taggedTracks_shareAlbumKey() {
+        String first = AlbumArtLoader.albumKey(FIRST, "Album", "Artist");
+        String second = AlbumArtLoader.albumKey(SECOND, " album ", "ARTIST");
+        assertEquals(first, second);
+        // 未知艺术家的占位文字与没有艺术家相同
+        assertEquals(AlbumArtLoader.albumKey(FIRST, "Album", null),
+                AlbumArtLoader.albumKey(SECOND, "Album", MusicMetadata.UNKNOWN_ARTIST));
+        assertNotEquals(first, AlbumArtLoader.albumKey(SECOND, "Album", "Other"));
+    }
+}